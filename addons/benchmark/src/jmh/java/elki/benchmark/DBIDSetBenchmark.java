@@ -0,0 +1,115 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.*;
+
+/**
+ * Micro-benchmark of the DBID set operations in {@link DBIDUtil}, on hash sets
+ * and on arrays.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DBIDSetBenchmark {
+  /**
+   * Size of each set.
+   */
+  @Param({ "1000", "100000" })
+  int n;
+
+  /**
+   * Fraction of shared elements.
+   */
+  @Param({ "0.1", "0.9" })
+  double overlap;
+
+  /**
+   * Sets as arrays.
+   */
+  ArrayDBIDs array1, array2;
+
+  /**
+   * Sets as hash sets.
+   */
+  HashSetDBIDs hash1, hash2;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    final int shared = (int) (n * overlap);
+    DBIDRange all = DBIDUtil.generateStaticDBIDRange(2 * n - shared);
+    ArrayModifiableDBIDs shuffled = DBIDUtil.newArray(all);
+    DBIDUtil.randomShuffle(shuffled, new Random(0L));
+    ArrayModifiableDBIDs a1 = DBIDUtil.newArray(n), a2 = DBIDUtil.newArray(n);
+    DBIDArrayIter it = shuffled.iter();
+    for(; it.getOffset() < n; it.advance()) {
+      a1.add(it);
+    }
+    for(it.seek(n - shared); it.valid(); it.advance()) {
+      a2.add(it);
+    }
+    array1 = a1;
+    array2 = a2;
+    hash1 = DBIDUtil.newHashSet(a1);
+    hash2 = DBIDUtil.newHashSet(a2);
+  }
+
+  @Benchmark
+  public DBIDs intersectionHash() {
+    return DBIDUtil.intersection(hash1, hash2);
+  }
+
+  @Benchmark
+  public DBIDs intersectionArrayHash() {
+    return DBIDUtil.intersection(array1, hash2);
+  }
+
+  @Benchmark
+  public int intersectionSize() {
+    return DBIDUtil.intersectionSize(hash1, hash2);
+  }
+
+  @Benchmark
+  public DBIDs unionHash() {
+    return DBIDUtil.union(hash1, hash2);
+  }
+
+  @Benchmark
+  public DBIDs differenceHash() {
+    return DBIDUtil.difference(hash1, hash2);
+  }
+
+  @Benchmark
+  public HashSetModifiableDBIDs buildHashSet() {
+    return DBIDUtil.newHashSet(array1);
+  }
+}
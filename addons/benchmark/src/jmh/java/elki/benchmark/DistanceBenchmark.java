@@ -0,0 +1,160 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.data.DoubleVector;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.LPNormDistance;
+import elki.distance.minkowski.ManhattanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Micro-benchmark of the Minkowski distance kernels, on vector objects and on
+ * raw arrays.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceBenchmark {
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "16", "128", "1024" })
+  int dim;
+
+  /**
+   * Number of vector pairs, to avoid measuring a single cached pair.
+   */
+  static final int N = 1024;
+
+  /**
+   * Data vectors.
+   */
+  DoubleVector[] vecs;
+
+  /**
+   * Raw data arrays.
+   */
+  double[][] arrays;
+
+  /**
+   * Raw float data arrays.
+   */
+  float[][] farrays;
+
+  /**
+   * Non-integer p norm.
+   */
+  LPNormDistance lp3 = new LPNormDistance(3);
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    vecs = new DoubleVector[N];
+    arrays = new double[N][];
+    farrays = new float[N][];
+    for(int i = 0; i < N; i++) {
+      double[] v = arrays[i] = new double[dim];
+      float[] f = farrays[i] = new float[dim];
+      for(int d = 0; d < dim; d++) {
+        f[d] = (float) (v[d] = rnd.nextDouble());
+      }
+      vecs[i] = DoubleVector.wrap(v);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N - 1)
+  public double squaredEuclidean() {
+    final SquaredEuclideanDistance dist = SquaredEuclideanDistance.STATIC;
+    double sum = 0;
+    for(int i = 1; i < N; i++) {
+      sum += dist.distance(vecs[i - 1], vecs[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N - 1)
+  public double squaredEuclideanArray() {
+    final SquaredEuclideanDistance dist = SquaredEuclideanDistance.STATIC;
+    double sum = 0;
+    for(int i = 1; i < N; i++) {
+      sum += dist.distance(arrays[i - 1], arrays[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N - 1)
+  public double squaredEuclideanFloatArray() {
+    final SquaredEuclideanDistance dist = SquaredEuclideanDistance.STATIC;
+    double sum = 0;
+    for(int i = 1; i < N; i++) {
+      sum += dist.distance(farrays[i - 1], farrays[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N - 1)
+  public double euclidean() {
+    final EuclideanDistance dist = EuclideanDistance.STATIC;
+    double sum = 0;
+    for(int i = 1; i < N; i++) {
+      sum += dist.distance(vecs[i - 1], vecs[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N - 1)
+  public double manhattan() {
+    final ManhattanDistance dist = ManhattanDistance.STATIC;
+    double sum = 0;
+    for(int i = 1; i < N; i++) {
+      sum += dist.distance(vecs[i - 1], vecs[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N - 1)
+  public double lpNorm3() {
+    final LPNormDistance dist = lp3;
+    double sum = 0;
+    for(int i = 1; i < N; i++) {
+      sum += dist.distance(vecs[i - 1], vecs[i]);
+    }
+    return sum;
+  }
+}
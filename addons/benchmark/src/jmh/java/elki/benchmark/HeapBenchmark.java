@@ -0,0 +1,153 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNHeap;
+import elki.database.ids.KNNList;
+import elki.utilities.datastructures.heap.ComparableMinHeap;
+import elki.utilities.datastructures.heap.DoubleMinHeap;
+
+/**
+ * Micro-benchmark of the kNN heap and the primitive and object heaps.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HeapBenchmark {
+  /**
+   * Number of elements inserted.
+   */
+  @Param({ "1000", "100000" })
+  int n;
+
+  /**
+   * Heap size limit for kNN heaps.
+   */
+  @Param({ "10", "100" })
+  int k;
+
+  /**
+   * Distances / keys to insert.
+   */
+  double[] keys;
+
+  /**
+   * Boxed keys.
+   */
+  Double[] boxed;
+
+  /**
+   * Object ids.
+   */
+  DBIDRange ids;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    keys = new double[n];
+    boxed = new Double[n];
+    for(int i = 0; i < n; i++) {
+      boxed[i] = keys[i] = rnd.nextDouble();
+    }
+    ids = DBIDUtil.generateStaticDBIDRange(n);
+  }
+
+  /**
+   * kNN heap insertions, as in a linear scan.
+   *
+   * @return kNN list
+   */
+  @Benchmark
+  public KNNList knnHeapInsert() {
+    final double[] keys = this.keys;
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    double max = Double.POSITIVE_INFINITY;
+    int i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      max = keys[i] <= max ? heap.insert(keys[i], it) : max;
+    }
+    return heap.toKNNList();
+  }
+
+  /**
+   * Bounded primitive heap: keep the k largest values.
+   *
+   * @return Top value
+   */
+  @Benchmark
+  public double doubleMinHeapTopK() {
+    DoubleMinHeap heap = new DoubleMinHeap(k);
+    for(double key : keys) {
+      heap.add(key, k);
+    }
+    return heap.peek();
+  }
+
+  /**
+   * Unbounded primitive heap: insert all, poll all (heap sort).
+   *
+   * @return Checksum
+   */
+  @Benchmark
+  public double doubleMinHeapPoll() {
+    DoubleMinHeap heap = new DoubleMinHeap(n);
+    for(double key : keys) {
+      heap.add(key);
+    }
+    double sum = 0;
+    while(!heap.isEmpty()) {
+      sum += heap.poll();
+    }
+    return sum;
+  }
+
+  /**
+   * Unbounded object heap: insert all, poll all (heap sort).
+   *
+   * @return Checksum
+   */
+  @Benchmark
+  public double comparableMinHeapPoll() {
+    ComparableMinHeap<Double> heap = new ComparableMinHeap<>(n);
+    for(Double key : boxed) {
+      heap.add(key);
+    }
+    double sum = 0;
+    while(!heap.isEmpty()) {
+      sum += heap.poll();
+    }
+    return sum;
+  }
+}
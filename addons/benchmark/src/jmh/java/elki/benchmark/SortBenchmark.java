@@ -0,0 +1,149 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.*;
+import elki.utilities.datastructures.QuickSelect;
+
+/**
+ * Micro-benchmark of sorting and selection: DBID arrays sorted with a
+ * comparator, distance-DBID lists, and quickselect on double arrays.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortBenchmark {
+  /**
+   * Number of elements. Small sizes would be dominated by the per-invocation
+   * reset of the input.
+   */
+  @Param({ "10000", "1000000" })
+  int n;
+
+  /**
+   * Keys, by offset in the range.
+   */
+  double[] keys;
+
+  /**
+   * Object ids.
+   */
+  DBIDRange ids;
+
+  /**
+   * Shuffled ids.
+   */
+  ArrayModifiableDBIDs shuffled;
+
+  /**
+   * Unsorted distance list.
+   */
+  ModifiableDoubleDBIDList list;
+
+  /**
+   * Working copy of the keys.
+   */
+  double[] work;
+
+  /**
+   * Generate the data.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    Random rnd = new Random(0L);
+    keys = new double[n];
+    for(int i = 0; i < n; i++) {
+      keys[i] = rnd.nextDouble();
+    }
+    ids = DBIDUtil.generateStaticDBIDRange(n);
+    shuffled = DBIDUtil.newArray(ids);
+    DBIDUtil.randomShuffle(shuffled, rnd);
+    work = new double[n];
+    list = DBIDUtil.newDistanceDBIDList(n);
+  }
+
+  /**
+   * Restore the unsorted input before each invocation.
+   */
+  @Setup(Level.Invocation)
+  public void reset() {
+    System.arraycopy(keys, 0, work, 0, n);
+    list.clear();
+    int i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      list.add(keys[i], it);
+    }
+    DBIDUtil.randomShuffle(shuffled, new Random(0L));
+  }
+
+  /**
+   * Sort DBIDs with a comparator.
+   *
+   * @return Sorted ids
+   */
+  @Benchmark
+  public ArrayModifiableDBIDs sortDBIDs() {
+    final DBIDRange ids = this.ids;
+    final double[] keys = this.keys;
+    shuffled.sort((a, b) -> Double.compare(keys[ids.getOffset(a)], keys[ids.getOffset(b)]));
+    return shuffled;
+  }
+
+  /**
+   * Sort a distance-DBID list.
+   *
+   * @return Sorted list
+   */
+  @Benchmark
+  public ModifiableDoubleDBIDList sortDoubleDBIDList() {
+    return list.sort();
+  }
+
+  /**
+   * Sort a double array, for reference.
+   *
+   * @return Sorted array
+   */
+  @Benchmark
+  public double[] sortArray() {
+    Arrays.sort(work);
+    return work;
+  }
+
+  /**
+   * Quickselect the median.
+   *
+   * @return Median
+   */
+  @Benchmark
+  public double quickSelectMedian() {
+    return QuickSelect.median(work);
+  }
+}
@@ -0,0 +1,482 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.affinitypropagation;
+
+import java.util.function.Supplier;
+
+import elki.clustering.ClusteringAlgorithm;
+import elki.data.Clustering;
+import elki.data.model.MedoidModel;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.IntegerDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.progress.MutableProgress;
+import elki.parallel.Executor;
+import elki.parallel.ParallelPipeline;
+import elki.parallel.processor.Processor;
+import elki.parallel.processor.Reducer;
+import elki.utilities.datastructures.QuickSelect;
+import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Affinity propagation with sparse messages: responsibilities and
+ * availabilities are only kept for each point itself and its k nearest
+ * neighbors, all other similarities are assumed to be minus infinity.
+ * <p>
+ * This needs O(n k) memory instead of the O(n²) of {@link AffinityPropagation}.
+ * The nearest neighbors are obtained with the usual query optimization, so a
+ * kNN preprocessor or an index can be used. As in
+ * {@link DistanceBasedInitializationWithMedian}, the similarity is the negative
+ * distance, and the preference is a quantile of the (sparse) similarities.
+ * <p>
+ * The message updates are run in parallel, by rows for the responsibilities,
+ * and by columns for the availabilities.
+ * <p>
+ * Reference:
+ * <p>
+ * B. J. Frey, D. Dueck<br>
+ * Clustering by Passing Messages Between Data Points<br>
+ * Science Vol 315
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @param <O> object type
+ */
+@Reference(title = "Clustering by Passing Messages Between Data Points", //
+    authors = "B. J. Frey, D. Dueck", //
+    booktitle = "Science Vol 315", //
+    url = "https://doi.org/10.1126/science.1136800", //
+    bibkey = "doi:10.1126/science.1136800")
+public class SparseAffinityPropagation<O> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(SparseAffinityPropagation.class);
+
+  /**
+   * Distance function.
+   */
+  Distance<? super O> distance;
+
+  /**
+   * Number of neighbors.
+   */
+  int k;
+
+  /**
+   * Quantile to use for the preference.
+   */
+  double quantile;
+
+  /**
+   * Damping factor lambda.
+   */
+  double lambda = 0.5;
+
+  /**
+   * Terminate after 10 iterations with no changes.
+   */
+  int convergence = 10;
+
+  /**
+   * Maximum number of iterations.
+   */
+  int maxiter = 1000;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k Number of neighbors
+   * @param quantile Quantile for the preference
+   * @param lambda Damping factor
+   * @param convergence Termination threshold (Number of stable iterations)
+   * @param maxiter Maximum number of iterations
+   */
+  public SparseAffinityPropagation(Distance<? super O> distance, int k, double quantile, double lambda, int convergence, int maxiter) {
+    super();
+    this.distance = distance;
+    this.k = k;
+    this.quantile = quantile;
+    this.lambda = lambda;
+    this.convergence = convergence;
+    this.maxiter = maxiter;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Perform affinity propagation clustering.
+   *
+   * @param relation Relation
+   * @return Clustering result
+   */
+  public Clustering<MedoidModel> run(Relation<O> relation) {
+    try (ParallelPipeline pipeline = new ParallelPipeline(relation.getDBIDs())) {
+      final ArrayDBIDs ids = pipeline.getDBIDs();
+      final int size = ids.size();
+      final int width = Math.min(k, size - 1) + 1;
+      if((long) size * width > Integer.MAX_VALUE) {
+        throw new AbortException("Too many messages for " + size + " objects and k=" + k + ".");
+      }
+      Instance inst = new Instance(size, width);
+      final QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+      inst.initialize(pipeline, () -> qb.kNNByDBID(width));
+
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Affinity Propagation Iteration", LOG) : null;
+      MutableProgress aprog = LOG.isVerbose() ? new MutableProgress("Stable assignments", size + 1, LOG) : null;
+      int inactive = 0;
+      for(int iteration = 0; iteration < maxiter && inactive < convergence; iteration++) {
+        pipeline.forEach(it -> inst.updateResponsibilities(it.getOffset()));
+        pipeline.forEach(it -> inst.updateAvailabilities(it.getOffset()));
+        int changed = pipeline.reduce(inst.new AssignmentReducer())[0];
+        inactive = changed > 0 ? 0 : (inactive + 1);
+        LOG.incrementProcessed(prog);
+        if(aprog != null) {
+          aprog.setProcessed(size - changed, LOG);
+        }
+      }
+      if(aprog != null) {
+        aprog.setProcessed(aprog.getTotal(), LOG);
+      }
+      LOG.setCompleted(prog);
+      return AffinityPropagation.buildResult(ids, inst.assignment);
+    }
+  }
+
+  /**
+   * Sparse message storage. Each row has the same width: the object itself
+   * first, followed by its nearest neighbors.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance {
+    /**
+     * Number of entries per row.
+     */
+    final int width;
+
+    /**
+     * Column of each entry.
+     */
+    final int[] cand;
+
+    /**
+     * Similarities, responsibilities and availabilities.
+     */
+    final double[] s, r, a;
+
+    /**
+     * Entries of each column, and start of each column in this array.
+     */
+    int[] colentries, colstart;
+
+    /**
+     * Current assignment.
+     */
+    final int[] assignment;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of objects
+     * @param width Number of entries per row
+     */
+    Instance(int size, int width) {
+      this.width = width;
+      final int nnz = size * width;
+      this.cand = new int[nnz];
+      this.s = new double[nnz];
+      this.r = new double[nnz];
+      this.a = new double[nnz];
+      this.assignment = new int[size];
+    }
+
+    /**
+     * Find the nearest neighbors, and initialize the similarities.
+     *
+     * @param pipeline Parallel pipeline
+     * @param knnq kNN query factory, called once per worker thread
+     */
+    void initialize(ParallelPipeline pipeline, Supplier<KNNSearcher<DBIDRef>> knnq) {
+      final ArrayDBIDs ids = pipeline.getDBIDs();
+      final int size = ids.size();
+      WritableIntegerDataStore pos = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        pos.putInt(it, it.getOffset());
+      }
+      pipeline.run(new Processor() {
+        @Override
+        public Processor.Instance instantiate(Executor executor) {
+          final KNNSearcher<DBIDRef> knn = knnq.get();
+          return id -> fillRow(pos.intValue(id), knn.getKNN(id, width), pos);
+        }
+
+        @Override
+        public void cleanup(Processor.Instance inst) {
+          // Nothing to do.
+        }
+      });
+      pos.destroy();
+      // The preference is a quantile of the similarities:
+      double[] flat = new double[size * (width - 1)];
+      for(int i = 0, p = 0; i < size; i++) {
+        System.arraycopy(s, i * width + 1, flat, p, width - 1);
+        p += width - 1;
+      }
+      final double preference = flat.length > 0 ? QuickSelect.quantile(flat, quantile) : 0.;
+      for(int i = 0; i < size; i++) {
+        s[i * width] = preference;
+      }
+      // Index the entries of each column:
+      colstart = new int[size + 1];
+      for(int c : cand) {
+        colstart[c + 1]++;
+      }
+      for(int c = 0; c < size; c++) {
+        colstart[c + 1] += colstart[c];
+      }
+      colentries = new int[cand.length];
+      int[] fill = colstart.clone();
+      for(int p = 0; p < cand.length; p++) {
+        colentries[fill[cand[p]]++] = p;
+      }
+    }
+
+    /**
+     * Initialize one row from the nearest neighbors.
+     *
+     * @param i Row number
+     * @param knn Nearest neighbors
+     * @param pos Offsets of the objects
+     */
+    private void fillRow(int i, KNNList knn, IntegerDataStore pos) {
+      final int base = i * width;
+      cand[base] = i;
+      int p = base + 1;
+      for(DoubleDBIDListIter n = knn.iter(); n.valid() && p < base + width; n.advance()) {
+        final int j = pos.intValue(n);
+        if(j != i && j >= 0) {
+          cand[p] = j;
+          s[p++] = -n.doubleValue();
+        }
+      }
+      if(p < base + width) {
+        throw new AbortException("The kNN query returned too few neighbors.");
+      }
+      assignment[i] = i;
+    }
+
+    /**
+     * Update the responsibilities of one row.
+     *
+     * @param i Row
+     */
+    void updateResponsibilities(int i) {
+      final int start = i * width, end = start + width;
+      // Find the two largest values
+      double max1 = Double.NEGATIVE_INFINITY, max2 = Double.NEGATIVE_INFINITY;
+      int maxp = -1;
+      for(int p = start; p < end; p++) {
+        double val = a[p] + s[p];
+        if(val > max1) {
+          max2 = max1;
+          max1 = val;
+          maxp = p;
+        }
+        else if(val > max2) {
+          max2 = val;
+        }
+      }
+      // With the maximum value known, update r:
+      for(int p = start; p < end; p++) {
+        double val = s[p] - ((p != maxp) ? max1 : max2);
+        r[p] = r[p] * lambda + val * (1. - lambda);
+      }
+    }
+
+    /**
+     * Update the availabilities of one column.
+     *
+     * @param c Column
+     */
+    void updateAvailabilities(int c) {
+      final int start = colstart[c], end = colstart[c + 1];
+      final int diag = c * width;
+      // Compute sum of max(0, r_ic) for all i.
+      // For r_cc, don't apply the max.
+      double colposum = 0.;
+      for(int q = start; q < end; q++) {
+        final int p = colentries[q];
+        if(p == diag || r[p] > 0.) {
+          colposum += r[p];
+        }
+      }
+      for(int q = start; q < end; q++) {
+        final int p = colentries[q];
+        double val = colposum;
+        // Adjust column sum by the one extra term.
+        if(p == diag || r[p] > 0.) {
+          val -= r[p];
+        }
+        if(p != diag && val > 0.) { // min
+          val = 0.;
+        }
+        a[p] = a[p] * lambda + val * (1 - lambda);
+      }
+    }
+
+    /**
+     * Update the cluster assignment, counting the number of changes.
+     *
+     * @author Erich Schubert
+     */
+    private class AssignmentReducer implements Reducer<int[]> {
+      @Override
+      public int[] accumulator() {
+        return new int[1];
+      }
+
+      @Override
+      public void map(DBIDArrayIter it, int[] acc) {
+        final int i = it.getOffset(), start = i * width, end = start + width;
+        // The object itself comes first, and wins ties.
+        double max = Double.NEGATIVE_INFINITY;
+        int maxj = i;
+        for(int p = start; p < end; p++) {
+          double v = a[p] + r[p];
+          if(v > max) {
+            max = v;
+            maxj = cand[p];
+          }
+        }
+        if(assignment[i] != maxj) {
+          acc[0]++;
+          assignment[i] = maxj;
+        }
+      }
+
+      @Override
+      public int[] merge(int[] left, int[] right) {
+        left[0] += right[0];
+        return left;
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * Parameter for the number of neighbors.
+     */
+    public static final OptionID K_ID = new OptionID("ap.k", "Number of nearest neighbors to exchange messages with.");
+
+    /**
+     * Distance function.
+     */
+    Distance<? super O> distance;
+
+    /**
+     * Number of neighbors.
+     */
+    int k;
+
+    /**
+     * Quantile to use.
+     */
+    double quantile;
+
+    /**
+     * Dampening parameter.
+     */
+    double lambda = .5;
+
+    /**
+     * Number of stable iterations for convergence.
+     */
+    int convergence;
+
+    /**
+     * Maximum number of iterations.
+     */
+    int maxiter;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(DistanceBasedInitializationWithMedian.Par.DISTANCE_ID, Distance.class, SquaredEuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(K_ID, 50) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+      new DoubleParameter(AffinityPropagationInitialization.QUANTILE_ID, .5) //
+          .grab(config, x -> quantile = x);
+      new DoubleParameter(AffinityPropagation.Par.LAMBDA_ID, .5) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .addConstraint(CommonConstraints.LESS_THAN_ONE_DOUBLE) //
+          .grab(config, x -> lambda = x);
+      new IntParameter(AffinityPropagation.Par.CONVERGENCE_ID, 15) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> convergence = x);
+      new IntParameter(AffinityPropagation.Par.MAXITER_ID, 1000) //
+          .grab(config, x -> maxiter = x);
+    }
+
+    @Override
+    public SparseAffinityPropagation<O> make() {
+      return new SparseAffinityPropagation<>(distance, k, quantile, lambda, convergence, maxiter);
+    }
+  }
+}
@@ -43,6 +43,7 @@ import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -123,6 +124,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Linkage linkage = WardLinkage.STATIC;
 
+  /**
+   * Store the distance matrix with single precision.
+   */
+  protected boolean floatmatrix;
+
   /**
    * Constructor.
    *
@@ -130,9 +136,21 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @param linkage Linkage method
    */
   public AGNES(Distance<? super O> distance, Linkage linkage) {
+    this(distance, linkage, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param floatmatrix Store the distance matrix with single precision
+   */
+  public AGNES(Distance<? super O> distance, Linkage linkage, boolean floatmatrix) {
     super();
     this.distance = distance;
     this.linkage = linkage;
+    this.floatmatrix = floatmatrix;
   }
 
   /**
@@ -148,7 +166,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     // Compute the initial (lower triangular) distance matrix.
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
-    ClusterDistanceMatrix mat = initializeDistanceMatrix(ids, dq, linkage);
+    ClusterDistanceMatrix mat = initializeDistanceMatrix(ids, dq, linkage, floatmatrix);
     return new Instance(linkage).run(mat, new ClusterMergeHistoryBuilder(ids, distance.isSquared()));
   }
 
@@ -161,26 +179,26 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @return cluster distance matrix
    */
   protected static ClusterDistanceMatrix initializeDistanceMatrix(ArrayDBIDs ids, DistanceQuery<?> dq, Linkage linkage) {
-    ClusterDistanceMatrix mat = new ClusterDistanceMatrix(ids.size());
-    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
-    final double[] matrix = mat.matrix;
+    return initializeDistanceMatrix(ids, dq, linkage, false);
+  }
+
+  /**
+   * Initialize a distance matrix.
+   *
+   * @param ids Object ids
+   * @param dq Distance query
+   * @param linkage Linkage method
+   * @param floatmatrix Store the matrix with single precision
+   * @return cluster distance matrix
+   */
+  protected static ClusterDistanceMatrix initializeDistanceMatrix(ArrayDBIDs ids, DistanceQuery<?> dq, Linkage linkage, boolean floatmatrix) {
+    ClusterDistanceMatrix mat = new ClusterDistanceMatrix(ids.size(), floatmatrix);
     final boolean issquare = dq.getDistance().isSquared();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", matrix.length, LOG) : null;
-    int pos = 0;
-    for(ix.seek(1); ix.valid(); ix.advance()) {
-      final int x = ix.getOffset();
-      assert pos == ClusterDistanceMatrix.triangleSize(x);
-      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = linkage.initial(dq.distance(ix, iy), issquare);
-      }
-      if(prog != null) {
-        prog.setProcessed(pos, LOG);
-      }
-    }
-    // Avoid logging errors in case scratch space was too large:
-    if(prog != null) {
-      prog.setProcessed(matrix.length, LOG);
-    }
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", Math.max(ids.size() - 1, 0), LOG) : null;
+    mat.initialize(() -> {
+      final DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+      return (x, y) -> linkage.initial(dq.distance(ix.seek(x), iy.seek(y)), issquare);
+    }, prog, LOG);
     LOG.ensureCompleted(prog);
     return mat;
   }
@@ -250,7 +268,6 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     protected int findMerge() {
       assert end > 0;
-      final double[] matrix = mat.matrix;
       double mindist = Double.POSITIVE_INFINITY;
       int x = -1, y = -1;
       // Find minimum:
@@ -265,7 +282,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
           if(mat.clustermap[oy] < 0) {
             continue;
           }
-          final double dist = matrix[xbase + oy];
+          final double dist = mat.get(xbase + oy);
           if(dist <= mindist) { // Prefer later on ==, to truncate more often.
             mindist = dist;
             x = ox;
@@ -309,7 +326,6 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
     protected void updateMatrix(double mindist, int x, int y, final int sizex, final int sizey) {
       final int xbase = ClusterDistanceMatrix.triangleSize(x);
       final int ybase = ClusterDistanceMatrix.triangleSize(y);
-      double[] scratch = mat.matrix;
 
       // Write to (y, j), with j < y
       int j = 0;
@@ -317,7 +333,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
         if(mat.clustermap[j] >= 0) {
           assert j < y; // Otherwise, ybase + j is the wrong position!
           final int yb = ybase + j;
-          scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], builder.getSize(mat.clustermap[j]), mindist);
+          mat.set(yb, linkage.combine(sizex, mat.get(xbase + j), sizey, mat.get(yb), builder.getSize(mat.clustermap[j]), mindist));
         }
       }
       j++; // Skip y
@@ -326,7 +342,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
       for(; j < x; jbase += j++) {
         if(mat.clustermap[j] >= 0) {
           final int jb = jbase + y;
-          scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], builder.getSize(mat.clustermap[j]), mindist);
+          mat.set(jb, linkage.combine(sizex, mat.get(xbase + j), sizey, mat.get(jb), builder.getSize(mat.clustermap[j]), mindist));
         }
       }
       jbase += j++; // Skip x
@@ -334,7 +350,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
       for(; j < end; jbase += j++) {
         if(mat.clustermap[j] >= 0) {
           final int jb = jbase + y;
-          scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], builder.getSize(mat.clustermap[j]), mindist);
+          mat.set(jb, linkage.combine(sizex, mat.get(jbase + x), sizey, mat.get(jb), builder.getSize(mat.clustermap[j]), mindist));
         }
       }
     }
@@ -379,6 +395,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     public static final OptionID LINKAGE_ID = new OptionID("hierarchical.linkage", "Linkage method to use (e.g., Ward, Single-Link)");
 
+    /**
+     * Option ID to store the distance matrix with single precision.
+     */
+    public static final OptionID FLOAT_MATRIX_ID = new OptionID("hierarchical.floatmatrix", "Store the distance matrix with single precision, to halve the memory requirements.");
+
     /**
      * Current linkage in use.
      */
@@ -389,6 +410,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix with single precision.
+     */
+    protected boolean floatmatrix;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Linkage>(LINKAGE_ID, Linkage.class) //
@@ -398,11 +424,12 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
           ? SquaredEuclideanDistance.class : EuclideanDistance.class;
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
           .grab(config, x -> distance = x);
+      new Flag(FLOAT_MATRIX_ID).grab(config, x -> floatmatrix = x);
     }
 
     @Override
     public AGNES<O> make() {
-      return new AGNES<>(distance, linkage);
+      return new AGNES<>(distance, linkage, floatmatrix);
     }
   }
 }
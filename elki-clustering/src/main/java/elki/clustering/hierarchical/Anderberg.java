@@ -43,6 +43,7 @@ import elki.utilities.Priority;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -94,6 +95,17 @@ public class Anderberg<O> extends AGNES<O> {
     super(distance, linkage);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param floatmatrix Store the distance matrix with single precision
+   */
+  public Anderberg(Distance<? super O> distance, Linkage linkage, boolean floatmatrix) {
+    super(distance, linkage, floatmatrix);
+  }
+
   @Override
   public ClusterMergeHistory run(Relation<O> relation) {
     if(SingleLinkage.class.isInstance(linkage)) {
@@ -101,7 +113,7 @@ public class Anderberg<O> extends AGNES<O> {
     }
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
-    ClusterDistanceMatrix mat = AGNES.initializeDistanceMatrix(ids, dq, linkage);
+    ClusterDistanceMatrix mat = AGNES.initializeDistanceMatrix(ids, dq, linkage, floatmatrix);
     return new Instance(linkage).run(mat, new ClusterMergeHistoryBuilder(ids, distance.isSquared()));
   }
 
@@ -138,7 +150,7 @@ public class Anderberg<O> extends AGNES<O> {
       this.end = size;
       this.bestd = new double[size];
       this.besti = new int[size];
-      initializeNNCache(mat.matrix, bestd, besti);
+      initializeNNCache(mat, bestd, besti);
 
       // Repeat until everything merged into 1 cluster
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
@@ -153,11 +165,11 @@ public class Anderberg<O> extends AGNES<O> {
     /**
      * Initialize the NN cache.
      *
-     * @param scratch Scratch space
+     * @param scratch Scratch matrix
      * @param bestd Best distance
      * @param besti Best index
      */
-    protected static void initializeNNCache(double[] scratch, double[] bestd, int[] besti) {
+    protected static void initializeNNCache(ClusterDistanceMatrix scratch, double[] bestd, int[] besti) {
       final int size = bestd.length;
       Arrays.fill(bestd, Double.POSITIVE_INFINITY);
       Arrays.fill(besti, -1);
@@ -167,7 +179,7 @@ public class Anderberg<O> extends AGNES<O> {
         double bestdx = Double.POSITIVE_INFINITY;
         int bestix = -1;
         for(int y = 0; y < x; y++) {
-          final double v = scratch[p++];
+          final double v = scratch.get(p++);
           if(v < bestdx) {
             bestdx = v;
             bestix = y;
@@ -220,7 +232,7 @@ public class Anderberg<O> extends AGNES<O> {
       mat.clustermap[x] = besti[x] = -1; // Deactivate removed cluster.
       updateMatrix(mindist, x, y, sizex, sizey);
       if(y > 0) {
-        findBest(mat.matrix, bestd, besti, y);
+        findBest(mat, bestd, besti, y);
       }
     }
 
@@ -228,7 +240,7 @@ public class Anderberg<O> extends AGNES<O> {
     protected void updateMatrix(double mindist, int x, int y, int sizex, int sizey) {
       final int xbase = ClusterDistanceMatrix.triangleSize(x);
       final int ybase = ClusterDistanceMatrix.triangleSize(y);
-      double[] scratch = mat.matrix;
+      final ClusterDistanceMatrix scratch = mat;
 
       // Write to (y, j), with j < y
       int j = 0;
@@ -238,7 +250,8 @@ public class Anderberg<O> extends AGNES<O> {
         }
         final int sizej = builder.getSize(mat.clustermap[j]);
         final int yb = ybase + j;
-        final double d = scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], sizej, mindist);
+        final double d = linkage.combine(sizex, scratch.get(xbase + j), sizey, scratch.get(yb), sizej, mindist);
+        scratch.set(yb, d);
         updateCache(scratch, bestd, besti, x, y, j, d);
       }
       j++; // Skip y
@@ -250,7 +263,8 @@ public class Anderberg<O> extends AGNES<O> {
         }
         final int sizej = builder.getSize(mat.clustermap[j]);
         final int jb = jbase + y;
-        final double d = scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], sizej, mindist);
+        final double d = linkage.combine(sizex, scratch.get(xbase + j), sizey, scratch.get(jb), sizej, mindist);
+        scratch.set(jb, d);
         updateCache(scratch, bestd, besti, x, y, j, d);
       }
       jbase += j++; // Skip x
@@ -261,7 +275,8 @@ public class Anderberg<O> extends AGNES<O> {
         }
         final int sizej = builder.getSize(mat.clustermap[j]);
         final int jb = jbase + y;
-        final double d = scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], sizej, mindist);
+        final double d = linkage.combine(sizex, scratch.get(jbase + x), sizey, scratch.get(jb), sizej, mindist);
+        scratch.set(jb, d);
         updateCache(scratch, bestd, besti, x, y, j, d);
       }
     }
@@ -277,7 +292,7 @@ public class Anderberg<O> extends AGNES<O> {
      * @param j Updated value d(y, j)
      * @param d New distance
      */
-    protected static void updateCache(double[] scratch, double[] bestd, int[] besti, int x, int y, int j, double d) {
+    protected static void updateCache(ClusterDistanceMatrix scratch, double[] bestd, int[] besti, int x, int y, int j, double d) {
       assert y < x;
       // New best
       if(y < j && d <= bestd[j]) {
@@ -299,7 +314,7 @@ public class Anderberg<O> extends AGNES<O> {
      * @param besti Best indexes cache
      * @param j Row to update
      */
-    protected static void findBest(double[] scratch, double[] bestd, int[] besti, int j) {
+    protected static void findBest(ClusterDistanceMatrix scratch, double[] bestd, int[] besti, int j) {
       // The distance has increased, we may no longer be the best merge.
       double bestdj = Double.POSITIVE_INFINITY;
       int bestij = -1;
@@ -308,7 +323,7 @@ public class Anderberg<O> extends AGNES<O> {
         if(besti[i] < 0) {
           continue;
         }
-        final double dist = scratch[o];
+        final double dist = scratch.get(o);
         if(dist <= bestdj) {
           bestdj = dist;
           bestij = i;
@@ -345,6 +360,11 @@ public class Anderberg<O> extends AGNES<O> {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix with single precision.
+     */
+    protected boolean floatmatrix;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Linkage>(AGNES.Par.LINKAGE_ID, Linkage.class) //
@@ -354,11 +374,12 @@ public class Anderberg<O> extends AGNES<O> {
           ? SquaredEuclideanDistance.class : EuclideanDistance.class;
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
           .grab(config, x -> distance = x);
+      new Flag(AGNES.Par.FLOAT_MATRIX_ID).grab(config, x -> floatmatrix = x);
     }
 
     @Override
     public Anderberg<O> make() {
-      return new Anderberg<>(distance, linkage);
+      return new Anderberg<>(distance, linkage, floatmatrix);
     }
   }
 }
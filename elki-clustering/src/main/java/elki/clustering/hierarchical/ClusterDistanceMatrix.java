@@ -20,7 +20,16 @@
  */
 package elki.clustering.hierarchical;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
 import elki.math.MathUtil;
+import elki.parallel.ParallelCore;
 import elki.utilities.exceptions.AbortException;
 
 /**
@@ -32,17 +41,36 @@ import elki.utilities.exceptions.AbortException;
  * the matrix view (indexed by integers 0...n-1).
  * <p>
  * While this will usually store (merge-) distances when clustering, it can
- * store arbitrary doubles.
+ * store arbitrary doubles. Optionally, the values can be stored with single
+ * precision, to halve the memory; then the values are only accessible via
+ * {@link #get(int)} and {@link #set(int, double)}, and {@link #matrix} is
+ * {@code null}.
  *
  * @author Erich Schubert
  * @since 0.7.5
  */
 public class ClusterDistanceMatrix {
   /**
-   * Distance matrix (<b>modifiable</b>).
+   * Number of columns processed at once, such that the column objects stay in
+   * the CPU cache while the rows of a tile are processed.
+   */
+  private static final int COLUMN_BLOCK = 256;
+
+  /**
+   * Minimum number of matrix entries per parallel task.
+   */
+  private static final int MIN_TASK = 1 << 16;
+
+  /**
+   * Distance matrix (<b>modifiable</b>), {@code null} with single precision.
    */
   public final double[] matrix;
 
+  /**
+   * Single precision distance matrix, or {@code null}.
+   */
+  private final float[] fmatrix;
+
   /**
    * Mapping from positions to cluster numbers
    */
@@ -59,13 +87,24 @@ public class ClusterDistanceMatrix {
    * @param size Size
    */
   public ClusterDistanceMatrix(int size) {
+    this(size, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param size Size
+   * @param useFloat Store the values with single precision
+   */
+  public ClusterDistanceMatrix(int size, boolean useFloat) {
     this.size = size;
     if(size > 0x10000) {
       throw new AbortException("This implementation does not scale to data sets larger than " + //
           0x10000 // = 65535
           + " instances (~16 GB RAM), at which point the Java maximum array size is reached.");
     }
-    matrix = new double[triangleSize(size)];
+    matrix = useFloat ? null : new double[triangleSize(size)];
+    fmatrix = useFloat ? new float[triangleSize(size)] : null;
     clustermap = MathUtil.sequence(0, size);
   }
 
@@ -90,6 +129,177 @@ public class ClusterDistanceMatrix {
    * @return Distance
    */
   public double get(int x, int y) {
-    return x == y ? 0 : x < y ? matrix[triangleSize(y) + x] : matrix[triangleSize(x) + y];
+    return x == y ? 0 : x < y ? get(triangleSize(y) + x) : get(triangleSize(x) + y);
+  }
+
+  /**
+   * Get a value from the matrix, by its position in the triangle.
+   *
+   * @param offset Position, {@code triangleSize(x) + y} for {@code y < x}
+   * @return Value
+   */
+  public double get(int offset) {
+    return matrix != null ? matrix[offset] : fmatrix[offset];
+  }
+
+  /**
+   * Set a value in the matrix, by its position in the triangle.
+   *
+   * @param offset Position, {@code triangleSize(x) + y} for {@code y < x}
+   * @param value New value
+   */
+  public void set(int offset, double value) {
+    if(matrix != null) {
+      matrix[offset] = value;
+    }
+    else {
+      fmatrix[offset] = (float) value;
+    }
+  }
+
+  /**
+   * Check whether the values are stored with single precision.
+   *
+   * @return {@code true} for single precision
+   */
+  public boolean isFloat() {
+    return fmatrix != null;
+  }
+
+  /**
+   * Fill the matrix with initial values, using all cores of the current
+   * {@link ParallelCore}.
+   * <p>
+   * The triangle is divided into bands of rows with a similar number of
+   * entries, which are processed in parallel. Within each band, the columns
+   * are processed in blocks, for better cache locality. Every entry is
+   * computed independently, so the result does not depend on the number of
+   * threads.
+   *
+   * @param factory Factory for the initializers; each task obtains its own
+   * @param prog Progress, counting rows (may be {@code null})
+   * @param log Logger for progress
+   */
+  public void initialize(Supplier<? extends Initializer> factory, FiniteProgress prog, Logging log) {
+    processBands(size, (start, end) -> initialize(factory.get(), start, end), prog, log);
+  }
+
+  /**
+   * Process a triangle of the given size in bands of rows with a similar
+   * number of entries, using all cores of the current {@link ParallelCore}.
+   * <p>
+   * Row 0 is empty and not processed; the bands cover rows 1 to size-1.
+   *
+   * @param size Number of rows
+   * @param band Band processor, must be thread-safe
+   * @param prog Progress, counting rows (may be {@code null})
+   * @param log Logger for progress
+   */
+  static void processBands(int size, Band band, FiniteProgress prog, Logging log) {
+    final ParallelCore core = ParallelCore.getCore();
+    final long entries = ((long) size * (size - 1)) >>> 1;
+    final int tasks = (int) Math.min(4 * core.getParallelism(), entries / MIN_TASK);
+    if(tasks < 2) {
+      band.process(1, size);
+      if(prog != null) {
+        prog.setProcessed(Math.max(size - 1, 0), log);
+      }
+      return;
+    }
+    // Choose the row bounds such that all bands have a similar area:
+    final int[] bounds = new int[tasks + 1];
+    bounds[0] = 1;
+    for(int i = 1; i < tasks; i++) {
+      bounds[i] = Math.max(bounds[i - 1], (int) Math.round(Math.sqrt(i / (double) tasks) * size));
+    }
+    bounds[tasks] = size;
+    core.connect();
+    try {
+      List<Future<?>> futures = new ArrayList<>(tasks);
+      for(int i = 0; i < tasks; i++) {
+        final int start = bounds[i], end = bounds[i + 1];
+        futures.add(core.submit(() -> {
+          band.process(start, end);
+          return null;
+        }));
+      }
+      for(int i = 0; i < tasks; i++) {
+        futures.get(i).get();
+        if(prog != null) {
+          prog.setProcessed(bounds[i + 1] - 1, log);
+        }
+      }
+    }
+    catch(ExecutionException e) {
+      throw new AbortException("Distance matrix computation failed.", e.getCause());
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AbortException("Distance matrix computation was interrupted.", e);
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Fill a band of rows of the matrix.
+   *
+   * @param init Initializer
+   * @param start First row
+   * @param end End row (exclusive)
+   */
+  private void initialize(Initializer init, int start, int end) {
+    final double[] matrix = this.matrix;
+    final float[] fmatrix = this.fmatrix;
+    for(int cstart = 0; cstart < end - 1; cstart += COLUMN_BLOCK) {
+      final int cend = Math.min(cstart + COLUMN_BLOCK, end - 1);
+      for(int x = Math.max(start, cstart + 1); x < end; x++) {
+        final int base = triangleSize(x), stop = x < cend ? x : cend;
+        if(matrix != null) {
+          for(int y = cstart; y < stop; y++) {
+            matrix[base + y] = init.initial(x, y);
+          }
+        }
+        else {
+          for(int y = cstart; y < stop; y++) {
+            fmatrix[base + y] = (float) init.initial(x, y);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Process a band of rows of a triangular matrix.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  interface Band {
+    /**
+     * Process the rows from start to end.
+     *
+     * @param start First row
+     * @param end End row (exclusive)
+     */
+    void process(int start, int end);
+  }
+
+  /**
+   * Compute the initial value of a matrix entry.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  public interface Initializer {
+    /**
+     * Compute the initial value for the pair (x, y).
+     *
+     * @param x First object, x &gt; y
+     * @param y Second object
+     * @return Initial value
+     */
+    double initial(int x, int y);
   }
 }
@@ -36,6 +36,7 @@ import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.EnumParameter;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
@@ -83,6 +84,11 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Variant variant;
 
+  /**
+   * Store the distance matrix with single precision.
+   */
+  protected boolean floatmatrix;
+
   /**
    * Variants of the HACAM method.
    *
@@ -106,8 +112,20 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
    * @param variant Variant to use
    */
   public HACAM(Distance<? super O> distance, Variant variant) {
+    this(distance, variant, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param variant Variant to use
+   * @param floatmatrix Store the distance matrix with single precision
+   */
+  public HACAM(Distance<? super O> distance, Variant variant, boolean floatmatrix) {
     this.distance = distance;
     this.variant = variant;
+    this.floatmatrix = floatmatrix;
   }
 
   /**
@@ -120,7 +138,7 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).precomputed().distanceQuery();
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     ArrayModifiableDBIDs prots = DBIDUtil.newArray(ClusterDistanceMatrix.triangleSize(ids.size()));
-    ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq);
+    ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq, floatmatrix);
     return new Instance(variant).run(ids, mat, new ClusterMergeHistoryBuilder(ids, dq.getDistance().isSquared()), dq, prots.iter());
   }
 
@@ -200,7 +218,7 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
       // Anderberg optimization
       this.bestd = new double[size];
       this.besti = new int[size];
-      initializeNNCache(mat.matrix, bestd, besti);
+      initializeNNCache(mat, bestd, besti);
 
       // Repeat until everything merged into 1 cluster
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("HACAM clustering", size - 1, LOG) : null;
@@ -250,7 +268,6 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
     protected void merge(int x, int y) {
       assert x >= 0 && y >= 0;
       assert y < x; // We could swap otherwise, but this shouldn't arise.
-      final double[] distances = mat.matrix;
       final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
       // Keep y
@@ -267,21 +284,21 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
       }
       clusters.put(y, cy);
       if(tds != null) { // min-sum-increase variant
-        tds[y] = distances[offset] + tds[x] + tds[y];
+        tds[y] = mat.get(offset) + tds[x] + tds[y];
       }
 
       // parent of x is set to y
       final int xx = mat.clustermap[x], yy = mat.clustermap[y];
       final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
       // Since y < x, prefer keeping y, dropping x.
-      int zz = builder.strictAdd(xx, distances[offset], yy, prots.seek(offset));
+      int zz = builder.strictAdd(xx, mat.get(offset), yy, prots.seek(offset));
       assert builder.getSize(zz) == sizex + sizey;
       mat.clustermap[y] = zz;
       mat.clustermap[x] = -1; // Deactivate removed cluster
       besti[x] = -1; // Deactivate x in cache
       updateMatrices(x, y);
       if(besti[y] == x) {
-        findBest(distances, bestd, besti, y);
+        findBest(mat, bestd, besti, y);
       }
     }
 
@@ -293,7 +310,6 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
      * @param y second cluster to merge, with {@code y < x}
      */
     private void updateMatrices(int x, int y) {
-      final double[] distances = mat.matrix;
       // Update entries (at (a,b) with a > b) in the matrix where a = y or b = y
       // Update entries at (y,b) with b < y
       int a = y, b = 0;
@@ -304,7 +320,7 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
           continue;
         }
         updateEntry(a, b);
-        updateCache(distances, bestd, besti, x, y, b, distances[yoffset + b]);
+        updateCache(mat, bestd, besti, x, y, b, mat.get(yoffset + b));
       }
       // Update entries at (a,y) with a > y
       a = y + 1;
@@ -315,7 +331,7 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
           continue;
         }
         updateEntry(a, b);
-        updateCache(distances, bestd, besti, x, y, a, distances[ClusterDistanceMatrix.triangleSize(a) + y]);
+        updateCache(mat, bestd, besti, x, y, a, mat.get(ClusterDistanceMatrix.triangleSize(a) + y));
       }
     }
 
@@ -327,7 +343,6 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
      */
     protected void updateEntry(int x, int y) {
       assert y < x;
-      final double[] distances = mat.matrix;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
 
       DBIDVar prototype = DBIDUtil.newVar(ix.seek(x)); // Default prototype
@@ -354,7 +369,7 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
       }
 
       final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
-      distances[offset] = minMaxDist;
+      mat.set(offset, minMaxDist);
       prots.seek(offset).setDBID(prototype);
     }
 
@@ -477,17 +492,23 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Variant variant;
 
+    /**
+     * Store the distance matrix with single precision.
+     */
+    protected boolean floatmatrix;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Distance<O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
           .grab(config, x -> distance = x);
       new EnumParameter<Variant>(VARIANT_ID, Variant.class, Variant.MINIMUM_SUM_INCREASE) //
           .grab(config, x -> variant = x);
+      new Flag(AGNES.Par.FLOAT_MATRIX_ID).grab(config, x -> floatmatrix = x);
     }
 
     @Override
     public HACAM<O> make() {
-      return new HACAM<>(distance, variant);
+      return new HACAM<>(distance, variant, floatmatrix);
     }
   }
 }
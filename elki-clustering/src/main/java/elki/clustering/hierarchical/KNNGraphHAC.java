@@ -0,0 +1,422 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import elki.Algorithm;
+import elki.clustering.hierarchical.linkage.CentroidLinkage;
+import elki.clustering.hierarchical.linkage.Linkage;
+import elki.clustering.hierarchical.linkage.WardLinkage;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.math.MathUtil;
+import elki.utilities.datastructures.heap.DoubleLongHeap;
+import elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+/**
+ * Approximate hierarchical agglomerative clustering on a sparse k nearest
+ * neighbor graph, for data sets too large for a full distance matrix.
+ * <p>
+ * The cluster distances are only stored for the edges of the symmetrized kNN
+ * graph, and clusters are only merged along these edges. On a merge, the
+ * distances to the neighbors are updated with the Lance-Williams formula of
+ * the linkage. If a neighbor is only adjacent to one of the two merged
+ * clusters, the unknown distance is approximated with the known one. With k
+ * large enough for the graph to be complete, the result is exact.
+ * <p>
+ * The kNN graph is obtained with the usual query optimization, so a kNN
+ * preprocessor such as {@link elki.index.preprocessed.knn.NNDescent} or an
+ * index can be used to avoid the quadratic cost. If the graph is disconnected,
+ * the remaining components are merged with {@link Anderberg}'s algorithm,
+ * using the distances between one representative object of each component.
+ * <p>
+ * Memory use is O(n k), and the run time is dominated by the kNN search.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @composed - - - Linkage
+ * @composed - - - ClusterMergeHistoryBuilder
+ *
+ * @param <O> Object type
+ */
+public class KNNGraphHAC<O> implements HierarchicalClusteringAlgorithm {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(KNNGraphHAC.class);
+
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Current linkage method in use.
+   */
+  protected Linkage linkage;
+
+  /**
+   * Number of neighbors for the graph.
+   */
+  protected int k;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param k Number of neighbors for the graph
+   */
+  public KNNGraphHAC(Distance<? super O> distance, Linkage linkage, int k) {
+    super();
+    this.distance = distance;
+    this.linkage = linkage;
+    this.k = k;
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param relation Relation
+   * @return Clustering hierarchy
+   */
+  public ClusterMergeHistory run(Relation<O> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    final KNNSearcher<DBIDRef> knnq = qb.kNNByDBID(k + 1);
+    final DistanceQuery<O> dq = qb.distanceQuery();
+    Instance instance = new Instance(linkage, ids, distance.isSquared());
+    instance.buildGraph(knnq, k + 1);
+    return instance.run(dq);
+  }
+
+  /**
+   * Main worker instance.
+   *
+   * @author Erich Schubert
+   */
+  public static class Instance {
+    /**
+     * Current linkage method in use.
+     */
+    protected Linkage linkage;
+
+    /**
+     * Object ids
+     */
+    protected ArrayDBIDs ids;
+
+    /**
+     * Distances are squared.
+     */
+    protected boolean issquare;
+
+    /**
+     * Cluster distances along the graph edges, indexed by position.
+     */
+    protected Int2DoubleOpenHashMap[] adj;
+
+    /**
+     * Mapping from positions to cluster numbers, -1 when merged.
+     */
+    protected int[] clustermap;
+
+    /**
+     * Candidate edges, lazily invalidated.
+     */
+    protected DoubleLongHeap heap;
+
+    /**
+     * Cluster result builder
+     */
+    protected ClusterMergeHistoryBuilder builder;
+
+    /**
+     * Constructor.
+     *
+     * @param linkage Linkage
+     * @param ids Object ids
+     * @param issquare Distances are squared
+     */
+    public Instance(Linkage linkage, ArrayDBIDs ids, boolean issquare) {
+      this.linkage = linkage;
+      this.ids = ids;
+      this.issquare = issquare;
+    }
+
+    /**
+     * Build the symmetric kNN graph.
+     *
+     * @param knnq kNN query
+     * @param kplus Number of neighbors to query, including the query point
+     */
+    protected void buildGraph(KNNSearcher<DBIDRef> knnq, int kplus) {
+      final int size = ids.size();
+      WritableIntegerDataStore pos = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        pos.putInt(it, it.getOffset());
+      }
+      adj = new Int2DoubleOpenHashMap[size];
+      for(int i = 0; i < size; i++) {
+        adj[i] = new Int2DoubleOpenHashMap(kplus);
+        adj[i].defaultReturnValue(Double.NaN);
+      }
+      heap = new DoubleLongMinHeap(size);
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building kNN graph", size, LOG) : null;
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final int i = it.getOffset();
+        final KNNList knn = knnq.getKNN(it, kplus);
+        for(DoubleDBIDListIter n = knn.iter(); n.valid(); n.advance()) {
+          final int j = pos.intValue(n);
+          if(j == i || j < 0) {
+            continue;
+          }
+          final double d = linkage.initial(n.doubleValue(), issquare);
+          if(Double.isNaN(adj[i].put(j, d))) {
+            adj[j].put(i, d);
+            heap.add(d, pack(i, j));
+          }
+        }
+        LOG.incrementProcessed(prog);
+      }
+      LOG.ensureCompleted(prog);
+      pos.destroy();
+    }
+
+    /**
+     * Run the merging process.
+     *
+     * @param dq Distance query, for disconnected graphs
+     * @return Cluster history
+     */
+    public ClusterMergeHistory run(DistanceQuery<?> dq) {
+      final int size = ids.size();
+      builder = new ClusterMergeHistoryBuilder(ids, issquare);
+      clustermap = MathUtil.sequence(0, size);
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
+      int merges = 0;
+      while(!heap.isEmpty()) {
+        final double d = heap.peekKey();
+        final long pair = heap.peekValue();
+        heap.poll();
+        final int a = (int) (pair >>> 32), b = (int) pair;
+        // Skip edges that are outdated:
+        if(clustermap[a] < 0 || clustermap[b] < 0 || adj[a].get(b) != d) {
+          continue;
+        }
+        merge(d, a, b);
+        ++merges;
+        LOG.incrementProcessed(prog);
+      }
+      heap = null;
+      if(merges < size - 1) {
+        mergeComponents(dq, size - 1 - merges);
+        if(prog != null) {
+          prog.setProcessed(size - 1, LOG);
+        }
+      }
+      LOG.ensureCompleted(prog);
+      // Merges are not necessarily found in the order of their distance.
+      builder.optimizeOrder();
+      return builder.complete();
+    }
+
+    /**
+     * Merge two clusters, and update the edges of the remaining cluster.
+     *
+     * @param d Linkage distance
+     * @param a First position
+     * @param b Second position
+     */
+    protected void merge(double d, int a, int b) {
+      // Keep the cluster with more neighbors, to reduce the work.
+      final int x = adj[a].size() < adj[b].size() ? a : b, y = x == a ? b : a;
+      final int xx = clustermap[x], yy = clustermap[y];
+      final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
+      clustermap[y] = builder.strictAdd(xx, linkage.restore(d, issquare), yy);
+      clustermap[x] = -1;
+      final Int2DoubleOpenHashMap adjx = adj[x], adjy = adj[y];
+      adj[x] = null;
+      adjx.remove(y);
+      adjy.remove(x);
+      // Neighbors of x, and possibly of y:
+      for(ObjectIterator<Int2DoubleMap.Entry> it = adjx.int2DoubleEntrySet().fastIterator(); it.hasNext();) {
+        final Int2DoubleMap.Entry e = it.next();
+        final int j = e.getIntKey();
+        final double dxj = e.getDoubleValue(), dyj = adjy.get(j);
+        adj[j].remove(x);
+        update(d, y, j, sizex, dxj, sizey, Double.isNaN(dyj) ? dxj : dyj);
+      }
+      // Neighbors of y only:
+      for(ObjectIterator<Int2DoubleMap.Entry> it = adjy.int2DoubleEntrySet().fastIterator(); it.hasNext();) {
+        final Int2DoubleMap.Entry e = it.next();
+        final int j = e.getIntKey();
+        if(!adjx.containsKey(j)) {
+          final double dyj = e.getDoubleValue();
+          update(d, y, j, sizex, dyj, sizey, dyj);
+        }
+      }
+    }
+
+    /**
+     * Update the distance of the merged cluster to one neighbor.
+     *
+     * @param d Merge distance
+     * @param y Position of the merged cluster
+     * @param j Position of the neighbor
+     * @param sizex Old size of the first cluster
+     * @param dxj Distance of the first cluster to j
+     * @param sizey Old size of the second cluster
+     * @param dyj Distance of the second cluster to j
+     */
+    private void update(double d, int y, int j, int sizex, double dxj, int sizey, double dyj) {
+      final double nd = linkage.combine(sizex, dxj, sizey, dyj, builder.getSize(clustermap[j]), d);
+      adj[y].put(j, nd);
+      adj[j].put(y, nd);
+      heap.add(nd, pack(y, j));
+    }
+
+    /**
+     * Merge the remaining connected components of the graph, using the
+     * distance of one representative object each.
+     *
+     * @param dq Distance query
+     * @param m Number of remaining merges
+     */
+    protected void mergeComponents(DistanceQuery<?> dq, int m) {
+      LOG.verbose("The kNN graph has " + (m + 1) + " connected components, merging them approximately.");
+      if(m >= 0xFFFF) {
+        throw new AbortException("The kNN graph has too many connected components: " + (m + 1) + " - increase k.");
+      }
+      ClusterDistanceMatrix mat = new ClusterDistanceMatrix(m + 1);
+      int[] rep = new int[m + 1];
+      for(int i = 0, c = 0; i < clustermap.length; i++) {
+        if(clustermap[i] >= 0) {
+          mat.clustermap[c] = clustermap[i];
+          rep[c++] = i;
+        }
+      }
+      DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+      for(int x = 1, p = 0; x <= m; x++) {
+        ix.seek(rep[x]);
+        for(int y = 0; y < x; y++) {
+          mat.set(p++, linkage.initial(dq.distance(ix, iy.seek(rep[y])), issquare));
+        }
+      }
+      new Anderberg.Instance(linkage).run(mat, builder);
+    }
+
+    /**
+     * Pack two positions into a long.
+     *
+     * @param a First position
+     * @param b Second position
+     * @return Packed value
+     */
+    private static long pack(int a, int b) {
+      return (((long) a) << 32) | b;
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * Number of neighbors for the kNN graph.
+     */
+    public static final OptionID K_ID = new OptionID("hierarchical.knngraph.k", "Number of nearest neighbors used to build the sparse graph.");
+
+    /**
+     * Current linkage in use.
+     */
+    protected Linkage linkage;
+
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Linkage>(AGNES.Par.LINKAGE_ID, Linkage.class) //
+          .setDefaultValue(WardLinkage.class) //
+          .grab(config, x -> linkage = x);
+      Class<? extends Distance<?>> defaultD = (linkage instanceof WardLinkage || linkage instanceof CentroidLinkage) //
+          ? SquaredEuclideanDistance.class : EuclideanDistance.class;
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
+          .grab(config, x -> distance = x);
+      new IntParameter(K_ID, 15) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+    }
+
+    @Override
+    public KNNGraphHAC<O> make() {
+      return new KNNGraphHAC<>(distance, linkage, k);
+    }
+  }
+}
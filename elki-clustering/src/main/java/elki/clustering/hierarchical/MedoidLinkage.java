@@ -35,6 +35,7 @@ import elki.logging.progress.FiniteProgress;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
@@ -87,13 +88,29 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Distance<? super O> distance;
 
+  /**
+   * Store the distance matrix with single precision.
+   */
+  protected boolean floatmatrix;
+
   /**
    * Constructor.
    *
    * @param distance Distance function to use
    */
   public MedoidLinkage(Distance<? super O> distance) {
+    this(distance, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param floatmatrix Store the distance matrix with single precision
+   */
+  public MedoidLinkage(Distance<? super O> distance, boolean floatmatrix) {
     this.distance = distance;
+    this.floatmatrix = floatmatrix;
   }
 
   /**
@@ -105,7 +122,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
   public ClusterPrototypeMergeHistory run(Relation<O> relation) {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).precomputed().distanceQuery();
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
-    ClusterDistanceMatrix mat = AGNES.initializeDistanceMatrix(ids, dq, SingleLinkage.STATIC);
+    ClusterDistanceMatrix mat = AGNES.initializeDistanceMatrix(ids, dq, SingleLinkage.STATIC, floatmatrix);
     return new Instance().run(ids, mat, new ClusterMergeHistoryBuilder(ids, distance.isSquared()), dq);
   }
 
@@ -181,7 +198,6 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
 
     @Override
     protected int findMerge() {
-      final double[] distances = mat.matrix;
       double mindist = Double.POSITIVE_INFINITY;
       int x = -1, y = -1;
       for(int dx = 0; dx < end; dx++) {
@@ -197,7 +213,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
             continue;
           }
 
-          double dist = distances[xoffset + dy];
+          double dist = mat.get(xoffset + dy);
           if(dist < mindist) {
             mindist = dist;
             x = dx;
@@ -218,7 +234,6 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
     protected void merge(int x, int y) {
       assert x >= 0 && y >= 0;
       assert y < x; // We could swap otherwise, but this shouldn't arise.
-      final double[] distances = mat.matrix;
       final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
       // Keep y
@@ -240,7 +255,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
       // parent of x is set to y
       final int xx = mat.clustermap[x], yy = mat.clustermap[y];
       final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
-      int zz = builder.strictAdd(xx, distances[offset], yy, mj);
+      int zz = builder.strictAdd(xx, mat.get(offset), yy, mj);
       assert builder.getSize(zz) == sizex + sizey;
       mat.clustermap[y] = zz;
       mat.clustermap[x] = -1; // deactivate
@@ -291,7 +306,6 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
     protected void updateMatrix(int x, int y) {
       // Update distance matrix. Note: y < x
       final int ybase = ClusterDistanceMatrix.triangleSize(y);
-      double[] scratch = mat.matrix;
 
       // Write to (y, j), with j < y
       int j = 0;
@@ -301,7 +315,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
           continue;
         }
         assert j < y; // Otherwise, ybase + j is the wrong position!
-        scratch[ybase + j] = dq.distance(mi, mj.seek(j));
+        mat.set(ybase + j, dq.distance(mi, mj.seek(j)));
       }
       j++; // Skip y
       // Write to (j, y), with y < j < x
@@ -310,7 +324,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
         if(mat.clustermap[j] < 0) {
           continue;
         }
-        scratch[jbase + y] = dq.distance(mi, mj.seek(j));
+        mat.set(jbase + y, dq.distance(mi, mj.seek(j)));
       }
       jbase += j++; // Skip x
       // Write to (j, y), with y < x < j
@@ -318,7 +332,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
         if(mat.clustermap[j] < 0) {
           continue;
         }
-        scratch[jbase + y] = dq.distance(mi, mj.seek(j));
+        mat.set(jbase + y, dq.distance(mi, mj.seek(j)));
       }
     }
   }
@@ -344,15 +358,21 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix with single precision.
+     */
+    protected boolean floatmatrix;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Distance<O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
           .grab(config, x -> distance = x);
+      new Flag(AGNES.Par.FLOAT_MATRIX_ID).grab(config, x -> floatmatrix = x);
     }
 
     @Override
     public MedoidLinkage<O> make() {
-      return new MedoidLinkage<>(distance);
+      return new MedoidLinkage<>(distance, floatmatrix);
     }
   }
 }
@@ -34,6 +34,7 @@ import elki.logging.progress.FiniteProgress;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
@@ -80,14 +81,30 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Distance<? super O> distance;
 
+  /**
+   * Store the distance matrix with single precision.
+   */
+  protected boolean floatmatrix;
+
   /**
    * Constructor.
    *
    * @param distance Distance function to use.
    */
   public MiniMax(Distance<? super O> distance) {
+    this(distance, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use.
+   * @param floatmatrix Store the distance matrix with single precision
+   */
+  public MiniMax(Distance<? super O> distance, boolean floatmatrix) {
     super();
     this.distance = distance;
+    this.floatmatrix = floatmatrix;
   }
 
   @Override
@@ -105,7 +122,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).precomputed().distanceQuery();
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     ArrayModifiableDBIDs prots = DBIDUtil.newArray(ClusterDistanceMatrix.triangleSize(ids.size()));
-    ClusterDistanceMatrix mat = initializeMatrices(ids, prots, dq);
+    ClusterDistanceMatrix mat = initializeMatrices(ids, prots, dq, floatmatrix);
     return new Instance().run(ids, mat, new ClusterMergeHistoryBuilder(ids, dq.getDistance().isSquared()), dq, prots.iter());
   }
 
@@ -119,19 +136,35 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
    * @return mat Cluster distance matrix
    */
   protected static <O> ClusterDistanceMatrix initializeMatrices(ArrayDBIDs ids, ArrayModifiableDBIDs prots, DistanceQuery<O> dq) {
-    ClusterDistanceMatrix mat = new ClusterDistanceMatrix(ids.size());
+    return initializeMatrices(ids, prots, dq, false);
+  }
+
+  /**
+   * Initializes the inter-cluster distance matrix of possible merges
+   * 
+   * @param <O> Object type
+   * @param ids Object ids
+   * @param prots Prototype storage
+   * @param dq The distance query
+   * @param floatmatrix Store the matrix with single precision
+   * @return mat Cluster distance matrix
+   */
+  protected static <O> ClusterDistanceMatrix initializeMatrices(ArrayDBIDs ids, ArrayModifiableDBIDs prots, DistanceQuery<O> dq, boolean floatmatrix) {
+    ClusterDistanceMatrix mat = new ClusterDistanceMatrix(ids.size(), floatmatrix);
     final DBIDArrayIter ix = ids.iter(), iy = ids.iter();
-    final double[] distances = mat.matrix;
-    int pos = 0;
+    // Initial prototypes: the second object of each pair
     for(ix.seek(1); ix.valid(); ix.advance()) {
       final int x = ix.getOffset();
-      assert pos == ClusterDistanceMatrix.triangleSize(x);
+      assert prots.size() == ClusterDistanceMatrix.triangleSize(x);
       for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        distances[pos++] = dq.distance(ix, iy);
         prots.add(iy);
       }
     }
-    assert prots.size() == pos;
+    assert prots.size() == ClusterDistanceMatrix.triangleSize(mat.size);
+    mat.initialize(() -> {
+      final DBIDArrayIter jx = ids.iter(), jy = ids.iter();
+      return (x, y) -> dq.distance(jx.seek(x), jy.seek(y));
+    }, null, null);
     return mat;
   }
 
@@ -204,7 +237,6 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
 
     @Override
     protected int findMerge() {
-      final double[] distances = mat.matrix;
       double mindist = Double.POSITIVE_INFINITY;
       int x = -1, y = -1;
 
@@ -221,7 +253,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
             continue;
           }
 
-          double dist = distances[xoffset + dy];
+          double dist = mat.get(xoffset + dy);
           if(dist < mindist) {
             mindist = dist;
             x = dx;
@@ -243,7 +275,6 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
     protected void merge(int x, int y) {
       assert x >= 0 && y >= 0;
       assert y < x;
-      final double[] distances = mat.matrix;
       final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
       // Keep y
@@ -263,7 +294,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
       // parent of x is set to y
       final int xx = mat.clustermap[x], yy = mat.clustermap[y];
       final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
-      int zz = builder.strictAdd(xx, distances[offset], yy, protiter.seek(offset));
+      int zz = builder.strictAdd(xx, mat.get(offset), yy, protiter.seek(offset));
       assert builder.getSize(zz) == sizex + sizey;
       mat.clustermap[y] = zz;
       mat.clustermap[x] = -1; // Deactivate removed cluster.
@@ -301,7 +332,6 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
      */
     protected void updateEntry(int x, int y) {
       assert y < x;
-      final double[] distances = mat.matrix;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
 
       DBIDVar prototype = DBIDUtil.newVar(ix.seek(x)); // Default prototype
@@ -322,7 +352,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
       }
 
       final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
-      distances[offset] = minMaxDist;
+      mat.set(offset, minMaxDist);
       protiter.seek(offset).setDBID(prototype);
     }
 
@@ -433,15 +463,21 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix with single precision.
+     */
+    protected boolean floatmatrix;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
           .grab(config, x -> distance = x);
+      new Flag(AGNES.Par.FLOAT_MATRIX_ID).grab(config, x -> floatmatrix = x);
     }
 
     @Override
     public MiniMax<O> make() {
-      return new MiniMax<>(distance);
+      return new MiniMax<>(distance, floatmatrix);
     }
   }
 }
@@ -71,6 +71,16 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
     super(distance);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param floatmatrix Store the distance matrix with single precision
+   */
+  public MiniMaxAnderberg(Distance<? super O> distance, boolean floatmatrix) {
+    super(distance, floatmatrix);
+  }
+
   /**
    * Run the algorithm
    *
@@ -82,7 +92,7 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).precomputed().distanceQuery();
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     ArrayModifiableDBIDs prots = DBIDUtil.newArray(ClusterDistanceMatrix.triangleSize(ids.size()));
-    ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq);
+    ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq, floatmatrix);
     return new Instance().run(ids, mat, new ClusterMergeHistoryBuilder(ids, dq.getDistance().isSquared()), dq, prots.iter());
   }
 
@@ -117,7 +127,7 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
       // Arrays used for caching:
       this.bestd = new double[size];
       this.besti = new int[size];
-      Anderberg.Instance.initializeNNCache(mat.matrix, bestd, besti);
+      Anderberg.Instance.initializeNNCache(mat, bestd, besti);
 
       FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
       for(int i = 1; i < size; i++) {
@@ -154,7 +164,6 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
     protected void merge(int x, int y) {
       assert x >= 0 && y >= 0;
       assert y < x;
-      final double[] distances = mat.matrix;
       final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
       // Keep y
@@ -174,13 +183,13 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
       // parent of x is set to y
       final int xx = mat.clustermap[x], yy = mat.clustermap[y];
       final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
-      int zz = builder.strictAdd(xx, distances[offset], yy, protiter.seek(offset));
+      int zz = builder.strictAdd(xx, mat.get(offset), yy, protiter.seek(offset));
       assert builder.getSize(zz) == sizex + sizey;
       mat.clustermap[y] = zz;
       mat.clustermap[x] = besti[x] = -1; // Deactivate removed cluster.
       updateMatrices(x, y);
       if(y > 0) {
-        Anderberg.Instance.findBest(distances, bestd, besti, y);
+        Anderberg.Instance.findBest(mat, bestd, besti, y);
       }
     }
 
@@ -192,7 +201,6 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
      * @param y second cluster to merge, with {@code y < x}
      */
     private void updateMatrices(int x, int y) {
-      final double[] distances = mat.matrix;
       // c is the new cluster.
       // Update entries (at (a,b) with a > b) in the matrix where a = y or b = y
       // Update entries at (y,b) with b < y
@@ -204,7 +212,7 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
           continue;
         }
         updateEntry(a, b);
-        Anderberg.Instance.updateCache(distances, bestd, besti, x, y, b, distances[yoffset + b]);
+        Anderberg.Instance.updateCache(mat, bestd, besti, x, y, b, mat.get(yoffset + b));
       }
 
       // Update entries at (a,y) with a > y
@@ -216,7 +224,7 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
           continue;
         }
         updateEntry(a, b);
-        Anderberg.Instance.updateCache(distances, bestd, besti, x, y, a, distances[ClusterDistanceMatrix.triangleSize(a) + y]);
+        Anderberg.Instance.updateCache(mat, bestd, besti, x, y, a, mat.get(ClusterDistanceMatrix.triangleSize(a) + y));
       }
     }
   }
@@ -233,7 +241,7 @@ public class MiniMaxAnderberg<O> extends MiniMax<O> {
   public static class Par<O> extends MiniMax.Par<O> {
     @Override
     public MiniMaxAnderberg<O> make() {
-      return new MiniMaxAnderberg<>(distance);
+      return new MiniMaxAnderberg<>(distance, floatmatrix);
     }
   }
 }
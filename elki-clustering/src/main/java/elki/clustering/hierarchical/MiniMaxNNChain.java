@@ -83,6 +83,16 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
     super(distance);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param floatmatrix Store the distance matrix with single precision
+   */
+  public MiniMaxNNChain(Distance<? super O> distance, boolean floatmatrix) {
+    super(distance, floatmatrix);
+  }
+
   /**
    * Run the algorithm
    *
@@ -94,7 +104,7 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).precomputed().distanceQuery();
     ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     ArrayModifiableDBIDs prots = DBIDUtil.newArray(ClusterDistanceMatrix.triangleSize(ids.size()));
-    ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq);
+    ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq, floatmatrix);
     ClusterMergeHistoryBuilder builder = new ClusterMergeHistoryBuilder(ids, distance.isSquared());
     return new Instance().run(ids, mat, builder, dq, prots.iter());
   }
@@ -127,7 +137,6 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
      */
     private void nnChainCore() {
       final int size = mat.size;
-      final double[] distances = mat.matrix;
       final int[] clustermap = mat.clustermap;
       // The maximum chain size = number of ids + 1, but usually much less
       IntegerArray chain = new IntegerArray(size << 1);
@@ -157,7 +166,7 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
           final int ta = ClusterDistanceMatrix.triangleSize(a);
           for(int i = 0; i < a; i++) {
             if(i != b && clustermap[i] >= 0) {
-              double dist = distances[ta + i];
+              double dist = mat.get(ta + i);
               if(dist < minDist) {
                 minDist = dist;
                 c = i;
@@ -166,7 +175,7 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
           }
           for(int i = a + 1; i < end; i++) {
             if(i != b && clustermap[i] >= 0) {
-              double dist = distances[ClusterDistanceMatrix.triangleSize(i) + a];
+              double dist = mat.get(ClusterDistanceMatrix.triangleSize(i) + a);
               if(dist < minDist) {
                 minDist = dist;
                 c = i;
@@ -212,7 +221,7 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
   public static class Par<O> extends MiniMax.Par<O> {
     @Override
     public MiniMaxNNChain<O> make() {
-      return new MiniMaxNNChain<>(distance);
+      return new MiniMaxNNChain<>(distance, floatmatrix);
     }
   }
 }
@@ -0,0 +1,490 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import elki.Algorithm;
+import elki.clustering.hierarchical.linkage.CentroidLinkage;
+import elki.clustering.hierarchical.linkage.Linkage;
+import elki.clustering.hierarchical.linkage.SingleLinkage;
+import elki.clustering.hierarchical.linkage.WardLinkage;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.math.MathUtil;
+import elki.persistent.OnDiskDoubleTriangleMatrix;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Variant of {@link Anderberg}'s algorithm that keeps the cluster distance
+ * matrix in a memory-mapped temporary file instead of a Java array.
+ * <p>
+ * The in-memory matrix is indexed with an int, which limits it to about 65535
+ * objects. Here, the triangle is indexed with a long, and only the row minima
+ * cache and the cluster map are kept on the heap. The operating system pages
+ * the matrix in and out as needed, so this is only fast while the working set
+ * fits into main memory; use a directory on a fast local disk for larger data.
+ * <p>
+ * Reference:
+ * <p>
+ * M. R. Anderberg<br>
+ * Hierarchical Clustering Methods<br>
+ * Cluster Analysis for Applications<br>
+ * ISBN: 0120576503
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @composed - - - Linkage
+ * @composed - - - OnDiskDoubleTriangleMatrix
+ * @composed - - - ClusterMergeHistoryBuilder
+ *
+ * @param <O> Object type
+ */
+public class OnDiskAnderberg<O> implements HierarchicalClusteringAlgorithm {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(OnDiskAnderberg.class);
+
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Current linkage method in use.
+   */
+  protected Linkage linkage;
+
+  /**
+   * Directory for the temporary file, may be {@code null}.
+   */
+  protected Path directory;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param directory Directory for the temporary file, {@code null} for the
+   *        system default
+   */
+  public OnDiskAnderberg(Distance<? super O> distance, Linkage linkage, Path directory) {
+    super();
+    this.distance = distance;
+    this.linkage = linkage;
+    this.directory = directory;
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param relation Relation
+   * @return Clustering hierarchy
+   */
+  public ClusterMergeHistory run(Relation<O> relation) {
+    if(SingleLinkage.class.isInstance(linkage)) {
+      LOG.verbose("Notice: SLINK is a much faster algorithm for single-linkage clustering!");
+    }
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
+    try (OnDiskDoubleTriangleMatrix mat = initializeDistanceMatrix(ids, dq, linkage, directory)) {
+      return makeInstance(linkage).run(mat, new ClusterMergeHistoryBuilder(ids, distance.isSquared()));
+    }
+  }
+
+  /**
+   * Make the worker instance.
+   *
+   * @param linkage Linkage
+   * @return Instance
+   */
+  protected Instance makeInstance(Linkage linkage) {
+    return new Instance(linkage);
+  }
+
+  /**
+   * Initialize an on-disk distance matrix.
+   *
+   * @param ids Object ids
+   * @param dq Distance query
+   * @param linkage Linkage method
+   * @param directory Directory for the temporary file, may be {@code null}
+   * @return cluster distance matrix
+   */
+  protected static OnDiskDoubleTriangleMatrix initializeDistanceMatrix(ArrayDBIDs ids, DistanceQuery<?> dq, Linkage linkage, Path directory) {
+    final OnDiskDoubleTriangleMatrix mat;
+    try {
+      mat = new OnDiskDoubleTriangleMatrix(directory, ids.size());
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not create the on-disk distance matrix in " + directory, e);
+    }
+    final boolean issquare = dq.getDistance().isSquared();
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", Math.max(ids.size() - 1, 0), LOG) : null;
+    ClusterDistanceMatrix.processBands(ids.size(), (start, end) -> {
+      final DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+      long off = OnDiskDoubleTriangleMatrix.triangleSize(start);
+      for(int x = start; x < end; x++) {
+        ix.seek(x);
+        for(int y = 0; y < x; y++) {
+          mat.set(off++, linkage.initial(dq.distance(ix, iy.seek(y)), issquare));
+        }
+      }
+    }, prog, LOG);
+    LOG.ensureCompleted(prog);
+    return mat;
+  }
+
+  /**
+   * Main worker instance of the on-disk Anderberg algorithm.
+   *
+   * @author Erich Schubert
+   */
+  public static class Instance {
+    /**
+     * Current linkage method in use.
+     */
+    protected Linkage linkage;
+
+    /**
+     * Cluster distance matrix
+     */
+    protected OnDiskDoubleTriangleMatrix mat;
+
+    /**
+     * Mapping from positions to cluster numbers
+     */
+    protected int[] clustermap;
+
+    /**
+     * Cluster result builder
+     */
+    protected ClusterMergeHistoryBuilder builder;
+
+    /**
+     * Active set size
+     */
+    protected int end;
+
+    /**
+     * Cache: best distance
+     */
+    protected double[] bestd;
+
+    /**
+     * Cache: index of best distance
+     */
+    protected int[] besti;
+
+    /**
+     * Constructor.
+     *
+     * @param linkage Linkage method
+     */
+    public Instance(Linkage linkage) {
+      this.linkage = linkage;
+    }
+
+    /**
+     * Run the main algorithm.
+     *
+     * @param mat Distance matrix
+     * @param builder Result builder
+     * @return Cluster history
+     */
+    public ClusterMergeHistory run(OnDiskDoubleTriangleMatrix mat, ClusterMergeHistoryBuilder builder) {
+      final int size = mat.size();
+      this.mat = mat;
+      this.clustermap = MathUtil.sequence(0, size);
+      this.builder = builder;
+      this.end = size;
+      this.bestd = new double[size];
+      this.besti = new int[size];
+      initializeNNCache();
+
+      // Repeat until everything merged into 1 cluster
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
+      for(int i = 1; i < size; i++) {
+        end = AGNES.Instance.shrinkActiveSet(clustermap, end, findMerge());
+        LOG.incrementProcessed(prog);
+      }
+      LOG.ensureCompleted(prog);
+      return builder.complete();
+    }
+
+    /**
+     * Initialize the NN cache.
+     */
+    protected void initializeNNCache() {
+      final int size = bestd.length;
+      Arrays.fill(bestd, Double.POSITIVE_INFINITY);
+      Arrays.fill(besti, -1);
+      if(size > 0) {
+        besti[0] = Integer.MAX_VALUE; // invalid, but not deactivated
+      }
+      long p = 0;
+      for(int x = 1; x < size; x++) {
+        double bestdx = Double.POSITIVE_INFINITY;
+        int bestix = -1;
+        for(int y = 0; y < x; y++) {
+          final double v = mat.get(p++);
+          if(v < bestdx) {
+            bestdx = v;
+            bestix = y;
+          }
+        }
+        assert 0 <= bestix && bestix < x;
+        bestd[x] = bestdx;
+        besti[x] = bestix;
+      }
+    }
+
+    /**
+     * Perform the next merge step, using the row minima cache.
+     *
+     * @return x, for shrinking the working set.
+     */
+    protected int findMerge() {
+      double mindist = Double.POSITIVE_INFINITY;
+      int x = -1, y = -1;
+      for(int cx = 1; cx < end; cx++) {
+        // Skip if object has already joined a cluster:
+        final int cy = besti[cx];
+        if(cy < 0) {
+          continue;
+        }
+        final double dist = bestd[cx];
+        if(dist <= mindist) { // Prefer later on ==, to truncate more often.
+          mindist = dist;
+          x = cx;
+          y = cy;
+        }
+      }
+      besti[x] = -1; // Deactivate removed cluster.
+      merge(mindist, x, y);
+      if(y > 0) {
+        findBest(y);
+      }
+      return x;
+    }
+
+    /**
+     * Execute the cluster merge.
+     *
+     * @param mindist Distance that was used for merging
+     * @param x First matrix position
+     * @param y Second matrix position
+     */
+    protected void merge(double mindist, int x, int y) {
+      assert y < x;
+      final int xx = clustermap[x], yy = clustermap[y];
+      final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
+      // Since y < x, prefer keeping y, dropping x.
+      int zz = builder.strictAdd(xx, linkage.restore(mindist, builder.isSquared), yy);
+      assert builder.getSize(zz) == sizex + sizey;
+      clustermap[y] = zz;
+      clustermap[x] = -1; // Deactivate removed cluster.
+      updateMatrix(mindist, x, y, sizex, sizey);
+    }
+
+    /**
+     * Update the distance matrix.
+     *
+     * @param mindist Minimum distance
+     * @param x First matrix position
+     * @param y Second matrix position
+     * @param sizex Old size of first cluster
+     * @param sizey Old size of second cluster
+     */
+    protected void updateMatrix(double mindist, int x, int y, int sizex, int sizey) {
+      final long xbase = OnDiskDoubleTriangleMatrix.triangleSize(x);
+      final long ybase = OnDiskDoubleTriangleMatrix.triangleSize(y);
+
+      // Write to (y, j), with j < y
+      int j = 0;
+      for(; j < y; j++) {
+        if(clustermap[j] < 0) {
+          continue;
+        }
+        final long yb = ybase + j;
+        update(yb, xbase + j, mindist, x, y, j, sizex, sizey);
+      }
+      j++; // Skip y
+      // Write to (j, y), with y < j < x
+      long jbase = OnDiskDoubleTriangleMatrix.triangleSize(j);
+      for(; j < x; jbase += j++) {
+        if(clustermap[j] < 0) {
+          continue;
+        }
+        update(jbase + y, xbase + j, mindist, x, y, j, sizex, sizey);
+      }
+      jbase += j++; // Skip x
+      // Write to (j, y), with y < x < j
+      for(; j < end; jbase += j++) {
+        if(clustermap[j] < 0) {
+          continue;
+        }
+        update(jbase + y, jbase + x, mindist, x, y, j, sizex, sizey);
+      }
+    }
+
+    /**
+     * Update a single matrix entry, and the row minima cache.
+     *
+     * @param yj Offset of d(y, j), to be updated
+     * @param xj Offset of d(x, j)
+     * @param mindist Minimum distance
+     * @param x First cluster
+     * @param y Second cluster, {@code y < x}
+     * @param j Other cluster
+     * @param sizex Old size of first cluster
+     * @param sizey Old size of second cluster
+     */
+    protected void update(long yj, long xj, double mindist, int x, int y, int j, int sizex, int sizey) {
+      final double d = linkage.combine(sizex, mat.get(xj), sizey, mat.get(yj), builder.getSize(clustermap[j]), mindist);
+      mat.set(yj, d);
+      updateCache(x, y, j, d);
+    }
+
+    /**
+     * Update the cache.
+     *
+     * @param x First cluster
+     * @param y Second cluster, {@code y < x}
+     * @param j Updated value d(y, j)
+     * @param d New distance
+     */
+    protected void updateCache(int x, int y, int j, double d) {
+      assert y < x;
+      // New best
+      if(y < j && d <= bestd[j]) {
+        bestd[j] = d;
+        besti[j] = y;
+        return;
+      }
+      // Needs slow update.
+      if(besti[j] == x || besti[j] == y) {
+        findBest(j);
+      }
+    }
+
+    /**
+     * Find the best in a row of the triangular matrix.
+     *
+     * @param j Row to update
+     */
+    protected void findBest(int j) {
+      // The distance has increased, we may no longer be the best merge.
+      double bestdj = Double.POSITIVE_INFINITY;
+      int bestij = -1;
+      long o = OnDiskDoubleTriangleMatrix.triangleSize(j);
+      for(int i = 0; i < j; i++, o++) {
+        if(besti[i] < 0) {
+          continue;
+        }
+        final double dist = mat.get(o);
+        if(dist <= bestdj) {
+          bestdj = dist;
+          bestij = i;
+        }
+      }
+      assert bestij < j;
+      bestd[j] = bestdj;
+      besti[j] = bestij;
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * Directory for the memory-mapped distance matrix.
+     */
+    public static final OptionID DIRECTORY_ID = new OptionID("hierarchical.ondisk.directory", "Directory for the memory-mapped temporary distance matrix file. If not given, the system temporary directory is used.");
+
+    /**
+     * Current linkage in use.
+     */
+    protected Linkage linkage;
+
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Directory for the temporary file.
+     */
+    protected Path directory;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Linkage>(AGNES.Par.LINKAGE_ID, Linkage.class) //
+          .setDefaultValue(WardLinkage.class) //
+          .grab(config, x -> linkage = x);
+      Class<? extends Distance<?>> defaultD = (linkage instanceof WardLinkage || linkage instanceof CentroidLinkage) //
+          ? SquaredEuclideanDistance.class : EuclideanDistance.class;
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
+          .grab(config, x -> distance = x);
+      new FileParameter(DIRECTORY_ID, FileParameter.FileType.DIRECTORY) //
+          .setOptional(true) //
+          .grab(config, x -> directory = Paths.get(x));
+    }
+
+    @Override
+    public OnDiskAnderberg<O> make() {
+      return new OnDiskAnderberg<>(distance, linkage, directory);
+    }
+  }
+}
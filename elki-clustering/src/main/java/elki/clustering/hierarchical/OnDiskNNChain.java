@@ -0,0 +1,219 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import java.nio.file.Path;
+
+import elki.clustering.hierarchical.linkage.Linkage;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.math.MathUtil;
+import elki.persistent.OnDiskDoubleTriangleMatrix;
+import elki.utilities.datastructures.arraylike.IntegerArray;
+import elki.utilities.documentation.Reference;
+
+/**
+ * Variant of the {@link NNChain} algorithm that keeps the cluster distance
+ * matrix in a memory-mapped temporary file instead of a Java array, for data
+ * sets beyond the size limit of the in-memory matrix.
+ * <p>
+ * NNChain needs no additional cache, and its accesses stay within a few rows
+ * of the matrix, which makes it usually the better choice for out-of-core
+ * clustering with reducible linkages.
+ * <p>
+ * Reference:
+ * <p>
+ * F. Murtagh<br>
+ * A survey of recent advances in hierarchical clustering algorithms<br>
+ * The Computer Journal 26(4)
+ * <p>
+ * D. Müllner<br>
+ * Modern hierarchical, agglomerative clustering algorithms<br>
+ * arXiv preprint arXiv:1109.2378
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "F. Murtagh", //
+    title = "A survey of recent advances in hierarchical clustering algorithms", //
+    booktitle = "The Computer Journal 26(4)", //
+    url = "https://doi.org/10.1093/comjnl/26.4.354", //
+    bibkey = "DBLP:journals/cj/Murtagh83")
+@Reference(authors = "D. Müllner", //
+    title = "Modern hierarchical, agglomerative clustering algorithms", //
+    booktitle = "arXiv preprint arXiv:1109.2378", //
+    url = "https://arxiv.org/abs/1109.2378", //
+    bibkey = "DBLP:journals/corr/abs-1109-2378")
+public class OnDiskNNChain<O> extends OnDiskAnderberg<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(OnDiskNNChain.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param linkage Linkage strategy
+   * @param directory Directory for the temporary file, {@code null} for the
+   *        system default
+   */
+  public OnDiskNNChain(Distance<? super O> distance, Linkage linkage, Path directory) {
+    super(distance, linkage, directory);
+  }
+
+  @Override
+  protected Instance makeInstance(Linkage linkage) {
+    return new Instance(linkage);
+  }
+
+  /**
+   * Main worker instance of the on-disk NNChain, which does not use the row
+   * minima cache of {@link OnDiskAnderberg}.
+   *
+   * @author Erich Schubert
+   */
+  public static class Instance extends OnDiskAnderberg.Instance {
+    /**
+     * Constructor.
+     *
+     * @param linkage Linkage
+     */
+    public Instance(Linkage linkage) {
+      super(linkage);
+    }
+
+    @Override
+    public ClusterMergeHistory run(OnDiskDoubleTriangleMatrix mat, ClusterMergeHistoryBuilder builder) {
+      this.mat = mat;
+      this.clustermap = MathUtil.sequence(0, mat.size());
+      this.builder = builder;
+      this.end = mat.size();
+      nnChainCore();
+      builder.optimizeOrder();
+      return builder.complete();
+    }
+
+    @Override
+    protected void update(long yj, long xj, double mindist, int x, int y, int j, int sizex, int sizey) {
+      mat.set(yj, linkage.combine(sizex, mat.get(xj), sizey, mat.get(yj), builder.getSize(clustermap[j]), mindist));
+    }
+
+    /**
+     * Uses NNChain as in "Modern hierarchical, agglomerative clustering
+     * algorithms" by Daniel Müllner.
+     */
+    private void nnChainCore() {
+      final int size = mat.size();
+      boolean warnedIrreducible = false;
+      // The maximum chain size = number of ids + 1, but usually much less
+      IntegerArray chain = new IntegerArray(size >> 2);
+
+      FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Running NNChain", size - 1, LOG) : null;
+      for(int k = 1; k < size; k++) {
+        int a = -1, b = -1;
+        if(chain.size() < 2) {
+          a = NNChain.Instance.findUnlinked(0, end, clustermap);
+          b = NNChain.Instance.findUnlinked(a + 1, end, clustermap);
+          assert clustermap[a] >= 0 && clustermap[b] >= 0;
+          chain.clear();
+          chain.add(a);
+        }
+        else {
+          a = chain.get(chain.size - 2);
+          b = chain.get(chain.size - 1);
+          assert clustermap[b] >= 0;
+          if(clustermap[a] < 0) {
+            if(!warnedIrreducible) {
+              LOG.warning("Detected an inversion in the clustering. NNChain on irreducible linkages may yield different results.");
+              warnedIrreducible = true;
+            }
+            chain.size -= 2; // cut the chain
+            k--; // retry
+            continue;
+          }
+          chain.size--; // Remove b
+        }
+        // For ties, always prefer the second-last element b:
+        double minDist = mat.get(a, b);
+        do {
+          int c = b;
+          final long ta = OnDiskDoubleTriangleMatrix.triangleSize(a);
+          for(int i = 0; i < a; i++) {
+            if(i != b && clustermap[i] >= 0) {
+              double dist = mat.get(ta + i);
+              if(dist < minDist) {
+                minDist = dist;
+                c = i;
+              }
+            }
+          }
+          for(int i = a + 1; i < end; i++) {
+            if(i != b && clustermap[i] >= 0) {
+              double dist = mat.get(OnDiskDoubleTriangleMatrix.triangleSize(i) + a);
+              if(dist < minDist) {
+                minDist = dist;
+                c = i;
+              }
+            }
+          }
+          b = a;
+          a = c;
+          chain.add(a);
+        }
+        while(chain.size() < 3 || a != chain.get(chain.size - 1 - 2));
+
+        // We always merge the larger into the smaller index:
+        if(a < b) {
+          int tmp = a;
+          a = b;
+          b = tmp;
+        }
+        assert minDist == mat.get(a, b);
+        merge(minDist, a, b);
+        chain.size -= 3;
+        chain.add(b);
+        end = AGNES.Instance.shrinkActiveSet(clustermap, end, a); // shrink working set
+        LOG.incrementProcessed(progress);
+      }
+      LOG.ensureCompleted(progress);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> extends OnDiskAnderberg.Par<O> {
+    @Override
+    public OnDiskNNChain<O> make() {
+      return new OnDiskNNChain<>(distance, linkage, directory);
+    }
+  }
+}
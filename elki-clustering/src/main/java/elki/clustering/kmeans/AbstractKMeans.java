@@ -472,14 +472,15 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
     }
 
     /**
-     * Compute the squared distance (and count the distance computations).
+     * Compute the squared distance, without counting. This can be used
+     * concurrently by multiple threads, which then need to count the distance
+     * computations themselves.
      *
      * @param x First object
      * @param y Second object
      * @return Distance
      */
-    protected double distance(NumberVector x, double[] y) {
-      ++diststat;
+    protected double uncountedDistance(NumberVector x, double[] y) {
       if(df.getClass() == SquaredEuclideanDistance.class) {
         if(y.length != x.getDimensionality()) {
           throw new IllegalArgumentException("Objects do not have the same dimensionality.");
@@ -494,6 +495,18 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
       return df.distance(x, DoubleVector.wrap(y));
     }
 
+    /**
+     * Compute the squared distance (and count the distance computations).
+     *
+     * @param x First object
+     * @param y Second object
+     * @return Distance
+     */
+    protected double distance(NumberVector x, double[] y) {
+      ++diststat;
+      return uncountedDistance(x, y);
+    }
+
     /**
      * Compute the squared distance (and count the distance computations).
      *
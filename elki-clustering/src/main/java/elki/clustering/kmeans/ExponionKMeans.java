@@ -91,12 +91,12 @@ public class ExponionKMeans<V extends NumberVector> extends HamerlyKMeans<V> {
     /**
      * Cluster center distances.
      */
-    double[][] cdist;
+    protected double[][] cdist;
 
     /**
      * Sorted neighbors
      */
-    int[][] cnum;
+    protected int[][] cnum;
 
     /**
      * Constructor.
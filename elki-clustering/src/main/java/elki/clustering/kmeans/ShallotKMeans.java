@@ -91,7 +91,7 @@ public class ShallotKMeans<V extends NumberVector> extends ExponionKMeans<V> {
     /**
      * Second nearest cluster.
      */
-    WritableIntegerDataStore second;
+    protected WritableIntegerDataStore second;
 
     /**
      * Constructor.
@@ -101,27 +101,27 @@ public class SimplifiedElkanKMeans<V extends NumberVector> extends AbstractKMean
     /**
      * Sum aggregate for the new mean.
      */
-    double[][] sums;
+    protected double[][] sums;
 
     /**
      * Scratch space for new means.
      */
-    double[][] newmeans;
+    protected double[][] newmeans;
 
     /**
      * Upper bounds
      */
-    WritableDoubleDataStore upper;
+    protected WritableDoubleDataStore upper;
 
     /**
      * Lower bounds
      */
-    WritableDataStore<double[]> lower;
+    protected WritableDataStore<double[]> lower;
 
     /**
      * Cluster separation
      */
-    double[] sep;
+    protected double[] sep;
 
     /**
      * Constructor.
@@ -21,30 +21,31 @@
 package elki.clustering.kmeans.parallel;
 
 import static elki.math.linearalgebra.VMath.plusEquals;
-import static elki.math.linearalgebra.VMath.plusTimesEquals;
 import static elki.math.linearalgebra.VMath.timesEquals;
 
-import java.util.Arrays;
-
 import elki.clustering.kmeans.AbstractKMeans;
 import elki.data.DoubleVector;
 import elki.data.NumberVector;
 import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDRef;
 import elki.database.relation.Relation;
 import elki.distance.NumberVectorDistance;
-import elki.parallel.Executor;
-import elki.parallel.processor.Processor;
+import elki.parallel.processor.Reducer;
 
 /**
  * Parallel k-means implementation.
+ * <p>
+ * Each thread assigns its objects to the nearest mean, and accumulates the
+ * coordinate sums of each cluster. The partial sums are combined pairwise by
+ * the executor, so no synchronization is necessary.
  *
  * @author Erich Schubert
  * @since 0.7.0
  *
  * @has - - - Instance
  */
-public class KMeansProcessor<V extends NumberVector> implements Processor {
+public class KMeansProcessor<V extends NumberVector> implements Reducer<KMeansProcessor.Instance<V>> {
   /**
    * Data relation.
    */
@@ -65,49 +66,18 @@ public class KMeansProcessor<V extends NumberVector> implements Processor {
    */
   double[][] means;
 
-  /**
-   * Updated cluster centroids
-   */
-  double[][] centroids;
-
-  /**
-   * (Partial) cluster sizes
-   */
-  int[] sizes;
-
-  /**
-   * Variance sum.
-   */
-  double[] varsum;
-
-  /**
-   * Whether the assignment changed during the last iteration.
-   */
-  boolean changed = false;
-
   /**
    * Constructor.
    *
    * @param relation Data relation
    * @param distance Distance function
    * @param assignment Cluster assignment
-   * @param varsum Variance sums
    */
-  public KMeansProcessor(Relation<V> relation, NumberVectorDistance<? super V> distance, WritableIntegerDataStore assignment, double[] varsum) {
+  public KMeansProcessor(Relation<V> relation, NumberVectorDistance<? super V> distance, WritableIntegerDataStore assignment) {
     super();
     this.distance = distance;
     this.relation = relation;
     this.assignment = assignment;
-    this.varsum = varsum;
-  }
-
-  /**
-   * Get the "has changed" value.
-   *
-   * @return Changed flag.
-   */
-  public boolean changed() {
-    return changed;
   }
 
   /**
@@ -117,66 +87,37 @@ public class KMeansProcessor<V extends NumberVector> implements Processor {
    */
   public void nextIteration(double[][] means) {
     this.means = means;
-    changed = false;
-    final int k = means.length;
-    final int dim = means[0].length;
-    centroids = new double[k][dim];
-    sizes = new int[k];
-    Arrays.fill(varsum, 0.);
   }
 
   @Override
-  public Instance<V> instantiate(Executor exectutor) {
+  public Instance<V> accumulator() {
     return new Instance<>(relation, distance, assignment, means);
   }
 
   @Override
-  public void cleanup(Processor.Instance inst) {
-    @SuppressWarnings("unchecked")
-    Instance<V> instance = (Instance<V>) inst;
-    synchronized(this) {
-      changed |= instance.changed;
-      for(int i = 0; i < centroids.length; i++) {
-        int sizeb = instance.sizes[i];
-        if(sizeb == 0) {
-          continue;
-        }
-        int sizea = sizes[i];
-        double sum = sizea + (double) sizeb;
-        double[] cent = centroids[i];
-        if(sizea > 0) {
-          timesEquals(cent, sizea / sum);
-        }
-        plusTimesEquals(cent, instance.centroids[i], 1. / sum);
-        sizes[i] += sizeb;
-        plusEquals(varsum, instance.varsum);
-      }
-    }
+  public void map(DBIDArrayIter it, Instance<V> acc) {
+    acc.map(it);
   }
 
-  /**
-   * Get the new means.
-   *
-   * @return New means
-   */
-  public double[][] getMeans() {
-    double[][] newmeans = new double[centroids.length][];
-    for(int i = 0; i < centroids.length; i++) {
-      if(sizes[i] == 0) {
-        newmeans[i] = means[i]; // Keep old mean.
-        continue;
+  @Override
+  public Instance<V> merge(Instance<V> left, Instance<V> right) {
+    left.changed |= right.changed;
+    for(int i = 0; i < left.sums.length; i++) {
+      if(right.sizes[i] > 0) {
+        plusEquals(left.sums[i], right.sums[i]);
+        left.sizes[i] += right.sizes[i];
       }
-      newmeans[i] = centroids[i];
     }
-    return newmeans;
+    plusEquals(left.varsum, right.varsum);
+    return left;
   }
 
   /**
-   * Instance to process part of the data set, for a single iteration.
+   * Accumulator to process part of the data set, for a single iteration.
    *
    * @author Erich Schubert
    */
-  public static class Instance<V extends NumberVector> implements Processor.Instance {
+  public static class Instance<V extends NumberVector> {
     /**
      * Data relation.
      */
@@ -198,9 +139,9 @@ public class KMeansProcessor<V extends NumberVector> implements Processor {
     private double[][] means;
 
     /**
-     * Updated cluster centroids
+     * Coordinate sums of the clusters
      */
-    private double[][] centroids;
+    private double[][] sums;
 
     /**
      * (Partial) cluster sizes
@@ -237,12 +178,16 @@ public class KMeansProcessor<V extends NumberVector> implements Processor {
       }
       // Storage for updated means.
       final int dim = this.means[0].length;
-      this.centroids = new double[k][dim];
+      this.sums = new double[k][dim];
       this.sizes = new int[k];
       this.varsum = new double[k];
     }
 
-    @Override
+    /**
+     * Process a single object.
+     *
+     * @param id Object to assign
+     */
     public void map(DBIDRef id) {
       final V fv = relation.get(id);
       // Find minimum:
@@ -260,8 +205,39 @@ public class KMeansProcessor<V extends NumberVector> implements Processor {
       int prev = assignment.putInt(id, minIndex);
       // Update changed flag:
       changed |= (prev != minIndex);
-      AbstractKMeans.plusEquals(centroids[minIndex], fv);
+      AbstractKMeans.plusEquals(sums[minIndex], fv);
       ++sizes[minIndex];
     }
+
+    /**
+     * Get the "has changed" value.
+     *
+     * @return Changed flag.
+     */
+    public boolean changed() {
+      return changed;
+    }
+
+    /**
+     * Get the variance sums of the clusters.
+     *
+     * @return Variance sums
+     */
+    public double[] getVarsum() {
+      return varsum;
+    }
+
+    /**
+     * Get the new means. Empty clusters keep their previous mean.
+     *
+     * @return New means
+     */
+    public double[][] getMeans() {
+      double[][] newmeans = new double[sums.length][];
+      for(int i = 0; i < sums.length; i++) {
+        newmeans[i] = sizes[i] == 0 ? means[i] : timesEquals(sums[i], 1. / sizes[i]);
+      }
+      return newmeans;
+    }
   }
 }
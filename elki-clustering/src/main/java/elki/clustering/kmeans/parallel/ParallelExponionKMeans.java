@@ -0,0 +1,243 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.ExponionKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.parallel.ParallelPipeline;
+
+/**
+ * Parallel implementation of the Exponion k-means algorithm.
+ * <p>
+ * The bounds of each object are only modified by the thread processing the
+ * object, while the cluster sums are updated afterwards in the order of the
+ * data. Hence, the result (and the number of distance computations) is
+ * identical to the sequential {@link ExponionKMeans}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @has - - - Reassignments
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelExponionKMeans<V extends NumberVector> extends ExponionKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelExponionKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelExponionKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends ExponionKMeans.Instance {
+    /**
+     * Parallel pipeline, while running.
+     */
+    protected ParallelPipeline pipeline;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+    }
+
+    @Override
+    public void run(int maxiter) {
+      try (ParallelPipeline pipeline = new ParallelPipeline(relation.getDBIDs())) {
+        this.pipeline = pipeline;
+        super.run(maxiter);
+      }
+      finally {
+        this.pipeline = null;
+      }
+    }
+
+    /**
+     * Compute the squared distance, counting in the thread accumulator.
+     *
+     * @param acc Thread accumulator
+     * @param x First object
+     * @param y Second object
+     * @return Distance
+     */
+    private double distance(Reassignments acc, NumberVector x, double[] y) {
+      ++acc.diststat;
+      return uncountedDistance(x, y);
+    }
+
+    @Override
+    protected int initialAssignToNearestCluster() {
+      assert k == means.length;
+      computeSquaredSeparation(cdist);
+      Reassignments r = pipeline.reduce(new Reassignments.Collector() {
+        @Override
+        public void map(DBIDArrayIter it, Reassignments acc) {
+          NumberVector fv = relation.get(it);
+          // Find closest center, and distance to two closest centers:
+          double min1 = distance(acc, fv, means[0]);
+          double min2 = k > 1 ? distance(acc, fv, means[1]) : min1;
+          int minIndex = 0;
+          if(min2 < min1) {
+            double tmp = min1;
+            min1 = min2;
+            min2 = tmp;
+            minIndex = 1;
+          }
+          for(int i = 2; i < k; i++) {
+            if(min2 > cdist[minIndex][i]) {
+              double dist = distance(acc, fv, means[i]);
+              if(dist < min1) {
+                minIndex = i;
+                min2 = min1;
+                min1 = dist;
+              }
+              else if(dist < min2) {
+                min2 = dist;
+              }
+            }
+          }
+          assignment.putInt(it, minIndex);
+          upper.putDouble(it, isSquared ? Math.sqrt(min1) : min1);
+          lower.putDouble(it, isSquared ? Math.sqrt(min2) : min2);
+        }
+      });
+      diststat += r.diststat;
+      Reassignments.applyInitial(pipeline.getDBIDs(), relation, assignment, clusters, sums);
+      return relation.size();
+    }
+
+    @Override
+    protected int assignToNearestCluster() {
+      recomputeSeperation(sep, cdist);
+      nearestMeans(cdist, cnum);
+      Reassignments r = pipeline.reduce(new Reassignments.Collector() {
+        @Override
+        public void map(DBIDArrayIter it, Reassignments acc) {
+          final int orig = assignment.intValue(it);
+          // Compute the current bound:
+          final double z = lower.doubleValue(it);
+          final double sa = sep[orig];
+          double u = upper.doubleValue(it);
+          if(u <= z || u <= sa) {
+            return;
+          }
+          // Update the upper bound
+          NumberVector fv = relation.get(it);
+          double curd2 = distance(acc, fv, means[orig]);
+          upper.putDouble(it, u = isSquared ? Math.sqrt(curd2) : curd2);
+          if(u <= z || u <= sa) {
+            return;
+          }
+          double rhalf = u + sa; // Our cdist are scaled 0.5
+          // Find closest center, and distance to two closest centers
+          double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
+          int cur = orig;
+          for(int i = 0; i < k - 1; i++) {
+            final int c = cnum[orig][i]; // Optimized ordering
+            if(cdist[orig][c] > rhalf) {
+              break;
+            }
+            double dist = distance(acc, fv, means[c]);
+            if(dist < min1) {
+              cur = c;
+              min2 = min1;
+              min1 = dist;
+            }
+            else if(dist < min2) {
+              min2 = dist;
+            }
+          }
+          // Object has to be reassigned.
+          if(cur != orig) {
+            assignment.putInt(it, cur);
+            acc.add(it.getOffset(), orig);
+            upper.putDouble(it, min1 == curd2 ? u : isSquared ? Math.sqrt(min1) : min1);
+          }
+          lower.putDouble(it, min2 == curd2 ? u : isSquared ? Math.sqrt(min2) : min2);
+        }
+      });
+      diststat += r.diststat;
+      return r.apply(pipeline.getDBIDs(), relation, assignment, clusters, sums);
+    }
+
+    @Override
+    protected void updateBounds(double[] move) {
+      ParallelHamerlyKMeans.updateBounds(pipeline, move, assignment, upper, lower);
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends ExponionKMeans.Par<V> {
+    @Override
+    public ParallelExponionKMeans<V> make() {
+      return new ParallelExponionKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.HamerlyKMeans;
+import elki.clustering.kmeans.SimplifiedHamerlyKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.parallel.ParallelPipeline;
+
+/**
+ * Parallel implementation of Hamerly's fast k-means.
+ * <p>
+ * The bounds of each object are only modified by the thread processing the
+ * object, while the cluster sums are updated afterwards in the order of the
+ * data. Hence, the result (and the number of distance computations) is
+ * identical to the sequential {@link HamerlyKMeans}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @has - - - Reassignments
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelHamerlyKMeans<V extends NumberVector> extends HamerlyKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHamerlyKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelHamerlyKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Update the bounds of all objects in parallel, as in
+   * {@link SimplifiedHamerlyKMeans}.
+   *
+   * @param pipeline Parallel pipeline
+   * @param move Movement of centers
+   * @param assignment Cluster assignment
+   * @param upper Upper bounds
+   * @param lower Lower bounds
+   */
+  protected static void updateBounds(ParallelPipeline pipeline, double[] move, WritableIntegerDataStore assignment, WritableDoubleDataStore upper, WritableDoubleDataStore lower) {
+    // Find the maximum and second largest movement.
+    int most = 0;
+    double delta = move[0], delta2 = 0;
+    for(int i = 1; i < move.length; i++) {
+      final double m = move[i];
+      if(m > delta) {
+        delta2 = delta;
+        delta = move[most = i];
+      }
+      else if(m > delta2) {
+        delta2 = m;
+      }
+    }
+    final int fmost = most;
+    final double fdelta = delta, fdelta2 = delta2;
+    pipeline.forEach(it -> {
+      final int a = assignment.intValue(it);
+      upper.increment(it, move[a]);
+      lower.increment(it, a == fmost ? -fdelta2 : -fdelta);
+    });
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends HamerlyKMeans.Instance {
+    /**
+     * Parallel pipeline, while running.
+     */
+    protected ParallelPipeline pipeline;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+    }
+
+    @Override
+    public void run(int maxiter) {
+      try (ParallelPipeline pipeline = new ParallelPipeline(relation.getDBIDs())) {
+        this.pipeline = pipeline;
+        super.run(maxiter);
+      }
+      finally {
+        this.pipeline = null;
+      }
+    }
+
+    /**
+     * Compute the squared distance, counting in the thread accumulator.
+     *
+     * @param acc Thread accumulator
+     * @param x First object
+     * @param y Second object
+     * @return Distance
+     */
+    private double distance(Reassignments acc, NumberVector x, double[] y) {
+      ++acc.diststat;
+      return uncountedDistance(x, y);
+    }
+
+    @Override
+    protected int initialAssignToNearestCluster() {
+      assert k == means.length;
+      double[][] cdist = new double[k][k];
+      computeSquaredSeparation(cdist);
+      Reassignments r = pipeline.reduce(new Reassignments.Collector() {
+        @Override
+        public void map(DBIDArrayIter it, Reassignments acc) {
+          NumberVector fv = relation.get(it);
+          // Find closest center, and distance to two closest centers:
+          double min1 = distance(acc, fv, means[0]);
+          double min2 = k > 1 ? distance(acc, fv, means[1]) : min1;
+          int minIndex = 0;
+          if(min2 < min1) {
+            double tmp = min1;
+            min1 = min2;
+            min2 = tmp;
+            minIndex = 1;
+          }
+          for(int i = 2; i < k; i++) {
+            if(min2 > cdist[minIndex][i]) {
+              double dist = distance(acc, fv, means[i]);
+              if(dist < min1) {
+                minIndex = i;
+                min2 = min1;
+                min1 = dist;
+              }
+              else if(dist < min2) {
+                min2 = dist;
+              }
+            }
+          }
+          assignment.putInt(it, minIndex);
+          upper.putDouble(it, isSquared ? Math.sqrt(min1) : min1);
+          lower.putDouble(it, isSquared ? Math.sqrt(min2) : min2);
+        }
+      });
+      diststat += r.diststat;
+      Reassignments.applyInitial(pipeline.getDBIDs(), relation, assignment, clusters, sums);
+      return relation.size();
+    }
+
+    @Override
+    protected int assignToNearestCluster() {
+      recomputeSeperation(sep);
+      Reassignments r = pipeline.reduce(new Reassignments.Collector() {
+        @Override
+        public void map(DBIDArrayIter it, Reassignments acc) {
+          final int orig = assignment.intValue(it);
+          // Compute the current bound:
+          final double l = lower.doubleValue(it);
+          final double sa = sep[orig];
+          double u = upper.doubleValue(it);
+          if(u <= l || u <= sa) {
+            return;
+          }
+          // Update the upper bound
+          NumberVector fv = relation.get(it);
+          double curd2 = distance(acc, fv, means[orig]);
+          upper.putDouble(it, u = isSquared ? Math.sqrt(curd2) : curd2);
+          if(u <= l || u <= sa) {
+            return;
+          }
+          // Find closest center, and distance to the second closest center
+          double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
+          int cur = orig;
+          for(int i = 0; i < k; i++) {
+            if(i == orig) {
+              continue;
+            }
+            double dist = distance(acc, fv, means[i]);
+            if(dist < min1) {
+              cur = i;
+              min2 = min1;
+              min1 = dist;
+            }
+            else if(dist < min2) {
+              min2 = dist;
+            }
+          }
+          // Object has to be reassigned.
+          if(cur != orig) {
+            assignment.putInt(it, cur);
+            acc.add(it.getOffset(), orig);
+            upper.putDouble(it, min1 == curd2 ? u : isSquared ? Math.sqrt(min1) : min1);
+          }
+          lower.putDouble(it, min2 == curd2 ? u : isSquared ? Math.sqrt(min2) : min2);
+        }
+      });
+      diststat += r.diststat;
+      return r.apply(pipeline.getDBIDs(), relation, assignment, clusters, sums);
+    }
+
+    @Override
+    protected void updateBounds(double[] move) {
+      ParallelHamerlyKMeans.updateBounds(pipeline, move, assignment, upper, lower);
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends HamerlyKMeans.Par<V> {
+    @Override
+    public ParallelHamerlyKMeans<V> make() {
+      return new ParallelHamerlyKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
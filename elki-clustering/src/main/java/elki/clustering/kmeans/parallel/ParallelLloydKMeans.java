@@ -38,7 +38,7 @@ import elki.database.relation.Relation;
 import elki.distance.NumberVectorDistance;
 import elki.logging.Logging;
 import elki.logging.progress.IndefiniteProgress;
-import elki.parallel.ParallelExecutor;
+import elki.parallel.ParallelPipeline;
 import elki.result.Metadata;
 
 /**
@@ -82,18 +82,21 @@ public class ParallelLloydKMeans<V extends NumberVector> extends AbstractKMeans<
     // Store for current cluster assignment.
     WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
     double[] varsum = new double[k];
-    KMeansProcessor<V> kmm = new KMeansProcessor<>(relation, distance, assignment, varsum);
+    KMeansProcessor<V> kmm = new KMeansProcessor<>(relation, distance, assignment);
 
     IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("K-Means iteration", LOG) : null;
-    for(int iteration = 0; maxiter <= 0 || iteration < maxiter; iteration++) {
-      LOG.incrementProcessed(prog);
-      kmm.nextIteration(means);
-      ParallelExecutor.run(ids, kmm);
-      // Stop if no cluster assignment changed.
-      if(!kmm.changed()) {
-        break;
+    try (ParallelPipeline pipeline = new ParallelPipeline(ids)) {
+      for(int iteration = 0; maxiter <= 0 || iteration < maxiter; iteration++) {
+        LOG.incrementProcessed(prog);
+        kmm.nextIteration(means);
+        KMeansProcessor.Instance<V> sums = pipeline.reduce(kmm);
+        varsum = sums.getVarsum();
+        // Stop if no cluster assignment changed.
+        if(!sums.changed()) {
+          break;
+        }
+        means = sums.getMeans();
       }
-      means = kmm.getMeans();
     }
     LOG.setCompleted(prog);
 
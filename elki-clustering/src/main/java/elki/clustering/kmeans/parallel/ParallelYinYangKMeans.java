@@ -0,0 +1,298 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.YinYangKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.parallel.ParallelPipeline;
+
+/**
+ * Parallel implementation of Yin-Yang k-Means clustering.
+ * <p>
+ * The bounds of each object are only modified by the thread processing the
+ * object, while the cluster sums are updated afterwards in the order of the
+ * data. Hence, the result (and the number of distance computations) is
+ * identical to the sequential {@link YinYangKMeans}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @has - - - Reassignments
+ *
+ * @param <V> Vector type
+ */
+public class ParallelYinYangKMeans<V extends NumberVector> extends YinYangKMeans<V> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelYinYangKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param k Number of clusters
+   * @param maxiter Maximum number of iterations
+   * @param initializer Initialization method
+   * @param t Number of cluster center groups for pruning
+   */
+  public ParallelYinYangKMeans(int k, int maxiter, KMeansInitialization initializer, int t) {
+    super(k, maxiter, initializer, t);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> rel) {
+    Instance instance = new Instance(rel, getDistance(), initialMeans(rel), t);
+    instance.run(maxiter);
+    return instance.buildResult();
+  }
+
+  /**
+   * Instance for a particular data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends YinYangKMeans.Instance {
+    /**
+     * Parallel pipeline, while running.
+     */
+    protected ParallelPipeline pipeline;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param df Distance function
+     * @param means Initial means
+     * @param t Number of groups to use
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means, int t) {
+      super(relation, df, means, t);
+    }
+
+    @Override
+    public void run(int maxiter) {
+      try (ParallelPipeline pipeline = new ParallelPipeline(relation.getDBIDs())) {
+        this.pipeline = pipeline;
+        super.run(maxiter);
+      }
+      finally {
+        this.pipeline = null;
+      }
+    }
+
+    /**
+     * Compute the squared distance, counting in the thread accumulator.
+     *
+     * @param acc Thread accumulator
+     * @param x First object
+     * @param y Second object
+     * @return Distance
+     */
+    private double distance(Reassignments acc, NumberVector x, double[] y) {
+      ++acc.diststat;
+      return uncountedDistance(x, y);
+    }
+
+    /**
+     * Compute the distance, counting in the thread accumulator.
+     * If the distance is squared, also compute the square root.
+     *
+     * @param acc Thread accumulator
+     * @param x First object
+     * @param y Second object
+     * @return Distance
+     */
+    private double sqrtdistance(Reassignments acc, NumberVector x, double[] y) {
+      final double d = distance(acc, x, y);
+      return isSquared ? Math.sqrt(d) : d;
+    }
+
+    @Override
+    protected int assignToNearestCluster() {
+      final int t = gdrift.length;
+      Reassignments r = pipeline.reduce(new Reassignments.Collector() {
+        @Override
+        public void map(DBIDArrayIter it, Reassignments acc) {
+          NumberVector cur = relation.get(it);
+          int prev = assignment.intValue(it);
+          double[] lbs = lower.get(it);
+          double[] prevlb = acc.scratch(t);
+          System.arraycopy(lbs, 0, prevlb, 0, lbs.length);
+
+          // Update the upper bound
+          final double drift = cdrift[prev];
+          if(drift > 0) {
+            upper.increment(it, drift);
+          }
+
+          double minlb = Double.POSITIVE_INFINITY;
+          // Update lower bounds with the maximum distance moved within each
+          // group
+          for(int g = 0; g < t; g++) {
+            double lb = lbs[g] -= gdrift[g];
+            minlb = lb < minlb ? lb : minlb;
+          }
+
+          // Global filter
+          double ub = upper.doubleValue(it);
+          if(minlb >= ub) {
+            return;
+          }
+
+          // tighten ub(x) and check again
+          upper.put(it, ub = sqrtdistance(acc, cur, means[prev]));
+          // Global filter with ub tight
+          if(minlb >= ub) {
+            return;
+          }
+
+          int best = prev;
+          // distance to second closest:
+          for(int g = 0; g < t; ++g) {
+            double lb = lbs[g];
+            // Group filter
+            if(lb >= ub) {
+              continue;
+            }
+            double plb = prevlb[g];
+            double sc = Double.POSITIVE_INFINITY;
+            for(int i : groups[g]) {
+              if(i == prev) { // Already computed above
+                continue;
+              }
+              // Local filter.
+              if(sc < plb - cdrift[i]) {
+                continue;
+              }
+              double di = sqrtdistance(acc, cur, means[i]);
+              if(di < sc) { // at least second closest
+                if(di < ub) { // closest
+                  lb = sc = ub; // previous closest is now second
+                  ub = di;
+                  best = i;
+                }
+                else {
+                  sc = di;
+                }
+              }
+            }
+            lbs[g] = sc;
+          }
+
+          if(prev != best) {
+            upper.put(it, ub);
+            assignment.put(it, best);
+            acc.add(it.getOffset(), prev);
+          }
+        }
+      });
+      diststat += r.diststat;
+      return r.apply(pipeline.getDBIDs(), relation, assignment, clusters, sums);
+    }
+
+    @Override
+    protected int initialAssignToNearestCluster() {
+      assert k == means.length;
+      Reassignments r = pipeline.reduce(new Reassignments.Collector() {
+        @Override
+        public void map(DBIDArrayIter id, Reassignments acc) {
+          NumberVector point = relation.get(id);
+          double[] lower = Instance.this.lower.get(id);
+          double min = Double.POSITIVE_INFINITY;
+          int globalindex = 0;
+
+          for(int g = 0; g < groups.length; g++) {
+            final int[] group = groups[g];
+            if(group.length == 0) {
+              continue;
+            }
+            // First center in group
+            double min1 = distance(acc, point, means[group[0]]);
+            double min2 = Double.POSITIVE_INFINITY;
+            int best = group[0];
+            // remaining centers in group
+            for(int c = 1; c < group.length; c++) {
+              int center = group[c];
+              double dist = distance(acc, point, means[center]);
+              if(dist < min1) {
+                min2 = min1;
+                best = center;
+                min1 = dist;
+              }
+              else if(dist < min2) {
+                min2 = dist;
+              }
+            }
+            // For the triangle inequality, we need Euclidean not squared
+            min1 = isSquared ? Math.sqrt(min1) : min1;
+            min2 = min2 < Double.POSITIVE_INFINITY ? (isSquared ? Math.sqrt(min2) : min2) : min1;
+
+            if(min1 < min) {
+              if(globalindex != -1) {
+                lower[glabel[globalindex]] = min;
+              }
+              min = min1;
+              globalindex = best;
+              lower[g] = min2;
+            }
+            else {
+              lower[g] = min1;
+            }
+          }
+          assignment.put(id, globalindex);
+          upper.put(id, min);
+        }
+      });
+      diststat += r.diststat;
+      Reassignments.applyInitial(pipeline.getDBIDs(), relation, assignment, clusters, sums);
+      return relation.size();
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends YinYangKMeans.Par<V> {
+    @Override
+    public ParallelYinYangKMeans<V> make() {
+      return new ParallelYinYangKMeans<>(k, maxiter, initializer, t);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import java.util.Arrays;
+import java.util.List;
+
+import elki.clustering.kmeans.AbstractKMeans;
+import elki.data.NumberVector;
+import elki.database.datastore.IntegerDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.ModifiableDBIDs;
+import elki.database.relation.Relation;
+import elki.parallel.processor.Reducer;
+
+/**
+ * Reassignments recorded by a thread during a parallel k-means assignment
+ * phase, along with the number of distance computations.
+ * <p>
+ * The threads only update the assignment and the bounds of their own objects.
+ * The cluster memberships and sums are updated afterwards, in the order of the
+ * data, such that the sums are computed in exactly the same order as in the
+ * sequential implementations, and the results are identical.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+class Reassignments {
+  /**
+   * Number of distance computations.
+   */
+  long diststat;
+
+  /**
+   * Reassigned objects, as offset (high bits) and previous cluster (low bits).
+   */
+  private long[] changes;
+
+  /**
+   * Number of reassigned objects.
+   */
+  private int size;
+
+  /**
+   * Scratch buffer of the thread.
+   */
+  private double[] scratch;
+
+  /**
+   * Record a reassignment.
+   *
+   * @param offset Object offset
+   * @param prev Previous cluster
+   */
+  void add(int offset, int prev) {
+    if(changes == null) {
+      changes = new long[16];
+    }
+    else if(size == changes.length) {
+      changes = Arrays.copyOf(changes, size << 1);
+    }
+    changes[size++] = (((long) offset) << 32) | (prev & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Get a scratch buffer for the current thread.
+   *
+   * @param len Minimum length
+   * @return Scratch buffer
+   */
+  double[] scratch(int len) {
+    return scratch != null && scratch.length >= len ? scratch : (scratch = new double[len]);
+  }
+
+  /**
+   * Append the reassignments of another thread.
+   *
+   * @param other Other reassignments, for later objects
+   * @return {@code this}
+   */
+  Reassignments append(Reassignments other) {
+    diststat += other.diststat;
+    if(other.size > 0) {
+      if(changes == null || size + other.size > changes.length) {
+        changes = Arrays.copyOf(changes != null ? changes : other.changes, size + other.size);
+      }
+      System.arraycopy(other.changes, 0, changes, size, other.size);
+      size += other.size;
+    }
+    return this;
+  }
+
+  /**
+   * Update cluster memberships and sums for the recorded reassignments, in
+   * data order.
+   *
+   * @param ids Objects, in processing order
+   * @param relation Data relation
+   * @param assignment Current assignment
+   * @param clusters Cluster members
+   * @param sums Cluster sums
+   * @return Number of reassigned objects
+   */
+  int apply(ArrayDBIDs ids, Relation<? extends NumberVector> relation, IntegerDataStore assignment, List<ModifiableDBIDs> clusters, double[][] sums) {
+    for(int i = 1; i < size; i++) {
+      if(changes[i - 1] > changes[i]) {
+        Arrays.sort(changes, 0, size);
+        break;
+      }
+    }
+    DBIDArrayIter it = ids.iter();
+    for(int i = 0; i < size; i++) {
+      final long c = changes[i];
+      it.seek((int) (c >>> 32));
+      final int prev = (int) c, cur = assignment.intValue(it);
+      clusters.get(cur).add(it);
+      clusters.get(prev).remove(it);
+      AbstractKMeans.plusMinusEquals(sums[cur], sums[prev], relation.get(it));
+    }
+    return size;
+  }
+
+  /**
+   * Build the cluster memberships and sums after the initial assignment, in
+   * data order.
+   *
+   * @param ids Objects, in processing order
+   * @param relation Data relation
+   * @param assignment Initial assignment
+   * @param clusters Cluster members (empty)
+   * @param sums Cluster sums (zero)
+   */
+  static void applyInitial(ArrayDBIDs ids, Relation<? extends NumberVector> relation, IntegerDataStore assignment, List<ModifiableDBIDs> clusters, double[][] sums) {
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final int cur = assignment.intValue(it);
+      clusters.get(cur).add(it);
+      AbstractKMeans.plusEquals(sums[cur], relation.get(it));
+    }
+  }
+
+  /**
+   * Reducer collecting reassignments; only the mapping needs to be
+   * implemented.
+   *
+   * @author Erich Schubert
+   */
+  abstract static class Collector implements Reducer<Reassignments> {
+    @Override
+    public Reassignments accumulator() {
+      return new Reassignments();
+    }
+
+    @Override
+    public Reassignments merge(Reassignments left, Reassignments right) {
+      return left.append(right);
+    }
+  }
+}
@@ -0,0 +1,421 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import elki.clustering.hierarchical.ClusterDistanceMatrix;
+import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
+import elki.data.Clustering;
+import elki.data.model.MedoidModel;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DatabaseDistanceQuery;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.Duration;
+import elki.logging.statistics.LongStatistic;
+import elki.math.linearalgebra.VMath;
+import elki.parallel.ParallelCore;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
+
+/**
+ * Multi-threaded version of {@link FasterPAM}.
+ * <p>
+ * The swap candidates are evaluated in parallel in small blocks, against the
+ * nearest and second nearest medoid caches. The swaps are then executed in
+ * data order: the first improving candidate of a block is swapped, and the
+ * evaluation continues with the object after it, so all other candidates are
+ * evaluated against the updated medoids. Hence, the result is identical to the
+ * sequential {@link FasterPAM}, independent of the number of threads.
+ * <p>
+ * Optionally, the distances can be precomputed once into a single precision
+ * matrix shared by all threads, which halves the memory of a double precision
+ * matrix. The distances used are then rounded to float.
+ * <p>
+ * Reference:
+ * <p>
+ * Erich Schubert and Peter J. Rousseeuw<br>
+ * Fast and Eager k-Medoids Clustering: O(k) Runtime Improvement of the PAM,
+ * CLARA, and CLARANS Algorithms<br>
+ * Information Systems 101
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @navassoc - - - MedoidModel
+ * @has - - - KMedoidsInitialization
+ *
+ * @param <O> object datatype
+ */
+public class ParallelFasterPAM<O> extends FasterPAM<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFasterPAM.class);
+
+  /**
+   * Key for statistics logging.
+   */
+  private static final String KEY = ParallelFasterPAM.class.getName();
+
+  /**
+   * Precompute a float distance matrix.
+   */
+  protected boolean floatmatrix;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Function to generate the initial means
+   * @param floatmatrix Precompute a float distance matrix
+   */
+  public ParallelFasterPAM(Distance<? super O> distance, int k, int maxiter, KMedoidsInitialization<O> initializer, boolean floatmatrix) {
+    super(distance, k, maxiter, initializer);
+    this.floatmatrix = floatmatrix;
+  }
+
+  @Override
+  public Clustering<MedoidModel> run(Relation<O> relation) {
+    if(!floatmatrix) {
+      return super.run(relation);
+    }
+    Duration matd = getLogger().newDuration(getClass().getName() + ".precomputation-time").begin();
+    DistanceQuery<O> distQ = new FloatDistanceMatrixQuery<>(new QueryBuilder<>(relation, distance).distanceQuery());
+    getLogger().statistics(matd.end());
+    return run(relation, k, distQ);
+  }
+
+  @Override
+  public Clustering<MedoidModel> run(Relation<O> relation, int k, DistanceQuery<? super O> distQ) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    ArrayModifiableDBIDs medoids = initialMedoids(distQ, ids, k);
+    WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+    Duration optd = getLogger().newDuration(getClass().getName() + ".optimization-time").begin();
+    new Instance(distQ, ids, assignment).run(medoids, maxiter);
+    getLogger().statistics(optd.end());
+    return wrapResult(ids, assignment, medoids, "FasterPAM Clustering");
+  }
+
+  /**
+   * Instance for a single dataset.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends FasterPAM.Instance {
+    /**
+     * Ids to process, as array.
+     */
+    ArrayDBIDs aids;
+
+    /**
+     * Constructor.
+     *
+     * @param distQ Distance query
+     * @param ids IDs to process
+     * @param assignment Cluster assignment
+     */
+    public Instance(DistanceQuery<?> distQ, ArrayDBIDs ids, WritableIntegerDataStore assignment) {
+      super(distQ, ids, assignment);
+      this.aids = ids;
+    }
+
+    /**
+     * Run the PAM optimization phase.
+     *
+     * @param medoids Medoids list
+     * @param maxiter Maximum number of iterations
+     * @return final cost
+     */
+    @Override
+    protected double run(ArrayModifiableDBIDs medoids, int maxiter) {
+      final ParallelCore core = ParallelCore.getCore();
+      final int parallelism = core.getParallelism();
+      if(parallelism < 2) {
+        return super.run(medoids, maxiter);
+      }
+      final int k = medoids.size(), size = aids.size();
+      // Initial assignment to nearest medoids
+      double tc = assignToNearestCluster(medoids);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new DoubleStatistic(KEY + ".iteration-" + 0 + ".cost", tc));
+      }
+
+      // Swap phase
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("FasterPAM iteration", LOG) : null;
+      // Evaluate two candidates per thread, to limit the work discarded after
+      // a swap.
+      final int block = parallelism << 1;
+      double[] pcost = new double[k], bestcost = new double[block];
+      int[] bestm = new int[block];
+      // Compute costs of reassigning to the second closest medoid.
+      updatePriorCost(pcost);
+      DBIDArrayIter m = medoids.iter(), h = aids.iter();
+      int iteration = 0, prevswaps = 0, swaps = 0, lastswap = -1;
+      core.connect();
+      try {
+        while(iteration < maxiter || maxiter <= 0) {
+          ++iteration;
+          LOG.incrementProcessed(prog);
+          // Iterate over all non-medoids, in blocks:
+          blocks: for(int start = 0; start < size;) {
+            final int end = Math.min(start + block, size);
+            evaluateBlock(core, medoids, pcost, start, end, bestcost, bestm);
+            int next = end;
+            for(int i = start; i < end; i++) {
+              // Check if we completed an entire round without swapping:
+              if(i == lastswap) {
+                break blocks;
+              }
+              final double c = bestcost[i - start];
+              if(!(c < -1e-12 * tc)) {
+                continue;
+              }
+              ++swaps;
+              lastswap = i;
+              updateAssignment(medoids, m, h.seek(i), bestm[i - start]);
+              updatePriorCost(pcost);
+              tc += c;
+              assert tc >= 0;
+              if(LOG.isStatistics()) {
+                LOG.statistics(new DoubleStatistic(KEY + ".swap-" + swaps + ".cost", tc));
+              }
+              next = i + 1; // Re-evaluate the remainder of the block
+              break;
+            }
+            start = next;
+          }
+          if(LOG.isStatistics()) {
+            LOG.statistics(new LongStatistic(KEY + ".iteration-" + iteration + ".swaps", swaps - prevswaps));
+          }
+          if(prevswaps == swaps) {
+            break; // Converged
+          }
+          prevswaps = swaps;
+          if(LOG.isStatistics()) {
+            LOG.statistics(new DoubleStatistic(KEY + ".iteration-" + iteration + ".cost", tc));
+          }
+        }
+      }
+      finally {
+        core.disconnect();
+      }
+      LOG.setCompleted(prog);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(KEY + ".iterations", iteration));
+        LOG.statistics(new LongStatistic(KEY + ".swaps", swaps));
+        LOG.statistics(new DoubleStatistic(KEY + ".final-cost", tc));
+      }
+      // Cleanup
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        assignment.putInt(it, assignment.intValue(it) & 0x7FFF);
+      }
+      return tc;
+    }
+
+    /**
+     * Evaluate a block of swap candidates in parallel, one contiguous part per
+     * thread. Medoids get a cost of positive infinity.
+     *
+     * @param core Parallel core
+     * @param medoids Current medoids
+     * @param pcost Prior cost
+     * @param start First candidate
+     * @param end End of candidates (exclusive)
+     * @param bestcost Output: best cost of each candidate
+     * @param bestm Output: best medoid to replace with each candidate
+     */
+    private void evaluateBlock(ParallelCore core, ArrayDBIDs medoids, double[] pcost, int start, int end, double[] bestcost, int[] bestm) {
+      final int parts = Math.min(core.getParallelism(), end - start);
+      List<Future<?>> futures = new ArrayList<>(parts);
+      for(int t = 0; t < parts; t++) {
+        final int s = start + (int) ((end - start) * (long) t / parts);
+        final int e = start + (int) ((end - start) * (long) (t + 1) / parts);
+        futures.add(core.submit(() -> {
+          DBIDArrayIter h = aids.iter(), m = medoids.iter();
+          double[] cost = new double[pcost.length];
+          for(int i = s; i < e; i++) {
+            h.seek(i);
+            // Compare object to its own medoid.
+            if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
+              bestcost[i - start] = Double.POSITIVE_INFINITY;
+              continue; // This is a medoid.
+            }
+            // Initialize with medoid removal cost:
+            System.arraycopy(pcost, 0, cost, 0, pcost.length);
+            // The cost we get back by making the non-medoid h medoid.
+            double acc = computeReassignmentCost(h, cost);
+            final int min = VMath.argmin(cost);
+            bestcost[i - start] = cost[min] + acc;
+            bestm[i - start] = min;
+          }
+          return null;
+        }));
+      }
+      try {
+        for(Future<?> f : futures) {
+          f.get();
+        }
+      }
+      catch(ExecutionException e) {
+        throw new AbortException("Swap evaluation failed.", e.getCause());
+      }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AbortException("Swap evaluation was interrupted.", e);
+      }
+    }
+  }
+
+  /**
+   * Distance query on a precomputed single precision distance matrix, filled
+   * in parallel by {@link ClusterDistanceMatrix}.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  public static class FloatDistanceMatrixQuery<O> implements DatabaseDistanceQuery<O> {
+    /**
+     * Underlying distance query.
+     */
+    private final DistanceQuery<O> inner;
+
+    /**
+     * Object ids, if a range.
+     */
+    private final DBIDRange range;
+
+    /**
+     * Object offsets, if not a range.
+     */
+    private final WritableIntegerDataStore offsets;
+
+    /**
+     * Single precision distance matrix.
+     */
+    private final ClusterDistanceMatrix matrix;
+
+    /**
+     * Constructor.
+     *
+     * @param inner Distance query to precompute
+     */
+    public FloatDistanceMatrixQuery(DistanceQuery<O> inner) {
+      this.inner = inner;
+      if(!inner.getDistance().isSymmetric()) {
+        throw new AbortException("The float distance matrix requires a symmetric distance function.");
+      }
+      final ArrayDBIDs aids = DBIDUtil.ensureArray(inner.getRelation().getDBIDs());
+      this.matrix = new ClusterDistanceMatrix(aids.size(), true);
+      if(aids instanceof DBIDRange) {
+        this.range = (DBIDRange) aids;
+        this.offsets = null;
+      }
+      else {
+        this.range = null;
+        this.offsets = DataStoreUtil.makeIntegerStorage(aids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+        for(DBIDArrayIter it = aids.iter(); it.valid(); it.advance()) {
+          offsets.putInt(it, it.getOffset());
+        }
+      }
+      // Each task uses its own iterators:
+      matrix.initialize(() -> {
+        final DBIDArrayIter ix = aids.iter(), iy = aids.iter();
+        return (x, y) -> inner.distance(ix.seek(x), iy.seek(y));
+      }, null, null);
+    }
+
+    /**
+     * Get the offset of an object.
+     *
+     * @param id Object
+     * @return Offset
+     */
+    private int offset(DBIDRef id) {
+      return range != null ? range.getOffset(id) : offsets.intValue(id);
+    }
+
+    @Override
+    public double distance(DBIDRef id1, DBIDRef id2) {
+      return matrix.get(offset(id1), offset(id2));
+    }
+
+    @Override
+    public Distance<? super O> getDistance() {
+      return inner.getDistance();
+    }
+
+    @Override
+    public Relation<? extends O> getRelation() {
+      return inner.getRelation();
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<O> extends FasterPAM.Par<O> {
+    /**
+     * Flag to precompute a float distance matrix.
+     */
+    public static final OptionID FLOAT_MATRIX_ID = new OptionID("pam.floatmatrix", "Precompute a single precision distance matrix, shared by all threads.");
+
+    /**
+     * Precompute a float distance matrix.
+     */
+    protected boolean floatmatrix;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new Flag(FLOAT_MATRIX_ID).grab(config, x -> floatmatrix = x);
+    }
+
+    @Override
+    public ParallelFasterPAM<O> make() {
+      return new ParallelFasterPAM<>(distance, k, maxiter, initializer, floatmatrix);
+    }
+  }
+}
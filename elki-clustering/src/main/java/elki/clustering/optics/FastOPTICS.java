@@ -38,7 +38,7 @@ import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.result.Metadata;
 import elki.utilities.ClassGenericsUtil;
-import elki.utilities.datastructures.heap.UpdatableHeap;
+import elki.utilities.datastructures.heap.IndexedDoubleIntegerMinHeap;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -57,13 +57,15 @@ import elki.utilities.optionhandling.parameters.IntParameter;
  * Proc. 22nd ACM Int. Conf. on Information and Knowledge Management (CIKM 2013)
  * <p>
  * This is based on the original code provided by Johannes Schneider, with
- * ELKIfications and optimizations by Erich Schubert.
+ * ELKIfications and optimizations by Erich Schubert. As in {@link OPTICSHeap},
+ * the candidates are kept in a heap with decrease-key on the object offsets.
  *
  * @author Johannes Schneider
  * @author Erich Schubert
  * @since 0.7.0
  *
  * @composed - - - RandomProjectedNeighborsAndDensities
+ * @has - - - IndexedDoubleIntegerMinHeap
  * 
  * @param <V> Input vector type
  */
@@ -94,9 +96,29 @@ public class FastOPTICS<V extends NumberVector> implements OPTICSTypeAlgorithm {
   WritableDoubleDataStore reachDist;
 
   /**
-   * processed points
+   * Objects by offset, in ascending order (for tie breaking).
    */
-  ModifiableDBIDs processed;
+  ArrayDBIDs sorted;
+
+  /**
+   * Map from DBIDs to offsets, unless the DBIDs are a range.
+   */
+  WritableIntegerDataStore offsets;
+
+  /**
+   * processed points, by offset
+   */
+  boolean[] processed;
+
+  /**
+   * Predecessor offsets, valid for objects in the heap.
+   */
+  int[] predecessor;
+
+  /**
+   * Heap of candidates, by offset.
+   */
+  IndexedDoubleIntegerMinHeap heap;
 
   /**
    * neighbors of a point
@@ -156,12 +178,26 @@ public class FastOPTICS<V extends NumberVector> implements OPTICSTypeAlgorithm {
 
     // compute ordering as for OPTICS
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("FastOPTICS clustering", ids.size(), LOG) : null;
-    processed = DBIDUtil.newHashSet(ids.size());
+    if(ids instanceof DBIDRange) {
+      sorted = (DBIDRange) ids;
+    }
+    else {
+      ArrayModifiableDBIDs sids = DBIDUtil.newArray(ids);
+      sids.sort();
+      sorted = sids;
+      offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+      for(DBIDArrayIter it = sids.iter(); it.valid(); it.advance()) {
+        offsets.putInt(it, it.getOffset());
+      }
+    }
+    processed = new boolean[ids.size()];
+    predecessor = new int[ids.size()];
+    heap = new IndexedDoubleIntegerMinHeap(ids.size());
     order = new ClusterOrder(ids);
     Metadata.of(order).setLongName("FastOPTICS Cluster Order");
     for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
-      if(!processed.contains(it)) {
-        expandClusterOrder(DBIDUtil.deref(it), order, dq, prog);
+      if(!processed[offset(it)]) {
+        expandClusterOrder(it, order, dq, prog);
       }
     }
     index.logStatistics();
@@ -178,17 +214,22 @@ public class FastOPTICS<V extends NumberVector> implements OPTICSTypeAlgorithm {
    * @param dq Distance query
    * @param prog Progress for logging.
    */
-  protected void expandClusterOrder(DBID ipt, ClusterOrder order, DistanceQuery<V> dq, FiniteProgress prog) {
-    UpdatableHeap<OPTICSHeapEntry> heap = new UpdatableHeap<>();
-    heap.add(new OPTICSHeapEntry(ipt, null, Double.POSITIVE_INFINITY));
+  protected void expandClusterOrder(DBIDRef ipt, ClusterOrder order, DistanceQuery<V> dq, FiniteProgress prog) {
+    DBIDArrayIter currPt = sorted.iter(), pre = sorted.iter();
+    final int first = offset(ipt);
+    predecessor[first] = -1;
+    heap.add(Double.POSITIVE_INFINITY, first);
     while(!heap.isEmpty()) {
-      final OPTICSHeapEntry current = heap.poll();
-      DBID currPt = current.objectID;
-      order.add(currPt, current.reachability, current.predecessorID);
-      processed.add(currPt);
+      final int cur = heap.peekValue();
+      final double reach = heap.peekKey();
+      heap.poll();
+      currPt.seek(cur);
+      order.add(currPt, reach, predecessor[cur] < 0 ? null : pre.seek(predecessor[cur]));
+      processed[cur] = true;
       double coredist = inverseDensities.doubleValue(currPt);
       for(DBIDIter it = neighs.get(currPt).iter(); it.valid(); it.advance()) {
-        if(processed.contains(it)) {
+        final int off = offset(it);
+        if(processed[off]) {
           continue;
         }
         double nrdist = dq.distance(currPt, it);
@@ -198,12 +239,24 @@ public class FastOPTICS<V extends NumberVector> implements OPTICSTypeAlgorithm {
         if(reachDist.doubleValue(it) == UNDEFINED_DISTANCE || nrdist < reachDist.doubleValue(it)) {
           reachDist.put(it, nrdist);
         }
-        heap.add(new OPTICSHeapEntry(DBIDUtil.deref(it), currPt, nrdist));
+        if(heap.add(nrdist, off)) {
+          predecessor[off] = cur;
+        }
       }
       LOG.incrementProcessed(prog);
     }
   }
 
+  /**
+   * Get the offset of an object.
+   *
+   * @param id Object
+   * @return Offset
+   */
+  private int offset(DBIDRef id) {
+    return offsets == null ? ((DBIDRange) sorted).getOffset(id) : offsets.intValue(id);
+  }
+
   @Override
   public int getMinPts() {
     return minPts;
@@ -20,12 +20,18 @@
  */
 package elki.clustering.optics;
 
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.ArrayModifiableDBIDs;
+import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
 import elki.database.ids.DBIDRef;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.ids.DoubleDBIDListIter;
-import elki.database.ids.ModifiableDBIDs;
 import elki.database.ids.ModifiableDoubleDBIDList;
 import elki.database.query.QueryBuilder;
 import elki.database.query.range.RangeSearcher;
@@ -35,7 +41,7 @@ import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.math.MathUtil;
 import elki.result.Metadata;
-import elki.utilities.datastructures.heap.UpdatableHeap;
+import elki.utilities.datastructures.heap.IndexedDoubleIntegerMinHeap;
 import elki.utilities.documentation.Reference;
 import elki.utilities.documentation.Title;
 
@@ -46,7 +52,7 @@ import elki.utilities.documentation.Title;
  * parameters 'minPts' and 'epsilon' (specifying a volume). These two parameters
  * determine a density threshold for clustering.
  * <p>
- * This implementation uses a heap.
+ * This implementation uses a heap, with decrease-key on the object offsets.
  * <p>
  * Reference:
  * <p>
@@ -59,7 +65,7 @@ import elki.utilities.documentation.Title;
  * @since 0.1
  *
  * @navassoc - produces - ClusterOrder
- * @has - - - OPTICSHeapEntry
+ * @has - - - IndexedDoubleIntegerMinHeap
  *
  * @param <O> the type of objects handled by the algorithm
  */
@@ -98,14 +104,29 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
    */
   private class Instance {
     /**
-     * Holds a set of processed ids.
+     * Objects by offset, in ascending order (for tie breaking).
      */
-    private ModifiableDBIDs processedIDs;
+    private ArrayDBIDs order;
 
     /**
-     * Heap of candidates.
+     * Map from DBIDs to offsets, unless the DBIDs are a range.
      */
-    UpdatableHeap<OPTICSHeapEntry> heap;
+    private WritableIntegerDataStore offsets;
+
+    /**
+     * Flags for processed objects, by offset.
+     */
+    private boolean[] processed;
+
+    /**
+     * Predecessor offsets, valid for objects in the heap.
+     */
+    private int[] predecessor;
+
+    /**
+     * Heap of candidates, by offset.
+     */
+    IndexedDoubleIntegerMinHeap heap;
 
     /**
      * Output cluster order.
@@ -134,12 +155,35 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
      */
     public Instance(Relation<O> relation) {
       ids = relation.getDBIDs();
-      processedIDs = DBIDUtil.newHashSet(ids.size());
+      if(ids instanceof DBIDRange) {
+        order = (DBIDRange) ids;
+      }
+      else {
+        ArrayModifiableDBIDs sorted = DBIDUtil.newArray(ids);
+        sorted.sort();
+        order = sorted;
+        offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+        for(DBIDArrayIter it = sorted.iter(); it.valid(); it.advance()) {
+          offsets.putInt(it, it.getOffset());
+        }
+      }
+      processed = new boolean[ids.size()];
+      predecessor = new int[ids.size()];
       clusterOrder = new ClusterOrder(ids);
       Metadata.of(clusterOrder).setLongName("OPTICS Clusterorder");
       progress = LOG.isVerbose() ? new FiniteProgress("OPTICS", ids.size(), LOG) : null;
       rangeQuery = new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
-      heap = new UpdatableHeap<>();
+      heap = new IndexedDoubleIntegerMinHeap(ids.size());
+    }
+
+    /**
+     * Get the offset of an object.
+     *
+     * @param id Object
+     * @return Offset
+     */
+    private int offset(DBIDRef id) {
+      return offsets == null ? ((DBIDRange) order).getOffset(id) : offsets.intValue(id);
     }
 
     /**
@@ -149,7 +193,7 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
      */
     public ClusterOrder run() {
       for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
-        if(!processedIDs.contains(iditer)) {
+        if(!processed[offset(iditer)]) {
           assert (heap.isEmpty());
           expandClusterOrder(iditer);
         }
@@ -166,24 +210,33 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
     protected void expandClusterOrder(DBIDRef objectID) {
       ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList();
       DoubleDBIDListIter neighbor = neighbors.iter();
-      heap.add(new OPTICSHeapEntry(DBIDUtil.deref(objectID), null, Double.POSITIVE_INFINITY));
+      DBIDArrayIter current = order.iter(), pre = order.iter();
+      final int first = offset(objectID);
+      predecessor[first] = -1;
+      heap.add(Double.POSITIVE_INFINITY, first);
 
       while(!heap.isEmpty()) {
-        final OPTICSHeapEntry current = heap.poll();
-        clusterOrder.add(current.objectID, current.reachability, current.predecessorID);
-        processedIDs.add(current.objectID);
+        final int cur = heap.peekValue();
+        final double reach = heap.peekKey();
+        heap.poll();
+        current.seek(cur);
+        clusterOrder.add(current, reach, predecessor[cur] < 0 ? null : pre.seek(predecessor[cur]));
+        processed[cur] = true;
 
-        rangeQuery.getRange(current.objectID, epsilon, neighbors.clear());
+        rangeQuery.getRange(current, epsilon, neighbors.clear());
         if(neighbors.size() >= minpts) {
           neighbors.sort();
           final double coreDistance = neighbor.seek(minpts - 1).doubleValue();
 
           for(neighbor.seek(0); neighbor.valid(); neighbor.advance()) {
-            if(processedIDs.contains(neighbor)) {
+            final int off = offset(neighbor);
+            if(processed[off]) {
               continue;
             }
             double reachability = MathUtil.max(neighbor.doubleValue(), coreDistance);
-            heap.add(new OPTICSHeapEntry(DBIDUtil.deref(neighbor), current.objectID, reachability));
+            if(heap.add(reachability, off)) {
+              predecessor[off] = cur;
+            }
           }
         }
         LOG.incrementProcessed(progress);
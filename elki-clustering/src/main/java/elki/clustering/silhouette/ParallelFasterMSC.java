@@ -0,0 +1,456 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.silhouette;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import elki.clustering.kmedoids.ParallelFasterPAM;
+import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
+import elki.data.Clustering;
+import elki.data.model.MedoidModel;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.DoubleDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.evaluation.clustering.internal.Silhouette;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.Duration;
+import elki.logging.statistics.LongStatistic;
+import elki.math.linearalgebra.VMath;
+import elki.parallel.ParallelCore;
+import elki.result.EvaluationResult;
+import elki.result.EvaluationResult.MeasurementGroup;
+import elki.result.Metadata;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
+
+/**
+ * Multi-threaded version of {@link FasterMSC}.
+ * <p>
+ * As in {@link ParallelFasterPAM}, the swap candidates are evaluated in
+ * parallel in small blocks, against the cached nearest, second and third
+ * nearest medoids. The swaps are then executed in data order: the first
+ * improving candidate of a block is swapped, and the evaluation continues with
+ * the object after it, so all other candidates are evaluated against the
+ * updated medoids. Hence, the result is identical to the sequential
+ * {@link FasterMSC}, independent of the number of threads.
+ * <p>
+ * Optionally, the distances can be precomputed once into a single precision
+ * matrix shared by all threads. The distances used are then rounded to float.
+ * <p>
+ * Reference:
+ * <p>
+ * Lars Lenssen and Erich Schubert<br>
+ * Clustering by Direct Optimization of the Medoid Silhouette<br>
+ * Int. Conf. on Similarity Search and Applications, SISAP 2022
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @param <O> Input data type
+ */
+public class ParallelFasterMSC<O> extends FasterMSC<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFasterMSC.class);
+
+  /**
+   * Precompute a float distance matrix.
+   */
+  protected boolean floatmatrix;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k Number of cluster
+   * @param maxiter Maximum number of iterations
+   * @param initializer Initialization
+   * @param floatmatrix Precompute a float distance matrix
+   */
+  public ParallelFasterMSC(Distance<? super O> distance, int k, int maxiter, KMedoidsInitialization<O> initializer, boolean floatmatrix) {
+    super(distance, k, maxiter, initializer);
+    this.floatmatrix = floatmatrix;
+  }
+
+  @Override
+  public Clustering<MedoidModel> run(Relation<O> relation) {
+    if(!floatmatrix) {
+      return super.run(relation);
+    }
+    Duration matd = getLogger().newDuration(getClass().getName() + ".precomputation-time").begin();
+    DistanceQuery<O> distQ = new ParallelFasterPAM.FloatDistanceMatrixQuery<>(new QueryBuilder<>(relation, distance).distanceQuery());
+    getLogger().statistics(matd.end());
+    return run(relation, k, distQ);
+  }
+
+  @Override
+  public Clustering<MedoidModel> run(Relation<O> relation, int k, DistanceQuery<? super O> distQ) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    ArrayModifiableDBIDs medoids = initialMedoids(distQ, ids, k);
+    WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+    Duration optd = getLogger().newDuration(getClass().getName() + ".optimization-time").begin();
+    DoubleDataStore silhouettes;
+    double sil;
+    if(k == 2) { // optimized codepath for k=2
+      Instance2 instance = new Instance2(distQ, ids, assignment);
+      sil = instance.run(medoids, maxiter);
+      silhouettes = instance.silhouetteScores();
+    }
+    else {
+      Instance instance = new Instance(distQ, ids, assignment);
+      sil = instance.run(medoids, maxiter);
+      silhouettes = instance.silhouetteScores();
+    }
+    getLogger().statistics(optd.end());
+    Clustering<MedoidModel> res = wrapResult(ids, assignment, medoids, "FasterMSC Clustering");
+    Metadata.hierarchyOf(res).addChild(new MaterializedDoubleRelation(Silhouette.SILHOUETTE_NAME, ids, silhouettes));
+    EvaluationResult ev = EvaluationResult.findOrCreate(res, "Internal Clustering Evaluation");
+    MeasurementGroup g = ev.findOrCreateGroup("Distance-based");
+    g.addMeasure("Medoid Silhouette", sil, -1., 1., 0., false);
+    return res;
+  }
+
+  /**
+   * Evaluate a block of swap candidates in parallel, one contiguous part per
+   * thread.
+   *
+   * @param core Parallel core
+   * @param start First candidate
+   * @param end End of candidates (exclusive)
+   * @param factory Factory for the candidate evaluation; each part obtains its
+   *        own, with its own iterators and scratch memory
+   */
+  private static void evaluateBlock(ParallelCore core, int start, int end, Supplier<IntConsumer> factory) {
+    final int parts = Math.min(core.getParallelism(), end - start);
+    List<Future<?>> futures = new ArrayList<>(parts);
+    for(int t = 0; t < parts; t++) {
+      final int s = start + (int) ((end - start) * (long) t / parts);
+      final int e = start + (int) ((end - start) * (long) (t + 1) / parts);
+      futures.add(core.submit(() -> {
+        final IntConsumer evaluate = factory.get();
+        for(int i = s; i < e; i++) {
+          evaluate.accept(i);
+        }
+        return null;
+      }));
+    }
+    try {
+      for(Future<?> f : futures) {
+        f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new AbortException("Swap evaluation failed.", e.getCause());
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AbortException("Swap evaluation was interrupted.", e);
+    }
+  }
+
+  /**
+   * Parallel FasterMSC clustering instance for k=2, simplified.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance2 extends FasterMSC.Instance2 {
+    /**
+     * Ids to process, as array.
+     */
+    ArrayDBIDs aids;
+
+    /**
+     * Constructor.
+     *
+     * @param distQ Distance query
+     * @param ids IDs to process
+     * @param assignment Cluster assignment
+     */
+    public Instance2(DistanceQuery<?> distQ, ArrayDBIDs ids, WritableIntegerDataStore assignment) {
+      super(distQ, ids, assignment);
+      this.aids = ids;
+    }
+
+    @Override
+    protected double run(ArrayModifiableDBIDs medoids, int maxiter) {
+      final ParallelCore core = ParallelCore.getCore();
+      final int parallelism = core.getParallelism();
+      if(parallelism < 2) {
+        return super.run(medoids, maxiter);
+      }
+      final int k = medoids.size(), size = aids.size();
+      assert k == 2;
+      // Initial assignment to nearest medoids
+      double sil = assignToNearestCluster(medoids);
+      String key = getClass().getName().replace("$Instance", "");
+      if(LOG.isStatistics()) {
+        LOG.statistics(new DoubleStatistic(key + ".iteration-" + 0 + ".medoid-silhouette", sil));
+      }
+      // Evaluate two candidates per thread, to limit the work discarded after
+      // a swap.
+      final int block = parallelism << 1;
+      final double[] bestsil = new double[block];
+      final int[] bestm = new int[block];
+
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("FastMSC iteration", LOG) : null;
+      // Swap phase
+      DBIDArrayIter h = aids.iter();
+      int iteration = 0, prevswaps = 0, swaps = 0, lastswap = -1;
+      core.connect();
+      try {
+        while(iteration < maxiter || maxiter <= 0) {
+          ++iteration;
+          LOG.incrementProcessed(prog);
+          // Iterate over all non-medoids, in blocks:
+          blocks: for(int start = 0; start < size;) {
+            final int end = Math.min(start + block, size), off = start;
+            evaluateBlock(core, start, end, () -> {
+              final DBIDArrayIter j = aids.iter(), m = medoids.iter();
+              final double[] scratch = new double[k];
+              return i -> {
+                j.seek(i);
+                // Compare object to its own medoid.
+                if(DBIDUtil.equal(m.seek(assignment.intValue(j)), j)) {
+                  bestsil[i - off] = Double.NEGATIVE_INFINITY;
+                  return; // This is a medoid.
+                }
+                Arrays.fill(scratch, 0);
+                findBestSwap(j, scratch);
+                final int b = scratch[0] > scratch[1] ? 0 : 1;
+                bestsil[i - off] = scratch[b];
+                bestm[i - off] = b;
+              };
+            });
+            int next = end;
+            for(int i = start; i < end; i++) {
+              if(i == lastswap) {
+                break blocks; // Entire pass without finding an improvement.
+              }
+              if(!(bestsil[i - start] > sil)) {
+                continue;
+              }
+              final int b = bestm[i - start];
+              medoids.set(b, h.seek(i));
+              sil = doSwap(medoids, b, h);
+              swaps++;
+              if(LOG.isStatistics()) {
+                LOG.statistics(new DoubleStatistic(key + ".swap-" + swaps + ".medoid-silhouette", sil));
+              }
+              lastswap = i;
+              next = i + 1; // Re-evaluate the remainder of the block
+              break;
+            }
+            start = next;
+          }
+          if(LOG.isStatistics()) {
+            LOG.statistics(new LongStatistic(key + ".iteration-" + iteration + ".swaps", swaps - prevswaps));
+          }
+          if(prevswaps == swaps) {
+            break; // Converged
+          }
+          prevswaps = swaps;
+          if(LOG.isStatistics()) {
+            LOG.statistics(new DoubleStatistic(key + ".iteration-" + iteration + ".medoid-silhouette", sil));
+          }
+        }
+      }
+      finally {
+        core.disconnect();
+      }
+      LOG.setCompleted(prog);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(key + ".iterations", iteration));
+        LOG.statistics(new DoubleStatistic(key + ".final-medoid-silhouette", sil));
+      }
+      return sil;
+    }
+  }
+
+  /**
+   * Parallel FasterMSC clustering instance for a particular data set.
+   *
+   * @author Erich Schubert
+   */
+  protected class Instance extends FasterMSC<O>.Instance {
+    /**
+     * Ids to process, as array.
+     */
+    ArrayDBIDs aids;
+
+    /**
+     * Constructor.
+     *
+     * @param distQ Distance query
+     * @param ids IDs to process
+     * @param assignment Cluster assignment
+     */
+    public Instance(DistanceQuery<?> distQ, ArrayDBIDs ids, WritableIntegerDataStore assignment) {
+      super(distQ, ids, assignment);
+      this.aids = ids;
+    }
+
+    @Override
+    protected double run(ArrayModifiableDBIDs medoids, int maxiter) {
+      final ParallelCore core = ParallelCore.getCore();
+      final int parallelism = core.getParallelism();
+      if(parallelism < 2) {
+        return super.run(medoids, maxiter);
+      }
+      final int k = medoids.size(), size = aids.size();
+      // Initial assignment to nearest medoids
+      double sil = assignToNearestCluster(medoids);
+      String key = getClass().getName().replace("$Instance", "");
+      if(LOG.isStatistics()) {
+        LOG.statistics(new DoubleStatistic(key + ".iteration-" + 0 + ".medoid-silhouette", sil));
+      }
+      final double[] losses = new double[k];
+      updateRemovalLoss(losses);
+      // Evaluate two candidates per thread, to limit the work discarded after
+      // a swap.
+      final int block = parallelism << 1;
+      final double[] bestgain = new double[block];
+      final int[] bestm = new int[block];
+
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("FastMSC iteration", LOG) : null;
+      // Swap phase
+      DBIDArrayIter h = aids.iter();
+      int iteration = 0, prevswaps = 0, swaps = 0, lastswap = -1;
+      core.connect();
+      try {
+        while(iteration < maxiter || maxiter <= 0) {
+          ++iteration;
+          LOG.incrementProcessed(prog);
+          // Iterate over all non-medoids, in blocks:
+          blocks: for(int start = 0; start < size;) {
+            final int end = Math.min(start + block, size), off = start;
+            evaluateBlock(core, start, end, () -> {
+              final DBIDArrayIter j = aids.iter(), m = medoids.iter();
+              final double[] scratch = new double[k];
+              return i -> {
+                j.seek(i);
+                // Compare object to its own medoid.
+                if(DBIDUtil.equal(m.seek(assignment.get(j).m1), j)) {
+                  bestgain[i - off] = Double.NEGATIVE_INFINITY;
+                  return; // This is a medoid.
+                }
+                System.arraycopy(losses, 0, scratch, 0, k);
+                final double acc = findBestSwap(j, scratch);
+                // Find the best possible swap for j:
+                final int b = VMath.argmax(scratch);
+                bestgain[i - off] = scratch[b] + acc;
+                bestm[i - off] = b;
+              };
+            });
+            int next = end;
+            for(int i = start; i < end; i++) {
+              if(i == lastswap) {
+                break blocks; // Entire pass without finding an improvement.
+              }
+              if(!(bestgain[i - start] > 0.)) {
+                continue;
+              }
+              ++swaps;
+              final int b = bestm[i - start];
+              medoids.set(b, h.seek(i));
+              sil = doSwap(medoids, b, h);
+              updateRemovalLoss(losses);
+              if(LOG.isStatistics()) {
+                LOG.statistics(new DoubleStatistic(key + ".swap-" + swaps + ".medoid-silhouette", sil));
+              }
+              lastswap = i;
+              next = i + 1; // Re-evaluate the remainder of the block
+              break;
+            }
+            start = next;
+          }
+          if(LOG.isStatistics()) {
+            LOG.statistics(new LongStatistic(key + ".iteration-" + iteration + ".swaps", swaps - prevswaps));
+          }
+          if(prevswaps == swaps) {
+            break; // Converged
+          }
+          prevswaps = swaps;
+          if(LOG.isStatistics()) {
+            LOG.statistics(new DoubleStatistic(key + ".iteration-" + iteration + ".medoid-silhouette", sil));
+          }
+        }
+      }
+      finally {
+        core.disconnect();
+      }
+      LOG.setCompleted(prog);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(key + ".iterations", iteration));
+        LOG.statistics(new DoubleStatistic(key + ".final-medoid-silhouette", sil));
+      }
+      // Unwrap records into simple labeling:
+      for(DBIDIter j = ids.iter(); j.valid(); j.advance()) {
+        output.putInt(j, assignment.get(j).m1);
+      }
+      return sil;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<O> extends FasterMSC.Par<O> {
+    /**
+     * Precompute a float distance matrix.
+     */
+    protected boolean floatmatrix;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new Flag(ParallelFasterPAM.Par.FLOAT_MATRIX_ID).grab(config, x -> floatmatrix = x);
+    }
+
+    @Override
+    public ParallelFasterMSC<O> make() {
+      return new ParallelFasterMSC<>(distance, k, maxiter, initializer, floatmatrix);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import elki.parallel.ParallelCore;
+
+/**
+ * Test the parallel initialization of the cluster distance matrix.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class ClusterDistanceMatrixTest {
+  /**
+   * Matrix size, large enough to be split into multiple bands.
+   */
+  private static final int SIZE = 1500;
+
+  /**
+   * Initial value of a pair.
+   */
+  private static final ClusterDistanceMatrix.Initializer INIT = (x, y) -> Math.sqrt(x * 31. + y) / (y + 1.);
+
+  @Test
+  public void testParallelFill() {
+    ClusterDistanceMatrix seq = fill(1, ParallelCore.Chunking.STATIC, false);
+    assertArrayEquals(seq.matrix, fill(4, ParallelCore.Chunking.STATIC, false).matrix, 0.);
+    assertArrayEquals(seq.matrix, fill(3, ParallelCore.Chunking.GUIDED, false).matrix, 0.);
+    for(int x = 1, p = 0; x < SIZE; x++) {
+      for(int y = 0; y < x; y++, p++) {
+        assertEquals(INIT.initial(x, y), seq.matrix[p], 0.);
+        assertEquals(seq.matrix[p], seq.get(y, x), 0.);
+      }
+    }
+  }
+
+  @Test
+  public void testParallelFillFloat() {
+    ClusterDistanceMatrix seq = fill(1, ParallelCore.Chunking.STATIC, false);
+    ClusterDistanceMatrix par = fill(4, ParallelCore.Chunking.ADAPTIVE, true);
+    for(int p = 0; p < seq.matrix.length; p++) {
+      assertEquals((float) seq.matrix[p], par.get(p), 0.);
+    }
+    par.set(7, 1. / 3.);
+    assertEquals((float) (1. / 3.), par.get(7), 0.);
+  }
+
+  /**
+   * Fill a matrix with a given number of threads.
+   *
+   * @param threads Number of threads
+   * @param chunking Chunking strategy
+   * @param useFloat Use single precision
+   * @return Matrix
+   */
+  private static ClusterDistanceMatrix fill(int threads, ParallelCore.Chunking chunking, boolean useFloat) {
+    ParallelCore prev = ParallelCore.getCore();
+    ParallelCore.setCore(new ParallelCore(threads, chunking));
+    try {
+      ClusterDistanceMatrix mat = new ClusterDistanceMatrix(SIZE, useFloat);
+      mat.initialize(() -> INIT, null, null);
+      return mat;
+    }
+    finally {
+      ParallelCore.setCore(prev);
+    }
+  }
+}
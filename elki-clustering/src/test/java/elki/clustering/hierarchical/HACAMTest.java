@@ -59,4 +59,16 @@ public class HACAMTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.915037);
     assertClusterSizes(clustering, new int[] { 55, 119, 156 });
   }
+
+  @Test
+  public void testHACAMFloat() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HACAM.class) //
+        .with(AGNES.Par.FLOAT_MATRIX_ID) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.93866);
+    assertClusterSizes(clustering, new int[] { 200, 211, 227 });
+  }
 }
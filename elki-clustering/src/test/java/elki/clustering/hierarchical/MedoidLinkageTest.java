@@ -57,4 +57,16 @@ public class MedoidLinkageTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.801679);
     assertClusterSizes(clustering, new int[] { 6, 152, 172 });
   }
+
+  @Test
+  public void testMiniMaxFloat() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, MedoidLinkage.class) //
+        .with(AGNES.Par.FLOAT_MATRIX_ID) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.938167);
+    assertClusterSizes(clustering, new int[] { 200, 217, 221 });
+  }
 }
@@ -57,4 +57,16 @@ public class MiniMaxAnderbergTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.914592130);
     assertClusterSizes(clustering, new int[] { 59, 112, 159 });
   }
+
+  @Test
+  public void testMiniMaxFloat() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, MiniMaxAnderberg.class) //
+        .with(AGNES.Par.FLOAT_MATRIX_ID) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.938662648);
+    assertClusterSizes(clustering, new int[] { 200, 211, 227 });
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elki.Algorithm;
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.hierarchical.extraction.CutDendrogramByNumberOfClusters;
+import elki.clustering.hierarchical.linkage.*;
+import elki.data.Clustering;
+import elki.database.Database;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Perform agglomerative hierarchical clustering, using the on-disk Anderberg
+ * variant. Results must match the in-memory algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class OnDiskAnderbergTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testSingleLink() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, OnDiskAnderberg.class) //
+        .with(AGNES.Par.LINKAGE_ID, SingleLinkage.class) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.6829722);
+    assertClusterSizes(clustering, new int[] { 9, 200, 429 });
+  }
+
+  @Test
+  public void testWard() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    try {
+      Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+          .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+          .with(Algorithm.Utils.ALGORITHM_ID, OnDiskAnderberg.class) //
+          .with(AGNES.Par.LINKAGE_ID, WardLinkage.class) //
+          .with(OnDiskAnderberg.Par.DIRECTORY_ID, dir) //
+          .build().autorun(db);
+      assertFMeasure(db, clustering, 0.93866265);
+      assertClusterSizes(clustering, new int[] { 200, 211, 227 });
+    }
+    finally {
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void testCompleteLink() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, OnDiskAnderberg.class) //
+        .with(AGNES.Par.LINKAGE_ID, CompleteLinkage.class) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.938167802);
+    assertClusterSizes(clustering, new int[] { 200, 217, 221 });
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.KMeansModel;
+import elki.database.Database;
+import elki.database.ids.DBIDUtil;
+import elki.parallel.ParallelCore;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Base class for parallel k-means tests.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public abstract class AbstractParallelKMeansTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Assert that the parallel version, run with multiple threads, produces
+   * exactly the same means and clusters as the sequential version.
+   *
+   * @param seq Sequential k-means class
+   * @param par Parallel k-means class
+   * @param chunking Chunking strategy for the parallel run
+   */
+  protected void assertIdenticalToSequential(Class<?> seq, Class<?> par, ParallelCore.Chunking chunking) {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<KMeansModel> sres = run(seq, db);
+    Clustering<KMeansModel> pres;
+    ParallelCore prev = ParallelCore.getCore();
+    ParallelCore.setCore(new ParallelCore(4, chunking));
+    try {
+      pres = run(par, db);
+    }
+    finally {
+      ParallelCore.setCore(prev);
+    }
+    List<Cluster<KMeansModel>> sc = sres.getAllClusters(), pc = pres.getAllClusters();
+    assertEquals("Number of clusters", sc.size(), pc.size());
+    for(int i = 0; i < sc.size(); i++) {
+      assertArrayEquals("Means differ.", sc.get(i).getModel().getMean(), pc.get(i).getModel().getMean(), 0.);
+      assertEquals("Cluster sizes differ.", sc.get(i).size(), pc.get(i).size());
+      assertEquals("Cluster members differ.", sc.get(i).size(), DBIDUtil.intersectionSize(sc.get(i).getIDs(), pc.get(i).getIDs()));
+    }
+  }
+
+  /**
+   * Run a k-means variant with k=20.
+   *
+   * @param cls k-means class
+   * @param db Database
+   * @return Clustering
+   */
+  @SuppressWarnings("unchecked")
+  private static Clustering<KMeansModel> run(Class<?> cls, Database db) {
+    return new ELKIBuilder<>((Class<KMeans<DoubleVector, KMeansModel>>) cls) //
+        .with(KMeans.K_ID, 20) //
+        .with(KMeans.SEED_ID, 3) //
+        .build().autorun(db);
+  }
+}
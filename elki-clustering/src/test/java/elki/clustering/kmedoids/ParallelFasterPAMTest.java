@@ -0,0 +1,135 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.MedoidModel;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.HashSetModifiableDBIDs;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.parallel.ParallelCore;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Performs a full parallel FasterPAM run, and compares the result with a
+ * clustering derived from the data set labels. The result must be the same as
+ * with the sequential {@link FasterPAM}.
+ * <p>
+ * A parallel core with multiple threads is installed, as the algorithm falls
+ * back to the sequential code on a single processor.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class ParallelFasterPAMTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testKMedoidsPAM() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    ParallelCore prev = ParallelCore.getCore();
+    ParallelCore.setCore(new ParallelCore(4, ParallelCore.Chunking.STATIC));
+    try {
+      Clustering<MedoidModel> result = new ELKIBuilder<ParallelFasterPAM<DoubleVector>>(ParallelFasterPAM.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.SEED_ID, 0) //
+          .build().autorun(db);
+      assertFMeasure(db, result, 0.998005);
+      assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+      assertSameAsSequential(db, result);
+    }
+    finally {
+      ParallelCore.setCore(prev);
+    }
+  }
+
+  @Test
+  public void testFloatMatrix() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    ParallelCore prev = ParallelCore.getCore();
+    ParallelCore.setCore(new ParallelCore(4, ParallelCore.Chunking.GUIDED));
+    try {
+      Clustering<MedoidModel> result = new ELKIBuilder<ParallelFasterPAM<DoubleVector>>(ParallelFasterPAM.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.SEED_ID, 0) //
+          .with(ParallelFasterPAM.Par.FLOAT_MATRIX_ID) //
+          .build().autorun(db);
+      assertFMeasure(db, result, 0.998005);
+      assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+      assertSameAsSequential(db, result);
+    }
+    finally {
+      ParallelCore.setCore(prev);
+    }
+  }
+
+  /**
+   * Compare the medoids and the cost to the sequential {@link FasterPAM}.
+   *
+   * @param db Database
+   * @param result Parallel result
+   */
+  private void assertSameAsSequential(Database db, Clustering<MedoidModel> result) {
+    Clustering<MedoidModel> seq = new ELKIBuilder<FasterPAM<DoubleVector>>(FasterPAM.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 0) //
+        .build().autorun(db);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    HashSetModifiableDBIDs medoids = DBIDUtil.newHashSet();
+    for(Cluster<MedoidModel> c : seq.getAllClusters()) {
+      medoids.add(c.getModel().getMedoid());
+    }
+    for(Cluster<MedoidModel> c : result.getAllClusters()) {
+      assertTrue("Medoid differs from sequential FasterPAM.", medoids.contains(c.getModel().getMedoid()));
+    }
+    assertEquals("Cost differs from sequential FasterPAM.", cost(rel, seq), cost(rel, result), 1e-10);
+  }
+
+  /**
+   * Compute the total deviation of a clustering.
+   *
+   * @param rel Data relation
+   * @param clustering Clustering
+   * @return Sum of distances to the medoids
+   */
+  private static double cost(Relation<NumberVector> rel, Clustering<MedoidModel> clustering) {
+    double cost = 0.;
+    for(Cluster<MedoidModel> c : clustering.getAllClusters()) {
+      NumberVector m = rel.get(c.getModel().getMedoid());
+      for(DBIDIter it = c.getIDs().iter(); it.valid(); it.advance()) {
+        cost += EuclideanDistance.STATIC.distance(m, rel.get(it));
+      }
+    }
+    return cost;
+  }
+}
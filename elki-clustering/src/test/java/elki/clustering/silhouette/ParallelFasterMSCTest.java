@@ -0,0 +1,141 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.silhouette;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.initialization.FirstK;
+import elki.clustering.kmedoids.ParallelFasterPAM;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.MedoidModel;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.HashSetModifiableDBIDs;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.evaluation.clustering.internal.Silhouette;
+import elki.parallel.ParallelCore;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel FasterMSC clustering. The result must be the same as with
+ * the sequential {@link FasterMSC}.
+ * <p>
+ * A parallel core with multiple threads is installed, as the algorithm falls
+ * back to the sequential code on a single processor.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class ParallelFasterMSCTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testParallelFasterMSC() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    ParallelCore prev = ParallelCore.getCore();
+    ParallelCore.setCore(new ParallelCore(4, ParallelCore.Chunking.STATIC));
+    try {
+      Clustering<MedoidModel> result = new ELKIBuilder<ParallelFasterMSC<NumberVector>>(ParallelFasterMSC.class) //
+          .with(KMeans.INIT_ID, FirstK.class) //
+          .with(KMeans.K_ID, 3) //
+          .build().autorun(db);
+      assertFMeasure(db, result, 0.91385864);
+      assertClusterSizes(result, new int[] { 57, 115, 158 });
+      assertSameAsSequential(db, result, 3);
+    }
+    finally {
+      ParallelCore.setCore(prev);
+    }
+  }
+
+  @Test
+  public void testParallelFasterMSCKTwo() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    ParallelCore prev = ParallelCore.getCore();
+    ParallelCore.setCore(new ParallelCore(4, ParallelCore.Chunking.GUIDED));
+    try {
+      Clustering<MedoidModel> result = new ELKIBuilder<ParallelFasterMSC<NumberVector>>(ParallelFasterMSC.class) //
+          .with(KMeans.INIT_ID, FirstK.class) //
+          .with(KMeans.K_ID, 2) //
+          .build().autorun(db);
+      assertFMeasure(db, result, 0.785693747);
+      assertClusterSizes(result, new int[] { 159, 171 });
+      assertSameAsSequential(db, result, 2);
+    }
+    finally {
+      ParallelCore.setCore(prev);
+    }
+  }
+
+  @Test
+  public void testFloatMatrix() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    ParallelCore prev = ParallelCore.getCore();
+    ParallelCore.setCore(new ParallelCore(4, ParallelCore.Chunking.STATIC));
+    try {
+      Clustering<MedoidModel> result = new ELKIBuilder<ParallelFasterMSC<NumberVector>>(ParallelFasterMSC.class) //
+          .with(KMeans.INIT_ID, FirstK.class) //
+          .with(KMeans.K_ID, 4) //
+          .with(ParallelFasterPAM.Par.FLOAT_MATRIX_ID) //
+          .build().autorun(db);
+      assertFMeasure(db, result, 0.923322767);
+      assertClusterSizes(result, new int[] { 5, 56, 111, 158 });
+      assertSameAsSequential(db, result, 4);
+    }
+    finally {
+      ParallelCore.setCore(prev);
+    }
+  }
+
+  /**
+   * Compare the medoids and the silhouette to the sequential
+   * {@link FasterMSC}.
+   *
+   * @param db Database
+   * @param result Parallel result
+   * @param k Number of clusters
+   */
+  private void assertSameAsSequential(Database db, Clustering<MedoidModel> result, int k) {
+    Clustering<MedoidModel> seq = new ELKIBuilder<FasterMSC<NumberVector>>(FasterMSC.class) //
+        .with(KMeans.INIT_ID, FirstK.class) //
+        .with(KMeans.K_ID, k) //
+        .build().autorun(db);
+    HashSetModifiableDBIDs medoids = DBIDUtil.newHashSet();
+    for(Cluster<MedoidModel> c : seq.getAllClusters()) {
+      medoids.add(c.getModel().getMedoid());
+    }
+    for(Cluster<MedoidModel> c : result.getAllClusters()) {
+      assertTrue("Medoid differs from sequential FasterMSC.", medoids.contains(c.getModel().getMedoid()));
+    }
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    Silhouette<NumberVector> sil = new Silhouette<>(EuclideanDistance.STATIC, false);
+    PrimitiveDistanceQuery<NumberVector> dq = new PrimitiveDistanceQuery<>(rel, EuclideanDistance.STATIC);
+    assertEquals("Silhouette differs from sequential FasterMSC.", sil.evaluateClustering(rel, dq, seq), sil.evaluateClustering(rel, dq, result), 1e-15);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+/**
+ * Inner loops over primitive {@code double[]} arrays, as used by the
+ * {@link DoubleArrayVector} fast paths of the distance functions.
+ * <p>
+ * On Java 17 and later, the multi-release jar contains kernels using the
+ * incubating Vector API, which are used if the {@code jdk.incubator.vector}
+ * module was enabled with {@code --add-modules}. These may sum in a different
+ * order, and hence differ from the scalar loops in the last bits. Otherwise,
+ * the plain loops below are used, which the JIT may still unroll.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public final class ArrayKernels {
+  /**
+   * Minimum length to use the vectorized kernels.
+   */
+  private static final int VECTORIZE_MIN = 16;
+
+  /**
+   * Vectorized kernels, or {@code null} if not available.
+   */
+  private static final VectorizedKernels SIMD = VectorizedKernels.load();
+
+  /**
+   * Fake constructor: do not instantiate.
+   */
+  private ArrayKernels() {
+    // Static methods only
+  }
+
+  /**
+   * Check whether the vectorized kernels are in use.
+   *
+   * @return {@code true} if vectorized
+   */
+  public static boolean isVectorized() {
+    return SIMD != null;
+  }
+
+  /**
+   * Squared Euclidean distance of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Sum of squared differences
+   */
+  public static double squaredEuclidean(double[] a, int oa, double[] b, int ob, int len) {
+    if(SIMD != null && len >= VECTORIZE_MIN) {
+      return SIMD.squaredEuclidean(a, oa, b, ob, len);
+    }
+    double agg = 0.;
+    for(int d = 0; d < len; d++) {
+      final double delta = a[oa + d] - b[ob + d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  /**
+   * Manhattan distance of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Sum of absolute differences
+   */
+  public static double manhattan(double[] a, int oa, double[] b, int ob, int len) {
+    if(SIMD != null && len >= VECTORIZE_MIN) {
+      return SIMD.manhattan(a, oa, b, ob, len);
+    }
+    double agg = 0.;
+    for(int d = 0; d < len; d++) {
+      final double xd = a[oa + d], yd = b[ob + d];
+      agg += xd >= yd ? xd - yd : yd - xd;
+    }
+    return agg;
+  }
+
+  /**
+   * Dot product of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Dot product
+   */
+  public static double dot(double[] a, int oa, double[] b, int ob, int len) {
+    if(SIMD != null && len >= VECTORIZE_MIN) {
+      return SIMD.dot(a, oa, b, ob, len);
+    }
+    double dot = 0.;
+    for(int d = 0; d < len; d++) {
+      dot += a[oa + d] * b[ob + d];
+    }
+    return dot;
+  }
+}
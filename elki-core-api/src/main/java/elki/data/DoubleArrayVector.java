@@ -0,0 +1,55 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+/**
+ * Dense vector backed by a primitive {@code double[]} array, possibly shared
+ * with other vectors (at an offset).
+ * <p>
+ * Distance functions may use this to access the values directly instead of
+ * calling {@link #doubleValue} for every dimension, which allows the JIT
+ * compiler to unroll and vectorize the inner loops. The returned array must
+ * not be modified.
+ * <p>
+ * The common loops are in {@link ArrayKernels}. On Java 17 and later, these
+ * use explicit SIMD kernels of the Vector API when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public interface DoubleArrayVector extends NumberVector {
+  /**
+   * Get the backing data array, for efficient access.
+   * <p>
+   * The array must not be modified.
+   *
+   * @return Data array
+   */
+  double[] getData();
+
+  /**
+   * Get the offset of the first value in the data array.
+   *
+   * @return Offset
+   */
+  int getOffset();
+}
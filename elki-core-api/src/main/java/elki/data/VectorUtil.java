@@ -95,6 +95,9 @@ public final class VectorUtil {
    * @return Angle
    */
   public static double angleDense(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof DoubleArrayVector && v2 instanceof DoubleArrayVector) {
+      return angleDense((DoubleArrayVector) v1, (DoubleArrayVector) v2);
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = (dim1 <= dim2) ? dim1 : dim2;
     // Essentially, we want to compute this:
@@ -122,6 +125,49 @@ public final class VectorUtil {
     return (a < 1.) ? a : 1.;
   }
 
+  /**
+   * Compute the absolute cosine of the angle between two dense vectors, using
+   * direct access to the backing arrays.
+   *
+   * @param v1 first vector
+   * @param v2 second vector
+   * @return Angle
+   */
+  private static double angleDense(DoubleArrayVector v1, DoubleArrayVector v2) {
+    final double[] a1 = v1.getData(), a2 = v2.getData();
+    final int o1 = v1.getOffset(), o2 = v2.getOffset();
+    final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
+    final int mindim = (dim1 <= dim2) ? dim1 : dim2;
+    double cross = 0, l1 = 0, l2 = 0;
+    if(ArrayKernels.isVectorized()) {
+      // Three passes, but each with vector instructions:
+      cross = ArrayKernels.dot(a1, o1, a2, o2, mindim);
+      l1 = ArrayKernels.dot(a1, o1, a1, o1, dim1);
+      l2 = ArrayKernels.dot(a2, o2, a2, o2, dim2);
+    }
+    else {
+      for(int k = 0; k < mindim; k++) {
+        final double r1 = a1[o1 + k];
+        final double r2 = a2[o2 + k];
+        cross += r1 * r2;
+        l1 += r1 * r1;
+        l2 += r2 * r2;
+      }
+      for(int k = mindim; k < dim1; k++) {
+        final double r1 = a1[o1 + k];
+        l1 += r1 * r1;
+      }
+      for(int k = mindim; k < dim2; k++) {
+        final double r2 = a2[o2 + k];
+        l2 += r2 * r2;
+      }
+    }
+    final double a = (cross == 0.) ? 0. : //
+        (l1 == 0. || l2 == 0.) ? 1. : //
+            Math.sqrt((cross / l1) * (cross / l2));
+    return (a < 1.) ? a : 1.;
+  }
+
   /**
    * Compute the angle for sparse vectors.
    *
@@ -351,6 +397,11 @@ public final class VectorUtil {
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = (dim1 <= dim2) ? dim1 : dim2;
     double dot = 0;
+    if(v1 instanceof DoubleArrayVector && v2 instanceof DoubleArrayVector) {
+      final double[] a1 = ((DoubleArrayVector) v1).getData(), a2 = ((DoubleArrayVector) v2).getData();
+      final int o1 = ((DoubleArrayVector) v1).getOffset(), o2 = ((DoubleArrayVector) v2).getOffset();
+      return ArrayKernels.dot(a1, o1, a2, o2, mindim);
+    }
     for(int k = 0; k < mindim; k++) {
       dot += v1.doubleValue(k) * v2.doubleValue(k);
     }
@@ -368,6 +419,11 @@ public final class VectorUtil {
     final int dim1 = v1.getDimensionality(), dim2 = v2.length;
     final int mindim = (dim1 <= dim2) ? dim1 : dim2;
     double dot = 0;
+    if(v1 instanceof DoubleArrayVector) {
+      final double[] a1 = ((DoubleArrayVector) v1).getData();
+      final int o1 = ((DoubleArrayVector) v1).getOffset();
+      return ArrayKernels.dot(a1, o1, v2, 0, mindim);
+    }
     for(int k = 0; k < mindim; k++) {
       dot += v1.doubleValue(k) * v2[k];
     }
@@ -0,0 +1,77 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+/**
+ * Vectorized replacements of the {@link ArrayKernels} loops.
+ * <p>
+ * This baseline version never provides an implementation; the Java 17
+ * version in the multi-release jar loads the Vector API kernels.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+interface VectorizedKernels {
+  /**
+   * Load the vectorized kernels, if supported.
+   *
+   * @return Kernels, or {@code null}
+   */
+  static VectorizedKernels load() {
+    return null;
+  }
+
+  /**
+   * Squared Euclidean distance of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Sum of squared differences
+   */
+  double squaredEuclidean(double[] a, int oa, double[] b, int ob, int len);
+
+  /**
+   * Manhattan distance of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Sum of absolute differences
+   */
+  double manhattan(double[] a, int oa, double[] b, int ob, int len);
+
+  /**
+   * Dot product of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Dot product
+   */
+  double dot(double[] a, int oa, double[] b, int ob, int len);
+}
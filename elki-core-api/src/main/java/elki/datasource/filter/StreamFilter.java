@@ -41,4 +41,17 @@ public interface StreamFilter extends ObjectFilter, BundleStreamSource {
    * @return New stream source
    */
   BundleStreamSource init(BundleStreamSource source);
+
+  /**
+   * Test whether initializing this filter again on the same input yields the
+   * same output, so that a chain of filters can be read more than once (e.g.,
+   * for a {@link TwoPassStreamFilter}).
+   * <p>
+   * Randomized filters must return {@code false}.
+   *
+   * @return {@code true} if the output can be reproduced
+   */
+  default boolean isReplayable() {
+    return true;
+  }
 }
@@ -0,0 +1,45 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.filter;
+
+import elki.datasource.bundle.BundleStreamSource;
+
+/**
+ * Streaming filters that need a statistics pass over the data before they can
+ * process the stream, such as columnwise normalizations.
+ * <p>
+ * The data source will first pass a stream to {@link #prepare}, which must
+ * consume it to collect the statistics, and then {@link #init} the filter on
+ * a second stream with the same contents. This way, only the statistics need
+ * to be kept in memory, not a copy of the data.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public interface TwoPassStreamFilter extends StreamFilter {
+  /**
+   * Statistics pass over the data.
+   *
+   * @param source Stream source, with the same contents as the stream that
+   *        will later be passed to {@link #init}
+   */
+  void prepare(BundleStreamSource source);
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Array kernels using the incubating Vector API.
+ * <p>
+ * Only loaded by {@link VectorizedKernels#load()} if the module is available.
+ * Each lane accumulates separately and the lanes are summed at the end, so
+ * the results may differ from the scalar loops in the last bits.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+final class VectorApiKernels implements VectorizedKernels {
+  /**
+   * Preferred vector shape of the platform.
+   */
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  /**
+   * Number of doubles per vector.
+   */
+  static final int LANES = SPECIES.length();
+
+  @Override
+  public double squaredEuclidean(double[] a, int oa, double[] b, int ob, int len) {
+    final int bound = SPECIES.loopBound(len);
+    DoubleVector acc = DoubleVector.zero(SPECIES);
+    int d = 0;
+    for(; d < bound; d += LANES) {
+      final DoubleVector delta = DoubleVector.fromArray(SPECIES, a, oa + d).sub(DoubleVector.fromArray(SPECIES, b, ob + d));
+      acc = delta.fma(delta, acc);
+    }
+    double agg = acc.reduceLanes(VectorOperators.ADD);
+    for(; d < len; d++) {
+      final double delta = a[oa + d] - b[ob + d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  @Override
+  public double manhattan(double[] a, int oa, double[] b, int ob, int len) {
+    final int bound = SPECIES.loopBound(len);
+    DoubleVector acc = DoubleVector.zero(SPECIES);
+    int d = 0;
+    for(; d < bound; d += LANES) {
+      acc = acc.add(DoubleVector.fromArray(SPECIES, a, oa + d).sub(DoubleVector.fromArray(SPECIES, b, ob + d)).abs());
+    }
+    double agg = acc.reduceLanes(VectorOperators.ADD);
+    for(; d < len; d++) {
+      final double xd = a[oa + d], yd = b[ob + d];
+      agg += xd >= yd ? xd - yd : yd - xd;
+    }
+    return agg;
+  }
+
+  @Override
+  public double dot(double[] a, int oa, double[] b, int ob, int len) {
+    final int bound = SPECIES.loopBound(len);
+    DoubleVector acc = DoubleVector.zero(SPECIES);
+    int d = 0;
+    for(; d < bound; d += LANES) {
+      acc = DoubleVector.fromArray(SPECIES, a, oa + d).fma(DoubleVector.fromArray(SPECIES, b, ob + d), acc);
+    }
+    double dot = acc.reduceLanes(VectorOperators.ADD);
+    for(; d < len; d++) {
+      dot += a[oa + d] * b[ob + d];
+    }
+    return dot;
+  }
+}
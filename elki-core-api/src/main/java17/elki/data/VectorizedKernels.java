@@ -0,0 +1,87 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+/**
+ * Vectorized replacements of the {@link ArrayKernels} loops.
+ * <p>
+ * Java 17 version: uses the Vector API kernels if the incubator module was
+ * enabled with {@code --add-modules jdk.incubator.vector}, and the hardware
+ * supports more than one double per vector.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+interface VectorizedKernels {
+  /**
+   * Load the vectorized kernels, if supported.
+   *
+   * @return Kernels, or {@code null}
+   */
+  static VectorizedKernels load() {
+    try {
+      if(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() //
+          && VectorApiKernels.LANES > 1) {
+        return new VectorApiKernels();
+      }
+    }
+    catch(LinkageError e) {
+      // Vector API not usable, use the scalar loops.
+    }
+    return null;
+  }
+
+  /**
+   * Squared Euclidean distance of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Sum of squared differences
+   */
+  double squaredEuclidean(double[] a, int oa, double[] b, int ob, int len);
+
+  /**
+   * Manhattan distance of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Sum of absolute differences
+   */
+  double manhattan(double[] a, int oa, double[] b, int ob, int len);
+
+  /**
+   * Dot product of two array ranges.
+   *
+   * @param a First array
+   * @param oa Offset in the first array
+   * @param b Second array
+   * @param ob Offset in the second array
+   * @param len Number of values
+   * @return Dot product
+   */
+  double dot(double[] a, int oa, double[] b, int ob, int len);
+}
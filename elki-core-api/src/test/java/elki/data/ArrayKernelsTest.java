@@ -0,0 +1,60 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the array kernels, covering both the scalar loops and (when
+ * run with the Vector API enabled) the vectorized kernels.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class ArrayKernelsTest {
+  @Test
+  public void testKernels() {
+    final Random rnd = new Random(0L);
+    final double[] data = new double[300];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = (rnd.nextDouble() - .5) * 100.;
+    }
+    // Various lengths and unaligned offsets, to also test the tails:
+    for(int len = 0; len <= 100; len++) {
+      final int oa = rnd.nextInt(50), ob = 150 + rnd.nextInt(50);
+      double sq = 0., man = 0., dot = 0., abs = 0.;
+      for(int d = 0; d < len; d++) {
+        final double a = data[oa + d], b = data[ob + d];
+        sq += (a - b) * (a - b);
+        man += Math.abs(a - b);
+        dot += a * b;
+        abs += Math.abs(a * b);
+      }
+      assertEquals("Squared Euclidean", sq, ArrayKernels.squaredEuclidean(data, oa, data, ob, len), 1e-14 * sq);
+      assertEquals("Manhattan", man, ArrayKernels.manhattan(data, oa, data, ob, len), 1e-14 * man);
+      assertEquals("Dot product", dot, ArrayKernels.dot(data, oa, data, ob, len), 1e-14 * abs);
+    }
+  }
+}
@@ -38,7 +38,7 @@ import elki.utilities.optionhandling.Parameterizer;
  *
  * @opt nodefillcolor LemonChiffon
  */
-public class DoubleVector implements NumberVector {
+public class DoubleVector implements DoubleArrayVector {
   /**
    * Static factory instance.
    */
@@ -103,6 +103,16 @@ public class DoubleVector implements NumberVector {
     return values.clone();
   }
 
+  @Override
+  public double[] getData() {
+    return values;
+  }
+
+  @Override
+  public int getOffset() {
+    return 0;
+  }
+
   @Override
   public String toString() {
     StringBuilder featureLine = new StringBuilder();
@@ -0,0 +1,217 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import elki.utilities.datastructures.arraylike.ArrayAdapter;
+import elki.utilities.datastructures.arraylike.NumberArrayAdapter;
+import elki.utilities.io.ByteArrayUtil;
+import elki.utilities.io.ByteBufferSerializer;
+import elki.utilities.optionhandling.Parameterizer;
+
+/**
+ * Flyweight view of a dense vector stored in a shared, row-major
+ * {@code double[]} block, as used by packed relations.
+ * <p>
+ * The view does not copy the data; it must not be modified, as the block is
+ * shared by all vectors of the relation.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @opt nodefillcolor LemonChiffon
+ */
+public class PackedDoubleVector implements DoubleArrayVector {
+  /**
+   * Static factory instance.
+   */
+  public static final PackedDoubleVector.Factory FACTORY = new PackedDoubleVector.Factory();
+
+  /**
+   * Serializer using varint encoding.
+   */
+  public static final ByteBufferSerializer<PackedDoubleVector> VARIABLE_SERIALIZER = new VariableSerializer();
+
+  /**
+   * Shared data block.
+   */
+  private final double[] data;
+
+  /**
+   * Offset of the first value in the block.
+   */
+  private final int offset;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Constructor.
+   *
+   * @param data Shared data block
+   * @param offset Offset of the first value
+   * @param dim Dimensionality
+   */
+  public PackedDoubleVector(double[] data, int offset, int dim) {
+    this.data = data;
+    this.offset = offset;
+    this.dim = dim;
+  }
+
+  @Override
+  public int getDimensionality() {
+    return dim;
+  }
+
+  @Override
+  public double doubleValue(int dimension) {
+    return data[offset + dimension];
+  }
+
+  @Override
+  public long longValue(int dimension) {
+    return (long) data[offset + dimension];
+  }
+
+  @Override
+  public double[] toArray() {
+    double[] values = new double[dim];
+    System.arraycopy(data, offset, values, 0, dim);
+    return values;
+  }
+
+  @Override
+  public double[] getData() {
+    return data;
+  }
+
+  @Override
+  public int getOffset() {
+    return offset;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder featureLine = new StringBuilder();
+    for(int i = 0; i < dim; i++) {
+      featureLine.append(data[offset + i]);
+      if(i + 1 < dim) {
+        featureLine.append(ATTRIBUTE_SEPARATOR);
+      }
+    }
+    return featureLine.toString();
+  }
+
+  /**
+   * Factory for packed vectors. Newly created vectors use their own block.
+   *
+   * @author Erich Schubert
+   *
+   * @has - - - PackedDoubleVector
+   */
+  public static class Factory implements NumberVector.Factory<PackedDoubleVector> {
+    @Override
+    public PackedDoubleVector newNumberVector(double[] values) {
+      return new PackedDoubleVector(values.clone(), 0, values.length);
+    }
+
+    @Override
+    public <A> PackedDoubleVector newFeatureVector(A array, ArrayAdapter<? extends Number, A> adapter) {
+      int dim = adapter.size(array);
+      double[] values = new double[dim];
+      for(int i = 0; i < dim; i++) {
+        values[i] = adapter.get(array, i).doubleValue();
+      }
+      return new PackedDoubleVector(values, 0, dim);
+    }
+
+    @Override
+    public <A> PackedDoubleVector newNumberVector(A array, NumberArrayAdapter<?, ? super A> adapter) {
+      final int dim = adapter.size(array);
+      double[] values = new double[dim];
+      for(int i = 0; i < dim; i++) {
+        values[i] = adapter.getDouble(array, i);
+      }
+      return new PackedDoubleVector(values, 0, dim);
+    }
+
+    @Override
+    public ByteBufferSerializer<PackedDoubleVector> getDefaultSerializer() {
+      return VARIABLE_SERIALIZER;
+    }
+
+    @Override
+    public Class<? super PackedDoubleVector> getRestrictionClass() {
+      return PackedDoubleVector.class;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Par implements Parameterizer {
+      @Override
+      public PackedDoubleVector.Factory make() {
+        return FACTORY;
+      }
+    }
+  }
+
+  /**
+   * Serialization class using varint encodings, compatible with
+   * {@link DoubleVector.VariableSerializer}.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - serializes - PackedDoubleVector
+   */
+  public static class VariableSerializer implements ByteBufferSerializer<PackedDoubleVector> {
+    @Override
+    public PackedDoubleVector fromByteBuffer(ByteBuffer buffer) throws IOException {
+      final int dimensionality = ByteArrayUtil.readUnsignedVarint(buffer);
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_DOUBLE * dimensionality) : "Not enough data remaining in buffer to read " + dimensionality + " doubles";
+      final double[] values = new double[dimensionality];
+      for(int i = 0; i < dimensionality; i++) {
+        values[i] = buffer.getDouble();
+      }
+      return new PackedDoubleVector(values, 0, dimensionality);
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, PackedDoubleVector vec) throws IOException {
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_DOUBLE * vec.dim) : "Not enough space remaining in buffer to write " + vec.dim + " doubles";
+      ByteArrayUtil.writeUnsignedVarint(buffer, vec.dim);
+      for(int i = 0; i < vec.dim; i++) {
+        buffer.putDouble(vec.data[vec.offset + i]);
+      }
+    }
+
+    @Override
+    public int getByteSize(PackedDoubleVector vec) {
+      return ByteArrayUtil.getUnsignedVarintSize(vec.dim) + ByteArrayUtil.SIZE_DOUBLE * vec.dim;
+    }
+  }
+}
@@ -80,6 +80,27 @@ public class VectorUtilTest {
     assertEquals("Angle not exact.", 0.2, VectorUtil.angle(v2, v1, one), 0.);
   }
 
+  @Test
+  public void denseArrayAccess() {
+    // Vectors at an offset in a shared array, of different length:
+    double[] packed = { 9., 1., -2., 3.5, .25, 3., 2., 1. };
+    NumberVector p1 = new PackedDoubleVector(packed, 1, 4);
+    NumberVector p2 = new PackedDoubleVector(packed, 5, 3);
+    NumberVector d1 = new DoubleVector(new double[] { 1., -2., 3.5, .25 });
+    NumberVector f1 = new FloatVector(new float[] { 1.f, -2.f, 3.5f, .25f });
+    NumberVector f2 = new FloatVector(new float[] { 3.f, 2.f, 1.f });
+    // The generic code path on float vectors is the reference:
+    assertEquals("Angle differs.", VectorUtil.angleDense(f1, f2), VectorUtil.angleDense(p1, p2), 0.);
+    assertEquals("Angle differs.", VectorUtil.angleDense(f2, f1), VectorUtil.angleDense(p2, d1), 0.);
+    assertEquals("Angle differs.", VectorUtil.angleDense(f1, f2), VectorUtil.angleDense(d1, f2), 0.);
+    // Exact: 3-4+3.5 = 2.5
+    assertEquals("Dot not exact.", 2.5, VectorUtil.dotDense(p1, p2), 0.);
+    assertEquals("Dot not exact.", 2.5, VectorUtil.dotDense(p2, d1), 0.);
+    assertEquals("Dot not exact.", 2.5, VectorUtil.dotDense(f1, f2), 0.);
+    assertEquals("Dot not exact.", 2.5, VectorUtil.dotDense(p1, f2.toArray()), 0.);
+    assertEquals("Dot not exact.", 2.5, VectorUtil.dotDense(f2, d1.toArray()), 0.);
+  }
+
   @Test
   public void sparseAngle() {
     SparseNumberVector s1 = new SparseDoubleVector(new double[] { 1.0, 2.0, 3.0 });
@@ -0,0 +1,138 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.datastore.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.WritableDBIDDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.datastore.memory.ArrayDoubleStore;
+import elki.database.ids.DBIDFactory;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDVar;
+import elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Unit test for off-heap data stores.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class OffHeapDataStoreFactoryTest {
+  @Test
+  public void testDirect() {
+    checkStores(new OffHeapDataStoreFactory(null, 0));
+  }
+
+  @Test
+  public void testMapped() throws IOException {
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    try {
+      checkStores(new OffHeapDataStoreFactory(dir, 0));
+      // Temporary files are removed once mapped.
+      try (Stream<Path> files = Files.list(dir)) {
+        assertEquals(0, files.count());
+      }
+    }
+    finally {
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void testDirectoryParameter() throws IOException {
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    Path file = Files.createTempFile(dir, "elki-", ".tmp");
+    try {
+      ListParameterization config = new ListParameterization().addParameter(OffHeapDataStoreFactory.Par.DIRECTORY_ID, dir);
+      OffHeapDataStoreFactory.Par par = new OffHeapDataStoreFactory.Par();
+      par.configure(config);
+      assertFalse(config.hasErrors());
+      assertEquals(dir, par.directory);
+      // A regular file is not accepted:
+      config = new ListParameterization().addParameter(OffHeapDataStoreFactory.Par.DIRECTORY_ID, file);
+      new OffHeapDataStoreFactory.Par().configure(config);
+      assertTrue(config.hasErrors());
+    }
+    finally {
+      Files.delete(file);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void testMinimumSize() {
+    DBIDRange ids = DBIDFactory.FACTORY.generateStaticDBIDRange(100);
+    DataStoreFactory factory = new OffHeapDataStoreFactory(null, 1000);
+    assertTrue(factory.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT) instanceof ArrayDoubleStore);
+    assertTrue(new OffHeapDataStoreFactory(null, 100).makeDoubleStorage(ids, DataStoreFactory.HINT_HOT) instanceof OffHeapDoubleStore);
+  }
+
+  /**
+   * Exercise the primitive stores of a factory.
+   *
+   * @param factory Factory
+   */
+  private void checkStores(DataStoreFactory factory) {
+    DBIDRange ids = DBIDFactory.FACTORY.generateStaticDBIDRange(1000);
+    WritableDoubleDataStore dbl = factory.makeDoubleStorage(ids, DataStoreFactory.HINT_TEMP, 1.5);
+    WritableIntegerDataStore ints = factory.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, -1);
+    WritableDBIDDataStore refs = factory.makeDBIDStorage(ids, DataStoreFactory.HINT_TEMP);
+    assertTrue(dbl instanceof OffHeapDoubleStore);
+    DBIDVar var = DBIDUtil.newVar();
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      assertEquals(1.5, dbl.doubleValue(it), 0.);
+      assertEquals(-1, ints.intValue(it));
+      assertFalse(refs.assignVar(it, var).isSet());
+    }
+    int i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      dbl.putDouble(it, i * .5);
+      dbl.increment(it, 1.);
+      ints.putInt(it, i);
+      ints.increment(it, 2);
+      refs.putDBID(it, ids.get(ids.size() - 1 - i));
+    }
+    i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      assertEquals(i * .5 + 1., dbl.doubleValue(it), 0.);
+      assertEquals(i + 2, ints.intValue(it));
+      assertTrue(DBIDUtil.equal(ids.get(ids.size() - 1 - i), refs.assignVar(it, var)));
+    }
+    dbl.clear();
+    assertEquals(1.5, dbl.doubleValue(ids.get(10)), 0.);
+    refs.delete(ids.get(10));
+    assertFalse(refs.assignVar(ids.get(10), var).isSet());
+  }
+}
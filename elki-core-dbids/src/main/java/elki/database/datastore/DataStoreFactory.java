@@ -26,7 +26,8 @@ import elki.database.ids.DBIDs;
 /**
  * API for a storage factory used for producing larger storage maps.
  * 
- * Use {@link #FACTORY} for a static instance.
+ * Use {@link #FACTORY} for the default in-memory instance, or
+ * {@link DataStoreUtil#getFactory()} for the factory currently configured.
  * 
  * @author Erich Schubert
  * @since 0.4.0
@@ -27,8 +27,9 @@ import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 
 /**
- * Storage utility class. Mostly a shorthand for
- * {@link DataStoreFactory#FACTORY}.
+ * Storage utility class. Mostly a shorthand for the current storage factory,
+ * which defaults to {@link DataStoreFactory#FACTORY}, but can be replaced
+ * globally with {@link #setFactory}.
  *
  * @author Erich Schubert
  * @since 0.4.0
@@ -50,6 +51,29 @@ public final class DataStoreUtil {
     // Do not use.
   }
 
+  /**
+   * Storage factory currently used.
+   */
+  private static volatile DataStoreFactory factory = DataStoreFactory.FACTORY;
+
+  /**
+   * Get the storage factory currently used.
+   *
+   * @return Storage factory
+   */
+  public static DataStoreFactory getFactory() {
+    return factory;
+  }
+
+  /**
+   * Replace the storage factory used for all subsequently created stores.
+   *
+   * @param factory Storage factory, {@code null} to restore the default
+   */
+  public static void setFactory(DataStoreFactory factory) {
+    DataStoreUtil.factory = factory != null ? factory : DataStoreFactory.FACTORY;
+  }
+
   /**
    * Make a new storage, to associate the given ids with an object of class
    * dataclass.
@@ -61,7 +85,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static <T> WritableDataStore<T> makeStorage(DBIDs ids, int hints, Class<? super T> dataclass) {
-    return DataStoreFactory.FACTORY.makeStorage(ids, hints, dataclass);
+    return factory.makeStorage(ids, hints, dataclass);
   }
 
   /**
@@ -73,7 +97,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableDBIDDataStore makeDBIDStorage(DBIDs ids, int hints) {
-    return DataStoreFactory.FACTORY.makeDBIDStorage(ids, hints);
+    return factory.makeDBIDStorage(ids, hints);
   }
 
   /**
@@ -85,7 +109,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints) {
-    return DataStoreFactory.FACTORY.makeDoubleStorage(ids, hints);
+    return factory.makeDoubleStorage(ids, hints);
   }
 
   /**
@@ -98,7 +122,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints, double def) {
-    return DataStoreFactory.FACTORY.makeDoubleStorage(ids, hints, def);
+    return factory.makeDoubleStorage(ids, hints, def);
   }
 
   /**
@@ -110,7 +134,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints) {
-    return DataStoreFactory.FACTORY.makeIntegerStorage(ids, hints);
+    return factory.makeIntegerStorage(ids, hints);
   }
 
   /**
@@ -123,7 +147,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints, int def) {
-    return DataStoreFactory.FACTORY.makeIntegerStorage(ids, hints, def);
+    return factory.makeIntegerStorage(ids, hints, def);
   }
 
   /**
@@ -136,7 +160,7 @@ public final class DataStoreUtil {
    * @return new record store
    */
   public static WritableRecordStore makeRecordStorage(DBIDs ids, int hints, Class<?>... dataclasses) {
-    return DataStoreFactory.FACTORY.makeRecordStorage(ids, hints, dataclasses);
+    return factory.makeRecordStorage(ids, hints, dataclasses);
   }
 
   /**
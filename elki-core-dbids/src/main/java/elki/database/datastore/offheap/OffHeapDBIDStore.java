@@ -0,0 +1,147 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.datastore.offheap;
+
+import static elki.database.datastore.offheap.OffHeapDataStoreFactory.SEGMENT_MASK;
+import static elki.database.datastore.offheap.OffHeapDataStoreFactory.SEGMENT_SHIFT;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import elki.database.datastore.DataStoreIDMap;
+import elki.database.datastore.WritableDBIDDataStore;
+import elki.database.ids.DBID;
+import elki.database.ids.DBIDFactory;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDVar;
+
+/**
+ * DBID store backed by off-heap buffers, storing the integer DBIDs.
+ * <p>
+ * Only absolute buffer accesses are used, so different objects may be written
+ * concurrently by different threads.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @composed - - - elki.database.datastore.DataStoreIDMap
+ */
+public class OffHeapDBIDStore implements WritableDBIDDataStore {
+  /**
+   * Data buffer segments
+   */
+  private IntBuffer[] data;
+
+  /**
+   * Number of objects stored.
+   */
+  private int size;
+
+  /**
+   * Integer representation of the invalid DBID.
+   */
+  private final int invalid = DBIDUtil.asInteger(DBIDUtil.invalid());
+
+  /**
+   * DBID to index map
+   */
+  private DataStoreIDMap idmap;
+
+  /**
+   * Constructor.
+   *
+   * @param segments Zero-filled buffer segments
+   * @param size Size
+   * @param idmap ID map
+   */
+  public OffHeapDBIDStore(ByteBuffer[] segments, int size, DataStoreIDMap idmap) {
+    super();
+    this.data = new IntBuffer[segments.length];
+    for(int i = 0; i < segments.length; i++) {
+      data[i] = segments[i].asIntBuffer();
+    }
+    this.size = size;
+    this.idmap = idmap;
+    if(invalid != 0) {
+      clear();
+    }
+  }
+
+  /**
+   * Get the integer representation of the stored DBID.
+   *
+   * @param id Object
+   * @return Stored value
+   */
+  private int getInt(DBIDRef id) {
+    final int off = idmap.mapDBIDToOffset(id);
+    return data[off >>> SEGMENT_SHIFT].get(off & SEGMENT_MASK);
+  }
+
+  @Override
+  @Deprecated
+  public DBID get(DBIDRef id) {
+    return DBIDUtil.importInteger(getInt(id));
+  }
+
+  @Override
+  public DBIDVar assignVar(DBIDRef id, DBIDVar var) {
+    return DBIDFactory.FACTORY.assignVar(var, getInt(id));
+  }
+
+  @Override
+  @Deprecated
+  public DBID put(DBIDRef id, DBID value) {
+    DBID ret = get(id);
+    putDBID(id, value);
+    return ret;
+  }
+
+  @Override
+  public void putDBID(DBIDRef id, DBIDRef value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    data[off >>> SEGMENT_SHIFT].put(off & SEGMENT_MASK, DBIDUtil.asInteger(value));
+  }
+
+  @Override
+  public void put(DBIDRef id, DBIDRef value) {
+    putDBID(id, value);
+  }
+
+  @Override
+  public void destroy() {
+    data = null;
+    idmap = null;
+  }
+
+  @Override
+  public void clear() {
+    for(int i = 0; i < size; i++) {
+      data[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, invalid);
+    }
+  }
+
+  @Override
+  public void delete(DBIDRef id) {
+    put(id, DBIDUtil.invalid());
+  }
+}
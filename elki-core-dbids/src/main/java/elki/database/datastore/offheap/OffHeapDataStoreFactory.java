@@ -0,0 +1,245 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.datastore.offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.WritableDBIDDataStore;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.datastore.WritableRecordStore;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDs;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Storage factory that keeps primitive double, integer and DBID stores outside
+ * of the Java heap, either in direct buffers or in memory-mapped temporary
+ * files. This reduces heap size and garbage collection cost for very large
+ * data sets, where per-object stores (e.g., assignments, reachabilities, or
+ * outlier scores) would otherwise occupy a large part of the heap.
+ * <p>
+ * Object stores, record stores, stores for non-range DBIDs, and stores
+ * smaller than the minimum size are delegated to the
+ * {@link DataStoreFactory#FACTORY in-memory factory}.
+ * <p>
+ * Note that direct buffers are limited by the JVM option
+ * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size;
+ * memory-mapped files are only limited by the address space and disk.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @stereotype factory
+ * @navhas - create - OffHeapDoubleStore
+ * @navhas - create - OffHeapIntegerStore
+ * @navhas - create - OffHeapDBIDStore
+ */
+public class OffHeapDataStoreFactory implements DataStoreFactory {
+  /**
+   * Number of bits for the offset within a buffer segment.
+   */
+  static final int SEGMENT_SHIFT = 27;
+
+  /**
+   * Mask for the offset within a buffer segment.
+   */
+  static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+  /**
+   * Directory for memory-mapped files, {@code null} for direct buffers.
+   */
+  private Path directory;
+
+  /**
+   * Minimum number of objects to store off-heap.
+   */
+  private int minsize;
+
+  /**
+   * Constructor.
+   *
+   * @param directory Directory for memory-mapped temporary files, {@code null}
+   *        to use direct buffers
+   * @param minsize Minimum number of objects to store off-heap
+   */
+  public OffHeapDataStoreFactory(Path directory, int minsize) {
+    super();
+    this.directory = directory;
+    this.minsize = minsize;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> WritableDataStore<T> makeStorage(DBIDs ids, int hints, Class<? super T> dataclass) {
+    if(Double.class.equals(dataclass)) {
+      return (WritableDataStore<T>) makeDoubleStorage(ids, hints);
+    }
+    if(Integer.class.equals(dataclass)) {
+      return (WritableDataStore<T>) makeIntegerStorage(ids, hints);
+    }
+    return FACTORY.makeStorage(ids, hints, dataclass);
+  }
+
+  @Override
+  public WritableDBIDDataStore makeDBIDStorage(DBIDs ids, int hints) {
+    if(useOffHeap(ids)) {
+      DBIDRange range = (DBIDRange) ids;
+      return new OffHeapDBIDStore(allocate(range.size(), Integer.BYTES), range.size(), range);
+    }
+    return FACTORY.makeDBIDStorage(ids, hints);
+  }
+
+  @Override
+  public WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints) {
+    return makeDoubleStorage(ids, hints, Double.NaN);
+  }
+
+  @Override
+  public WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints, double def) {
+    if(useOffHeap(ids)) {
+      DBIDRange range = (DBIDRange) ids;
+      return new OffHeapDoubleStore(allocate(range.size(), Double.BYTES), range.size(), range, def);
+    }
+    return FACTORY.makeDoubleStorage(ids, hints, def);
+  }
+
+  @Override
+  public WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints) {
+    return makeIntegerStorage(ids, hints, 0);
+  }
+
+  @Override
+  public WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints, int def) {
+    if(useOffHeap(ids)) {
+      DBIDRange range = (DBIDRange) ids;
+      return new OffHeapIntegerStore(allocate(range.size(), Integer.BYTES), range.size(), range, def);
+    }
+    return FACTORY.makeIntegerStorage(ids, hints, def);
+  }
+
+  @Override
+  public WritableRecordStore makeRecordStorage(DBIDs ids, int hints, Class<?>... dataclasses) {
+    return FACTORY.makeRecordStorage(ids, hints, dataclasses);
+  }
+
+  /**
+   * Test whether a store for these objects is kept off-heap.
+   *
+   * @param ids Objects
+   * @return {@code true} if off-heap storage is used
+   */
+  private boolean useOffHeap(DBIDs ids) {
+    return ids instanceof DBIDRange && ids.size() >= minsize;
+  }
+
+  /**
+   * Allocate zero-filled buffer segments of at most
+   * {@code 1 << SEGMENT_SHIFT} elements each.
+   *
+   * @param size Number of elements
+   * @param bytes Bytes per element
+   * @return Buffer segments, in native byte order
+   */
+  protected ByteBuffer[] allocate(int size, int bytes) {
+    final int nseg = (size + SEGMENT_MASK) >>> SEGMENT_SHIFT;
+    ByteBuffer[] segments = new ByteBuffer[Math.max(nseg, 1)];
+    if(directory == null) {
+      for(int i = 0, rem = size; i < segments.length; i++, rem -= 1 << SEGMENT_SHIFT) {
+        segments[i] = ByteBuffer.allocateDirect(Math.min(rem, 1 << SEGMENT_SHIFT) * bytes).order(ByteOrder.nativeOrder());
+      }
+      return segments;
+    }
+    try {
+      Path file = Files.createTempFile(directory, "elki-", ".store");
+      // The mappings remain valid after the file is closed and deleted.
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+        long pos = 0;
+        for(int i = 0, rem = size; i < segments.length; i++, rem -= 1 << SEGMENT_SHIFT) {
+          final long len = Math.min(rem, 1 << SEGMENT_SHIFT) * (long) bytes;
+          segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, pos, len).order(ByteOrder.nativeOrder());
+          pos += len;
+        }
+      }
+      return segments;
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not create memory-mapped data store in " + directory, e);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Directory for memory-mapped temporary files.
+     */
+    public static final OptionID DIRECTORY_ID = new OptionID("offheap.directory", "Directory for memory-mapped temporary files. If not given, direct buffers are used.");
+
+    /**
+     * Minimum number of objects to store off-heap.
+     */
+    public static final OptionID MINSIZE_ID = new OptionID("offheap.minsize", "Minimum number of objects for a data store to be kept off-heap.");
+
+    /**
+     * Directory for memory-mapped files.
+     */
+    protected Path directory;
+
+    /**
+     * Minimum number of objects to store off-heap.
+     */
+    protected int minsize;
+
+    @Override
+    public void configure(Parameterization config) {
+      new FileParameter(DIRECTORY_ID, FileParameter.FileType.DIRECTORY) //
+          .setOptional(true) //
+          .grab(config, x -> directory = Paths.get(x));
+      new IntParameter(MINSIZE_ID, 10000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> minsize = x);
+    }
+
+    @Override
+    public OffHeapDataStoreFactory make() {
+      return new OffHeapDataStoreFactory(directory, minsize);
+    }
+  }
+}
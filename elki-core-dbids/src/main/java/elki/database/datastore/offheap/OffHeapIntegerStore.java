@@ -0,0 +1,143 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.datastore.offheap;
+
+import static elki.database.datastore.offheap.OffHeapDataStoreFactory.SEGMENT_MASK;
+import static elki.database.datastore.offheap.OffHeapDataStoreFactory.SEGMENT_SHIFT;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import elki.database.datastore.DataStoreIDMap;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.DBIDRef;
+
+/**
+ * Integer store backed by off-heap buffers.
+ * <p>
+ * Only absolute buffer accesses are used, so different objects may be written
+ * concurrently by different threads.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @composed - - - elki.database.datastore.DataStoreIDMap
+ */
+public class OffHeapIntegerStore implements WritableIntegerDataStore {
+  /**
+   * Data buffer segments
+   */
+  private IntBuffer[] data;
+
+  /**
+   * Number of objects stored.
+   */
+  private int size;
+
+  /**
+   * Default value.
+   */
+  private int def;
+
+  /**
+   * DBID to index map
+   */
+  private DataStoreIDMap idmap;
+
+  /**
+   * Constructor.
+   *
+   * @param segments Zero-filled buffer segments
+   * @param size Size
+   * @param idmap ID map
+   * @param def Default value
+   */
+  public OffHeapIntegerStore(ByteBuffer[] segments, int size, DataStoreIDMap idmap, int def) {
+    super();
+    this.data = new IntBuffer[segments.length];
+    for(int i = 0; i < segments.length; i++) {
+      data[i] = segments[i].asIntBuffer();
+    }
+    this.size = size;
+    this.def = def;
+    this.idmap = idmap;
+    if(def != 0) {
+      clear();
+    }
+  }
+
+  @Override
+  @Deprecated
+  public Integer get(DBIDRef id) {
+    return Integer.valueOf(intValue(id));
+  }
+
+  @Override
+  @Deprecated
+  public Integer put(DBIDRef id, Integer value) {
+    return Integer.valueOf(putInt(id, value.intValue()));
+  }
+
+  @Override
+  public int intValue(DBIDRef id) {
+    final int off = idmap.mapDBIDToOffset(id);
+    return data[off >>> SEGMENT_SHIFT].get(off & SEGMENT_MASK);
+  }
+
+  @Override
+  public int putInt(DBIDRef id, int value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final IntBuffer seg = data[off >>> SEGMENT_SHIFT];
+    final int ret = seg.get(off & SEGMENT_MASK);
+    seg.put(off & SEGMENT_MASK, value);
+    return ret;
+  }
+
+  @Override
+  public int put(DBIDRef id, int value) {
+    return putInt(id, value);
+  }
+
+  @Override
+  public void increment(DBIDRef id, int adjust) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final IntBuffer seg = data[off >>> SEGMENT_SHIFT];
+    seg.put(off & SEGMENT_MASK, seg.get(off & SEGMENT_MASK) + adjust);
+  }
+
+  @Override
+  public void clear() {
+    for(int i = 0; i < size; i++) {
+      data[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, def);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    data = null;
+    idmap = null;
+  }
+
+  @Override
+  public void delete(DBIDRef id) {
+    throw new UnsupportedOperationException("Can't delete from a static array storage.");
+  }
+}
@@ -0,0 +1,29 @@
+/**
+ * Off-heap data store <em>implementation</em> for ELKI, using direct or
+ * memory-mapped buffers for primitive storage.
+ *
+ * @opt include .*elki.database.datastore.WritableIntegerDataStore
+ * @opt include .*elki.database.datastore.WritableDoubleDataStore
+ * @opt include .*elki.database.datastore.WritableDBIDDataStore
+ */
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.datastore.offheap;
@@ -14,10 +14,11 @@
  * <h2>How to use:</h2>
  * {@code
  * // Storage for the outlier score of each ID. 
- * final WritableDoubleDataStore scores = DataStoreFactory.FACTORY.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+ * final WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
  * }
  * 
  * @opt hide datastore.memory
+ * @opt hide datastore.offheap
  * @opt hide index.preprocessed
  */
 /*
@@ -20,6 +20,8 @@
  */
 package elki.distance.minkowski;
 
+import elki.data.ArrayKernels;
+import elki.data.DoubleArrayVector;
 import elki.data.NumberVector;
 import elki.data.spatial.SpatialComparable;
 import elki.utilities.Alias;
@@ -53,6 +55,21 @@ public class EuclideanDistance extends LPIntegerNormDistance {
     super(2);
   }
 
+  /**
+   * Incomplete squared distance for index start to end only, on arrays.
+   * 
+   * @param v1 First data array
+   * @param o1 Offset in first array
+   * @param v2 Second data array
+   * @param o2 Offset in second array
+   * @param start Start index
+   * @param end End index
+   * @return Sum of squares
+   */
+  private double preDistance(double[] v1, int o1, double[] v2, int o2, int start, int end) {
+    return ArrayKernels.squaredEuclidean(v1, o1 + start, v2, o2 + start, end - start);
+  }
+
   /**
    * Incomplete squared distance for index start to end only.
    * 
@@ -63,6 +80,10 @@ public class EuclideanDistance extends LPIntegerNormDistance {
    * @return Sum of squares
    */
   private double preDistance(NumberVector v1, NumberVector v2, int start, int end) {
+    if(v1 instanceof DoubleArrayVector && v2 instanceof DoubleArrayVector) {
+      final DoubleArrayVector a1 = (DoubleArrayVector) v1, a2 = (DoubleArrayVector) v2;
+      return preDistance(a1.getData(), a1.getOffset(), a2.getData(), a2.getOffset(), start, end);
+    }
     double agg = 0.;
     for(int d = start; d < end; d++) {
       final double delta = v1.doubleValue(d) - v2.doubleValue(d);
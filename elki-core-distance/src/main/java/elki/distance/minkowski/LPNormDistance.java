@@ -20,6 +20,7 @@
  */
 package elki.distance.minkowski;
 
+import elki.data.DoubleArrayVector;
 import elki.data.NumberVector;
 import elki.data.spatial.SpatialComparable;
 import elki.data.type.SimpleTypeInformation;
@@ -71,6 +72,16 @@ public class LPNormDistance implements SpatialPrimitiveDistance<NumberVector>, N
     this.invp = 1. / p;
   }
 
+  private double preDistance(double[] v1, int o1, double[] v2, int o2, final int start, final int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v1[o1 + d], yd = v2[o2 + d];
+      final double delta = xd >= yd ? xd - yd : yd - xd;
+      agg += FastMath.pow(delta, p);
+    }
+    return agg;
+  }
+
   /**
    * Compute unscaled distance in a range of dimensions.
    * 
@@ -81,6 +92,10 @@ public class LPNormDistance implements SpatialPrimitiveDistance<NumberVector>, N
    * @return Aggregated values.
    */
   private double preDistance(NumberVector v1, NumberVector v2, final int start, final int end) {
+    if(v1 instanceof DoubleArrayVector && v2 instanceof DoubleArrayVector) {
+      final DoubleArrayVector a1 = (DoubleArrayVector) v1, a2 = (DoubleArrayVector) v2;
+      return preDistance(a1.getData(), a1.getOffset(), a2.getData(), a2.getOffset(), start, end);
+    }
     double agg = 0.;
     for(int d = start; d < end; d++) {
       final double xd = v1.doubleValue(d), yd = v2.doubleValue(d);
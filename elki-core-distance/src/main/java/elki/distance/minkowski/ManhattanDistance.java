@@ -20,6 +20,8 @@
  */
 package elki.distance.minkowski;
 
+import elki.data.ArrayKernels;
+import elki.data.DoubleArrayVector;
 import elki.data.NumberVector;
 import elki.data.spatial.SpatialComparable;
 import elki.utilities.Alias;
@@ -51,7 +53,15 @@ public class ManhattanDistance extends LPIntegerNormDistance {
     super(1);
   }
 
+  private double preDistance(double[] v1, int o1, double[] v2, int o2, int start, int end) {
+    return ArrayKernels.manhattan(v1, o1 + start, v2, o2 + start, end - start);
+  }
+
   private double preDistance(NumberVector v1, NumberVector v2, int start, int end) {
+    if(v1 instanceof DoubleArrayVector && v2 instanceof DoubleArrayVector) {
+      final DoubleArrayVector a1 = (DoubleArrayVector) v1, a2 = (DoubleArrayVector) v2;
+      return preDistance(a1.getData(), a1.getOffset(), a2.getData(), a2.getOffset(), start, end);
+    }
     double agg = 0.;
     for(int d = start; d < end; d++) {
       final double xd = v1.doubleValue(d), yd = v2.doubleValue(d);
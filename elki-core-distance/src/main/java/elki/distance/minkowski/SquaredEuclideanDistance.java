@@ -20,6 +20,8 @@
  */
 package elki.distance.minkowski;
 
+import elki.data.ArrayKernels;
+import elki.data.DoubleArrayVector;
 import elki.data.NumberVector;
 import elki.data.SparseNumberVector;
 import elki.data.spatial.SpatialComparable;
@@ -65,7 +67,25 @@ public class SquaredEuclideanDistance extends AbstractNumberVectorDistance imple
     return agg;
   }
 
+  private double preDistance(float[] v1, float[] v2, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      // Widen before subtracting, to not lose precision:
+      final double delta = (double) v1[d] - v2[d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  private double preDistance(double[] v1, int o1, double[] v2, int o2, int start, int end) {
+    return ArrayKernels.squaredEuclidean(v1, o1 + start, v2, o2 + start, end - start);
+  }
+
   private double preDistance(NumberVector v1, NumberVector v2, int start, int end) {
+    if(v1 instanceof DoubleArrayVector && v2 instanceof DoubleArrayVector) {
+      final DoubleArrayVector a1 = (DoubleArrayVector) v1, a2 = (DoubleArrayVector) v2;
+      return preDistance(a1.getData(), a1.getOffset(), a2.getData(), a2.getOffset(), start, end);
+    }
     double agg = 0.;
     for(int d = start; d < end; d++) {
       final double delta = v1.doubleValue(d) - v2.doubleValue(d);
@@ -117,6 +137,15 @@ public class SquaredEuclideanDistance extends AbstractNumberVectorDistance imple
     return agg;
   }
 
+  private double preNorm(float[] v, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v[d];
+      agg += xd * xd;
+    }
+    return agg;
+  }
+
   private double preNormMBR(SpatialComparable mbr, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -163,6 +192,26 @@ public class SquaredEuclideanDistance extends AbstractNumberVectorDistance imple
     return agg;
   }
 
+  /**
+   * Special version for float arrays, computing in double precision.
+   * 
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @return squared Euclidean distance
+   */
+  public double distance(float[] v1, float[] v2) {
+    final int dim1 = v1.length, dim2 = v2.length;
+    final int mindim = dim1 < dim2 ? dim1 : dim2;
+    double agg = preDistance(v1, v2, 0, mindim);
+    if(dim1 > mindim) {
+      agg += preNorm(v1, mindim, dim1);
+    }
+    else if(dim2 > mindim) {
+      agg += preNorm(v2, mindim, dim2);
+    }
+    return agg;
+  }
+
   @Override
   public double norm(NumberVector v) {
     return preNorm(v, 0, v.getDimensionality());
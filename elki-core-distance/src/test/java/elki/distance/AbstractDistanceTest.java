@@ -26,9 +26,12 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.Random;
 
+import elki.data.DoubleArrayVector;
 import elki.data.DoubleVector;
+import elki.data.FloatVector;
 import elki.data.HyperBoundingBox;
 import elki.data.NumberVector;
+import elki.data.PackedDoubleVector;
 import elki.data.SparseDoubleVector;
 import elki.data.SparseNumberVector;
 import elki.data.spatial.SpatialComparable;
@@ -219,6 +222,43 @@ public abstract class AbstractDistanceTest {
     assertEquals("Distances not same", ref.minDist(v1, v2), test.minDist(v1, v2), tol);
   }
 
+  /**
+   * Check that the array access for {@link DoubleArrayVector} gives exactly
+   * the same results as the generic code path, also for vectors at an offset
+   * in a shared array, and of varying length.
+   *
+   * @param dist Distance function to check
+   */
+  public static void assertArrayFastPath(PrimitiveDistance<? super NumberVector> dist) {
+    final Random rnd = new FastNonThreadsafeRandom(2);
+    final int dim = TEST_DIM, iters = 1000;
+    for(int i = 0; i < iters; i++) {
+      // Multiples of 1/8 are exact in single precision, and their sums are
+      // exact in any order, so vectorized kernels must agree, too:
+      final int dim2 = dim + (i & 1) * 2;
+      float[] f1 = new float[dim], f2 = new float[dim2];
+      double[] packed = new double[3 + dim + dim2];
+      for(int d = 0; d < dim; d++) {
+        f1[d] = (float) (packed[3 + d] = (rnd.nextInt(2001) - 1000) / 8.);
+      }
+      for(int d = 0; d < dim2; d++) {
+        f2[d] = (float) (packed[3 + dim + d] = (rnd.nextInt(2001) - 1000) / 8.);
+      }
+      final NumberVector g1 = new FloatVector(f1), g2 = new FloatVector(f2);
+      final double expect = dist.distance(g1, g2);
+      final DoubleVector v1 = new DoubleVector(g1.toArray()), v2 = new DoubleVector(g2.toArray());
+      final PackedDoubleVector p1 = new PackedDoubleVector(packed, 3, dim);
+      final PackedDoubleVector p2 = new PackedDoubleVector(packed, 3 + dim, dim2);
+      assertEquals("Array access differs", expect, dist.distance(v1, v2), 0.);
+      assertEquals("Array access differs", expect, dist.distance(p1, p2), 0.);
+      assertEquals("Array access differs", expect, dist.distance(v1, p2), 0.);
+      assertEquals("Mixed access differs", expect, dist.distance(v1, g2), 0.);
+      if(dist.isSymmetric()) {
+        assertEquals("Array access differs", expect, dist.distance(p2, p1), 0.);
+      }
+    }
+  }
+
   /**
    * MBR consistency check, around 0.
    *
@@ -41,5 +41,6 @@ public class EuclideanDistanceTest extends AbstractDistanceTest {
     assertVaryingLengthBasic(dist, new double[] { 1, 0, 1, 1, MathUtil.SQRT2, 1 }, 0);
     assertSpatialConsistency(dist);
     assertNonnegativeSpatialConsistency(dist);
+    assertArrayFastPath(dist);
   }
 }
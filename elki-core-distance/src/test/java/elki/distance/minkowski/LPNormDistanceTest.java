@@ -49,6 +49,7 @@ public class LPNormDistanceTest extends AbstractDistanceTest {
     assertVaryingLengthBasic(dist, new double[] { 1, 0, 1, 1, 4, 1 }, 0);
     assertSpatialConsistency(dist);
     assertNonnegativeSpatialConsistency(dist);
+    assertArrayFastPath(dist);
     dist = new ELKIBuilder<>(LPNormDistance.class) //
         .with(LPNormDistance.Par.P_ID, 3) //
         .build();
@@ -40,5 +40,6 @@ public class ManhattanDistanceTest extends AbstractDistanceTest {
     assertVaryingLengthBasic(dist, new double[] { 1, 0, 1, 1, 2, 1 }, 0);
     assertSpatialConsistency(dist);
     assertNonnegativeSpatialConsistency(dist);
+    assertArrayFastPath(dist);
   }
 }
@@ -42,7 +42,17 @@ public class SquaredEuclideanDistanceTest extends AbstractDistanceTest {
     assertVaryingLengthBasic(dist, new double[] { 1, 0, 1, 1, 2, 1 }, 0);
     assertSpatialConsistency(dist);
     assertNonnegativeSpatialConsistency(dist);
+    assertArrayFastPath(dist);
     // Test low-level API:
     assertEquals("Basic 2", 1, dist.distance(BASIC[0].toArray(), BASIC[3].toArray()), 0);
   }
+
+  @Test
+  public void testFloatArrays() {
+    SquaredEuclideanDistance dist = SquaredEuclideanDistance.STATIC;
+    assertEquals("Float", 1, dist.distance(new float[] { 1, 0 }, new float[] { 0, 0 }), 0);
+    assertEquals("Float length", 2, dist.distance(new float[] { 1, 0 }, new float[] { 0, 0, 1 }), 0);
+    // The difference is not representable as float:
+    assertEquals("Float precision", 99999999.5 * 99999999.5, dist.distance(new float[] { 1e8f }, new float[] { .5f }), 0);
+  }
 }
@@ -22,10 +22,20 @@ package elki.parallel;
 
 import java.util.concurrent.*;
 
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.EnumParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+
 /**
- * Core for parallel processing in ELKI, based on {@link ThreadPoolExecutor}.
+ * Core for parallel processing in ELKI, based on {@link ThreadPoolExecutor}
+ * or, for adaptive work-stealing, on a {@link ForkJoinPool}.
  * <p>
- * TODO: make configurable how many threads are used.
+ * The core used by {@link ParallelExecutor} can be replaced with
+ * {@link #setCore}, e.g., to limit the number of threads of a job that shares
+ * the machine with other jobs.
  * 
  * @author Erich Schubert
  * @since 0.7.0
@@ -36,15 +46,39 @@ public class ParallelCore {
    */
   public static final int ALL_PROCESSORS = Runtime.getRuntime().availableProcessors();
 
+  /**
+   * Strategies to divide the work into chunks.
+   *
+   * @author Erich Schubert
+   */
+  public enum Chunking {
+    /**
+     * Cut the data into a fixed number of equally sized blocks, assigned
+     * round-robin to one task per thread. Cheapest, but stragglers can leave
+     * cores idle if the cost per object is skewed.
+     */
+    STATIC,
+    /**
+     * Guided self-scheduling: one worker per thread, each repeatedly claiming
+     * the next chunk, with chunks shrinking as the remaining work decreases.
+     */
+    GUIDED,
+    /**
+     * Recursive splitting of the range on a work-stealing {@link ForkJoinPool},
+     * splitting further only while other threads run out of work.
+     */
+    ADAPTIVE
+  }
+
   /**
    * Static core
    */
-  private static final ParallelCore STATIC = new ParallelCore(ALL_PROCESSORS);
+  private static volatile ParallelCore STATIC = new ParallelCore(ALL_PROCESSORS);
 
   /**
    * Executor service.
    */
-  private volatile ThreadPoolExecutor executor;
+  private volatile ExecutorService executor;
 
   /**
    * Number of connected submitters.
@@ -56,14 +90,30 @@ public class ParallelCore {
    */
   private int processors;
 
+  /**
+   * Chunking strategy.
+   */
+  private Chunking chunking;
+
   /**
    * Constructor.
    * 
    * @param processors Number of processors/threads to use
    */
   protected ParallelCore(int processors) {
+    this(processors, Chunking.STATIC);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param processors Number of processors/threads to use
+   * @param chunking Chunking strategy
+   */
+  public ParallelCore(int processors, Chunking chunking) {
     super();
-    this.processors = processors;
+    this.processors = processors > 0 ? processors : ALL_PROCESSORS;
+    this.chunking = chunking;
   }
 
   /**
@@ -75,13 +125,36 @@ public class ParallelCore {
     return STATIC;
   }
 
+  /**
+   * Replace the static core object used by subsequent parallel executions.
+   * <p>
+   * Executions already running will finish on the previous core, which
+   * releases its threads once they are done.
+   * 
+   * @param core New core
+   */
+  public static void setCore(ParallelCore core) {
+    STATIC = core;
+  }
+
   /**
    * Get desired level of parallelism
    * 
    * @return Number of threads to run in parallel
    */
   public int getParallelism() {
-    return executor != null ? executor.getMaximumPoolSize() : processors;
+    final ExecutorService executor = this.executor;
+    return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getMaximumPoolSize() : //
+        executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : processors;
+  }
+
+  /**
+   * Get the chunking strategy.
+   * 
+   * @return Chunking strategy
+   */
+  public Chunking getChunking() {
+    return chunking;
   }
 
   /**
@@ -95,15 +168,44 @@ public class ParallelCore {
     return executor.submit(task);
   }
 
+  /**
+   * Run a fork-join task and wait for its completion.
+   * <p>
+   * When the core is not backed by a {@link ForkJoinPool} (i.e., the chunking
+   * strategy is not {@link Chunking#ADAPTIVE}), the task is submitted as a
+   * single callable, and will not be split further.
+   * 
+   * @param <T> Result type
+   * @param task Task to run
+   * @return Task result
+   * @throws ExecutionException when the task failed
+   * @throws InterruptedException when interrupted
+   */
+  public <T> T invoke(ForkJoinTask<T> task) throws ExecutionException, InterruptedException {
+    final ExecutorService executor = this.executor;
+    if(executor instanceof ForkJoinPool) {
+      return ((ForkJoinPool) executor).submit(task).get();
+    }
+    return executor.submit((Callable<T>) task::invoke).get();
+  }
+
   /**
    * Connect to the executor.
    */
   public synchronized void connect() {
+    if(chunking == Chunking.ADAPTIVE) {
+      if(++connected == 1 && executor == null) {
+        executor = new ForkJoinPool(processors);
+      }
+      return;
+    }
     if(executor == null) {
-      executor = new ThreadPoolExecutor(0, processors, 10L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(0, processors, 10L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
       executor.allowCoreThreadTimeOut(true);
+      this.executor = executor;
     }
     if(++connected == 1) {
+      ThreadPoolExecutor executor = (ThreadPoolExecutor) this.executor;
       executor.allowCoreThreadTimeOut(false);
       executor.setCorePoolSize(executor.getMaximumPoolSize());
     }
@@ -114,8 +216,55 @@ public class ParallelCore {
    */
   public synchronized void disconnect() {
     if(--connected == 0) {
+      if(executor instanceof ForkJoinPool) {
+        executor.shutdown();
+        executor = null;
+        return;
+      }
+      ThreadPoolExecutor executor = (ThreadPoolExecutor) this.executor;
       executor.allowCoreThreadTimeOut(true);
       executor.setCorePoolSize(0);
     }
   }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Number of threads to use for parallel processing.
+     */
+    public static final OptionID PROCESSORS_ID = new OptionID("parallel.processors", "Number of threads to use for parallel algorithms (default: number of available processors).");
+
+    /**
+     * Chunking strategy for parallel processing.
+     */
+    public static final OptionID CHUNKING_ID = new OptionID("parallel.chunking", "Strategy for dividing the data among threads. STATIC uses fixed blocks, GUIDED lets threads claim shrinking chunks, ADAPTIVE uses work-stealing with recursive splitting.");
+
+    /**
+     * Number of threads to use.
+     */
+    protected int processors = ALL_PROCESSORS;
+
+    /**
+     * Chunking strategy.
+     */
+    protected Chunking chunking = Chunking.STATIC;
+
+    @Override
+    public void configure(Parameterization config) {
+      new IntParameter(PROCESSORS_ID, ALL_PROCESSORS) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> processors = x);
+      new EnumParameter<Chunking>(CHUNKING_ID, Chunking.class, Chunking.STATIC) //
+          .grab(config, x -> chunking = x);
+    }
+
+    @Override
+    public ParallelCore make() {
+      return new ParallelCore(processors, chunking);
+    }
+  }
 }
@@ -21,22 +21,35 @@
 package elki.parallel;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import elki.database.ids.ArrayDBIDs;
 import elki.database.ids.DBIDArrayIter;
-import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.parallel.processor.Processor;
+import elki.parallel.processor.Reducer;
 import elki.parallel.variables.SharedVariable;
 import elki.parallel.variables.SharedVariable.Instance;
 
 /**
  * Class to run processors in parallel, on all available cores.
+ * <p>
+ * The data is divided according to the {@link ParallelCore.Chunking} strategy
+ * of the current {@link ParallelCore}. Each worker thread instantiates the
+ * processors once, and cleans them up once at the end, independent of the
+ * number of chunks it processed.
+ * <p>
+ * For algorithms with multiple phases, use a {@link ParallelPipeline}, which
+ * keeps the executor connected in between the phases.
  *
  * TODO: add progress
  *
@@ -44,9 +57,17 @@ import elki.parallel.variables.SharedVariable.Instance;
  * @since 0.7.0
  *
  * @has - - - BlockArrayRunner
+ * @has - - - GuidedRunner
+ * @has - - - AdaptiveRangeTask
  * @assoc - - - ParallelCore
  */
 public final class ParallelExecutor {
+  /**
+   * Minimum number of objects to process in one chunk for the dynamic
+   * strategies, to amortize the scheduling overhead.
+   */
+  private static final int MIN_CHUNK = 16;
+
   /**
    * Private constructor. Static methods only.
    */
@@ -61,68 +82,226 @@ public final class ParallelExecutor {
    * @param procs Processors to run
    */
   public static void run(DBIDs ids, Processor... procs) {
-    ParallelCore core = ParallelCore.getCore();
-    core.connect();
+    try (ParallelPipeline pipeline = new ParallelPipeline(ids)) {
+      pipeline.run(procs);
+    }
+  }
+
+  /**
+   * Run a reduction on all available CPUs.
+   *
+   * @param ids IDs to process
+   * @param reducer Reducer
+   * @param <A> Accumulator type
+   * @return Combined accumulator
+   */
+  public static <A> A reduce(DBIDs ids, Reducer<A> reducer) {
+    try (ParallelPipeline pipeline = new ParallelPipeline(ids)) {
+      return pipeline.reduce(reducer);
+    }
+  }
+
+  /**
+   * Process an array with the given type of worker, using the chunking
+   * strategy of the core.
+   *
+   * @param core Parallel core (must be connected)
+   * @param aids IDs to process
+   * @param factory Worker factory
+   * @param <W> Worker type
+   * @return Workers used, in a fixed order for static chunking
+   */
+  static <W extends Worker> List<W> execute(ParallelCore core, ArrayDBIDs aids, Supplier<W> factory) {
     try {
-      // TODO: try different strategies anyway!
-      ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
-      final int size = aids.size();
-      int numparts = core.getParallelism();
-      // TODO: are there better heuristics for choosing this?
-      numparts = (size > numparts * numparts * 16) ? numparts * Math.max(1, numparts - 1) : numparts;
-
-      final int blocksize = (size + (numparts - 1)) / numparts;
-      List<Future<ArrayDBIDs>> parts = new ArrayList<>(numparts);
-      for(int i = 0; i < numparts; i++) {
-        final int start = i * blocksize;
-        final int end = Math.min(start + blocksize, size);
-        Callable<ArrayDBIDs> run = new BlockArrayRunner(aids, start, end, procs);
-        parts.add(core.submit(run));
+      switch(core.getChunking()){
+      case ADAPTIVE:
+        return runAdaptive(core, aids, factory);
+      case GUIDED:
+        return runGuided(core, aids, factory);
+      case STATIC:
+      default:
+        return runStatic(core, aids, factory);
       }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+  }
 
-      for(Future<ArrayDBIDs> fut : parts) {
-        fut.get();
+  /**
+   * Combine partial results pairwise in a balanced binary tree.
+   * <p>
+   * Neighboring partial results are merged, such that the order of the merges
+   * only depends on the order of the input list. Independent merges of the
+   * same tree level are run in parallel.
+   *
+   * @param core Parallel core (must be connected)
+   * @param parts Partial results, will be modified
+   * @param reducer Reducer to merge the results
+   * @param <A> Accumulator type
+   * @return Merged result
+   */
+  static <A> A mergeTree(ParallelCore core, List<A> parts, Reducer<A> reducer) {
+    int n = parts.size();
+    if(n == 0) {
+      return reducer.accumulator();
+    }
+    try {
+      List<Future<A>> futures = new ArrayList<>(n >>> 1);
+      while(n > 1) {
+        final int pairs = n >>> 1;
+        if(pairs == 1) {
+          parts.set(0, reducer.merge(parts.get(0), parts.get(1)));
+        }
+        else {
+          futures.clear();
+          for(int i = 0; i < pairs; i++) {
+            final A left = parts.get(i << 1), right = parts.get((i << 1) + 1);
+            futures.add(core.submit(() -> reducer.merge(left, right)));
+          }
+          for(int i = 0; i < pairs; i++) {
+            parts.set(i, futures.get(i).get());
+          }
+        }
+        if((n & 1) == 1) {
+          parts.set(pairs, parts.get(n - 1));
+        }
+        n = (n + 1) >>> 1;
       }
+      return parts.get(0);
     }
     catch(ExecutionException e) {
-      throw new RuntimeException("Processor execution failed.", e);
+      throw new RuntimeException("Reducer execution failed.", e);
     }
     catch(InterruptedException e) {
       throw new RuntimeException("Parallel execution interrupted.");
     }
-    finally {
-      core.disconnect();
+  }
+
+  /**
+   * Run with a static partitioning into blocks, one worker per thread. For
+   * large data, there are more blocks than threads, and each worker processes
+   * every n-th block.
+   *
+   * @param core Parallel core
+   * @param aids IDs to process
+   * @param factory Worker factory
+   * @param <W> Worker type
+   * @return Workers used, in the order of their first block
+   * @throws ExecutionException on errors
+   * @throws InterruptedException on interruption
+   */
+  private static <W extends Worker> List<W> runStatic(ParallelCore core, ArrayDBIDs aids, Supplier<W> factory) throws ExecutionException, InterruptedException {
+    final int size = aids.size();
+    final int numworkers = core.getParallelism();
+    // TODO: are there better heuristics for choosing this?
+    final int numparts = (size > numworkers * numworkers * 16) ? numworkers * Math.max(1, numworkers - 1) : numworkers;
+
+    final int blocksize = (size + (numparts - 1)) / numparts;
+    List<Future<W>> parts = new ArrayList<>(numworkers);
+    for(int i = 0; i < numworkers; i++) {
+      parts.add(core.submit(new BlockArrayRunner<>(aids, i * blocksize, blocksize, numworkers * blocksize, factory.get())));
+    }
+
+    List<W> workers = new ArrayList<>(numworkers);
+    for(Future<W> fut : parts) {
+      workers.add(fut.get());
     }
+    return workers;
   }
 
   /**
-   * Run for an array part, without step size.
+   * Run with guided self-scheduling, one worker per thread.
    *
-   * @author Erich Schubert
+   * @param core Parallel core
+   * @param aids IDs to process
+   * @param factory Worker factory
+   * @param <W> Worker type
+   * @return Workers used
+   * @throws ExecutionException on errors
+   * @throws InterruptedException on interruption
+   */
+  private static <W extends Worker> List<W> runGuided(ParallelCore core, ArrayDBIDs aids, Supplier<W> factory) throws ExecutionException, InterruptedException {
+    final int numworkers = Math.max(1, Math.min(core.getParallelism(), aids.size() / MIN_CHUNK));
+    AtomicInteger next = new AtomicInteger();
+    List<Future<W>> parts = new ArrayList<>(numworkers);
+    for(int i = 0; i < numworkers; i++) {
+      parts.add(core.submit(new GuidedRunner<>(aids, next, numworkers, factory.get())));
+    }
+    List<W> workers = new ArrayList<>(numworkers);
+    for(Future<W> fut : parts) {
+      workers.add(fut.get());
+    }
+    return workers;
+  }
+
+  /**
+   * Run with adaptive recursive splitting on a work-stealing pool.
    *
-   * @assoc - - - Processor
+   * @param core Parallel core
+   * @param aids IDs to process
+   * @param factory Worker factory
+   * @param <W> Worker type
+   * @return Workers used
+   * @throws ExecutionException on errors
+   * @throws InterruptedException on interruption
    */
-  protected static class BlockArrayRunner implements Callable<ArrayDBIDs>, Executor {
-    /**
-     * Array IDs to process
-     */
-    private ArrayDBIDs ids;
+  private static <W extends Worker> List<W> runAdaptive(ParallelCore core, ArrayDBIDs aids, Supplier<W> factory) throws ExecutionException, InterruptedException {
+    if(aids.size() == 0) {
+      return Collections.emptyList();
+    }
+    ConcurrentHashMap<Thread, W> workers = new ConcurrentHashMap<>();
+    core.invoke(new AdaptiveRangeTask<>(aids, 0, aids.size(), factory, workers));
+    List<W> result = new ArrayList<>(workers.values());
+    for(W worker : result) {
+      worker.finish();
+    }
+    return result;
+  }
 
+  /**
+   * Worker processing chunks of the data, used by a single thread.
+   *
+   * @author Erich Schubert
+   */
+  abstract static class Worker {
     /**
-     * Start position
+     * Process a range of an array.
+     *
+     * @param iter Iterator, will be repositioned
+     * @param start Starting position
+     * @param end End position (exclusive)
      */
-    private int start;
+    abstract void process(DBIDArrayIter iter, int start, int end);
 
     /**
-     * End position
+     * Finish processing; called once after the last chunk.
      */
-    private int end;
+    abstract void finish();
+  }
 
+  /**
+   * Per-thread state of a worker: the processor instances and the shared
+   * variable instances.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - - - Processor
+   */
+  static class ProcessorWorker extends Worker implements Executor {
     /**
      * The processor masters that own the instances.
      */
     private Processor[] procs;
 
+    /**
+     * Processor instances, created on first use.
+     */
+    private Processor.Instance[] instances;
+
     /**
      * Variables map.
      */
@@ -131,34 +310,40 @@ public final class ParallelExecutor {
     /**
      * Constructor.
      *
-     * @param ids IDs to process
-     * @param start Starting position
-     * @param end End position
      * @param procs Processors to run
      */
-    protected BlockArrayRunner(ArrayDBIDs ids, int start, int end, Processor[] procs) {
+    ProcessorWorker(Processor[] procs) {
       super();
-      this.ids = ids;
-      this.start = start;
-      this.end = end;
       this.procs = procs;
     }
 
     @Override
-    public ArrayDBIDs call() {
-      Processor.Instance[] instances = new Processor.Instance[procs.length];
-      for(int i = 0; i < procs.length; i++) {
-        instances[i] = procs[i].instantiate(this);
+    void process(DBIDArrayIter iter, int start, int end) {
+      if(instances == null) {
+        instances = new Processor.Instance[procs.length];
+        for(int i = 0; i < procs.length; i++) {
+          instances[i] = procs[i].instantiate(this);
+        }
       }
-      for(DBIDArrayIter iter = ids.iter().seek(start); iter.valid() && iter.getOffset() < end; iter.advance()) {
+      for(iter.seek(start); iter.valid() && iter.getOffset() < end; iter.advance()) {
         for(int i = 0; i < instances.length; i++) {
           instances[i].map(iter);
         }
       }
+    }
+
+    /**
+     * Cleanup all processor instances, if any were created.
+     */
+    @Override
+    void finish() {
+      if(instances == null) {
+        return;
+      }
       for(int i = 0; i < instances.length; i++) {
         procs[i].cleanup(instances[i]);
       }
-      return ids;
+      instances = null;
     }
 
     @Override
@@ -172,4 +357,256 @@ public final class ParallelExecutor {
       return inst;
     }
   }
+
+  /**
+   * Per-thread state for a reduction: a single accumulator.
+   *
+   * @author Erich Schubert
+   *
+   * @param <A> Accumulator type
+   *
+   * @assoc - - - Reducer
+   */
+  static class ReduceWorker<A> extends Worker {
+    /**
+     * Reducer.
+     */
+    private Reducer<A> reducer;
+
+    /**
+     * Accumulator, created on first use.
+     */
+    A accumulator;
+
+    /**
+     * Constructor.
+     *
+     * @param reducer Reducer
+     */
+    ReduceWorker(Reducer<A> reducer) {
+      super();
+      this.reducer = reducer;
+    }
+
+    @Override
+    void process(DBIDArrayIter iter, int start, int end) {
+      final A acc = accumulator != null ? accumulator : (accumulator = reducer.accumulator());
+      for(iter.seek(start); iter.valid() && iter.getOffset() < end; iter.advance()) {
+        reducer.map(iter, acc);
+      }
+    }
+
+    @Override
+    void finish() {
+      // Accumulators are merged by the caller.
+    }
+  }
+
+  /**
+   * Run for blocks of an array part, with a fixed step size between blocks.
+   *
+   * @author Erich Schubert
+   *
+   * @param <W> Worker type
+   */
+  protected static class BlockArrayRunner<W extends Worker> implements Callable<W> {
+    /**
+     * Array IDs to process
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Start position of the first block
+     */
+    private int start;
+
+    /**
+     * Block size
+     */
+    private int blocksize;
+
+    /**
+     * Distance between the starts of two blocks
+     */
+    private int step;
+
+    /**
+     * Worker
+     */
+    private W worker;
+
+    /**
+     * Constructor.
+     *
+     * @param ids IDs to process
+     * @param start Starting position of the first block
+     * @param blocksize Block size
+     * @param step Distance between the starts of two blocks
+     * @param worker Worker
+     */
+    protected BlockArrayRunner(ArrayDBIDs ids, int start, int blocksize, int step, W worker) {
+      super();
+      this.ids = ids;
+      this.start = start;
+      this.blocksize = blocksize;
+      this.step = step;
+      this.worker = worker;
+    }
+
+    @Override
+    public W call() {
+      final int size = ids.size();
+      DBIDArrayIter iter = ids.iter();
+      for(long s = start; s < size; s += step) {
+        worker.process(iter, (int) s, (int) Math.min(s + blocksize, size));
+      }
+      worker.finish();
+      return worker;
+    }
+  }
+
+  /**
+   * Worker for guided self-scheduling: repeatedly claims the next chunk of
+   * the array, where the chunk size decreases with the remaining work.
+   *
+   * @author Erich Schubert
+   *
+   * @param <W> Worker type
+   */
+  protected static class GuidedRunner<W extends Worker> implements Callable<W> {
+    /**
+     * Array IDs to process
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Next position to process, shared by all workers.
+     */
+    private AtomicInteger next;
+
+    /**
+     * Number of concurrent workers.
+     */
+    private int numworkers;
+
+    /**
+     * Worker
+     */
+    private W worker;
+
+    /**
+     * Constructor.
+     *
+     * @param ids IDs to process
+     * @param next Shared position counter
+     * @param numworkers Number of concurrent workers
+     * @param worker Worker
+     */
+    protected GuidedRunner(ArrayDBIDs ids, AtomicInteger next, int numworkers, W worker) {
+      super();
+      this.ids = ids;
+      this.next = next;
+      this.numworkers = numworkers;
+      this.worker = worker;
+    }
+
+    @Override
+    public W call() {
+      final int size = ids.size();
+      DBIDArrayIter iter = ids.iter();
+      while(true) {
+        int start = next.get();
+        if(start >= size) {
+          break;
+        }
+        final int end = Math.min(size, start + Math.max(MIN_CHUNK, (size - start) / (numworkers << 1)));
+        if(next.compareAndSet(start, end)) {
+          worker.process(iter, start, end);
+        }
+      }
+      worker.finish();
+      return worker;
+    }
+  }
+
+  /**
+   * Fork-join task that splits a range recursively, while the other worker
+   * threads of the pool are short of work.
+   *
+   * @author Erich Schubert
+   *
+   * @param <W> Worker type
+   */
+  protected static class AdaptiveRangeTask<W extends Worker> extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Array IDs to process
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Range to process.
+     */
+    private int start, end;
+
+    /**
+     * Worker factory.
+     */
+    private Supplier<W> factory;
+
+    /**
+     * Workers, by thread.
+     */
+    private ConcurrentHashMap<Thread, W> workers;
+
+    /**
+     * Next forked sibling, to be joined.
+     */
+    private AdaptiveRangeTask<W> next;
+
+    /**
+     * Constructor.
+     *
+     * @param ids IDs to process
+     * @param start Starting position
+     * @param end End position (exclusive)
+     * @param factory Worker factory
+     * @param workers Workers, by thread
+     */
+    protected AdaptiveRangeTask(ArrayDBIDs ids, int start, int end, Supplier<W> factory, ConcurrentHashMap<Thread, W> workers) {
+      super();
+      this.ids = ids;
+      this.start = start;
+      this.end = end;
+      this.factory = factory;
+      this.workers = workers;
+    }
+
+    @Override
+    protected void compute() {
+      int end = this.end;
+      // Split off halves while there are idle threads to steal them:
+      AdaptiveRangeTask<W> forked = null;
+      if(inForkJoinPool()) {
+        while(end - start > MIN_CHUNK << 1 && getSurplusQueuedTaskCount() <= 2) {
+          final int mid = (start + end) >>> 1;
+          AdaptiveRangeTask<W> right = new AdaptiveRangeTask<>(ids, mid, end, factory, workers);
+          right.next = forked;
+          (forked = right).fork();
+          end = mid;
+        }
+      }
+      // Workers are only used by their own thread.
+      workers.computeIfAbsent(Thread.currentThread(), t -> factory.get()) //
+          .process(ids.iter(), start, end);
+      // Join in reverse order, executing tasks not yet stolen locally.
+      for(; forked != null; forked = forked.next) {
+        forked.join();
+      }
+    }
+  }
 }
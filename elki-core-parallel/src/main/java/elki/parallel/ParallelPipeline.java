@@ -0,0 +1,169 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
+import elki.parallel.ParallelExecutor.ProcessorWorker;
+import elki.parallel.ParallelExecutor.ReduceWorker;
+import elki.parallel.processor.Processor;
+import elki.parallel.processor.Reducer;
+
+/**
+ * Multi-phase parallel execution over the same set of objects.
+ * <p>
+ * Each call to {@link #run} or {@link #reduce} is one phase, and returns only
+ * once all objects have been processed, i.e., it acts as a barrier. In between
+ * phases, sequential code can be run, e.g., to update cluster centers. The
+ * executor stays connected for the lifetime of the pipeline, so the worker
+ * threads are kept alive in between the phases:
+ *
+ * <pre>
+ * try (ParallelPipeline pipeline = new ParallelPipeline(ids)) {
+ *   while(...) {
+ *     Sums sums = pipeline.reduce(assignmentReducer);
+ *     // sequential update
+ *     pipeline.run(boundUpdateProcessor);
+ *   }
+ * }
+ * </pre>
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @assoc - - - ParallelCore
+ * @assoc - - - Processor
+ * @assoc - - - Reducer
+ */
+public class ParallelPipeline implements AutoCloseable {
+  /**
+   * Parallel core used.
+   */
+  private ParallelCore core;
+
+  /**
+   * Objects to process.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Constructor, connecting to the current parallel core.
+   *
+   * @param ids Objects to process in each phase
+   */
+  public ParallelPipeline(DBIDs ids) {
+    super();
+    this.ids = DBIDUtil.ensureArray(ids);
+    this.core = ParallelCore.getCore();
+    core.connect();
+  }
+
+  /**
+   * Run processors on all objects, as one phase.
+   *
+   * @param procs Processors to run
+   */
+  public void run(Processor... procs) {
+    ParallelExecutor.execute(core, ids, () -> new ProcessorWorker(procs));
+  }
+
+  /**
+   * Run a reduction on all objects, as one phase.
+   * <p>
+   * With {@link ParallelCore.Chunking#STATIC} chunking, the partial results
+   * are merged in the same order in every run, i.e., floating point results
+   * are reproducible for the same number of threads.
+   *
+   * @param reducer Reducer
+   * @param <A> Accumulator type
+   * @return Combined accumulator
+   */
+  public <A> A reduce(Reducer<A> reducer) {
+    List<ReduceWorker<A>> workers = ParallelExecutor.execute(core, ids, () -> new ReduceWorker<>(reducer));
+    List<A> parts = new ArrayList<>(workers.size());
+    for(ReduceWorker<A> worker : workers) {
+      if(worker.accumulator != null) {
+        parts.add(worker.accumulator);
+      }
+    }
+    return ParallelExecutor.mergeTree(core, parts, reducer);
+  }
+
+  /**
+   * Run an action on all objects, as one phase. The action must be safe to
+   * run concurrently for different objects.
+   *
+   * @param action Action to run on each object
+   */
+  public void forEach(Consumer<? super DBIDArrayIter> action) {
+    ParallelExecutor.execute(core, ids, () -> new ReduceWorker<>(new Reducer<Void>() {
+      @Override
+      public Void accumulator() {
+        return null;
+      }
+
+      @Override
+      public void map(DBIDArrayIter it, Void acc) {
+        action.accept(it);
+      }
+
+      @Override
+      public Void merge(Void left, Void right) {
+        return null;
+      }
+    }));
+  }
+
+  /**
+   * Get the objects processed, in processing order.
+   *
+   * @return Objects
+   */
+  public ArrayDBIDs getDBIDs() {
+    return ids;
+  }
+
+  /**
+   * Get the number of threads used.
+   *
+   * @return Parallelism
+   */
+  public int getParallelism() {
+    return core.getParallelism();
+  }
+
+  /**
+   * Disconnect from the parallel core.
+   */
+  @Override
+  public void close() {
+    if(core != null) {
+      core.disconnect();
+      core = null;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel.processor;
+
+import elki.database.ids.DBIDArrayIter;
+
+/**
+ * Reduction over a set of objects, using typed per-thread accumulators that
+ * are combined pairwise in a tree once all objects have been processed.
+ * <p>
+ * In contrast to a {@link Processor}, no synchronization is needed to combine
+ * the results of the individual threads.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @param <A> Accumulator type
+ */
+public interface Reducer<A> {
+  /**
+   * Create a new, empty accumulator. May be called multiple times, for
+   * example for multiple threads.
+   *
+   * @return Accumulator
+   */
+  A accumulator();
+
+  /**
+   * Process ("map") a single object into an accumulator.
+   * <p>
+   * The iterator also provides the position of the object in the processed
+   * array, e.g., to record objects for processing in their original order.
+   * It must not be moved.
+   *
+   * @param it Object to map
+   * @param acc Accumulator of the current thread
+   */
+  void map(DBIDArrayIter it, A acc);
+
+  /**
+   * Combine two accumulators. The implementation may modify and return one of
+   * the two inputs, which will not be used afterwards.
+   * <p>
+   * The accumulators do not correspond to contiguous ranges of the data, and
+   * the order of the merges depends on the chunking strategy. The merge must
+   * therefore be associative and commutative; results that depend on the data
+   * order need to record the positions of the objects (see
+   * {@link #map(DBIDArrayIter, Object)}) and sort them afterwards. Only with
+   * {@link elki.parallel.ParallelCore.Chunking#STATIC} chunking and the same
+   * number of threads, the merge order is the same in every run.
+   *
+   * @param left First accumulator
+   * @param right Second accumulator
+   * @return Combined accumulator
+   */
+  A merge(A left, A right);
+}
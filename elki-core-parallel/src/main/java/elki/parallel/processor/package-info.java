@@ -6,8 +6,9 @@
  * it needs to be instantiated for every thread separately.
  * <p>
  * While this bears some similarity to mappers as used in Map Reduce, this is
- * not an implementation of a map-reduce framework. This is why there is no
- * "reducer" in the ELKI framework.
+ * not an implementation of a map-reduce framework. The
+ * {@link elki.parallel.processor.Reducer} API only provides per-thread
+ * accumulators that are combined in a tree after processing all objects.
  * <p>
  * A key difference is that mappers may be combined into the same thread, and
  * exchange values via the {@link elki.parallel.variables.SharedVariable} API.
@@ -0,0 +1,199 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.parallel.processor.Processor;
+import elki.parallel.processor.Reducer;
+
+/**
+ * Test that all chunking strategies of the parallel executor process every
+ * object exactly once, instantiate the processors at most once per thread,
+ * clean up every processor instance, and reduce correctly.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class ParallelExecutorTest {
+  /**
+   * Run the executor with the given chunking strategy.
+   *
+   * @param chunking Chunking strategy
+   * @param size Data size
+   */
+  private void runWith(ParallelCore.Chunking chunking, int size) {
+    ParallelCore prev = ParallelCore.getCore();
+    ParallelCore.setCore(new ParallelCore(4, chunking));
+    try {
+      DBIDRange ids = DBIDUtil.generateStaticDBIDRange(size);
+      CountingProcessor proc = new CountingProcessor(ids);
+      ParallelExecutor.run(ids, proc);
+      for(int i = 0; i < size; i++) {
+        assertEquals("Object not processed exactly once.", 1, proc.hits.get(i));
+      }
+      assertEquals("Not all objects counted.", size, proc.total.get());
+      assertEquals("Instances not cleaned up.", proc.instances.get(), proc.cleanups.get());
+      assertTrue("More than one instance per thread.", proc.instances.get() <= 4);
+      // Reduction, in two phases of a pipeline:
+      try (ParallelPipeline pipeline = new ParallelPipeline(ids)) {
+        for(int phase = 0; phase < 2; phase++) {
+          long[] sum = pipeline.reduce(new OffsetSumReducer(ids));
+          assertEquals("Reduction incorrect.", size * (size - 1L) / 2, sum[0]);
+          assertEquals("Reduction count incorrect.", size, sum[1]);
+        }
+      }
+    }
+    finally {
+      ParallelCore.setCore(prev);
+    }
+  }
+
+  @Test
+  public void testStatic() {
+    runWith(ParallelCore.Chunking.STATIC, 10007);
+    runWith(ParallelCore.Chunking.STATIC, 3);
+  }
+
+  @Test
+  public void testGuided() {
+    runWith(ParallelCore.Chunking.GUIDED, 10007);
+    runWith(ParallelCore.Chunking.GUIDED, 3);
+  }
+
+  @Test
+  public void testAdaptive() {
+    runWith(ParallelCore.Chunking.ADAPTIVE, 10007);
+    runWith(ParallelCore.Chunking.ADAPTIVE, 3);
+  }
+
+  /**
+   * Reducer summing the offsets of the objects, and counting them.
+   *
+   * @author Erich Schubert
+   */
+  private static class OffsetSumReducer implements Reducer<long[]> {
+    /**
+     * Range of IDs.
+     */
+    DBIDRange ids;
+
+    /**
+     * Constructor.
+     *
+     * @param ids ID range
+     */
+    OffsetSumReducer(DBIDRange ids) {
+      this.ids = ids;
+    }
+
+    @Override
+    public long[] accumulator() {
+      return new long[2];
+    }
+
+    @Override
+    public void map(DBIDArrayIter it, long[] acc) {
+      acc[0] += it.getOffset();
+      acc[1]++;
+    }
+
+    @Override
+    public long[] merge(long[] left, long[] right) {
+      left[0] += right[0];
+      left[1] += right[1];
+      return left;
+    }
+  }
+
+  /**
+   * Processor counting how often each object was processed.
+   *
+   * @author Erich Schubert
+   */
+  private static class CountingProcessor implements Processor {
+    /**
+     * Range of IDs.
+     */
+    DBIDRange ids;
+
+    /**
+     * Hits per object.
+     */
+    AtomicIntegerArray hits;
+
+    /**
+     * Counters.
+     */
+    AtomicInteger total = new AtomicInteger(), instances = new AtomicInteger(),
+        cleanups = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param ids ID range
+     */
+    CountingProcessor(DBIDRange ids) {
+      this.ids = ids;
+      this.hits = new AtomicIntegerArray(ids.size());
+    }
+
+    @Override
+    public Instance instantiate(elki.parallel.Executor executor) {
+      instances.incrementAndGet();
+      return new Instance();
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      cleanups.incrementAndGet();
+      total.addAndGet(((Instance) inst).count);
+    }
+
+    /**
+     * Instance, counting locally.
+     *
+     * @author Erich Schubert
+     */
+    private class Instance implements Processor.Instance {
+      /**
+       * Local count.
+       */
+      int count;
+
+      @Override
+      public void map(DBIDRef id) {
+        hits.incrementAndGet(ids.getOffset(id));
+        count++;
+      }
+    }
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.datastructures.heap;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap for double keys and integer values from a fixed range
+ * [0:capacity), which allows decreasing the key of a value already in the
+ * heap in O(log n) time.
+ * <p>
+ * Positions are tracked in a primitive array indexed by the value, so no
+ * objects are allocated and no hash map is needed, unlike with
+ * {@link UpdatableHeap}. This is intended for algorithms such as OPTICS and
+ * Dijkstra's algorithm, where the values are offsets in a DBID range.
+ * <p>
+ * Ties are broken by the smaller value, which gives a deterministic order.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class IndexedDoubleIntegerMinHeap {
+  /**
+   * Constant for "not in heap".
+   */
+  private static final int NO_VALUE = -1;
+
+  /**
+   * Heap keys.
+   */
+  private double[] twoheap;
+
+  /**
+   * Heap values.
+   */
+  private int[] twovals;
+
+  /**
+   * Position of each value in the heap, or {@link #NO_VALUE}.
+   */
+  private final int[] index;
+
+  /**
+   * Current size of heap.
+   */
+  private int size;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity Number of distinct values, values must be in
+   *        [0:capacity)
+   */
+  public IndexedDoubleIntegerMinHeap(int capacity) {
+    super();
+    final int initial = Math.min(capacity, 31);
+    this.twoheap = new double[initial];
+    this.twovals = new int[initial];
+    this.index = new int[capacity];
+    Arrays.fill(index, NO_VALUE);
+  }
+
+  /**
+   * Add a value to the heap, or decrease its key if it is already contained
+   * with a larger key.
+   *
+   * @param key Key
+   * @param val Value, in [0:capacity)
+   * @return {@code true} if the heap was modified
+   */
+  public boolean add(double key, int val) {
+    final int pos = index[val];
+    if(pos == NO_VALUE) {
+      if(size == twoheap.length) {
+        final int newsize = Math.min(HeapUtil.nextSize(size), index.length);
+        twoheap = Arrays.copyOf(twoheap, newsize);
+        twovals = Arrays.copyOf(twovals, newsize);
+      }
+      heapifyUp(size++, key, val);
+      return true;
+    }
+    if(key >= twoheap[pos]) {
+      return false;
+    }
+    heapifyUp(pos, key, val);
+    return true;
+  }
+
+  /**
+   * Test whether a value is currently in the heap.
+   *
+   * @param val Value
+   * @return {@code true} if contained
+   */
+  public boolean contains(int val) {
+    return index[val] != NO_VALUE;
+  }
+
+  /**
+   * Get the current key of a value in the heap.
+   *
+   * @param val Value
+   * @return Key, or {@code Double.NaN} if not contained
+   */
+  public double getKey(int val) {
+    final int pos = index[val];
+    return pos == NO_VALUE ? Double.NaN : twoheap[pos];
+  }
+
+  /**
+   * Get the current top key.
+   *
+   * @return Top key
+   */
+  public double peekKey() {
+    return twoheap[0];
+  }
+
+  /**
+   * Get the current top value.
+   *
+   * @return Top value
+   */
+  public int peekValue() {
+    return twovals[0];
+  }
+
+  /**
+   * Remove the first element.
+   */
+  public void poll() {
+    index[twovals[0]] = NO_VALUE;
+    if(--size > 0) {
+      heapifyDown(0, twoheap[size], twovals[size]);
+    }
+  }
+
+  /**
+   * Clear the heap contents.
+   */
+  public void clear() {
+    for(int i = 0; i < size; i++) {
+      index[twovals[i]] = NO_VALUE;
+    }
+    size = 0;
+  }
+
+  /**
+   * Query the size.
+   *
+   * @return Size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Is the heap empty?
+   *
+   * @return {@code true} when the size is 0.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Compare two key-value pairs.
+   *
+   * @param k1 First key
+   * @param v1 First value
+   * @param k2 Second key
+   * @param v2 Second value
+   * @return {@code true} if the first pair comes before the second
+   */
+  private static boolean less(double k1, int v1, double k2, int v2) {
+    return k1 < k2 || (k1 == k2 && v1 < v2);
+  }
+
+  /**
+   * Execute a "Heapify Upwards" aka "SiftUp". Used in insertions.
+   *
+   * @param pos insertion position
+   * @param curkey Current key
+   * @param curval Current value
+   */
+  private void heapifyUp(int pos, double curkey, int curval) {
+    while(pos > 0) {
+      final int parent = (pos - 1) >>> 1;
+      final double parkey = twoheap[parent];
+      final int parval = twovals[parent];
+      if(!less(curkey, curval, parkey, parval)) {
+        break;
+      }
+      twoheap[pos] = parkey;
+      twovals[pos] = parval;
+      index[parval] = pos;
+      pos = parent;
+    }
+    twoheap[pos] = curkey;
+    twovals[pos] = curval;
+    index[curval] = pos;
+  }
+
+  /**
+   * Execute a "Heapify Downwards" aka "SiftDown". Used in deletions.
+   *
+   * @param pos re-insertion position
+   * @param curkey Current key
+   * @param curval Current value
+   */
+  private void heapifyDown(int pos, double curkey, int curval) {
+    final int stop = size >>> 1;
+    while(pos < stop) {
+      int min = (pos << 1) + 1;
+      double minkey = twoheap[min];
+      int minval = twovals[min];
+      final int right = min + 1;
+      if(right < size && less(twoheap[right], twovals[right], minkey, minval)) {
+        min = right;
+        minkey = twoheap[right];
+        minval = twovals[right];
+      }
+      if(!less(minkey, minval, curkey, curval)) {
+        break;
+      }
+      twoheap[pos] = minkey;
+      twovals[pos] = minval;
+      index[minval] = pos;
+      pos = min;
+    }
+    twoheap[pos] = curkey;
+    twovals[pos] = curval;
+    index[curval] = pos;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder(size * 20 + 50) //
+        .append(IndexedDoubleIntegerMinHeap.class.getSimpleName()).append(" [");
+    for(int i = 0; i < size; i++) {
+      buf.append(i > 0 ? ", " : "").append(twoheap[i]).append(':').append(twovals[i]);
+    }
+    return buf.append(']').toString();
+  }
+}
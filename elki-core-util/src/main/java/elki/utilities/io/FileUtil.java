@@ -23,7 +23,11 @@ package elki.utilities.io;
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.file.*;
 import java.nio.file.FileSystem;
 import java.util.Collections;
@@ -259,4 +263,41 @@ public final class FileUtil {
     is.close();
     return buf.toString();
   }
+
+  /**
+   * Release a memory-mapped buffer immediately, instead of when it is garbage
+   * collected. Until then, the mapping keeps the file contents allocated, and
+   * truncating a file that is still mapped fails on some platforms.
+   * <p>
+   * This needs internal API; if it is not available, the mapping is left to
+   * the garbage collector. The buffer, and all views of it, must not be used
+   * afterwards.
+   *
+   * @param buf Buffer to release, as returned by {@code FileChannel.map}
+   * @return {@code true} if the buffer was released
+   */
+  public static boolean unmap(MappedByteBuffer buf) {
+    try { // Java 9 and later
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buf);
+      return true;
+    }
+    catch(ReflectiveOperationException | RuntimeException e) {
+      // Not available, try the Java 8 API below.
+    }
+    try {
+      Method getCleaner = buf.getClass().getMethod("cleaner");
+      getCleaner.setAccessible(true);
+      Object cleaner = getCleaner.invoke(buf);
+      if(cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+      return true;
+    }
+    catch(ReflectiveOperationException | RuntimeException e) {
+      return false;
+    }
+  }
 }
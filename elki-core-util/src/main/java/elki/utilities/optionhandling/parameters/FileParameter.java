@@ -24,6 +24,7 @@ import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.function.Consumer;
@@ -46,7 +47,8 @@ import elki.utilities.optionhandling.parameterization.Parameterization;
 public class FileParameter extends AbstractParameter<FileParameter, URI> {
   /**
    * Available file types: {@link #INPUT_FILE} denotes an input file,
-   * {@link #OUTPUT_FILE} denotes an output file.
+   * {@link #OUTPUT_FILE} denotes an output file, {@link #DIRECTORY} an
+   * existing directory.
    */
   public enum FileType {
     /**
@@ -56,7 +58,11 @@ public class FileParameter extends AbstractParameter<FileParameter, URI> {
     /**
      * Output files
      */
-    OUTPUT_FILE
+    OUTPUT_FILE,
+    /**
+     * Existing directories, e.g., for temporary files
+     */
+    DIRECTORY
   }
 
   /**
@@ -127,6 +133,12 @@ public class FileParameter extends AbstractParameter<FileParameter, URI> {
     if(!super.validate(obj)) {
       return false;
     }
+    if(fileType.equals(FileType.DIRECTORY)) {
+      if("file".equals(obj.getScheme()) && Files.isDirectory(Paths.get(obj))) {
+        return true;
+      }
+      throw new WrongParameterValueException("Given path " + obj + " for parameter \"" + getOptionID().getName() + "\" is not an existing directory!");
+    }
     if(fileType.equals(FileType.INPUT_FILE)) {
       try {
         if(FileUtil.exists(obj)) {
@@ -144,15 +156,15 @@ public class FileParameter extends AbstractParameter<FileParameter, URI> {
   /**
    * Returns a string representation of the parameter's type.
    * 
-   * @return &quot;&lt;file_&gt;&quot;
+   * @return &quot;&lt;file&gt;&quot; or &quot;&lt;directory&gt;&quot;
    */
   @Override
   public String getSyntax() {
-    return "<file>";
+    return fileType == FileType.DIRECTORY ? "<directory>" : "<file>";
   }
 
   /**
-   * Get the file type (input / output)
+   * Get the file type (input / output / directory)
    * 
    * @return file type
    */
@@ -0,0 +1,93 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.datastructures.heap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the indexed heap with decrease-key.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class IndexedDoubleIntegerMinHeapTest {
+  @Test
+  public void testDecreaseKey() {
+    final int iters = 100, maxid = 5000, bsize = 100;
+    final Random r = new Random(1);
+    // Simulation: key of each value, NaN if not contained.
+    double[] simulate = new double[maxid];
+    Arrays.fill(simulate, Double.NaN);
+    int simsize = 0;
+    IndexedDoubleIntegerMinHeap heap = new IndexedDoubleIntegerMinHeap(maxid);
+    for(int i = 0; i < iters; i++) {
+      int batchsize = r.nextInt(bsize);
+      for(int j = 0; j < batchsize; j++) {
+        final int id = r.nextInt(maxid);
+        final double score = r.nextInt(10000);
+        final double old = simulate[id];
+        boolean modified = heap.add(score, id);
+        if(old != old) {
+          simulate[id] = score;
+          simsize++;
+          assertTrue("Insertion not reported.", modified);
+        }
+        else if(score < old) {
+          simulate[id] = score;
+          assertTrue("Decrease not reported.", modified);
+        }
+        else {
+          assertFalse("Increase should be ignored.", modified);
+        }
+        assertEquals("Key not updated.", simulate[id], heap.getKey(id), 0.);
+      }
+      assertEquals("Sizes don't match!", simsize, heap.size());
+      int remove = r.nextInt(simsize + 1);
+      for(int j = 0; j < remove; j++) {
+        // Find the expected minimum, ties broken by value.
+        int best = -1;
+        for(int k = 0; k < maxid; k++) {
+          if(simulate[k] == simulate[k] && (best < 0 || simulate[k] < simulate[best])) {
+            best = k;
+          }
+        }
+        assertEquals("Key doesn't agree.", simulate[best], heap.peekKey(), 0.);
+        assertEquals("Value doesn't agree.", best, heap.peekValue());
+        heap.poll();
+        assertFalse("Still contained.", heap.contains(best));
+        simulate[best] = Double.NaN;
+        simsize--;
+      }
+    }
+    heap.clear();
+    assertTrue("Not empty.", heap.isEmpty());
+    for(int k = 0; k < maxid; k++) {
+      assertFalse("Still contained.", heap.contains(k));
+    }
+  }
+}
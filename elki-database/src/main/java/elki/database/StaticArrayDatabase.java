@@ -22,16 +22,24 @@ package elki.database;
 
 import java.util.Collection;
 
+import elki.data.FloatVector;
+import elki.data.NumberVector;
+import elki.data.PackedFloatVector;
+import elki.data.SparseNumberVector;
 import elki.data.type.SimpleTypeInformation;
+import elki.data.type.VectorFieldTypeInformation;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDataStore;
 import elki.database.ids.ArrayStaticDBIDs;
 import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.relation.DBIDView;
 import elki.database.relation.MaterializedRelation;
+import elki.database.relation.PackedFloatVectorRelation;
+import elki.database.relation.PackedVectorRelation;
 import elki.database.relation.Relation;
 import elki.datasource.DatabaseConnection;
 import elki.datasource.FileBasedDatabaseConnection;
@@ -42,7 +50,9 @@ import elki.logging.Logging;
 import elki.logging.statistics.Duration;
 import elki.result.Metadata;
 import elki.utilities.documentation.Description;
+import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectListParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -58,6 +68,8 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * @opt nodefillcolor LemonChiffon
  * @composed - - - ArrayStaticDBIDs
  * @assoc - - - DatabaseConnection
+ * @assoc - - - PackedVectorRelation
+ * @assoc - - - PackedFloatVectorRelation
  */
 @Description("Database using an in-memory hashtable and at least providing linear scans.")
 public class StaticArrayDatabase extends AbstractDatabase {
@@ -81,6 +93,11 @@ public class StaticArrayDatabase extends AbstractDatabase {
    */
   protected DatabaseConnection databaseConnection;
 
+  /**
+   * Store dense vectors in packed relations.
+   */
+  protected boolean packed;
+
   /**
    * Constructor.
    *
@@ -88,8 +105,20 @@ public class StaticArrayDatabase extends AbstractDatabase {
    * @param indexFactories Indexes to add
    */
   public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories) {
+    this(databaseConnection, indexFactories, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param databaseConnection Database connection to get the initial data from.
+   * @param indexFactories Indexes to add
+   * @param packed Store dense vectors in a single array each
+   */
+  public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories, boolean packed) {
     super();
     this.databaseConnection = databaseConnection;
+    this.packed = packed;
     this.ids = null;
     this.idrep = null;
 
@@ -147,20 +176,22 @@ public class StaticArrayDatabase extends AbstractDatabase {
 
     int numrel = bundle.metaLength();
     for(int i = 0; i < numrel; i++) {
-      SimpleTypeInformation<?> meta = bundle.meta(i);
-      @SuppressWarnings("unchecked")
-      SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
-      WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
-      for(it.seek(0); it.valid(); it.advance()) {
-        store.put(it, bundle.data(it.getOffset(), i));
+      Relation<?> relation = packed ? pack(bundle, i) : null;
+      if(relation == null) {
+        @SuppressWarnings("unchecked")
+        SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) bundle.meta(i);
+        WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
+        for(it.seek(0); it.valid(); it.advance()) {
+          store.put(it, bundle.data(it.getOffset(), i));
+        }
+        relation = new MaterializedRelation<>(null, ometa, ids, store);
       }
-      Relation<?> relation = new MaterializedRelation<>(null, ometa, ids, store);
       relations.add(relation);
       Metadata.hierarchyOf(this).addChild(relation);
 
       // Try to add indexes where appropriate
       for(IndexFactory<?> factory : indexFactories) {
-        if(factory.getInputTypeRestriction().isAssignableFromType(ometa)) {
+        if(factory.getInputTypeRestriction().isAssignableFromType(relation.getDataTypeInformation())) {
           @SuppressWarnings("unchecked")
           final IndexFactory<Object> ofact = (IndexFactory<Object>) factory;
           @SuppressWarnings("unchecked")
@@ -180,6 +211,53 @@ public class StaticArrayDatabase extends AbstractDatabase {
     eventManager.fireObjectsInserted(ids);
   }
 
+  /**
+   * Pack a column of dense vectors into a single array, if possible.
+   * <p>
+   * Single precision vectors are packed into a float array.
+   *
+   * @param bundle Data bundle
+   * @param col Column
+   * @return Packed relation, or {@code null}
+   */
+  private Relation<?> pack(MultipleObjectsBundle bundle, int col) {
+    SimpleTypeInformation<?> meta = bundle.meta(col);
+    if(!(ids instanceof DBIDRange) || !(meta instanceof VectorFieldTypeInformation) //
+        || !NumberVector.class.isAssignableFrom(meta.getRestrictionClass()) //
+        || SparseNumberVector.class.isAssignableFrom(meta.getRestrictionClass())) {
+      return null;
+    }
+    final VectorFieldTypeInformation<?> vmeta = (VectorFieldTypeInformation<?>) meta;
+    final int dim = vmeta.getDimensionality(), size = ids.size();
+    if(size * (long) dim > Integer.MAX_VALUE - 8) {
+      LOG.warning("Too much data to pack relation " + col + ", using one object per vector.");
+      return null;
+    }
+    String[] labels = dim > 0 && vmeta.getLabel(0) != null ? new String[dim] : null;
+    for(int d = 0; labels != null && d < dim; d++) {
+      labels[d] = vmeta.getLabel(d);
+    }
+    final Class<?> cls = meta.getRestrictionClass();
+    if(FloatVector.class.isAssignableFrom(cls) || PackedFloatVector.class.isAssignableFrom(cls)) {
+      float[] data = new float[size * dim];
+      for(int j = 0, off = 0; j < size; j++, off += dim) {
+        NumberVector v = (NumberVector) bundle.data(j, col);
+        for(int d = 0; d < dim; d++) {
+          data[off + d] = v.floatValue(d);
+        }
+      }
+      return new PackedFloatVectorRelation(null, (DBIDRange) ids, data, dim, labels);
+    }
+    double[] data = new double[size * dim];
+    for(int j = 0, off = 0; j < size; j++, off += dim) {
+      NumberVector v = (NumberVector) bundle.data(j, col);
+      for(int d = 0; d < dim; d++) {
+        data[off + d] = v.doubleValue(d);
+      }
+    }
+    return new PackedVectorRelation(null, (DBIDRange) ids, data, dim, labels);
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -201,6 +279,16 @@ public class StaticArrayDatabase extends AbstractDatabase {
      */
     private Collection<? extends IndexFactory<?>> indexFactories;
 
+    /**
+     * Store dense vectors in packed relations.
+     */
+    protected boolean packed;
+
+    /**
+     * Flag to store dense vector relations in a single array.
+     */
+    public static final OptionID PACKED_ID = new OptionID("db.packed", "Store dense numerical vectors of each relation in a single contiguous array, instead of one object per vector. Float vectors are stored in single precision.");
+
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
@@ -211,11 +299,12 @@ public class StaticArrayDatabase extends AbstractDatabase {
       new ObjectListParameter<IndexFactory<?>>(INDEX_ID, IndexFactory.class) //
           .setOptional(true) //
           .grab(config, x -> indexFactories = x);
+      new Flag(PACKED_ID).grab(config, x -> packed = x);
     }
 
     @Override
     public StaticArrayDatabase make() {
-      return new StaticArrayDatabase(databaseConnection, indexFactories);
+      return new StaticArrayDatabase(databaseConnection, indexFactories, packed);
     }
   }
 }
@@ -0,0 +1,282 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.ids.*;
+import elki.database.query.LinearScanQuery;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.PackedVectorRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.distance.PrimitiveDistance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Batched linear scan for the k nearest neighbors of many query objects at
+ * once.
+ * <p>
+ * Instead of scanning the full relation once per query, the queries are
+ * processed in tiles: a tile of query objects is compared to one tile of data
+ * objects at a time, keeping one {@link KNNHeap} per query. Each data tile is
+ * thus loaded once per query tile, rather than once per query, which is much
+ * more cache friendly when materializing the kNN of a whole data set.
+ * <p>
+ * For Euclidean and squared Euclidean distance on vector fields, the tiles
+ * are copied into flat double arrays (or, for a {@link PackedVectorRelation},
+ * read directly from the data block), and the square root is only computed
+ * for the final results.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @assoc - - - PrimitiveDistanceQuery
+ * @assoc - - - KNNHeap
+ *
+ * @param <O> relation object type
+ */
+public class LinearScanBatchKNN<O> implements LinearScanQuery {
+  /**
+   * Default number of queries per tile.
+   */
+  public static final int DEFAULT_QUERY_BLOCK = 64;
+
+  /**
+   * Default number of data objects per tile.
+   */
+  public static final int DEFAULT_DATA_BLOCK = 256;
+
+  /**
+   * Unboxed distance function.
+   */
+  private PrimitiveDistance<? super O> rawdist;
+
+  /**
+   * Relation to query.
+   */
+  private Relation<? extends O> relation;
+
+  /**
+   * Number of queries per tile.
+   */
+  private int queryBlock;
+
+  /**
+   * Number of data objects per tile.
+   */
+  private int dataBlock;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public LinearScanBatchKNN(PrimitiveDistanceQuery<O> distanceQuery) {
+    this(distanceQuery, DEFAULT_QUERY_BLOCK, DEFAULT_DATA_BLOCK);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   * @param queryBlock Number of queries per tile
+   * @param dataBlock Number of data objects per tile
+   */
+  public LinearScanBatchKNN(PrimitiveDistanceQuery<O> distanceQuery, int queryBlock, int dataBlock) {
+    super();
+    if(queryBlock < 1 || dataBlock < 1) {
+      throw new IllegalArgumentException("Block sizes must be positive.");
+    }
+    this.rawdist = distanceQuery.getDistance();
+    this.relation = distanceQuery.getRelation();
+    this.queryBlock = queryBlock;
+    this.dataBlock = dataBlock;
+  }
+
+  /**
+   * Get the k nearest neighbors of all query objects.
+   *
+   * @param queries Query objects, must be part of the relation
+   * @param k Number of neighbors
+   * @return kNN lists, in the order of the queries
+   */
+  public List<KNNList> getKNN(DBIDs queries, int k) {
+    List<KNNList> result = new ArrayList<>(queries.size());
+    getKNN(queries, k, (id, list) -> result.add(list));
+    return result;
+  }
+
+  /**
+   * Get the k nearest neighbors of all query objects.
+   * <p>
+   * The results are passed to the consumer in the order of the queries, one
+   * query tile at a time. The reference passed to the consumer is an iterator,
+   * and must not be retained.
+   *
+   * @param queries Query objects, must be part of the relation
+   * @param k Number of neighbors
+   * @param consumer Consumer of the results
+   */
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    final ArrayDBIDs qids = DBIDUtil.ensureArray(queries);
+    final ArrayDBIDs data = DBIDUtil.ensureArray(relation.getDBIDs());
+    final boolean squared = SquaredEuclideanDistance.STATIC.equals(rawdist);
+    if((squared || EuclideanDistance.STATIC.equals(rawdist)) //
+        && TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(relation.getDataTypeInformation())) {
+      @SuppressWarnings("unchecked")
+      final Relation<? extends NumberVector> vrel = (Relation<? extends NumberVector>) relation;
+      final int dim = RelationUtil.dimensionality(vrel);
+      if(dim > 0) {
+        scanVectors(vrel, dim, qids, data, k, !squared, consumer);
+        return;
+      }
+    }
+    scanObjects(qids, data, k, consumer);
+  }
+
+  /**
+   * Tiled scan using the primitive distance function.
+   *
+   * @param qids Query ids
+   * @param data Data ids
+   * @param k Number of neighbors
+   * @param consumer Consumer of the results
+   */
+  @SuppressWarnings("unchecked")
+  private void scanObjects(ArrayDBIDs qids, ArrayDBIDs data, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    final PrimitiveDistance<? super O> rawdist = this.rawdist;
+    final Relation<? extends O> relation = this.relation;
+    final int nq = qids.size(), nd = data.size();
+    final int qb = Math.min(queryBlock, nq), db = Math.min(dataBlock, nd);
+    final Object[] qobj = new Object[qb], dobj = new Object[db];
+    final KNNHeap[] heaps = new KNNHeap[qb];
+    final double[] max = new double[qb];
+    final DBIDArrayIter qi = qids.iter(), di = data.iter();
+    for(int qs = 0; qs < nq; qs += qb) {
+      final int qn = Math.min(qb, nq - qs);
+      for(int i = 0; i < qn; i++) {
+        qobj[i] = relation.get(qi.seek(qs + i));
+        heaps[i] = DBIDUtil.newHeap(k);
+        max[i] = Double.POSITIVE_INFINITY;
+      }
+      for(int ds = 0; ds < nd; ds += db) {
+        final int dn = Math.min(db, nd - ds);
+        for(int j = 0; j < dn; j++) {
+          dobj[j] = relation.get(di.seek(ds + j));
+        }
+        for(int i = 0; i < qn; i++) {
+          final O q = (O) qobj[i];
+          final KNNHeap heap = heaps[i];
+          double m = max[i];
+          for(int j = 0; j < dn; j++) {
+            final double dist = rawdist.distance(q, (O) dobj[j]);
+            m = dist <= m ? heap.insert(dist, di.seek(ds + j)) : m;
+          }
+          max[i] = m;
+        }
+      }
+      for(int i = 0; i < qn; i++) {
+        consumer.accept(qi.seek(qs + i), heaps[i].toKNNList());
+        heaps[i] = null;
+      }
+    }
+  }
+
+  /**
+   * Tiled scan using squared Euclidean distances on flat arrays.
+   *
+   * @param relation Vector relation
+   * @param dim Dimensionality
+   * @param qids Query ids
+   * @param data Data ids
+   * @param k Number of neighbors
+   * @param sqrt Return Euclidean instead of squared Euclidean distances
+   * @param consumer Consumer of the results
+   */
+  private void scanVectors(Relation<? extends NumberVector> relation, int dim, ArrayDBIDs qids, ArrayDBIDs data, int k, boolean sqrt, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    final PackedVectorRelation packed = relation instanceof PackedVectorRelation ? (PackedVectorRelation) relation : null;
+    final int nq = qids.size(), nd = data.size();
+    final int qb = Math.min(queryBlock, nq), db = Math.min(dataBlock, nd);
+    final double[] qbuf = new double[qb * dim];
+    // For packed relations, scan the data block directly.
+    final double[] dbuf = packed != null ? packed.getData() : new double[db * dim];
+    final KNNHeap[] heaps = new KNNHeap[qb];
+    final double[] max = new double[qb];
+    final DBIDArrayIter qi = qids.iter(), di = data.iter();
+    for(int qs = 0; qs < nq; qs += qb) {
+      final int qn = Math.min(qb, nq - qs);
+      for(int i = 0, off = 0; i < qn; i++, off += dim) {
+        copy(relation.get(qi.seek(qs + i)), qbuf, off, dim);
+        heaps[i] = DBIDUtil.newHeap(k);
+        max[i] = Double.POSITIVE_INFINITY;
+      }
+      for(int ds = 0; ds < nd; ds += db) {
+        final int dn = Math.min(db, nd - ds);
+        final int base = packed != null ? packed.getOffset(di.seek(ds)) : 0;
+        if(packed == null) {
+          for(int j = 0, off = 0; j < dn; j++, off += dim) {
+            copy(relation.get(di.seek(ds + j)), dbuf, off, dim);
+          }
+        }
+        for(int i = 0, qoff = 0; i < qn; i++, qoff += dim) {
+          final KNNHeap heap = heaps[i];
+          double m = max[i];
+          for(int j = 0, doff = base; j < dn; j++, doff += dim) {
+            double dist = 0;
+            for(int d = 0; d < dim; d++) {
+              final double v = dbuf[doff + d] - qbuf[qoff + d];
+              dist += v * v;
+            }
+            m = dist <= m ? heap.insert(dist, di.seek(ds + j)) : m;
+          }
+          max[i] = m;
+        }
+      }
+      for(int i = 0; i < qn; i++) {
+        consumer.accept(qi.seek(qs + i), sqrt ? heaps[i].toKNNListSqrt() : heaps[i].toKNNList());
+        heaps[i] = null;
+      }
+    }
+  }
+
+  /**
+   * Copy a vector into a buffer.
+   *
+   * @param v Vector
+   * @param buf Buffer
+   * @param off Offset
+   * @param dim Dimensionality
+   */
+  private static void copy(NumberVector v, double[] buf, int off, int dim) {
+    if(v.getDimensionality() != dim) {
+      throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+    }
+    for(int d = 0; d < dim; d++) {
+      buf[off + d] = v.doubleValue(d);
+    }
+  }
+}
@@ -23,6 +23,8 @@ package elki.database.query.knn;
 import elki.data.NumberVector;
 import elki.database.ids.*;
 import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.PackedFloatVectorRelation;
+import elki.database.relation.PackedVectorRelation;
 import elki.database.relation.Relation;
 import elki.distance.minkowski.EuclideanDistance;
 import elki.distance.minkowski.SquaredEuclideanDistance;
@@ -34,6 +36,9 @@ import elki.distance.minkowski.SquaredEuclideanDistance;
  * retrieve the query object from the relation only once, and to first find the
  * nearest neighbors with squared Euclidean distances, then only compute the
  * square root for the results.
+ * <p>
+ * For a {@link PackedVectorRelation} or {@link PackedFloatVectorRelation},
+ * the data block is scanned directly.
  *
  * @author Erich Schubert
  * @since 0.7.0
@@ -41,6 +46,8 @@ import elki.distance.minkowski.SquaredEuclideanDistance;
  * @assoc - - - PrimitiveDistanceQuery
  * @assoc - - - EuclideanDistance
  * @assoc - - - SquaredEuclideanDistance
+ * @assoc - - - PackedVectorRelation
+ * @assoc - - - PackedFloatVectorRelation
  * 
  * @param <O> relation object type
  */
@@ -57,6 +64,12 @@ public class LinearScanEuclideanKNNByObject<O extends NumberVector> extends Line
 
   @Override
   public KNNList getKNN(O obj, int k) {
+    if(relation instanceof PackedVectorRelation) {
+      return getKNN((PackedVectorRelation) relation, obj, k);
+    }
+    if(relation instanceof PackedFloatVectorRelation) {
+      return getKNN((PackedFloatVectorRelation) relation, obj, k);
+    }
     final SquaredEuclideanDistance squared = SquaredEuclideanDistance.STATIC;
     final Relation<? extends O> relation = this.relation;
     final KNNHeap heap = DBIDUtil.newHeap(k);
@@ -67,4 +80,62 @@ public class LinearScanEuclideanKNNByObject<O extends NumberVector> extends Line
     }
     return heap.toKNNListSqrt();
   }
+
+  /**
+   * Scan the data block of a packed relation.
+   *
+   * @param relation Packed relation
+   * @param obj Query object
+   * @param k Number of neighbors
+   * @return kNN list
+   */
+  private static KNNList getKNN(PackedVectorRelation relation, NumberVector obj, int k) {
+    final double[] data = relation.getData(), q = obj.toArray();
+    final int dim = relation.getDimensionality();
+    if(q.length != dim) {
+      throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+    }
+    final KNNHeap heap = DBIDUtil.newHeap(k);
+    double max = Double.POSITIVE_INFINITY;
+    int off = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance(), off += dim) {
+      double dist = 0;
+      for(int d = 0; d < dim; d++) {
+        final double v = data[off + d] - q[d];
+        dist += v * v;
+      }
+      max = dist <= max ? heap.insert(dist, iter) : max;
+    }
+    return heap.toKNNListSqrt();
+  }
+
+  /**
+   * Scan the single precision data block of a packed relation, accumulating
+   * in double precision.
+   *
+   * @param relation Packed relation
+   * @param obj Query object
+   * @param k Number of neighbors
+   * @return kNN list
+   */
+  private static KNNList getKNN(PackedFloatVectorRelation relation, NumberVector obj, int k) {
+    final float[] data = relation.getData();
+    final double[] q = obj.toArray();
+    final int dim = relation.getDimensionality();
+    if(q.length != dim) {
+      throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+    }
+    final KNNHeap heap = DBIDUtil.newHeap(k);
+    double max = Double.POSITIVE_INFINITY;
+    int off = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance(), off += dim) {
+      double dist = 0;
+      for(int d = 0; d < dim; d++) {
+        final double v = data[off + d] - q[d];
+        dist += v * v;
+      }
+      max = dist <= max ? heap.insert(dist, iter) : max;
+    }
+    return heap.toKNNListSqrt();
+  }
 }
@@ -25,16 +25,23 @@ import elki.database.ids.DBIDIter;
 import elki.database.ids.ModifiableDoubleDBIDList;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.PackedFloatVectorRelation;
+import elki.database.relation.PackedVectorRelation;
 import elki.database.relation.Relation;
 import elki.distance.minkowski.SquaredEuclideanDistance;
 
 /**
  * Optimized linear scan for Euclidean distance range queries.
+ * <p>
+ * For a {@link PackedVectorRelation} or {@link PackedFloatVectorRelation},
+ * the data block is scanned directly.
  * 
  * @author Erich Schubert
  * @since 0.4.0
  * 
  * @assoc - - - SquaredEuclideanDistance
+ * @assoc - - - PackedVectorRelation
+ * @assoc - - - PackedFloatVectorRelation
  * 
  * @param <O> relation object type
  */
@@ -60,6 +67,12 @@ public class LinearScanEuclideanRangeByObject<O extends NumberVector> implements
     final SquaredEuclideanDistance squared = SquaredEuclideanDistance.STATIC;
     float frange = Math.nextUp((float) range);
     final double sqrange = frange * frange;
+    if(relation instanceof PackedVectorRelation) {
+      return getRange((PackedVectorRelation) relation, obj, sqrange, result);
+    }
+    if(relation instanceof PackedFloatVectorRelation) {
+      return getRange((PackedFloatVectorRelation) relation, obj, sqrange, result);
+    }
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
       final double sqdistance = squared.distance(obj, relation.get(iter));
       if(sqdistance <= sqrange) {
@@ -68,4 +81,64 @@ public class LinearScanEuclideanRangeByObject<O extends NumberVector> implements
     }
     return result;
   }
+
+  /**
+   * Scan the data block of a packed relation.
+   *
+   * @param relation Packed relation
+   * @param obj Query object
+   * @param sqrange Squared query radius
+   * @param result Output list
+   * @return Output list
+   */
+  private static ModifiableDoubleDBIDList getRange(PackedVectorRelation relation, NumberVector obj, double sqrange, ModifiableDoubleDBIDList result) {
+    final double[] data = relation.getData(), q = obj.toArray();
+    final int dim = relation.getDimensionality();
+    if(q.length != dim) {
+      throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+    }
+    int off = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance(), off += dim) {
+      double sqdistance = 0;
+      for(int d = 0; d < dim; d++) {
+        final double v = data[off + d] - q[d];
+        sqdistance += v * v;
+      }
+      if(sqdistance <= sqrange) {
+        result.add(Math.sqrt(sqdistance), iter);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Scan the single precision data block of a packed relation, accumulating
+   * in double precision.
+   *
+   * @param relation Packed relation
+   * @param obj Query object
+   * @param sqrange Squared query radius
+   * @param result Output list
+   * @return Output list
+   */
+  private static ModifiableDoubleDBIDList getRange(PackedFloatVectorRelation relation, NumberVector obj, double sqrange, ModifiableDoubleDBIDList result) {
+    final float[] data = relation.getData();
+    final double[] q = obj.toArray();
+    final int dim = relation.getDimensionality();
+    if(q.length != dim) {
+      throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+    }
+    int off = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance(), off += dim) {
+      double sqdistance = 0;
+      for(int d = 0; d < dim; d++) {
+        final double v = data[off + d] - q[d];
+        sqdistance += v * v;
+      }
+      if(sqdistance <= sqrange) {
+        result.add(Math.sqrt(sqdistance), iter);
+      }
+    }
+    return result;
+  }
 }
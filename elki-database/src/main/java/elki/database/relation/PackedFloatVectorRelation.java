@@ -0,0 +1,176 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import elki.data.NumberVector;
+import elki.data.PackedFloatVector;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Static relation storing dense vectors of fixed dimensionality in a single,
+ * row-major {@code float[]} block.
+ * <p>
+ * This is the single precision variant of {@link PackedVectorRelation}, using
+ * half the memory and memory bandwidth; the values are widened to double when
+ * used in computations. Vectors are returned as flyweight {@link PackedFloatVector}
+ * views into the block; performance critical code can also use
+ * {@link #getData()} and {@link #getOffset(DBIDRef)} directly.
+ * <p>
+ * Because Java arrays are indexed by integers, the number of objects times
+ * the dimensionality must be less than 2<sup>31</sup>.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @composed - - - PackedFloatVector
+ */
+public class PackedFloatVectorRelation implements Relation<PackedFloatVector> {
+  /**
+   * Type information.
+   */
+  private final VectorFieldTypeInformation<PackedFloatVector> type;
+
+  /**
+   * The DBIDs this relation is defined for.
+   */
+  private final DBIDRange ids;
+
+  /**
+   * Row-major data block.
+   */
+  private final float[] data;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * The relation name.
+   */
+  private String name;
+
+  /**
+   * Constructor.
+   *
+   * @param name Relation name
+   * @param ids Object IDs
+   * @param data Row-major data, of length {@code ids.size() * dim}
+   * @param dim Dimensionality
+   * @param labels Column labels, may be {@code null}
+   */
+  public PackedFloatVectorRelation(String name, DBIDRange ids, float[] data, int dim, String[] labels) {
+    super();
+    assert data.length == ids.size() * (long) dim;
+    this.type = new VectorFieldTypeInformation<>(PackedFloatVector.FACTORY, dim, labels);
+    this.ids = ids;
+    this.data = data;
+    this.dim = dim;
+    this.name = name;
+  }
+
+  /**
+   * Pack the vectors of an existing relation.
+   *
+   * @param name Relation name
+   * @param ids Object IDs, in the desired storage order
+   * @param relation Relation to copy the vectors from
+   * @param labels Column labels, may be {@code null}
+   * @return Packed relation
+   */
+  public static PackedFloatVectorRelation pack(String name, DBIDRange ids, Relation<? extends NumberVector> relation, String[] labels) {
+    final int dim = RelationUtil.dimensionality(relation);
+    if(ids.size() * (long) dim > Integer.MAX_VALUE - 8) {
+      throw new AbortException("Too much data for a packed relation: " + ids.size() + " x " + dim);
+    }
+    float[] data = new float[ids.size() * dim];
+    int off = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), off += dim) {
+      NumberVector v = relation.get(it);
+      for(int d = 0; d < dim; d++) {
+        data[off + d] = v.floatValue(d);
+      }
+    }
+    return new PackedFloatVectorRelation(name, ids, data, dim, labels);
+  }
+
+  @Override
+  public PackedFloatVector get(DBIDRef id) {
+    return new PackedFloatVector(data, ids.getOffset(id) * dim, dim);
+  }
+
+  /**
+   * Get the row-major data block. Must not be modified.
+   *
+   * @return Data block
+   */
+  public float[] getData() {
+    return data;
+  }
+
+  /**
+   * Get the offset of the first value of an object in the data block.
+   *
+   * @param id Object
+   * @return Offset in the data block
+   */
+  public int getOffset(DBIDRef id) {
+    return ids.getOffset(id) * dim;
+  }
+
+  /**
+   * Get the dimensionality of the vectors.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  @Override
+  public DBIDRange getDBIDs() {
+    return ids;
+  }
+
+  @Override
+  public DBIDIter iterDBIDs() {
+    return ids.iter();
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public VectorFieldTypeInformation<PackedFloatVector> getDataTypeInformation() {
+    return type;
+  }
+
+  @Override
+  public String getLongName() {
+    return name != null ? name : type.toString();
+  }
+}
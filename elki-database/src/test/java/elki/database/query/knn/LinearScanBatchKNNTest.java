@@ -0,0 +1,94 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.*;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.PrimitiveDistance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.ManhattanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Unit test for the batched linear scan.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class LinearScanBatchKNNTest {
+  @Test
+  public void testBatchedScan() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[1000][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() };
+    }
+    for(boolean packed : new boolean[] { false, true }) {
+      StaticArrayDatabase db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, packed);
+      db.initialize();
+      Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+      assertSameResults(rel, EuclideanDistance.STATIC);
+      assertSameResults(rel, SquaredEuclideanDistance.STATIC);
+      assertSameResults(rel, ManhattanDistance.STATIC);
+    }
+  }
+
+  /**
+   * Compare the batched scan to the single-query scan.
+   *
+   * @param rel Relation
+   * @param dist Distance function
+   */
+  private static void assertSameResults(Relation<NumberVector> rel, PrimitiveDistance<? super NumberVector> dist) {
+    PrimitiveDistanceQuery<NumberVector> dq = new PrimitiveDistanceQuery<>(rel, dist);
+    LinearScanPrimitiveKNNByObject<NumberVector> ref = new LinearScanPrimitiveKNNByObject<>(dq);
+    // Odd subset of queries, and block sizes that do not divide the data size
+    ArrayModifiableDBIDs queries = DBIDUtil.newArray();
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      if(i % 7 == 3) {
+        queries.add(it);
+      }
+    }
+    List<KNNList> res = new LinearScanBatchKNN<>(dq, 13, 97).getKNN(queries, 10);
+    assertEquals("Wrong number of results.", queries.size(), res.size());
+    int j = 0;
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance(), j++) {
+      KNNList expected = ref.getKNN(rel.get(it), 10), actual = res.get(j);
+      assertEquals("Result sizes differ.", expected.size(), actual.size());
+      for(DoubleDBIDListIter a = expected.iter(), b = actual.iter(); a.valid(); a.advance(), b.advance()) {
+        assertEquals("Distances differ.", a.doubleValue(), b.doubleValue(), 1e-15);
+      }
+    }
+  }
+}
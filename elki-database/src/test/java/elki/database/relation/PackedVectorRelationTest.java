@@ -0,0 +1,137 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.FloatVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DoubleDBIDList;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.distance.minkowski.EuclideanDistance;
+
+/**
+ * Unit test for packed vector relations, and the linear scans on them.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class PackedVectorRelationTest {
+  @Test
+  public void testPackedQueries() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[1000][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() };
+    }
+    StaticArrayDatabase db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, true);
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertTrue("Relation was not packed.", ((Object) rel) instanceof PackedVectorRelation);
+    StaticArrayDatabase ref = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+    ref.initialize();
+    Relation<NumberVector> rrel = ref.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertEquals(3, RelationUtil.dimensionality(rel));
+
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      NumberVector v = rel.get(it);
+      for(int d = 0; d < 3; d++) {
+        assertEquals(data[i][d], v.doubleValue(d), 0.);
+      }
+    }
+
+    for(int q = 0; q < 10; q++) {
+      NumberVector query = DoubleVector.wrap(data[q * 97]);
+      KNNList knn = new QueryBuilder<>(rel, EuclideanDistance.STATIC).kNNByObject().getKNN(query, 10);
+      KNNList rknn = new QueryBuilder<>(rrel, EuclideanDistance.STATIC).kNNByObject().getKNN(query, 10);
+      assertSameDistances(rknn, knn);
+      DoubleDBIDList range = new QueryBuilder<>(rel, EuclideanDistance.STATIC).rangeByObject().getRange(query, .2);
+      DoubleDBIDList rrange = new QueryBuilder<>(rrel, EuclideanDistance.STATIC).rangeByObject().getRange(query, .2);
+      assertSameDistances(rrange, range);
+    }
+  }
+
+  @Test
+  public void testPackedFloatQueries() {
+    Random rnd = new Random(0L);
+    List<FloatVector> data = new ArrayList<>();
+    for(int i = 0; i < 1000; i++) {
+      data.add(FloatVector.wrap(new float[] { rnd.nextFloat(), rnd.nextFloat(), rnd.nextFloat() }));
+    }
+    MultipleObjectsBundle bundle = MultipleObjectsBundle.makeSimple(new VectorFieldTypeInformation<>(FloatVector.FACTORY, 3), data);
+    StaticArrayDatabase db = new StaticArrayDatabase(() -> bundle, null, true);
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertTrue("Relation was not packed.", ((Object) rel) instanceof PackedFloatVectorRelation);
+    StaticArrayDatabase ref = new StaticArrayDatabase(() -> bundle, null, false);
+    ref.initialize();
+    Relation<NumberVector> rrel = ref.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      NumberVector v = rel.get(it);
+      for(int d = 0; d < 3; d++) {
+        assertEquals(data.get(i).floatValue(d), v.floatValue(d), 0.f);
+      }
+    }
+
+    for(int q = 0; q < 10; q++) {
+      NumberVector query = data.get(q * 97);
+      KNNList knn = new QueryBuilder<>(rel, EuclideanDistance.STATIC).kNNByObject().getKNN(query, 10);
+      KNNList rknn = new QueryBuilder<>(rrel, EuclideanDistance.STATIC).kNNByObject().getKNN(query, 10);
+      assertSameDistances(rknn, knn);
+      DoubleDBIDList range = new QueryBuilder<>(rel, EuclideanDistance.STATIC).rangeByObject().getRange(query, .2);
+      DoubleDBIDList rrange = new QueryBuilder<>(rrel, EuclideanDistance.STATIC).rangeByObject().getRange(query, .2);
+      assertSameDistances(rrange, range);
+    }
+  }
+
+  /**
+   * Compare the distances of two result lists.
+   *
+   * @param expected Expected result
+   * @param actual Actual result
+   */
+  private static void assertSameDistances(DoubleDBIDList expected, DoubleDBIDList actual) {
+    assertEquals("Result sizes differ.", expected.size(), actual.size());
+    DoubleDBIDListIter a = expected.iter(), b = actual.iter();
+    for(; a.valid(); a.advance(), b.advance()) {
+      assertEquals("Distances differ.", a.doubleValue(), b.doubleValue(), 0.);
+    }
+  }
+}
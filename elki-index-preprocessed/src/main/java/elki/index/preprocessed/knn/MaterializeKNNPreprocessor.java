@@ -23,9 +23,12 @@ package elki.index.preprocessed.knn;
 import javax.swing.event.EventListenerList;
 
 import elki.database.ids.*;
+import elki.database.query.LinearScanQuery;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.distance.PrimitiveDistanceQuery;
 import elki.database.query.knn.KNNSearcher;
+import elki.database.query.knn.LinearScanBatchKNN;
 import elki.database.query.knn.PreprocessorKNNQuery;
 import elki.database.relation.Relation;
 import elki.distance.Distance;
@@ -43,12 +46,16 @@ import elki.utilities.documentation.Title;
  * distances) to each database object.
  * <p>
  * Automatically added by the query optimizer if memory permits.
+ * <p>
+ * If the neighbors would be found by a linear scan with a primitive distance,
+ * the queries are processed in tiles using {@link LinearScanBatchKNN}.
  *
  * @author Erich Schubert
  * @since 0.2
  *
  * @has - - - Distance
  * @has - - - KNNSearcher
+ * @has - - - LinearScanBatchKNN
  * @has - - - KNNListener
  *
  * @param <O> the type of database objects the preprocessor can be applied to
@@ -115,6 +122,20 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     Duration duration = log.isStatistics() ? log.newDuration(this.getClass().getName() + ".precomputation-time").begin() : null;
     FiniteProgress progress = getLogger().isVerbose() ? new FiniteProgress("Materializing k nearest neighbors (k=" + k + ")", ids.size(), getLogger()) : null;
     // Try bulk
+    final DistanceQuery<O> distanceQuery = getDistanceQuery();
+    if(knnQuery instanceof LinearScanQuery && distanceQuery instanceof PrimitiveDistanceQuery) {
+      @SuppressWarnings("unchecked")
+      final PrimitiveDistanceQuery<O> pdq = (PrimitiveDistanceQuery<O>) distanceQuery;
+      new LinearScanBatchKNN<>(pdq).getKNN(ids, k, (id, knn) -> {
+        storage.put(id, knn);
+        log.incrementProcessed(progress);
+      });
+      log.ensureCompleted(progress);
+      if(duration != null) {
+        log.statistics(duration.end());
+      }
+      return;
+    }
     final boolean ismetric = getDistanceQuery().getDistance().isMetric();
     for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
       if(ismetric && storage.get(iter) != null) {
@@ -123,7 +123,7 @@ public class SpatialPointLeafEntry implements LeafEntry, SpatialEntry, NumberVec
    */
   @Override
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-    id = DBIDUtil.importInteger(in.read());
+    id = DBIDUtil.importInteger(in.readInt());
     values = new double[in.readInt()];
     for(int d = 0; d < values.length; d++) {
       values[d] = in.readDouble();
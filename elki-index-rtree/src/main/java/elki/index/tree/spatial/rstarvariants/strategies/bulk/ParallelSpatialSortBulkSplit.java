@@ -0,0 +1,254 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.tree.spatial.rstarvariants.strategies.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import elki.data.spatial.SpatialComparable;
+import elki.math.spacefillingcurves.SpatialSorter;
+import elki.parallel.ParallelCore;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel variant of {@link SpatialSortBulkSplit}.
+ * <p>
+ * The objects are first partitioned into a number of cells by recursive
+ * bisection of the bounding box, cycling through the dimensions as in the
+ * top levels of a Z-curve. The cells are then sorted concurrently with the
+ * chosen {@link SpatialSorter}, each within its own bounding box, and the
+ * concatenation is packed into pages. With the Z-curve sorter this gives the
+ * same order as the sequential sort; with other curves, the top levels follow
+ * the Z-curve.
+ * <p>
+ * The number of threads is controlled by {@link ParallelCore}. Small inputs,
+ * such as the upper levels of the tree, are sorted sequentially.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @composed - - - SpatialSorter
+ * @assoc - - - ParallelCore
+ */
+public class ParallelSpatialSortBulkSplit extends AbstractBulkSplit {
+  /**
+   * Sorting class
+   */
+  final SpatialSorter sorter;
+
+  /**
+   * Minimum number of objects per cell.
+   */
+  final int minsize;
+
+  /**
+   * Constructor.
+   *
+   * @param sorter Sorting strategy
+   * @param minsize Minimum number of objects per parallel cell
+   */
+  public ParallelSpatialSortBulkSplit(SpatialSorter sorter, int minsize) {
+    super();
+    this.sorter = sorter;
+    this.minsize = minsize;
+  }
+
+  @Override
+  public <T extends SpatialComparable> List<List<T>> partition(List<T> spatialObjects, int minEntries, int maxEntries) {
+    final int size = spatialObjects.size();
+    final ParallelCore core = ParallelCore.getCore();
+    final int cells = Math.min(4 * core.getParallelism(), size / minsize);
+    if(cells < 2) {
+      sorter.sort(spatialObjects);
+      return super.trivialPartition(spatialObjects, minEntries, maxEntries);
+    }
+    final double[] mm = SpatialSorter.computeMinMax(spatialObjects);
+    List<Cell> todo = new ArrayList<>(cells);
+    bisect(spatialObjects, 0, size, mm, 0, 32 - Integer.numberOfLeadingZeros(cells - 1), todo);
+    core.connect();
+    try {
+      List<Future<?>> futures = new ArrayList<>(todo.size());
+      for(Cell c : todo) {
+        futures.add(core.submit(() -> {
+          sorter.sort(spatialObjects, c.start, c.end, c.minmax, null);
+          return null;
+        }));
+      }
+      for(Future<?> f : futures) {
+        f.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new AbortException("Parallel sorting failed.", e.getCause());
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AbortException("Parallel sorting was interrupted.", e);
+    }
+    finally {
+      core.disconnect();
+    }
+    return super.trivialPartition(spatialObjects, minEntries, maxEntries);
+  }
+
+  /**
+   * Recursively bisect the objects, to produce the cells in curve order.
+   *
+   * @param objs Objects
+   * @param start Range start
+   * @param end Range end (exclusive)
+   * @param mm Bounding box, as min-max pairs
+   * @param dim Dimension to split
+   * @param depth Remaining depth
+   * @param cells Output cells
+   */
+  private void bisect(List<? extends SpatialComparable> objs, int start, int end, double[] mm, int dim, int depth, List<Cell> cells) {
+    if(depth == 0 || end - start < minsize << 1) {
+      cells.add(new Cell(start, end, mm.clone()));
+      return;
+    }
+    final double min = mm[2 * dim], max = mm[2 * dim + 1], mid = (min + max) * .5;
+    final int split = pivotize(objs, start, end, dim, mid);
+    final int next = (dim + 1) % (mm.length >> 1);
+    mm[2 * dim + 1] = mid;
+    bisect(objs, start, split, mm, next, depth - 1, cells);
+    mm[2 * dim + 1] = max;
+    mm[2 * dim] = mid;
+    bisect(objs, split, end, mm, next, depth - 1, cells);
+    mm[2 * dim] = min;
+  }
+
+  /**
+   * Move all objects with a center below the threshold to the front.
+   *
+   * @param objs Objects
+   * @param start Range start
+   * @param end Range end (exclusive)
+   * @param dim Dimension
+   * @param threshold Threshold
+   * @return First object above the threshold
+   */
+  private static int pivotize(List<? extends SpatialComparable> objs, int start, int end, int dim, double threshold) {
+    @SuppressWarnings("unchecked") // Hack, for swapping elements.
+    final List<SpatialComparable> sobjs = (List<SpatialComparable>) objs;
+    threshold *= 2; // because we use min plus max below
+    int s = start, e = end - 1;
+    while(true) {
+      while(s <= e && center2(objs.get(s), dim) < threshold) {
+        ++s;
+      }
+      while(s <= e && center2(objs.get(e), dim) >= threshold) {
+        --e;
+      }
+      if(s >= e) {
+        return s;
+      }
+      sobjs.set(s, sobjs.set(e, sobjs.get(s)));
+      ++s;
+      --e;
+    }
+  }
+
+  /**
+   * Twice the center of an object in one dimension.
+   *
+   * @param o Object
+   * @param dim Dimension
+   * @return Min plus max
+   */
+  private static double center2(SpatialComparable o, int dim) {
+    return o.getMin(dim) + o.getMax(dim);
+  }
+
+  /**
+   * A range of objects to sort.
+   *
+   * @author Erich Schubert
+   */
+  private static class Cell {
+    /**
+     * Range of objects.
+     */
+    final int start, end;
+
+    /**
+     * Bounding box of the cell.
+     */
+    final double[] minmax;
+
+    /**
+     * Constructor.
+     *
+     * @param start Range start
+     * @param end Range end (exclusive)
+     * @param minmax Bounding box
+     */
+    Cell(int start, int end, double[] minmax) {
+      this.start = start;
+      this.end = end;
+      this.minmax = minmax;
+    }
+  }
+
+  /**
+   * Parametization class
+   *
+   * @author Erich Schubert
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Minimum number of objects per parallel cell.
+     */
+    public static final OptionID MINSIZE_ID = new OptionID("rtree.bulk.parallel-minsize", "Minimum number of objects to sort per task in parallel bulk loading.");
+
+    /**
+     * Sorting class
+     */
+    SpatialSorter sorter;
+
+    /**
+     * Minimum number of objects per cell.
+     */
+    int minsize;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<SpatialSorter>(SpatialSortBulkSplit.Par.SORTER_ID, SpatialSorter.class) //
+          .grab(config, x -> sorter = x);
+      new IntParameter(MINSIZE_ID, 10000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> minsize = x);
+    }
+
+    @Override
+    public ParallelSpatialSortBulkSplit make() {
+      return new ParallelSpatialSortBulkSplit(sorter, minsize);
+    }
+  }
+}
@@ -20,19 +20,19 @@
  */
 package elki.index.invertedlist;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
 
 import elki.data.NumberVector;
 import elki.data.SparseNumberVector;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
-import elki.database.datastore.DataStoreFactory;
-import elki.database.datastore.DataStoreUtil;
-import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.*;
 import elki.database.query.distance.DistanceQuery;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.query.range.RangeSearcher;
+import elki.database.query.range.WrappedRangeDBIDByLookup;
+import elki.database.query.similarity.SimilarityQuery;
 import elki.database.relation.Relation;
 import elki.distance.ArcCosineDistance;
 import elki.distance.CosineDistance;
@@ -40,16 +40,34 @@ import elki.distance.Distance;
 import elki.index.IndexFactory;
 import elki.index.KNNIndex;
 import elki.index.RangeIndex;
+import elki.index.SimilarityRangeIndex;
 import elki.logging.Logging;
 import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.LongStatistic;
+import elki.similarity.kernel.LinearKernel;
+import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import elki.utilities.datastructures.heap.DoubleMinHeap;
+import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 
 import net.jafama.FastMath;
 
 /**
- * Simple index using inverted lists, for cosine distance only.
+ * Index using inverted lists, for cosine and arc cosine distance, and for
+ * similarity range queries with the dot product ({@link LinearKernel}).
  * <p>
- * TODO: support additional distances.
+ * Queries are answered term-at-a-time by accumulating partial scores. If all
+ * indexed values and query weights are non-negative, a MaxScore-style bound
+ * is used: the query terms are processed by decreasing maximum contribution,
+ * and once the remaining terms cannot lift a new document above the current
+ * k-th best score (or the range threshold), only documents already seen are
+ * scored further.
+ * <p>
+ * Reference:
+ * <p>
+ * H. Turtle, J. Flood<br>
+ * Query Evaluation: Strategies and Optimizations<br>
+ * Information Processing and Management 31(6)
  * 
  * @author Erich Schubert
  * @since 0.7.0
@@ -58,10 +76,16 @@ import net.jafama.FastMath;
  * @has - - - ArcCosineRangeQuery
  * @has - - - CosineKNNQuery
  * @has - - - CosineRangeQuery
+ * @has - - - DotProductRangeQuery
  *
  * @param <V> Vector type
  */
-public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V>, RangeIndex<V> {
+@Reference(authors = "H. Turtle, J. Flood", //
+    title = "Query Evaluation: Strategies and Optimizations", //
+    booktitle = "Information Processing and Management 31(6)", //
+    url = "https://doi.org/10.1016/0306-4573(95)00020-H", //
+    bibkey = "DBLP:journals/ipm/TurtleF95")
+public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V>, RangeIndex<V>, SimilarityRangeIndex<V> {
   /**
    * Class logger.
    */
@@ -73,14 +97,54 @@ public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V
   protected final Relation<V> relation;
 
   /**
-   * Inverted index.
+   * Indexed objects, postings refer to offsets in this array.
+   */
+  protected ArrayDBIDs ids;
+
+  /**
+   * Posting lists: document offsets, per dimension.
+   */
+  protected int[][] postings;
+
+  /**
+   * Posting lists: values, per dimension.
    */
-  protected ArrayList<ModifiableDoubleDBIDList> index;
+  protected double[][] values;
 
   /**
-   * Length storage.
+   * Number of postings per dimension.
    */
-  protected WritableDoubleDataStore length;
+  protected int[] sizes;
+
+  /**
+   * Number of dimensions indexed.
+   */
+  protected int dims;
+
+  /**
+   * Inverse vector lengths (0 for empty vectors).
+   */
+  protected double[] invlen;
+
+  /**
+   * Maximum value per dimension, after length normalization.
+   */
+  protected double[] maxNorm;
+
+  /**
+   * Maximum value per dimension.
+   */
+  protected double[] maxRaw;
+
+  /**
+   * Flag whether all indexed values are non-negative (required for pruning).
+   */
+  protected boolean nonnegative;
+
+  /**
+   * Total number of postings.
+   */
+  protected long count;
 
   /**
    * Constructor.
@@ -93,26 +157,45 @@ public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V
 
   @Override
   public void initialize() {
-    if(index != null) {
+    if(postings != null) {
       LOG.warning("Index was already initialized!");
     }
-    index = new ArrayList<>();
-    length = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_DB);
-    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    postings = new int[16][];
+    values = new double[16][];
+    sizes = new int[16];
+    dims = 0;
+    count = 0L;
+    invlen = new double[ids.size()];
+    nonnegative = true;
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
       V obj = relation.get(iter);
-      if(obj instanceof SparseNumberVector) {
-        indexSparse(iter, (SparseNumberVector) obj);
+      final int off = iter.getOffset();
+      double len = obj instanceof SparseNumberVector ? //
+          indexSparse(off, (SparseNumberVector) obj) : indexDense(off, obj);
+      invlen[off] = len > 0 ? 1. / Math.sqrt(len) : 0.;
+    }
+    // Trim the posting lists, and compute the per-dimension bounds.
+    maxNorm = new double[dims];
+    maxRaw = new double[dims];
+    for(int d = 0; d < dims; d++) {
+      final int size = sizes[d];
+      if(size == 0) {
+        continue;
       }
-      else {
-        indexDense(iter, obj);
+      final int[] docs = postings[d] = Arrays.copyOf(postings[d], size);
+      final double[] vals = values[d] = Arrays.copyOf(values[d], size);
+      double mr = 0., mn = 0.;
+      for(int i = 0; i < size; i++) {
+        final double v = Math.abs(vals[i]), n = v * invlen[docs[i]];
+        mr = v > mr ? v : mr;
+        mn = n > mn ? n : mn;
       }
+      maxRaw[d] = mr;
+      maxNorm[d] = mn;
+      count += size;
     }
-    // Sort indexes
-    long count = 0L;
-    for(ModifiableDoubleDBIDList column : index) {
-      count += column.sort().size();
-    }
-    double sparsity = count / (index.size() * (double) relation.size());
+    double sparsity = count / (dims * (double) relation.size());
     if(sparsity > .2) {
       LOG.warning("Inverted list indexes only perform well for very sparse data. Your data set has a sparsity of " + sparsity);
     }
@@ -121,30 +204,31 @@ public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V
   /**
    * Index a single (sparse) instance.
    * 
-   * @param ref Object reference
+   * @param off Object offset
    * @param obj Object to index.
+   * @return Squared length
    */
-  private void indexSparse(DBIDRef ref, SparseNumberVector obj) {
+  private double indexSparse(int off, SparseNumberVector obj) {
     double len = 0.;
     for(int iter = obj.iter(); obj.iterValid(iter); iter = obj.iterAdvance(iter)) {
-      final int dim = obj.iterDim(iter);
       final double val = obj.iterDoubleValue(iter);
       if(val == 0. || val != val) {
         continue;
       }
       len += val * val;
-      getOrCreateColumn(dim).add(val, ref);
+      addPosting(obj.iterDim(iter), off, val);
     }
-    length.put(ref, len);
+    return len;
   }
 
   /**
    * Index a single (dense) instance.
    * 
-   * @param ref Object reference
+   * @param off Object offset
    * @param obj Object to index.
+   * @return Squared length
    */
-  private void indexDense(DBIDRef ref, V obj) {
+  private double indexDense(int off, V obj) {
     double len = 0.;
     for(int dim = 0, max = obj.getDimensionality(); dim < max; dim++) {
       final double val = obj.doubleValue(dim);
@@ -152,108 +236,46 @@ public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V
         continue;
       }
       len += val * val;
-      getOrCreateColumn(dim).add(val, ref);
+      addPosting(dim, off, val);
     }
-    length.put(ref, Math.sqrt(len));
+    return len;
   }
 
   /**
-   * Get (or create) a column.
+   * Append a posting to a column.
    * 
    * @param dim Dimension
-   * @return Column
-   */
-  private ModifiableDoubleDBIDList getOrCreateColumn(int dim) {
-    while(dim >= index.size()) {
-      index.add(DBIDUtil.newDistanceDBIDList());
-    }
-    return index.get(dim);
-  }
-
-  /**
-   * Query the most similar objects, sparse version.
-   * 
-   * @param obj Query object
-   * @param scores Score storage
-   * @param cands Non-zero objects set
-   * @return Result
-   */
-  private double naiveQuerySparse(SparseNumberVector obj, WritableDoubleDataStore scores, HashSetModifiableDBIDs cands) {
-    double len = 0.; // Length of query object, for final normalization
-    for(int iter = obj.iter(); obj.iterValid(iter); iter = obj.iterAdvance(iter)) {
-      final int dim = obj.iterDim(iter);
-      final double val = obj.iterDoubleValue(iter);
-      if(val == 0. || val != val) {
-        continue;
-      }
-      len += val * val;
-      // No matching documents in index:
-      if(dim >= index.size()) {
-        continue;
-      }
-      ModifiableDoubleDBIDList column = index.get(dim);
-      for(DoubleDBIDListIter n = column.iter(); n.valid(); n.advance()) {
-        scores.increment(n, n.doubleValue() * val);
-        cands.add(n);
-      }
-    }
-    return Math.sqrt(len);
-  }
-
-  /**
-   * Query the most similar objects, dense version.
-   * 
-   * @param obj Query object
-   * @param scores Score storage
-   * @param cands Non-zero objects set
-   * @return Result
+   * @param off Document offset
+   * @param val Value
    */
-  private double naiveQueryDense(NumberVector obj, WritableDoubleDataStore scores, HashSetModifiableDBIDs cands) {
-    double len = 0.; // Length of query object, for final normalization
-    for(int dim = 0, max = obj.getDimensionality(); dim < max; dim++) {
-      final double val = obj.doubleValue(dim);
-      if(val == 0. || val != val) {
-        continue;
-      }
-      len += val * val;
-      // No matching documents in index:
-      if(dim >= index.size()) {
-        continue;
-      }
-      ModifiableDoubleDBIDList column = index.get(dim);
-      for(DoubleDBIDListIter n = column.iter(); n.valid(); n.advance()) {
-        scores.increment(n, n.doubleValue() * val);
-        cands.add(n);
-      }
+  private void addPosting(int dim, int off, double val) {
+    if(dim >= postings.length) {
+      final int newlen = Math.max(postings.length << 1, dim + 1);
+      postings = Arrays.copyOf(postings, newlen);
+      values = Arrays.copyOf(values, newlen);
+      sizes = Arrays.copyOf(sizes, newlen);
     }
-    return Math.sqrt(len);
-  }
-
-  /**
-   * Query the most similar objects, abstract version.
-   * 
-   * @param obj Query object
-   * @param scores Score storage (must be initialized with zeros!)
-   * @param cands Non-zero objects set (must be empty)
-   * @return Result
-   */
-  private double naiveQuery(V obj, WritableDoubleDataStore scores, HashSetModifiableDBIDs cands) {
-    if(obj instanceof SparseNumberVector) {
-      return naiveQuerySparse((SparseNumberVector) obj, scores, cands);
+    dims = dim >= dims ? dim + 1 : dims;
+    final int size = sizes[dim];
+    if(postings[dim] == null) {
+      postings[dim] = new int[4];
+      values[dim] = new double[4];
     }
-    else {
-      return naiveQueryDense(obj, scores, cands);
+    else if(size == postings[dim].length) {
+      postings[dim] = Arrays.copyOf(postings[dim], size << 1);
+      values[dim] = Arrays.copyOf(values[dim], size << 1);
     }
+    postings[dim][size] = off;
+    values[dim][size] = val;
+    sizes[dim] = size + 1;
+    nonnegative &= val > 0;
   }
 
   @Override
   public void logStatistics() {
-    long count = 0L;
-    for(ModifiableDoubleDBIDList column : index) {
-      count += column.size();
-    }
-    double sparsity = count / (index.size() * (double) relation.size());
+    double sparsity = count / (dims * (double) relation.size());
     LOG.statistics(new DoubleStatistic(this.getClass().getName() + ".sparsity", sparsity));
+    LOG.statistics(new LongStatistic(this.getClass().getName() + ".postings", count));
   }
 
   @Override
@@ -270,52 +292,295 @@ public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V
         df instanceof ArcCosineDistance ? new ArcCosineRangeQuery() : null;
   }
 
+  @Override
+  public RangeSearcher<V> similarityRangeByObject(SimilarityQuery<V> simQuery, double maxrange, int flags) {
+    return simQuery.getSimilarity() instanceof LinearKernel ? new DotProductRangeQuery() : null;
+  }
+
+  @Override
+  public RangeSearcher<DBIDRef> similarityRangeByDBID(SimilarityQuery<V> simQuery, double maxrange, int flags) {
+    RangeSearcher<V> inner = similarityRangeByObject(simQuery, maxrange, flags);
+    return inner != null ? WrappedRangeDBIDByLookup.wrap(relation, inner) : null;
+  }
+
   /**
-   * kNN query object, for cosine distance.
+   * Score accumulator for term-at-a-time query processing.
+   * <p>
+   * Not thread-safe; each searcher holds its own accumulator, which is reused
+   * across queries.
    * 
    * @author Erich Schubert
    */
-  protected class CosineKNNQuery implements KNNSearcher<V> {
-    @Override
-    public KNNList getKNN(V obj, int k) {
-      HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
-      WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(cands, //
-          DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
-      double len = naiveQuery(obj, scores, cands);
-      // TODO: delay the division by len!
-      KNNHeap heap = DBIDUtil.newHeap(k);
-      for(DBIDIter n = cands.iter(); n.valid(); n.advance()) {
-        double dist = 1. - scores.doubleValue(n) / (length.doubleValue(n) * len);
-        if(heap.getKNNDistance() >= dist) {
-          heap.insert(dist, n);
+  protected class Accumulator {
+    /**
+     * Partial scores, by document offset.
+     */
+    double[] acc = new double[ids.size()];
+
+    /**
+     * Flag whether the document has been admitted as a candidate.
+     */
+    boolean[] seen = new boolean[ids.size()];
+
+    /**
+     * Admitted candidates.
+     */
+    int[] touched = new int[16];
+
+    /**
+     * Number of admitted candidates.
+     */
+    int size;
+
+    /**
+     * Query terms: dimensions.
+     */
+    int[] qdim = new int[16];
+
+    /**
+     * Query terms: weights.
+     */
+    double[] qval = new double[16];
+
+    /**
+     * Query terms: maximum contribution.
+     */
+    double[] qub = new double[16];
+
+    /**
+     * Number of query terms.
+     */
+    int qsize;
+
+    /**
+     * Query vector length.
+     */
+    double qlen;
+
+    /**
+     * Heap for maintaining the k-th best partial score.
+     */
+    DoubleMinHeap best = new DoubleMinHeap();
+
+    /**
+     * Iterator for translating offsets to DBIDs.
+     */
+    DBIDArrayIter iter = ids.iter();
+
+    /**
+     * Score a query.
+     * <p>
+     * After this, {@link #touched} contains all documents whose score may be
+     * at least the threshold, with their exact scores. Documents not touched
+     * have a score of 0, or are guaranteed to be below the threshold.
+     * 
+     * @param obj Query object
+     * @param cosine Normalize the indexed vectors (cosine), or use raw values
+     *        (dot product)
+     * @param k Number of neighbors for pruning, 0 for range queries
+     * @param threshold Fixed similarity threshold
+     */
+    void query(NumberVector obj, boolean cosine, int k, double threshold) {
+      clear();
+      loadQuery(obj);
+      if(qsize == 0) {
+        return;
+      }
+      // Scores are not divided by the query length
+      threshold = cosine ? threshold * qlen : threshold;
+      // Order the query terms by their maximum contribution:
+      final double[] max = cosine ? maxNorm : maxRaw;
+      boolean prune = nonnegative;
+      int[] order = new int[qsize];
+      for(int i = 0; i < qsize; i++) {
+        order[i] = i;
+        qub[i] = Math.abs(qval[i]) * max[qdim[i]];
+        prune &= qval[i] > 0;
+      }
+      DoubleIntegerArrayQuickSort.sortReverse(Arrays.copyOf(qub, qsize), order, qsize);
+      // Remaining potential of the query terms:
+      double[] rest = new double[qsize + 1];
+      for(int i = qsize - 1; i >= 0; i--) {
+        rest[i] = rest[i + 1] + qub[order[i]];
+      }
+      double theta = threshold;
+      for(int i = 0; i < qsize; i++) {
+        final int t = order[i];
+        final int[] docs = postings[qdim[t]];
+        final double[] vals = values[qdim[t]];
+        final double q = qval[t];
+        if(!prune || rest[i] * (1 + 1e-12) >= theta) { // tolerate rounding
+          for(int j = 0, e = sizes[qdim[t]]; j < e; j++) {
+            final int doc = docs[j];
+            if(!seen[doc]) {
+              seen[doc] = true;
+              if(size == touched.length) {
+                touched = Arrays.copyOf(touched, size << 1);
+              }
+              touched[size++] = doc;
+            }
+            acc[doc] += vals[j] * q;
+          }
+          // Update the k-th best score seen so far
+          if(prune && k > 0 && size >= k && i + 1 < qsize) {
+            best.clear();
+            for(int j = 0; j < size; j++) {
+              best.add(score(touched[j], cosine), k);
+            }
+            theta = Math.max(threshold, best.peek());
+          }
+        }
+        else {
+          // No new candidates can reach the threshold anymore.
+          for(int j = 0, e = sizes[qdim[t]]; j < e; j++) {
+            final int doc = docs[j];
+            if(seen[doc]) {
+              acc[doc] += vals[j] * q;
+            }
+          }
         }
       }
-      return heap.toKNNList();
+    }
+
+    /**
+     * Load the query terms.
+     * 
+     * @param obj Query object
+     */
+    private void loadQuery(NumberVector obj) {
+      double len = 0.;
+      if(obj instanceof SparseNumberVector) {
+        SparseNumberVector sobj = (SparseNumberVector) obj;
+        for(int it = sobj.iter(); sobj.iterValid(it); it = sobj.iterAdvance(it)) {
+          final double val = sobj.iterDoubleValue(it);
+          if(val == 0. || val != val) {
+            continue;
+          }
+          len += val * val;
+          addTerm(sobj.iterDim(it), val);
+        }
+      }
+      else {
+        for(int dim = 0, max = obj.getDimensionality(); dim < max; dim++) {
+          final double val = obj.doubleValue(dim);
+          if(val == 0. || val != val) {
+            continue;
+          }
+          len += val * val;
+          addTerm(dim, val);
+        }
+      }
+      qlen = Math.sqrt(len);
+    }
+
+    /**
+     * Add a query term, if the dimension has any postings.
+     * 
+     * @param dim Dimension
+     * @param val Value
+     */
+    private void addTerm(int dim, double val) {
+      if(dim >= dims || sizes[dim] == 0) {
+        return;
+      }
+      if(qsize == qdim.length) {
+        qdim = Arrays.copyOf(qdim, qsize << 1);
+        qval = Arrays.copyOf(qval, qsize << 1);
+        qub = Arrays.copyOf(qub, qsize << 1);
+      }
+      qdim[qsize] = dim;
+      qval[qsize++] = val;
+    }
+
+    /**
+     * Score of a document, not yet divided by the query length.
+     * 
+     * @param doc Document offset
+     * @param cosine Cosine normalization
+     * @return Score
+     */
+    double score(int doc, boolean cosine) {
+      return cosine ? acc[doc] * invlen[doc] : acc[doc];
+    }
+
+    /**
+     * Reset the accumulators.
+     */
+    private void clear() {
+      for(int i = 0; i < size; i++) {
+        acc[touched[i]] = 0.;
+        seen[touched[i]] = false;
+      }
+      size = 0;
+      qsize = 0;
+    }
+
+    /**
+     * Position the iterator at a document.
+     * 
+     * @param doc Document offset
+     * @return Iterator
+     */
+    DBIDRef get(int doc) {
+      return iter.seek(doc);
     }
   }
 
   /**
-   * kNN query object, for arc cosine distance.
+   * Abstract base class for kNN queries, with batch support.
    * 
    * @author Erich Schubert
    */
-  protected class ArcCosineKNNQuery implements KNNSearcher<V> {
+  protected abstract class AbstractKNNQuery implements KNNSearcher<V> {
+    /**
+     * Score accumulator.
+     */
+    protected Accumulator acc = new Accumulator();
+
     @Override
     public KNNList getKNN(V obj, int k) {
-      HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
-      WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(cands, //
-          DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
-      double len = naiveQuery(obj, scores, cands);
-      // TODO: delay the division by len and acos!
+      acc.query(obj, true, k, Double.NEGATIVE_INFINITY);
+      final double f = 1. / acc.qlen;
       KNNHeap heap = DBIDUtil.newHeap(k);
-      for(DBIDIter n = cands.iter(); n.valid(); n.advance()) {
-        double dist = Math.acos(scores.doubleValue(n) / (length.doubleValue(n) * len));
+      for(int i = 0; i < acc.size; i++) {
+        final int doc = acc.touched[i];
+        final double dist = distance(acc.score(doc, true) * f);
         if(heap.getKNNDistance() >= dist) {
-          heap.insert(dist, n);
+          heap.insert(dist, acc.get(doc));
+        }
+      }
+      // Orthogonal objects, if needed to fill the heap:
+      final double zero = distance(0.);
+      if(heap.getKNNDistance() >= zero) {
+        for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+          if(!acc.seen[it.getOffset()]) {
+            heap.insert(zero, it);
+          }
         }
       }
       return heap.toKNNList();
     }
+
+    /**
+     * Process a batch of queries, reusing the accumulators.
+     * 
+     * @param queries Query objects
+     * @param k Number of neighbors
+     * @param consumer Consumer for the results
+     */
+    public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+      for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+        consumer.accept(it, getKNN(relation.get(it), k));
+      }
+    }
+
+    /**
+     * Convert a cosine similarity into a distance.
+     * 
+     * @param sim Similarity
+     * @return Distance
+     */
+    protected abstract double distance(double sim);
   }
 
   /**
@@ -323,23 +588,74 @@ public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V
    * 
    * @author Erich Schubert
    */
-  protected class CosineRangeQuery implements RangeSearcher<V> {
+  protected class CosineKNNQuery extends AbstractKNNQuery {
     @Override
-    public ModifiableDoubleDBIDList getRange(V obj, double range, ModifiableDoubleDBIDList result) {
-      HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
-      WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(cands, //
-          DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
-      double len = naiveQuery(obj, scores, cands);
-      // dist = 1 - sim/len <-> sim = len * (1-dist)
-      double simrange = (1. - range) * len;
-      for(DBIDIter n = cands.iter(); n.valid(); n.advance()) {
-        double sim = scores.doubleValue(n) / length.doubleValue(n);
-        if(sim >= simrange) {
-          result.add(1. - sim / len, n);
+    protected double distance(double sim) {
+      return sim >= 1 ? 0 : 1 - sim;
+    }
+  }
+
+  /**
+   * kNN query object, for arc cosine distance.
+   * 
+   * @author Erich Schubert
+   */
+  protected class ArcCosineKNNQuery extends AbstractKNNQuery {
+    @Override
+    protected double distance(double sim) {
+      return sim >= 1 ? 0 : sim <= -1 ? Math.PI : FastMath.acos(sim);
+    }
+  }
+
+  /**
+   * Abstract base class for range queries.
+   * 
+   * @author Erich Schubert
+   */
+  protected abstract class AbstractRangeQuery implements RangeSearcher<V> {
+    /**
+     * Score accumulator.
+     */
+    protected Accumulator acc = new Accumulator();
+
+    /**
+     * Run a range query.
+     * 
+     * @param obj Query object
+     * @param cosine Use cosine normalization
+     * @param threshold Similarity threshold
+     * @param result Output
+     * @return result
+     */
+    protected ModifiableDoubleDBIDList getRange(V obj, boolean cosine, double threshold, ModifiableDoubleDBIDList result) {
+      acc.query(obj, cosine, 0, threshold);
+      final double f = cosine ? 1. / acc.qlen : 1.;
+      for(int i = 0; i < acc.size; i++) {
+        final int doc = acc.touched[i];
+        final double sim = acc.score(doc, cosine) * f;
+        if(sim >= threshold) {
+          result.add(convert(sim), acc.get(doc));
+        }
+      }
+      // Orthogonal objects:
+      if(threshold <= 0) {
+        final double zero = convert(0.);
+        for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+          if(!acc.seen[it.getOffset()]) {
+            result.add(zero, it);
+          }
         }
       }
       return result;
     }
+
+    /**
+     * Convert a similarity into the result value.
+     * 
+     * @param sim Similarity
+     * @return Distance or similarity
+     */
+    protected abstract double convert(double sim);
   }
 
   /**
@@ -347,22 +663,51 @@ public class InMemoryInvertedIndex<V extends NumberVector> implements KNNIndex<V
    * 
    * @author Erich Schubert
    */
-  protected class ArcCosineRangeQuery implements RangeSearcher<V> {
+  protected class CosineRangeQuery extends AbstractRangeQuery {
     @Override
     public ModifiableDoubleDBIDList getRange(V obj, double range, ModifiableDoubleDBIDList result) {
-      HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
-      WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(cands, //
-          DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
-      double len = naiveQuery(obj, scores, cands), f = 1. / len;
-      // dist = acos(sim/len) <-> sim = cos(dist)*len
-      double simrange = FastMath.cos(range) * len;
-      for(DBIDIter n = cands.iter(); n.valid(); n.advance()) {
-        double sim = scores.doubleValue(n) / length.doubleValue(n);
-        if(sim >= simrange) {
-          result.add(FastMath.acos(sim * f), n);
-        }
-      }
-      return result;
+      // dist = 1 - sim <-> sim = 1 - dist
+      return getRange(obj, true, 1. - range, result);
+    }
+
+    @Override
+    protected double convert(double sim) {
+      return sim >= 1 ? 0 : 1 - sim;
+    }
+  }
+
+  /**
+   * Range query object, for arc cosine distance.
+   * 
+   * @author Erich Schubert
+   */
+  protected class ArcCosineRangeQuery extends AbstractRangeQuery {
+    @Override
+    public ModifiableDoubleDBIDList getRange(V obj, double range, ModifiableDoubleDBIDList result) {
+      // dist = acos(sim) <-> sim = cos(dist)
+      return getRange(obj, true, range >= Math.PI ? -1 : FastMath.cos(range), result);
+    }
+
+    @Override
+    protected double convert(double sim) {
+      return sim >= 1 ? 0 : sim <= -1 ? Math.PI : FastMath.acos(sim);
+    }
+  }
+
+  /**
+   * Similarity range query object, for the dot product.
+   * 
+   * @author Erich Schubert
+   */
+  protected class DotProductRangeQuery extends AbstractRangeQuery {
+    @Override
+    public ModifiableDoubleDBIDList getRange(V obj, double range, ModifiableDoubleDBIDList result) {
+      return getRange(obj, false, range, result);
+    }
+
+    @Override
+    protected double convert(double sim) {
+      return sim;
     }
   }
 
@@ -20,9 +20,25 @@
  */
 package elki.index.invertedlist;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
 import org.junit.Test;
 
+import elki.data.DoubleVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.query.range.RangeSearcher;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.CosineDistance;
 import elki.index.AbstractIndexStructureTest;
+import elki.similarity.kernel.LinearKernel;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -39,4 +55,59 @@ public class InMemoryInvertedIndexTest extends AbstractIndexStructureTest {
     InMemoryInvertedIndex.Factory<?> factory = new ELKIBuilder<>(InMemoryInvertedIndex.Factory.class).build();
     assertExactCosine(factory, InMemoryInvertedIndex.CosineKNNQuery.class, InMemoryInvertedIndex.CosineRangeQuery.class);
   }
+
+  @Test
+  public void testSparsePruning() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[500][100];
+    for(double[] row : data) {
+      for(int i = 0; i < 8; i++) {
+        row[rnd.nextInt(row.length)] = rnd.nextDouble();
+      }
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+    db.initialize();
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    InMemoryInvertedIndex<DoubleVector> index = new InMemoryInvertedIndex.Factory<DoubleVector>().instantiate(relation);
+    index.initialize();
+
+    QueryBuilder<DoubleVector> qb = new QueryBuilder<>(relation, CosineDistance.STATIC).linearOnly();
+    KNNSearcher<DoubleVector> knn = index.kNNByObject(qb.distanceQuery(), 10, 0);
+    KNNSearcher<DoubleVector> ref = qb.kNNByObject(10);
+    QueryBuilder<DoubleVector> sb = new QueryBuilder<>(relation, LinearKernel.STATIC).linearOnly();
+    RangeSearcher<DoubleVector> dot = index.similarityRangeByObject(sb.similarityQuery(), 1., 0);
+    RangeSearcher<DoubleVector> dotref = sb.similarityRangeByObject();
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      DoubleVector q = relation.get(it);
+      assertSameDistances(ref.getKNN(q, 10), knn.getKNN(q, 10));
+      assertSameDistances(dotref.getRange(q, .5), dot.getRange(q, .5));
+    }
+  }
+
+  /**
+   * Compare the sorted distances of two results.
+   *
+   * @param expect Expected result
+   * @param actual Actual result
+   */
+  private static void assertSameDistances(DoubleDBIDList expect, DoubleDBIDList actual) {
+    assertEquals("Result size", expect.size(), actual.size());
+    for(DoubleDBIDListIter ie = sorted(expect).iter(), ia = sorted(actual).iter(); ie.valid(); ie.advance(), ia.advance()) {
+      assertEquals("Distance", ie.doubleValue(), ia.doubleValue(), 1e-12);
+    }
+  }
+
+  /**
+   * Sorted copy of a result.
+   *
+   * @param list Result
+   * @return Sorted copy
+   */
+  private static DoubleDBIDList sorted(DoubleDBIDList list) {
+    ModifiableDoubleDBIDList copy = DBIDUtil.newDistanceDBIDList(list.size());
+    for(DoubleDBIDListIter it = list.iter(); it.valid(); it.advance()) {
+      copy.add(it.doubleValue(), it);
+    }
+    return copy.sort();
+  }
 }
@@ -0,0 +1,152 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import elki.datasource.DatabaseConnection;
+import elki.datasource.FileBasedDatabaseConnection;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.columnar.ColumnarFileFormat;
+import elki.datasource.columnar.ColumnarFileWriter;
+import elki.logging.Logging;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Convert an input file to the memory mappable ELKI columnar file format.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class ConvertToColumnarApplication extends AbstractApplication {
+  /**
+   * Logging class.
+   */
+  private static final Logging LOG = Logging.getLogger(ConvertToColumnarApplication.class);
+
+  /**
+   * The data input step.
+   */
+  private DatabaseConnection input;
+
+  /**
+   * Output filename.
+   */
+  private Path outfile;
+
+  /**
+   * Block size for statistics.
+   */
+  private int blocksize;
+
+  /**
+   * Constructor.
+   *
+   * @param input Data source configuration
+   * @param outfile Output filename
+   * @param blocksize Block size for statistics, 0 to disable
+   */
+  public ConvertToColumnarApplication(DatabaseConnection input, Path outfile, int blocksize) {
+    super();
+    this.input = input;
+    this.outfile = outfile;
+    this.blocksize = blocksize;
+  }
+
+  @Override
+  public void run() {
+    if(LOG.isVerbose()) {
+      LOG.verbose("Loading data.");
+    }
+    MultipleObjectsBundle bundle = input.loadData();
+    if(LOG.isVerbose()) {
+      LOG.verbose("Writing to output file: " + outfile.toString());
+    }
+    try {
+      new ColumnarFileWriter(blocksize).write(bundle, outfile);
+    }
+    catch(IOException e) {
+      LOG.exception("IO Error", e);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par extends AbstractApplication.Par {
+    /**
+     * Option to specify the data source for the database.
+     */
+    public static final OptionID DATABASE_CONNECTION_ID = new OptionID("dbc", "Database connection class.");
+
+    /**
+     * Block size for the per-block minimum and maximum statistics.
+     */
+    public static final OptionID BLOCKSIZE_ID = new OptionID("columnar.blocksize", "Number of rows per block for minimum and maximum statistics, 0 to disable.");
+
+    /**
+     * The data input step.
+     */
+    private DatabaseConnection input;
+
+    /**
+     * Output filename.
+     */
+    private Path outfile;
+
+    /**
+     * Block size for statistics.
+     */
+    private int blocksize;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new ObjectParameter<DatabaseConnection>(DATABASE_CONNECTION_ID, DatabaseConnection.class, FileBasedDatabaseConnection.class) //
+          .grab(config, x -> input = x);
+      outfile = super.getParameterOutputFile(config, "File name to write the columnar file to.");
+      new IntParameter(BLOCKSIZE_ID, ColumnarFileFormat.DEFAULT_BLOCK_SIZE) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> blocksize = x);
+    }
+
+    @Override
+    public ConvertToColumnarApplication make() {
+      return new ConvertToColumnarApplication(input, outfile, blocksize);
+    }
+  }
+
+  /**
+   * Run command line application.
+   *
+   * @param args Command line parameters
+   */
+  public static void main(String[] args) {
+    runCLIApplication(ConvertToColumnarApplication.class, args);
+  }
+}
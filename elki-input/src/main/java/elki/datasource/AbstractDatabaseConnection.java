@@ -20,12 +20,14 @@
  */
 package elki.datasource;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import elki.datasource.bundle.BundleStreamSource;
 import elki.datasource.bundle.MultipleObjectsBundle;
 import elki.datasource.filter.ObjectFilter;
 import elki.datasource.filter.StreamFilter;
+import elki.datasource.filter.TwoPassStreamFilter;
 import elki.datasource.parser.Parser;
 import elki.logging.Logging;
 import elki.utilities.optionhandling.Parameterizer;
@@ -66,6 +68,11 @@ public abstract class AbstractDatabaseConnection implements DatabaseConnection {
   /**
    * Transforms the specified list of objects and their labels into a list of
    * objects and their associations.
+   * <p>
+   * Streaming filters are chained on the last materialized bundle, and the
+   * chain is replayed for the statistics pass of a
+   * {@link TwoPassStreamFilter}, so that no intermediate copy of the data is
+   * needed.
    * 
    * @param bundle the objects to process
    * @return processed objects
@@ -76,23 +83,32 @@ public abstract class AbstractDatabaseConnection implements DatabaseConnection {
       return bundle;
     }
     // We dynamically switch between streaming and bundle operations.
-    BundleStreamSource stream = null;
+    List<StreamFilter> chain = new ArrayList<>();
     for(ObjectFilter filter : filters) {
       if(filter instanceof StreamFilter) {
-        stream = ((StreamFilter) filter).init(bundle != null ? bundle.asStream() : stream);
-        bundle = null; // No longer a bundle
+        if(filter instanceof TwoPassStreamFilter) {
+          if(!isReplayable(chain)) {
+            bundle = replay(bundle, chain).asMultipleObjectsBundle();
+            chain.clear();
+          }
+          ((TwoPassStreamFilter) filter).prepare(replay(bundle, chain));
+        }
+        chain.add((StreamFilter) filter);
       }
       else {
-        bundle = filter.filter(stream != null ? stream.asMultipleObjectsBundle() : bundle);
-        stream = null; // No longer a stream
+        bundle = filter.filter(chain.isEmpty() ? bundle : replay(bundle, chain).asMultipleObjectsBundle());
+        chain.clear(); // No longer a stream
       }
     }
-    return bundle != null ? bundle : stream.asMultipleObjectsBundle();
+    return chain.isEmpty() ? bundle : replay(bundle, chain).asMultipleObjectsBundle();
   }
 
   /**
    * Transforms the specified list of objects and their labels into a list of
    * objects and their associations.
+   * <p>
+   * The input stream can only be read once, so it is materialized before
+   * a {@link TwoPassStreamFilter}.
    * 
    * @param stream the objects to process
    * @return processed objects
@@ -104,17 +120,60 @@ public abstract class AbstractDatabaseConnection implements DatabaseConnection {
     }
     // We dynamically switch between streaming and bundle operations.
     MultipleObjectsBundle bundle = null;
+    List<StreamFilter> chain = new ArrayList<>();
     for(ObjectFilter filter : filters) {
-      if(filter instanceof StreamFilter) {
-        stream = ((StreamFilter) filter).init(bundle != null ? bundle.asStream() : stream);
-        bundle = null;
+      if(filter instanceof TwoPassStreamFilter) {
+        if(bundle == null || !isReplayable(chain)) {
+          bundle = (bundle == null ? stream : replay(bundle, chain)).asMultipleObjectsBundle();
+          chain.clear();
+        }
+        ((TwoPassStreamFilter) filter).prepare(replay(bundle, chain));
+        chain.add((StreamFilter) filter);
+      }
+      else if(filter instanceof StreamFilter) {
+        if(bundle == null) {
+          stream = ((StreamFilter) filter).init(stream);
+        }
+        else {
+          chain.add((StreamFilter) filter);
+        }
       }
       else {
-        bundle = filter.filter(stream != null ? stream.asMultipleObjectsBundle() : bundle);
-        stream = null;
+        bundle = filter.filter(bundle == null ? stream.asMultipleObjectsBundle() : replay(bundle, chain).asMultipleObjectsBundle());
+        chain.clear();
+      }
+    }
+    return bundle == null ? stream : replay(bundle, chain);
+  }
+
+  /**
+   * Stream a bundle through a chain of streaming filters.
+   *
+   * @param bundle Bundle
+   * @param chain Streaming filters
+   * @return Stream
+   */
+  private static BundleStreamSource replay(MultipleObjectsBundle bundle, List<StreamFilter> chain) {
+    BundleStreamSource stream = bundle.asStream();
+    for(StreamFilter filter : chain) {
+      stream = filter.init(stream);
+    }
+    return stream;
+  }
+
+  /**
+   * Test if a chain of streaming filters can be read more than once.
+   *
+   * @param chain Streaming filters
+   * @return {@code true} if all filters are replayable
+   */
+  private static boolean isReplayable(List<StreamFilter> chain) {
+    for(StreamFilter filter : chain) {
+      if(!filter.isReplayable()) {
+        return false;
       }
     }
-    return stream != null ? stream : bundle.asStream();
+    return true;
   }
 
   /**
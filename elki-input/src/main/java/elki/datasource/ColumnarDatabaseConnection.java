@@ -0,0 +1,122 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.columnar.ColumnarFileReader;
+import elki.datasource.filter.ObjectFilter;
+import elki.logging.Logging;
+import elki.logging.statistics.Duration;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.FileParameter;
+
+/**
+ * Load a database from a file in the ELKI columnar file format.
+ * <p>
+ * The file is memory mapped, and the objects are produced from the mapped
+ * data on access, without any parsing. Such files can be produced with
+ * {@link elki.application.ConvertToColumnarApplication}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @composed - - - ColumnarFileReader
+ */
+public class ColumnarDatabaseConnection extends AbstractDatabaseConnection {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ColumnarDatabaseConnection.class);
+
+  /**
+   * File to load.
+   */
+  private Path infile;
+
+  /**
+   * Constructor.
+   *
+   * @param filters Filters
+   * @param infile Input file
+   */
+  public ColumnarDatabaseConnection(List<? extends ObjectFilter> filters, Path infile) {
+    super(filters);
+    this.infile = infile;
+  }
+
+  @Override
+  public MultipleObjectsBundle loadData() {
+    Duration duration = LOG.isStatistics() ? LOG.newDuration(getClass().getName() + ".loadtime").begin() : null;
+    MultipleObjectsBundle bundle;
+    try (ColumnarFileReader reader = new ColumnarFileReader(infile)) {
+      bundle = reader.asBundle();
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error loading columnar file", e);
+    }
+    if(duration != null) {
+      LOG.statistics(duration.end());
+    }
+    return invokeBundleFilters(bundle);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par extends AbstractDatabaseConnection.Par {
+    /**
+     * Option ID for the input file.
+     */
+    public static final OptionID INPUT_ID = new OptionID("columnar.input", "Columnar file to load the data from.");
+
+    /**
+     * File to load.
+     */
+    private Path infile;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new FileParameter(INPUT_ID, FileParameter.FileType.INPUT_FILE) //
+          .grab(config, x -> infile = Paths.get(x));
+      configFilters(config);
+    }
+
+    @Override
+    public ColumnarDatabaseConnection make() {
+      return new ColumnarDatabaseConnection(filters, infile);
+    }
+  }
+}
@@ -25,20 +25,30 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
+import elki.datasource.bundle.MultipleObjectsBundle;
 import elki.datasource.filter.ObjectFilter;
 import elki.datasource.parser.ArffParser;
 import elki.datasource.parser.NumberVectorLabelParser;
 import elki.datasource.parser.Parser;
+import elki.logging.Logging;
+import elki.logging.statistics.Duration;
 import elki.utilities.Priority;
 import elki.utilities.io.FileUtil;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.Flag;
 
 /**
  * File based database connection based on the parser to be set.
+ * <p>
+ * Optionally, uncompressed local files read with the default
+ * {@link NumberVectorLabelParser} can be parsed in parallel.
  * 
  * @author Arthur Zimek
  * @since 0.1
@@ -47,6 +57,40 @@ import elki.utilities.optionhandling.parameters.FileParameter;
  */
 @Priority(Priority.IMPORTANT)
 public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(FileBasedDatabaseConnection.class);
+
+  /**
+   * Chunk size for parallel parsing.
+   */
+  private static final int CHUNK_SIZE = 1 << 25;
+
+  /**
+   * Input file, for parallel parsing.
+   */
+  URI infile;
+
+  /**
+   * Parse the file in parallel, if possible.
+   */
+  boolean parallel;
+
+  /**
+   * Constructor.
+   * 
+   * @param filters Filters, can be null
+   * @param parser the parser to provide a database
+   * @param infile File to load the data from
+   * @param parallel Parse in parallel, if supported by the parser and file
+   */
+  public FileBasedDatabaseConnection(List<? extends ObjectFilter> filters, Parser parser, URI infile, boolean parallel) {
+    this(filters, parser, infile);
+    this.infile = infile;
+    this.parallel = parallel;
+  }
+
   /**
    * Constructor.
    * 
@@ -87,6 +131,63 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
     super(in, filters, parser);
   }
 
+  @Override
+  public MultipleObjectsBundle loadData() {
+    Path file = parallel ? parallelFile() : null;
+    if(file == null) {
+      return super.loadData();
+    }
+    Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".parse").begin() : null;
+    MultipleObjectsBundle parsingResult;
+    try {
+      parsingResult = ((NumberVectorLabelParser<?>) parser).parseParallel(file, CHUNK_SIZE);
+    }
+    catch(IOException e) {
+      throw new UncheckedIOException("Could not load input file: " + infile, e);
+    }
+    if(duration != null) {
+      LOG.statistics(duration.end());
+    }
+    Duration fduration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".filter").begin() : null;
+    MultipleObjectsBundle objects = invokeBundleFilters(parsingResult);
+    if(fduration != null) {
+      LOG.statistics(fduration.end());
+    }
+    return objects;
+  }
+
+  /**
+   * Get the file to parse in parallel, if parallel parsing is supported.
+   *
+   * @return File, or {@code null} to parse sequentially
+   */
+  private Path parallelFile() {
+    if(parser == null || parser.getClass() != NumberVectorLabelParser.class) {
+      LOG.verbose("Parallel parsing is only supported with " + NumberVectorLabelParser.class.getSimpleName() + ".");
+      return null;
+    }
+    if(infile == null || (infile.getScheme() != null && !"file".equals(infile.getScheme()))) {
+      LOG.verbose("Parallel parsing is only supported for local files.");
+      return null;
+    }
+    Path file = infile.getScheme() == null ? Paths.get(infile.getPath()) : Paths.get(infile);
+    try (InputStream in = Files.newInputStream(file)) {
+      if(in.read() == 0x1f && in.read() == 0x8b) {
+        LOG.verbose("Parallel parsing is not supported for compressed files.");
+        return null;
+      }
+    }
+    catch(IOException e) {
+      throw new UncheckedIOException("Could not load input file: " + infile, e);
+    }
+    return file;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
   /**
    * Parameterization class.
    * 
@@ -98,11 +199,21 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
      */
     public static final OptionID INPUT_ID = new OptionID("dbc.in", "The name of the input file to be parsed.");
 
+    /**
+     * Flag to parse the input file in parallel.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("dbc.parallel", "Parse uncompressed input files in parallel chunks (only with the default vector parser).");
+
     /**
      * Input stream to process.
      */
     protected URI infile;
 
+    /**
+     * Parse in parallel.
+     */
+    protected boolean parallel;
+
     @Override
     public void configure(Parameterization config) {
       // Add the input file first, for usability reasons.
@@ -114,11 +225,12 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
       }
       configParser(config, Parser.class, defaultParser);
       configFilters(config);
+      new Flag(PARALLEL_ID).grab(config, x -> parallel = x);
     }
 
     @Override
     public FileBasedDatabaseConnection make() {
-      return new FileBasedDatabaseConnection(filters, parser, infile);
+      return new FileBasedDatabaseConnection(filters, parser, infile, parallel);
     }
   }
 }
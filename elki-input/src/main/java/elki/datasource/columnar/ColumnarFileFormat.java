@@ -0,0 +1,143 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.columnar;
+
+/**
+ * Constants of the ELKI columnar file format.
+ * <p>
+ * All values are stored in little endian byte order. The file begins with a
+ * fixed size header:
+ * <ul>
+ * <li>int magic, int version</li>
+ * <li>long number of rows</li>
+ * <li>int number of columns, int block size (for statistics)</li>
+ * <li>int total header size, int reserved</li>
+ * </ul>
+ * followed by one descriptor per column:
+ * <ul>
+ * <li>int type, int name length, UTF-8 name</li>
+ * <li>long data offset, long statistics offset, long dictionary offset</li>
+ * <li>int dictionary size</li>
+ * </ul>
+ * Each column is stored as a contiguous array of its type, aligned to
+ * {@link #ALIGNMENT} bytes. Label columns store integer codes into a
+ * dictionary (int count, then int length and UTF-8 bytes for every entry),
+ * with {@code -1} for missing values. Numeric columns may store the minimum
+ * and maximum (as doubles) of every block of rows; NaN values are ignored.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public final class ColumnarFileFormat {
+  /**
+   * Fake constructor.
+   */
+  private ColumnarFileFormat() {
+    // Do not instantiate
+  }
+
+  /**
+   * Magic number ("ELKC").
+   */
+  public static final int MAGIC = 0x454C4B43;
+
+  /**
+   * File format version.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * Size of the fixed part of the header.
+   */
+  public static final int HEADER_SIZE = 32;
+
+  /**
+   * Alignment of data sections.
+   */
+  public static final int ALIGNMENT = 8;
+
+  /**
+   * Default block size for statistics.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+  /**
+   * Code for missing labels.
+   */
+  public static final int MISSING_LABEL = -1;
+
+  /**
+   * Column data types.
+   *
+   * @author Erich Schubert
+   */
+  public enum ColumnType {
+    /**
+     * Single precision floating point values.
+     */
+    FLOAT32(Float.BYTES),
+    /**
+     * Double precision floating point values.
+     */
+    FLOAT64(Double.BYTES),
+    /**
+     * Signed integer values.
+     */
+    INT32(Integer.BYTES),
+    /**
+     * Labels, encoded as integer codes into a dictionary.
+     */
+    LABEL(Integer.BYTES);
+
+    /**
+     * Size of a single value, in bytes.
+     */
+    public final int bytes;
+
+    /**
+     * Constructor.
+     *
+     * @param bytes Size of a single value
+     */
+    ColumnType(int bytes) {
+      this.bytes = bytes;
+    }
+
+    /**
+     * Test if the column is numeric.
+     *
+     * @return {@code true} for numeric columns
+     */
+    public boolean isNumeric() {
+      return this != LABEL;
+    }
+  }
+
+  /**
+   * Round a file offset up to the alignment.
+   *
+   * @param offset Offset
+   * @return Aligned offset
+   */
+  public static long align(long offset) {
+    return (offset + ALIGNMENT - 1) & ~(ALIGNMENT - 1L);
+  }
+}
@@ -0,0 +1,505 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.columnar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import elki.data.DoubleVector;
+import elki.data.FloatVector;
+import elki.data.IntegerVector;
+import elki.data.LabelList;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.columnar.ColumnarFileFormat.ColumnType;
+
+/**
+ * Read a file in the ELKI columnar file format.
+ * <p>
+ * The column data is memory mapped, and not parsed or copied. The bundle
+ * returned by {@link #asBundle()} consists of list views onto the mapped
+ * data, which produce the vectors on access. The mapping remains valid after
+ * closing the reader.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @has - - - ColumnarFileFormat
+ */
+public class ColumnarFileReader implements AutoCloseable {
+  /**
+   * Number of rows per mapped segment.
+   */
+  private static final int SEGMENT_SHIFT = 27, SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+  /**
+   * Input channel.
+   */
+  private FileChannel channel;
+
+  /**
+   * Number of rows.
+   */
+  private int rows;
+
+  /**
+   * Block size of the statistics.
+   */
+  private int blocksize;
+
+  /**
+   * Column types.
+   */
+  private ColumnType[] types;
+
+  /**
+   * Column names.
+   */
+  private String[] names;
+
+  /**
+   * Mapped column data, by segment.
+   */
+  private ByteBuffer[][] data;
+
+  /**
+   * Block statistics, minimum and maximum interleaved, may be {@code null}.
+   */
+  private double[][] stats;
+
+  /**
+   * Label dictionaries.
+   */
+  private String[][] dicts;
+
+  /**
+   * Constructor.
+   *
+   * @param file Input file
+   * @throws IOException on read errors or invalid files
+   */
+  public ColumnarFileReader(Path file) throws IOException {
+    this.channel = FileChannel.open(file);
+    try {
+      readHeader();
+    }
+    catch(IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Read the header and map the columns.
+   *
+   * @throws IOException on read errors or invalid files
+   */
+  private void readHeader() throws IOException {
+    final long size = channel.size();
+    ByteBuffer buf = read(0, ColumnarFileFormat.HEADER_SIZE);
+    if(buf.getInt() != ColumnarFileFormat.MAGIC) {
+      throw new IOException("Not an ELKI columnar file.");
+    }
+    final int version = buf.getInt();
+    if(version != ColumnarFileFormat.VERSION) {
+      throw new IOException("Unsupported columnar file version: " + version);
+    }
+    final long nrows = buf.getLong();
+    final int cols = buf.getInt();
+    blocksize = buf.getInt();
+    final int headersize = buf.getInt();
+    if(nrows < 0 || nrows > Integer.MAX_VALUE || cols < 0 || blocksize < 0 || headersize > size) {
+      throw new IOException("Invalid or unsupported columnar file header.");
+    }
+    rows = (int) nrows;
+    final int nblocks = blocksize > 0 ? (int) ((nrows + blocksize - 1) / blocksize) : 0;
+    buf = read(ColumnarFileFormat.HEADER_SIZE, headersize - ColumnarFileFormat.HEADER_SIZE);
+    types = new ColumnType[cols];
+    names = new String[cols];
+    data = new ByteBuffer[cols][];
+    stats = new double[cols][];
+    dicts = new String[cols][];
+    for(int c = 0; c < cols; c++) {
+      final int type = buf.getInt();
+      if(type < 0 || type >= ColumnType.values().length) {
+        throw new IOException("Unknown column type " + type + " in column " + c);
+      }
+      types[c] = ColumnType.values()[type];
+      byte[] name = new byte[buf.getInt()];
+      buf.get(name);
+      names[c] = new String(name, StandardCharsets.UTF_8);
+      final long dataOffset = buf.getLong(), statsOffset = buf.getLong(), dictOffset = buf.getLong();
+      final int dictsize = buf.getInt();
+      if(dataOffset + rows * (long) types[c].bytes > size) {
+        throw new IOException("Truncated columnar file, column " + c + " exceeds the file size.");
+      }
+      data[c] = map(dataOffset, types[c].bytes);
+      if(statsOffset > 0 && nblocks > 0) {
+        stats[c] = new double[nblocks << 1];
+        read(statsOffset, nblocks << 4).asDoubleBuffer().get(stats[c]);
+      }
+      if(types[c] == ColumnType.LABEL) {
+        dicts[c] = readDictionary(dictOffset, dictsize);
+      }
+    }
+  }
+
+  /**
+   * Read a section of the file into a heap buffer.
+   *
+   * @param pos Position
+   * @param len Length
+   * @return Buffer, in little endian order
+   * @throws IOException on read errors
+   */
+  private ByteBuffer read(long pos, int len) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+    while(buf.hasRemaining()) {
+      if(channel.read(buf, pos + buf.position()) < 0) {
+        throw new IOException("Unexpected end of file at position " + (pos + buf.position()));
+      }
+    }
+    buf.flip();
+    return buf;
+  }
+
+  /**
+   * Map the data of a column.
+   *
+   * @param offset Data offset
+   * @param bytes Bytes per value
+   * @return Mapped segments
+   * @throws IOException on mapping errors
+   */
+  private ByteBuffer[] map(long offset, int bytes) throws IOException {
+    ByteBuffer[] segments = new ByteBuffer[(int) ((rows + (long) SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+    for(int s = 0; s < segments.length; s++) {
+      final long start = ((long) s) << SEGMENT_SHIFT;
+      final long len = Math.min(SEGMENT_MASK + 1L, rows - start) * bytes;
+      segments[s] = channel.map(MapMode.READ_ONLY, offset + start * bytes, len).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return segments;
+  }
+
+  /**
+   * Read a label dictionary.
+   *
+   * @param offset Dictionary offset
+   * @param dictsize Dictionary size
+   * @return Labels
+   * @throws IOException on read errors
+   */
+  private String[] readDictionary(long offset, int dictsize) throws IOException {
+    ByteBuffer buf = channel.map(MapMode.READ_ONLY, offset, Math.min(channel.size() - offset, Integer.MAX_VALUE)) //
+        .order(ByteOrder.LITTLE_ENDIAN);
+    if(buf.getInt() != dictsize) {
+      throw new IOException("Dictionary size mismatch.");
+    }
+    String[] dict = new String[dictsize];
+    byte[] tmp = new byte[16];
+    for(int i = 0; i < dictsize; i++) {
+      final int len = buf.getInt();
+      tmp = len > tmp.length ? new byte[len] : tmp;
+      buf.get(tmp, 0, len);
+      dict[i] = new String(tmp, 0, len, StandardCharsets.UTF_8);
+    }
+    return dict;
+  }
+
+  /**
+   * Get the number of rows.
+   *
+   * @return Number of rows
+   */
+  public int size() {
+    return rows;
+  }
+
+  /**
+   * Get the number of columns.
+   *
+   * @return Number of columns
+   */
+  public int numColumns() {
+    return types.length;
+  }
+
+  /**
+   * Get the type of a column.
+   *
+   * @param col Column
+   * @return Column type
+   */
+  public ColumnType getType(int col) {
+    return types[col];
+  }
+
+  /**
+   * Get the name of a column.
+   *
+   * @param col Column
+   * @return Column name, may be empty
+   */
+  public String getName(int col) {
+    return names[col];
+  }
+
+  /**
+   * Get a numeric value.
+   *
+   * @param col Column
+   * @param row Row
+   * @return Value
+   */
+  public double getDouble(int col, int row) {
+    final ByteBuffer seg = data[col][row >>> SEGMENT_SHIFT];
+    final int off = row & SEGMENT_MASK;
+    switch(types[col]){
+    case FLOAT32:
+      return seg.getFloat(off << 2);
+    case FLOAT64:
+      return seg.getDouble(off << 3);
+    case INT32:
+      return seg.getInt(off << 2);
+    default:
+      throw new IllegalArgumentException("Not a numeric column: " + col);
+    }
+  }
+
+  /**
+   * Get a single precision value.
+   *
+   * @param col Column
+   * @param row Row
+   * @return Value
+   */
+  public float getFloat(int col, int row) {
+    return types[col] == ColumnType.FLOAT32 ? //
+        data[col][row >>> SEGMENT_SHIFT].getFloat((row & SEGMENT_MASK) << 2) : (float) getDouble(col, row);
+  }
+
+  /**
+   * Get an integer value, or label code.
+   *
+   * @param col Column
+   * @param row Row
+   * @return Value
+   */
+  public int getInt(int col, int row) {
+    return types[col] == ColumnType.INT32 || types[col] == ColumnType.LABEL ? //
+        data[col][row >>> SEGMENT_SHIFT].getInt((row & SEGMENT_MASK) << 2) : (int) getDouble(col, row);
+  }
+
+  /**
+   * Get a label value.
+   *
+   * @param col Column
+   * @param row Row
+   * @return Label, or {@code null} if missing
+   */
+  public String getLabel(int col, int row) {
+    final int code = getInt(col, row);
+    return code == ColumnarFileFormat.MISSING_LABEL ? null : dicts[col][code];
+  }
+
+  /**
+   * Get the block size of the statistics.
+   *
+   * @return Block size, 0 if no statistics are available
+   */
+  public int getBlockSize() {
+    return blocksize;
+  }
+
+  /**
+   * Test if a column has block statistics.
+   *
+   * @param col Column
+   * @return {@code true} if statistics are available
+   */
+  public boolean hasStatistics(int col) {
+    return stats[col] != null;
+  }
+
+  /**
+   * Get the minimum of a block of rows.
+   *
+   * @param col Column
+   * @param block Block number
+   * @return Minimum, positive infinity if the block has no values.
+   */
+  public double getBlockMin(int col, int block) {
+    return stats[col][block << 1];
+  }
+
+  /**
+   * Get the maximum of a block of rows.
+   *
+   * @param col Column
+   * @param block Block number
+   * @return Maximum, negative infinity if the block has no values.
+   */
+  public double getBlockMax(int col, int block) {
+    return stats[col][(block << 1) + 1];
+  }
+
+  /**
+   * Get the minimum and maximum of a column from the block statistics.
+   *
+   * @param col Column
+   * @return Minimum and maximum, or {@code null} without statistics
+   */
+  public double[] getMinMax(int col) {
+    final double[] s = stats[col];
+    if(s == null) {
+      return null;
+    }
+    double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+    for(int i = 0; i < s.length; i += 2) {
+      min = s[i] < min ? s[i] : min;
+      max = s[i + 1] > max ? s[i + 1] : max;
+    }
+    return new double[] { min, max };
+  }
+
+  /**
+   * Expose the file contents as a bundle.
+   * <p>
+   * All numeric columns form one vector field, which uses {@link FloatVector}
+   * if all columns are float32, {@link IntegerVector} if all are int32, and
+   * {@link DoubleVector} otherwise. All label columns form a
+   * {@link LabelList}, with missing labels omitted.
+   *
+   * @return Bundle of views onto the mapped data
+   */
+  public MultipleObjectsBundle asBundle() {
+    int nnum = 0, nlbl = 0;
+    boolean allfloat = true, allint = true, named = false;
+    for(int c = 0; c < types.length; c++) {
+      if(types[c].isNumeric()) {
+        ++nnum;
+        allfloat &= types[c] == ColumnType.FLOAT32;
+        allint &= types[c] == ColumnType.INT32;
+        named |= !names[c].isEmpty();
+      }
+      else {
+        ++nlbl;
+      }
+    }
+    final int[] num = new int[nnum], lbl = new int[nlbl];
+    String[] labels = named ? new String[nnum] : null;
+    for(int c = 0, i = 0, j = 0; c < types.length; c++) {
+      if(types[c].isNumeric()) {
+        if(labels != null) {
+          labels[i] = names[c];
+        }
+        num[i++] = c;
+      }
+      else {
+        lbl[j++] = c;
+      }
+    }
+    MultipleObjectsBundle bundle = new MultipleObjectsBundle();
+    if(nnum > 0) {
+      if(allfloat) {
+        bundle.appendColumn(new VectorFieldTypeInformation<>(FloatVector.FACTORY, nnum, labels), new RowList<FloatVector>() {
+          @Override
+          public FloatVector get(int row) {
+            float[] v = new float[num.length];
+            for(int d = 0; d < num.length; d++) {
+              v[d] = getFloat(num[d], row);
+            }
+            return FloatVector.wrap(v);
+          }
+        });
+      }
+      else if(allint) {
+        bundle.appendColumn(new VectorFieldTypeInformation<>(IntegerVector.FACTORY, nnum, labels), new RowList<IntegerVector>() {
+          @Override
+          public IntegerVector get(int row) {
+            int[] v = new int[num.length];
+            for(int d = 0; d < num.length; d++) {
+              v[d] = getInt(num[d], row);
+            }
+            return IntegerVector.wrap(v);
+          }
+        });
+      }
+      else {
+        bundle.appendColumn(new VectorFieldTypeInformation<>(DoubleVector.FACTORY, nnum, labels), new RowList<DoubleVector>() {
+          @Override
+          public DoubleVector get(int row) {
+            double[] v = new double[num.length];
+            for(int d = 0; d < num.length; d++) {
+              v[d] = getDouble(num[d], row);
+            }
+            return DoubleVector.wrap(v);
+          }
+        });
+      }
+    }
+    if(nlbl > 0) {
+      bundle.appendColumn(TypeUtil.LABELLIST, new RowList<LabelList>() {
+        @Override
+        public LabelList get(int row) {
+          List<String> l = new ArrayList<>(lbl.length);
+          for(int c : lbl) {
+            String s = getLabel(c, row);
+            if(s != null) {
+              l.add(s);
+            }
+          }
+          return LabelList.make(l);
+        }
+      });
+    }
+    return bundle;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Read-only list view of the rows.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  private abstract class RowList<O> extends AbstractList<O> implements RandomAccess {
+    @Override
+    public int size() {
+      return rows;
+    }
+  }
+}
@@ -0,0 +1,476 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.columnar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import elki.data.ByteVector;
+import elki.data.ClassLabel;
+import elki.data.FloatVector;
+import elki.data.IntegerVector;
+import elki.data.LabelList;
+import elki.data.NumberVector;
+import elki.data.ShortVector;
+import elki.data.SparseNumberVector;
+import elki.data.type.SimpleTypeInformation;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.columnar.ColumnarFileFormat.ColumnType;
+import elki.utilities.exceptions.AbortException;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Write a bundle in the ELKI columnar file format.
+ * <p>
+ * Dense numeric vector fields are split into one column per dimension, label
+ * lists into one label column per position. Single precision vectors are
+ * stored as float32, integer vectors as int32, all others as float64.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @has - - - ColumnarFileFormat
+ */
+public class ColumnarFileWriter {
+  /**
+   * Block size for statistics, 0 to disable.
+   */
+  private int blocksize;
+
+  /**
+   * Constructor.
+   *
+   * @param blocksize Block size for statistics, 0 to disable
+   */
+  public ColumnarFileWriter(int blocksize) {
+    this.blocksize = blocksize;
+  }
+
+  /**
+   * Constructor with default block size.
+   */
+  public ColumnarFileWriter() {
+    this(ColumnarFileFormat.DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Write a bundle to a file.
+   *
+   * @param bundle Bundle to write
+   * @param file Output file
+   * @throws IOException on write errors
+   */
+  public void write(MultipleObjectsBundle bundle, Path file) throws IOException {
+    final int rows = bundle.dataLength();
+    List<Column> columns = analyze(bundle);
+    // Compute the layout:
+    long pos = ColumnarFileFormat.HEADER_SIZE;
+    for(Column c : columns) {
+      pos += 4 + 4 + c.name.length + 8 + 8 + 8 + 4;
+    }
+    final int headersize = (int) ColumnarFileFormat.align(pos);
+    final int nblocks = blocksize > 0 ? (rows + blocksize - 1) / blocksize : 0;
+    pos = headersize;
+    for(Column c : columns) {
+      c.dataOffset = pos;
+      pos = ColumnarFileFormat.align(pos + rows * (long) c.type.bytes);
+    }
+    for(Column c : columns) {
+      if(c.type.isNumeric() && nblocks > 0) {
+        c.statsOffset = pos;
+        pos += nblocks * 16L;
+      }
+    }
+    for(Column c : columns) {
+      if(c.dict != null) {
+        c.dictOffset = pos;
+        pos += 4;
+        for(byte[] b : c.dict) {
+          pos += 4 + b.length;
+        }
+      }
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, //
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      Output out = new Output(channel);
+      out.putInt(ColumnarFileFormat.MAGIC).putInt(ColumnarFileFormat.VERSION);
+      out.putLong(rows).putInt(columns.size()).putInt(blocksize);
+      out.putInt(headersize).putInt(0);
+      for(Column c : columns) {
+        out.putInt(c.type.ordinal()).putInt(c.name.length).put(c.name);
+        out.putLong(c.dataOffset).putLong(c.statsOffset).putLong(c.dictOffset);
+        out.putInt(c.dict != null ? c.dict.size() : 0);
+      }
+      for(Column c : columns) {
+        out.pad(c.dataOffset);
+        writeData(bundle, c, out, nblocks);
+      }
+      for(Column c : columns) {
+        if(c.stats != null) {
+          out.pad(c.statsOffset);
+          for(double v : c.stats) {
+            out.putDouble(v);
+          }
+        }
+      }
+      for(Column c : columns) {
+        if(c.dict != null) {
+          out.pad(c.dictOffset);
+          out.putInt(c.dict.size());
+          for(byte[] b : c.dict) {
+            out.putInt(b.length).put(b);
+          }
+        }
+      }
+      out.flush();
+    }
+  }
+
+  /**
+   * Determine the output columns, and build the label dictionaries.
+   *
+   * @param bundle Bundle
+   * @return Output columns
+   */
+  private static List<Column> analyze(MultipleObjectsBundle bundle) {
+    List<Column> columns = new ArrayList<>();
+    for(int i = 0; i < bundle.metaLength(); i++) {
+      SimpleTypeInformation<?> meta = bundle.meta(i);
+      if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta) //
+          && !SparseNumberVector.class.isAssignableFrom(meta.getRestrictionClass())) {
+        VectorFieldTypeInformation<?> vmeta = (VectorFieldTypeInformation<?>) meta;
+        Class<?> cls = vmeta.getRestrictionClass();
+        ColumnType type = FloatVector.class.isAssignableFrom(cls) ? ColumnType.FLOAT32 : //
+            IntegerVector.class.isAssignableFrom(cls) || ShortVector.class.isAssignableFrom(cls) //
+                || ByteVector.class.isAssignableFrom(cls) ? ColumnType.INT32 : ColumnType.FLOAT64;
+        for(int d = 0; d < vmeta.getDimensionality(); d++) {
+          String name = vmeta.getLabel(d);
+          columns.add(new Column(type, name != null ? name : "", i, d));
+        }
+      }
+      else if(TypeUtil.LABELLIST.isAssignableFromType(meta) || TypeUtil.STRING.isAssignableFromType(meta) //
+          || TypeUtil.CLASSLABEL.isAssignableFromType(meta)) {
+        int width = 1;
+        if(TypeUtil.LABELLIST.isAssignableFromType(meta)) {
+          width = 0;
+          for(int j = 0; j < bundle.dataLength(); j++) {
+            LabelList l = (LabelList) bundle.data(j, i);
+            width = l != null && l.size() > width ? l.size() : width;
+          }
+        }
+        for(int k = 0; k < width; k++) {
+          Column c = new Column(ColumnType.LABEL, meta.getLabel() != null ? meta.getLabel() : "", i, k);
+          c.dict = new ArrayList<>();
+          c.codes = new Object2IntOpenHashMap<>();
+          c.codes.defaultReturnValue(ColumnarFileFormat.MISSING_LABEL);
+          for(int j = 0; j < bundle.dataLength(); j++) {
+            String s = label(bundle, j, c);
+            if(s != null && !c.codes.containsKey(s)) {
+              c.codes.put(s, c.dict.size());
+              c.dict.add(s.getBytes(StandardCharsets.UTF_8));
+            }
+          }
+          columns.add(c);
+        }
+      }
+      else {
+        throw new AbortException("Column type not supported by the columnar file format: " + meta);
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Get a label value.
+   *
+   * @param bundle Bundle
+   * @param row Row
+   * @param c Column
+   * @return Label, or {@code null}
+   */
+  private static String label(MultipleObjectsBundle bundle, int row, Column c) {
+    Object o = bundle.data(row, c.bcol);
+    if(o instanceof LabelList) {
+      LabelList l = (LabelList) o;
+      return c.sub < l.size() ? l.get(c.sub) : null;
+    }
+    return o instanceof String ? (String) o : o instanceof ClassLabel ? o.toString() : null;
+  }
+
+  /**
+   * Write the data of one column, and collect the block statistics.
+   *
+   * @param bundle Bundle
+   * @param c Column
+   * @param out Output
+   * @param nblocks Number of statistics blocks
+   * @throws IOException on write errors
+   */
+  private void writeData(MultipleObjectsBundle bundle, Column c, Output out, int nblocks) throws IOException {
+    final int rows = bundle.dataLength();
+    if(c.type == ColumnType.LABEL) {
+      for(int j = 0; j < rows; j++) {
+        String s = label(bundle, j, c);
+        out.putInt(s != null ? c.codes.getInt(s) : ColumnarFileFormat.MISSING_LABEL);
+      }
+      return;
+    }
+    double[] stats = nblocks > 0 ? new double[nblocks << 1] : null;
+    double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+    for(int j = 0; j < rows; j++) {
+      NumberVector v = (NumberVector) bundle.data(j, c.bcol);
+      final double val;
+      switch(c.type){
+      case FLOAT32: {
+        float f = v.floatValue(c.sub);
+        out.putFloat(f);
+        val = f;
+        break;
+      }
+      case INT32: {
+        int i = v.intValue(c.sub);
+        out.putInt(i);
+        val = i;
+        break;
+      }
+      default:
+        out.putDouble(val = v.doubleValue(c.sub));
+      }
+      min = val < min ? val : min; // NaN is ignored
+      max = val > max ? val : max;
+      if(stats != null && (j + 1 == rows || (j + 1) % blocksize == 0)) {
+        final int b = j / blocksize;
+        stats[b << 1] = min;
+        stats[(b << 1) + 1] = max;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+      }
+    }
+    c.stats = stats;
+  }
+
+  /**
+   * Output column.
+   *
+   * @author Erich Schubert
+   */
+  private static class Column {
+    /**
+     * Column type.
+     */
+    ColumnType type;
+
+    /**
+     * Column name, UTF-8 encoded.
+     */
+    byte[] name;
+
+    /**
+     * Bundle column and dimension or label position.
+     */
+    int bcol, sub;
+
+    /**
+     * Section offsets.
+     */
+    long dataOffset, statsOffset, dictOffset;
+
+    /**
+     * Label dictionary, UTF-8 encoded.
+     */
+    List<byte[]> dict;
+
+    /**
+     * Label codes.
+     */
+    Object2IntOpenHashMap<String> codes;
+
+    /**
+     * Block statistics, minimum and maximum interleaved.
+     */
+    double[] stats;
+
+    /**
+     * Constructor.
+     *
+     * @param type Column type
+     * @param name Column name
+     * @param bcol Bundle column
+     * @param sub Dimension or label position
+     */
+    Column(ColumnType type, String name, int bcol, int sub) {
+      this.type = type;
+      this.name = name.getBytes(StandardCharsets.UTF_8);
+      this.bcol = bcol;
+      this.sub = sub;
+    }
+  }
+
+  /**
+   * Buffered sequential output.
+   *
+   * @author Erich Schubert
+   */
+  private static class Output {
+    /**
+     * Output channel.
+     */
+    FileChannel channel;
+
+    /**
+     * Write buffer.
+     */
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Bytes written to the channel.
+     */
+    long written = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param channel Output channel
+     */
+    Output(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * Ensure buffer space.
+     *
+     * @param bytes Required space
+     * @throws IOException on write errors
+     */
+    private void ensure(int bytes) throws IOException {
+      if(buffer.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    /**
+     * Flush the buffer.
+     *
+     * @throws IOException on write errors
+     */
+    void flush() throws IOException {
+      buffer.flip();
+      while(buffer.hasRemaining()) {
+        written += channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    /**
+     * Pad with zeros up to the given position.
+     *
+     * @param pos File position
+     * @throws IOException on write errors
+     */
+    void pad(long pos) throws IOException {
+      long cur = written + buffer.position();
+      assert cur <= pos : "Layout mismatch.";
+      for(; cur < pos; cur++) {
+        ensure(1);
+        buffer.put((byte) 0);
+      }
+    }
+
+    /**
+     * Write a int value.
+     *
+     * @param v Value
+     * @return this
+     * @throws IOException on write errors
+     */
+    Output putInt(int v) throws IOException {
+      ensure(Integer.BYTES);
+      buffer.putInt(v);
+      return this;
+    }
+
+    /**
+     * Write a long value.
+     *
+     * @param v Value
+     * @return this
+     * @throws IOException on write errors
+     */
+    Output putLong(long v) throws IOException {
+      ensure(Long.BYTES);
+      buffer.putLong(v);
+      return this;
+    }
+
+    /**
+     * Write a float value.
+     *
+     * @param v Value
+     * @return this
+     * @throws IOException on write errors
+     */
+    Output putFloat(float v) throws IOException {
+      ensure(Float.BYTES);
+      buffer.putFloat(v);
+      return this;
+    }
+
+    /**
+     * Write a double value.
+     *
+     * @param v Value
+     * @return this
+     * @throws IOException on write errors
+     */
+    Output putDouble(double v) throws IOException {
+      ensure(Double.BYTES);
+      buffer.putDouble(v);
+      return this;
+    }
+
+    /**
+     * Write a byte array.
+     *
+     * @param b Bytes
+     * @return this
+     * @throws IOException on write errors
+     */
+    Output put(byte[] b) throws IOException {
+      for(int off = 0; off < b.length;) {
+        ensure(1);
+        int len = Math.min(buffer.remaining(), b.length - off);
+        buffer.put(b, off, len);
+        off += len;
+      }
+      return this;
+    }
+  }
+}
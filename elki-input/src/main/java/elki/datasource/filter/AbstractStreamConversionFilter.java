@@ -23,6 +23,7 @@ package elki.datasource.filter;
 import elki.data.type.SimpleTypeInformation;
 import elki.data.type.TypeInformation;
 import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
 
 /**
  * Abstract base class for simple conversion filters such as normalizations and
@@ -44,7 +45,14 @@ public abstract class AbstractStreamConversionFilter<I, O> extends AbstractStrea
    * The column to filter.
    */
   int column = -1;
-  
+
+  @Override
+  public BundleStreamSource init(BundleStreamSource source) {
+    meta = null;
+    column = -1;
+    return super.init(source);
+  }
+
   @Override
   public BundleMeta getMeta() {
     return meta;
@@ -0,0 +1,133 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.filter;
+
+import elki.data.NumberVector;
+import elki.data.type.SimpleTypeInformation;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Abstract base class for streaming filters that produce vectors, and that
+ * need a statistics pass over the data first, such as columnwise
+ * normalizations.
+ * <p>
+ * The statistics pass uses the same {@link #prepareStart},
+ * {@link #prepareProcessInstance}, and {@link #prepareComplete} protocol as
+ * {@link AbstractConversionFilter}, but only the statistics are kept in
+ * memory.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @param <I> Input type
+ * @param <O> Output vector type
+ */
+public abstract class AbstractVectorTwoPassConversionFilter<I, O extends NumberVector> extends AbstractVectorStreamConversionFilter<I, O> implements TwoPassStreamFilter {
+  @Override
+  public MultipleObjectsBundle filter(MultipleObjectsBundle objects) {
+    if(objects.dataLength() == 0) {
+      return objects;
+    }
+    prepare(objects.asStream());
+    return super.filter(objects);
+  }
+
+  @Override
+  public void prepare(BundleStreamSource source) {
+    final Logging logger = getLogger();
+    IndefiniteProgress prog = null;
+    int col = -1, count = 0;
+    for(BundleStreamSource.Event ev = source.nextEvent(); ev != BundleStreamSource.Event.END_OF_STREAM; ev = source.nextEvent()) {
+      switch(ev){
+      case META_CHANGED:
+        if(col < 0) {
+          BundleMeta meta = source.getMeta();
+          for(int i = 0; i < meta.size(); i++) {
+            if(getInputTypeRestriction().isAssignableFromType(meta.get(i))) {
+              @SuppressWarnings("unchecked")
+              final SimpleTypeInformation<I> castType = (SimpleTypeInformation<I>) meta.get(i);
+              if(!prepareStart(castType)) {
+                return; // No statistics needed.
+              }
+              col = i;
+              prog = logger.isVerbose() ? new IndefiniteProgress("Preparing normalization", logger) : null;
+              break;
+            }
+          }
+        }
+        break;
+      case NEXT_OBJECT:
+        if(col >= 0) {
+          @SuppressWarnings("unchecked")
+          final I obj = (I) source.data(col);
+          prepareProcessInstance(obj);
+          ++count;
+          logger.incrementProcessed(prog);
+        }
+        break;
+      default:
+        break;
+      }
+    }
+    logger.setCompleted(prog);
+    if(count > 0) {
+      prepareComplete();
+    }
+  }
+
+  /**
+   * Class logger.
+   *
+   * @return Logger
+   */
+  protected abstract Logging getLogger();
+
+  /**
+   * Return "true" when the filter needs the statistics pass.
+   *
+   * @param in Input type information
+   * @return true or false
+   */
+  protected boolean prepareStart(SimpleTypeInformation<I> in) {
+    return false;
+  }
+
+  /**
+   * Process a single object during the statistics pass.
+   *
+   * @param obj Object to process
+   */
+  protected void prepareProcessInstance(I obj) {
+    throw new AbortException("ProcessInstance not implemented, but prepareStart true?");
+  }
+
+  /**
+   * Complete the statistics pass.
+   */
+  protected void prepareComplete() {
+    // optional - default NOOP.
+  }
+}
@@ -87,6 +87,11 @@ public class ReplaceNaNWithRandomFilter extends AbstractStreamFilter {
     this.rnd = rnd.getSingleThreadedRandom();
   }
 
+  @Override
+  public boolean isReplayable() {
+    return false;
+  }
+
   @Override
   public BundleMeta getMeta() {
     return source.getMeta();
@@ -23,7 +23,7 @@ package elki.datasource.filter.normalization.columnwise;
 import elki.data.NumberVector;
 import elki.data.type.SimpleTypeInformation;
 import elki.data.type.TypeUtil;
-import elki.datasource.filter.AbstractVectorConversionFilter;
+import elki.datasource.filter.AbstractVectorTwoPassConversionFilter;
 import elki.datasource.filter.normalization.NonNumericFeaturesException;
 import elki.datasource.filter.normalization.Normalization;
 import elki.logging.Logging;
@@ -44,7 +44,7 @@ import elki.utilities.io.FormatUtil;
  *
  * @param <V> vector type
  */
-public class AttributeWiseMeanNormalization<V extends NumberVector> extends AbstractVectorConversionFilter<V, V> implements Normalization<V> {
+public class AttributeWiseMeanNormalization<V extends NumberVector> extends AbstractVectorTwoPassConversionFilter<V, V> implements Normalization<V> {
   /**
    * Class logger.
    */
@@ -61,6 +61,11 @@ public class RandomSamplingStreamFilter extends AbstractStreamFilter {
     this.random = rnd.getSingleThreadedRandom();
   }
 
+  @Override
+  public boolean isReplayable() {
+    return false;
+  }
+
   @Override
   public BundleMeta getMeta() {
     return source.getMeta();
@@ -27,7 +27,7 @@ import elki.data.NumberVector;
 import elki.data.type.SimpleTypeInformation;
 import elki.data.type.TypeUtil;
 import elki.data.type.VectorFieldTypeInformation;
-import elki.datasource.filter.AbstractVectorConversionFilter;
+import elki.datasource.filter.AbstractVectorTwoPassConversionFilter;
 import elki.logging.Logging;
 import elki.math.linearalgebra.CovarianceMatrix;
 import elki.math.linearalgebra.pca.EigenPair;
@@ -71,7 +71,7 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  */
 @Alias({ "whiten", "whitening", "pca" })
 @Priority(Priority.RECOMMENDED)
-public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> extends AbstractVectorConversionFilter<O, O> {
+public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> extends AbstractVectorTwoPassConversionFilter<O, O> {
   /**
    * Class logger.
    */
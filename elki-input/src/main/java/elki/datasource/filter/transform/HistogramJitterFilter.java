@@ -87,6 +87,11 @@ public class HistogramJitterFilter<V extends NumberVector> extends AbstractVecto
     this.rnd = rnd.getSingleThreadedRandom();
   }
 
+  @Override
+  public boolean isReplayable() {
+    return false;
+  }
+
   @Override
   protected V filterSingleObject(V obj) {
     final int dim = obj.getDimensionality();
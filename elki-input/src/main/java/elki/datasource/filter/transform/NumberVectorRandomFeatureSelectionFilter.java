@@ -76,6 +76,11 @@ public class NumberVectorRandomFeatureSelectionFilter<V extends NumberVector> ex
     this.rnd = rnd;
   }
 
+  @Override
+  public boolean isReplayable() {
+    return false;
+  }
+
   @Override
   protected V filterSingleObject(V obj) {
     return VectorUtil.project(obj, selectedAttributes, factory);
@@ -22,8 +22,14 @@ package elki.datasource.parser;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import elki.data.DoubleVector;
@@ -35,16 +41,20 @@ import elki.data.type.TypeUtil;
 import elki.data.type.VectorFieldTypeInformation;
 import elki.data.type.VectorTypeInformation;
 import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.MultipleObjectsBundle;
 import elki.logging.Logging;
+import elki.parallel.ParallelCore;
 import elki.utilities.datastructures.BitsUtil;
 import elki.utilities.datastructures.arraylike.DoubleArray;
 import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.ByteBufferInputStream;
 import elki.utilities.io.ParseUtil;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.IntListParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 /**
@@ -56,6 +66,9 @@ import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
  * <p>
  * An index can be specified to identify an entry to be treated as class label.
  * This index counts all entries (numeric and labels as well) starting with 0.
+ * <p>
+ * Uncompressed files can also be parsed in parallel using
+ * {@link #parseParallel}, which splits the file into newline-aligned chunks.
  *
  * @author Arthur Zimek
  * @author Erich Schubert
@@ -72,6 +85,11 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
    */
   private static final Logging LOG = Logging.getLogger(NumberVectorLabelParser.class);
 
+  /**
+   * Input format.
+   */
+  protected CSVReaderFormat format;
+
   /**
    * Keeps the indices of the attributes to be treated as a string label.
    */
@@ -142,6 +160,11 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
    */
   boolean warnedDim = false;
 
+  /**
+   * Do not treat a leading label-only row as header (for continuation chunks).
+   */
+  boolean noHeader = false;
+
   /**
    * Constructor.
    *
@@ -151,6 +174,7 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
    */
   public NumberVectorLabelParser(CSVReaderFormat format, long[] labelIndices, Factory<V> factory) {
     super(format);
+    this.format = format;
     this.labelIndices = labelIndices;
     this.factory = factory;
   }
@@ -305,7 +329,7 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
       }
     }
     // Maybe a label row?
-    if(curvec == null && attributes.size == 0) {
+    if(curvec == null && attributes.size == 0 && !noHeader) {
       columnnames = new ArrayList<>(labels);
       haslabels = false;
       curvec = null;
@@ -321,6 +345,188 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
     return true;
   }
 
+  /**
+   * Parse an uncompressed file in parallel.
+   * <p>
+   * The file is split into chunks at line boundaries, which are parsed
+   * concurrently by independent copies of this parser, and concatenated in
+   * the original order. Only the first chunk may contain a header row.
+   * <p>
+   * This only uses the configuration of this parser, subclasses that override
+   * the parsing must not use this method.
+   *
+   * @param file Input file
+   * @param chunksize Approximate chunk size in bytes
+   * @return Parsed data
+   * @throws IOException on read errors
+   */
+  public MultipleObjectsBundle parseParallel(Path file, int chunksize) throws IOException {
+    List<Chunk<V>> chunks = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      LongArrayList bounds = new LongArrayList();
+      bounds.add(0L);
+      for(long pos = chunksize; pos < size; pos += chunksize) {
+        long next = findLineEnd(channel, Math.max(pos, bounds.getLong(bounds.size() - 1)), size);
+        if(next < size && next > bounds.getLong(bounds.size() - 1)) {
+          bounds.add(next);
+        }
+      }
+      bounds.add(size);
+      ParallelCore core = ParallelCore.getCore();
+      core.connect();
+      try {
+        List<Future<Chunk<V>>> futures = new ArrayList<>(bounds.size() - 1);
+        for(int i = 1; i < bounds.size(); i++) {
+          final long start = bounds.getLong(i - 1), len = bounds.getLong(i) - start;
+          if(len > Integer.MAX_VALUE) {
+            throw new AbortException("Input line too long for parallel parsing at byte offset " + start);
+          }
+          final ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+          final boolean first = i == 1;
+          futures.add(core.submit(() -> new NumberVectorLabelParser<>(format, labelIndices, factory).parseChunk(buf, first)));
+        }
+        for(Future<Chunk<V>> f : futures) {
+          chunks.add(f.get());
+        }
+      }
+      catch(ExecutionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new AbortException("Parallel parsing failed.", e.getCause());
+      }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AbortException("Parallel parsing was interrupted.", e);
+      }
+      finally {
+        core.disconnect();
+      }
+    }
+    // Merge the chunk statistics:
+    Chunk<V> head = chunks.get(0);
+    columnnames = head.columnnames;
+    mindim = Integer.MAX_VALUE;
+    maxdim = 0;
+    haslabels = false;
+    int size = 0;
+    for(Chunk<V> c : chunks) {
+      mindim = c.mindim < mindim ? c.mindim : mindim;
+      maxdim = c.maxdim > maxdim ? c.maxdim : maxdim;
+      haslabels |= c.haslabels;
+      size += c.vectors.size();
+    }
+    if(maxdim == 0) {
+      throw new AbortException("No numeric data was read. Verify the column separator; for textual data use other parsers.");
+    }
+    if(mindim != maxdim && LOG.isVerbose()) {
+      LOG.verbose("Non-uniform column width detected, widening data type to " + mindim + "-" + maxdim + " dimensions.");
+    }
+    buildMeta();
+    List<V> vectors = new ArrayList<>(size);
+    for(Chunk<V> c : chunks) {
+      vectors.addAll(c.vectors);
+    }
+    if(!haslabels) {
+      return MultipleObjectsBundle.makeSimple(getTypeInformation(mindim, maxdim), vectors);
+    }
+    List<LabelList> lbls = new ArrayList<>(size);
+    for(Chunk<V> c : chunks) {
+      lbls.addAll(c.labels);
+    }
+    return MultipleObjectsBundle.makeSimple(getTypeInformation(mindim, maxdim), vectors, TypeUtil.LABELLIST, lbls);
+  }
+
+  /**
+   * Find the first line start at or after the given position.
+   *
+   * @param channel File channel
+   * @param pos Starting position
+   * @param size File size
+   * @return Position after the next newline, or the file size
+   * @throws IOException on read errors
+   */
+  private static long findLineEnd(FileChannel channel, long pos, long size) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(8192);
+    while(pos < size) {
+      buf.clear();
+      int read = channel.read(buf, pos);
+      if(read <= 0) {
+        break;
+      }
+      for(int i = 0; i < read; i++) {
+        if(buf.get(i) == '\n') {
+          return pos + i + 1;
+        }
+      }
+      pos += read;
+    }
+    return size;
+  }
+
+  /**
+   * Parse a single chunk of the input.
+   *
+   * @param buf Input data
+   * @param first First chunk, which may contain a header
+   * @return Chunk contents
+   */
+  private Chunk<V> parseChunk(ByteBuffer buf, boolean first) {
+    initStream(new ByteBufferInputStream(buf));
+    noHeader = !first;
+    Chunk<V> chunk = new Chunk<>();
+    try {
+      while(reader.nextLineExceptComments()) {
+        if(parseLineInternal()) {
+          final int curdim = curvec.getDimensionality();
+          chunk.mindim = curdim < chunk.mindim ? curdim : chunk.mindim;
+          chunk.maxdim = curdim > chunk.maxdim ? curdim : chunk.maxdim;
+          chunk.vectors.add(curvec);
+          chunk.labels.add(curlbl);
+        }
+      }
+    }
+    catch(IOException e) {
+      throw new IllegalArgumentException("Error while parsing line " + reader.getLineNumber() + " of a chunk.");
+    }
+    chunk.haslabels = haslabels;
+    chunk.columnnames = columnnames;
+    cleanup();
+    return chunk;
+  }
+
+  /**
+   * Parsed data of a single chunk.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  private static class Chunk<V> {
+    /**
+     * Vectors parsed.
+     */
+    List<V> vectors = new ArrayList<>();
+
+    /**
+     * Labels parsed.
+     */
+    List<LabelList> labels = new ArrayList<>();
+
+    /**
+     * Dimensionality range.
+     */
+    int mindim = Integer.MAX_VALUE, maxdim = 0;
+
+    /**
+     * Whether labels were observed.
+     */
+    boolean haslabels;
+
+    /**
+     * Column names, if a header was found.
+     */
+    List<String> columnnames;
+  }
+
   /**
    * Creates a database object of type V.
    *
@@ -0,0 +1,194 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.type.TypeUtil;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.filter.AbstractStreamFilter;
+import elki.datasource.filter.ObjectFilter;
+import elki.datasource.filter.normalization.columnwise.AttributeWiseMinMaxNormalization;
+import elki.datasource.parser.NumberVectorLabelParser;
+
+/**
+ * Test the filter chaining of the database connections, in particular the
+ * replay of streaming filters for two-pass filters.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class AbstractDatabaseConnectionTest extends AbstractDataSourceTest {
+  /**
+   * Test data.
+   */
+  private static final double[][] DATA = { { 1, 10 }, { 2, 30 }, { 4, 20 }, { 3, 50 }, { 5, 40 } };
+
+  @Test
+  public void testBundleReplay() {
+    CountingFilter counter = new CountingFilter(true);
+    MultipleObjectsBundle bundle = new ArrayAdapterDatabaseConnection(DATA, filters(counter)).loadData();
+    // Replayed for the statistics pass, and for the final pass:
+    assertEquals(2, counter.inits);
+    assertNormalized(bundle);
+  }
+
+  @Test
+  public void testBundleNonReplayable() {
+    CountingFilter counter = new CountingFilter(false);
+    MultipleObjectsBundle bundle = new ArrayAdapterDatabaseConnection(DATA, filters(counter)).loadData();
+    // Materialized before the statistics pass:
+    assertEquals(1, counter.inits);
+    assertNormalized(bundle);
+  }
+
+  @Test
+  public void testStreamReplay() {
+    // The input stream itself is materialized once, the filter is applied to
+    // it before materialization:
+    CountingFilter counter = new CountingFilter(true);
+    assertNormalized(loadStream(filters(counter)));
+    assertEquals(1, counter.inits);
+    // Behind the first two-pass filter, the chain is replayed:
+    counter = new CountingFilter(true);
+    assertNormalized(loadStream(Arrays.asList(new AttributeWiseMinMaxNormalization<DoubleVector>(), counter, new AttributeWiseMinMaxNormalization<DoubleVector>())));
+    assertEquals(2, counter.inits);
+  }
+
+  @Test
+  public void testStreamNonReplayable() {
+    CountingFilter counter = new CountingFilter(false);
+    assertNormalized(loadStream(Arrays.asList(new AttributeWiseMinMaxNormalization<DoubleVector>(), counter, new AttributeWiseMinMaxNormalization<DoubleVector>())));
+    assertEquals(1, counter.inits);
+  }
+
+  /**
+   * Build the filter list: the given filter, followed by a normalization.
+   *
+   * @param first First filter
+   * @return Filter list
+   */
+  private static List<ObjectFilter> filters(ObjectFilter first) {
+    return Arrays.asList(first, new AttributeWiseMinMaxNormalization<DoubleVector>());
+  }
+
+  /**
+   * Load the test data through a streaming parser.
+   *
+   * @param filters Filters
+   * @return Bundle
+   */
+  private static MultipleObjectsBundle loadStream(List<ObjectFilter> filters) {
+    StringBuilder buf = new StringBuilder();
+    for(double[] row : DATA) {
+      buf.append(row[0]).append(' ').append(row[1]).append('\n');
+    }
+    try (InputStreamDatabaseConnection dbc = new InputStreamDatabaseConnection(new ByteArrayInputStream(buf.toString().getBytes(StandardCharsets.UTF_8)), filters, new NumberVectorLabelParser<>(DoubleVector.FACTORY))) {
+      return dbc.loadData();
+    }
+    catch(IOException e) {
+      throw new AssertionError(e); // Fail the test.
+    }
+  }
+
+  /**
+   * Check that all objects were normalized to exactly [0;1].
+   *
+   * @param bundle Bundle
+   */
+  private static void assertNormalized(MultipleObjectsBundle bundle) {
+    assertEquals("Size not as expected", DATA.length, bundle.dataLength());
+    final int dim = getFieldDimensionality(bundle, 0, TypeUtil.NUMBER_VECTOR_FIELD);
+    for(int d = 0; d < dim; d++) {
+      double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+      for(int row = 0; row < bundle.dataLength(); row++) {
+        final double v = get(bundle, row, 0, DoubleVector.class).doubleValue(d);
+        min = v < min ? v : min;
+        max = v > max ? v : max;
+      }
+      assertEquals("Minimum not as expected", 0., min, 0.);
+      assertEquals("Maximum not as expected", 1., max, 0.);
+    }
+  }
+
+  /**
+   * Pass-through filter that counts how often it is initialized.
+   *
+   * @author Erich Schubert
+   */
+  private static class CountingFilter extends AbstractStreamFilter {
+    /**
+     * Number of initializations.
+     */
+    int inits = 0;
+
+    /**
+     * Whether to allow replaying.
+     */
+    boolean replayable;
+
+    /**
+     * Constructor.
+     *
+     * @param replayable Whether to allow replaying
+     */
+    CountingFilter(boolean replayable) {
+      this.replayable = replayable;
+    }
+
+    @Override
+    public boolean isReplayable() {
+      return replayable;
+    }
+
+    @Override
+    public BundleStreamSource init(BundleStreamSource source) {
+      ++inits;
+      return super.init(source);
+    }
+
+    @Override
+    public BundleMeta getMeta() {
+      return source.getMeta();
+    }
+
+    @Override
+    public Object data(int rnum) {
+      return source.data(rnum);
+    }
+
+    @Override
+    public Event nextEvent() {
+      return source.nextEvent();
+    }
+  }
+}
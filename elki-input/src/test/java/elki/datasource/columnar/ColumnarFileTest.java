@@ -0,0 +1,127 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.columnar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import elki.data.FloatVector;
+import elki.data.LabelList;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.datasource.AbstractDataSourceTest;
+import elki.datasource.ColumnarDatabaseConnection;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.columnar.ColumnarFileFormat.ColumnType;
+
+/**
+ * Test the columnar file format.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class ColumnarFileTest extends AbstractDataSourceTest {
+  @Test
+  public void roundtripDoubleLabels() throws IOException {
+    MultipleObjectsBundle orig = readBundle(UNITTEST + "label-selection-test-1.csv");
+    Path file = Files.createTempFile("elki-columnar", ".bin");
+    try {
+      new ColumnarFileWriter(7).write(orig, file);
+      MultipleObjectsBundle bundle;
+      try (ColumnarDatabaseConnection dbc = new ColumnarDatabaseConnection(null, file)) {
+        bundle = dbc.loadData();
+      }
+      assertEquals("Columns", 2, bundle.metaLength());
+      assertEquals("Rows", orig.dataLength(), bundle.dataLength());
+      assertEquals("Dimensionality", 2, getFieldDimensionality(bundle, 0, TypeUtil.NUMBER_VECTOR_FIELD));
+      assertTrue("Labels", TypeUtil.LABELLIST.isAssignableFromType(bundle.meta(1)));
+      for(int i = 0; i < orig.dataLength(); i++) {
+        NumberVector e = get(orig, i, 0, NumberVector.class), a = get(bundle, i, 0, NumberVector.class);
+        assertArrayEquals("Vector " + i, e.toArray(), a.toArray(), 0.);
+        assertEquals("Labels " + i, orig.data(i, 1).toString(), bundle.data(i, 1).toString());
+      }
+      try (ColumnarFileReader reader = new ColumnarFileReader(file)) {
+        assertEquals(ColumnType.FLOAT64, reader.getType(0));
+        assertEquals(ColumnType.LABEL, reader.getType(2));
+        for(int c = 0; c < 2; c++) {
+          double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+          for(int i = 0; i < reader.size(); i++) {
+            final double v = reader.getDouble(c, i);
+            min = v < min ? v : min;
+            max = v > max ? v : max;
+            final int b = i / reader.getBlockSize();
+            assertTrue("Block minimum", reader.getBlockMin(c, b) <= v);
+            assertTrue("Block maximum", reader.getBlockMax(c, b) >= v);
+          }
+          assertArrayEquals("Column range", new double[] { min, max }, reader.getMinMax(c), 0.);
+        }
+      }
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void roundtripFloatMissingLabels() throws IOException {
+    List<FloatVector> vecs = new ArrayList<>();
+    List<LabelList> lbls = new ArrayList<>();
+    for(int i = 0; i < 100; i++) {
+      vecs.add(new FloatVector(new float[] { i * .25f, -i, i % 3 == 0 ? Float.NaN : i }));
+      lbls.add(LabelList.make(i % 2 == 0 ? Arrays.asList("a" + (i % 5)) : Arrays.asList("b", "c" + i)));
+    }
+    MultipleObjectsBundle orig = MultipleObjectsBundle.makeSimple( //
+        new VectorFieldTypeInformation<>(FloatVector.FACTORY, 3, new String[] { "x", "y", "z" }), vecs, //
+        TypeUtil.LABELLIST, lbls);
+    Path file = Files.createTempFile("elki-columnar", ".bin");
+    try {
+      new ColumnarFileWriter().write(orig, file);
+      try (ColumnarFileReader reader = new ColumnarFileReader(file)) {
+        assertEquals("Columns", 5, reader.numColumns());
+        assertEquals(ColumnType.FLOAT32, reader.getType(2));
+        assertEquals("z", reader.getName(2));
+        assertArrayEquals("NaN ignored in statistics", new double[] { 1, 98 }, reader.getMinMax(2), 0.);
+        MultipleObjectsBundle bundle = reader.asBundle();
+        VectorFieldTypeInformation<?> type = (VectorFieldTypeInformation<?>) bundle.meta(0);
+        assertEquals(FloatVector.class, type.getRestrictionClass());
+        assertEquals("y", type.getLabel(1));
+        for(int i = 0; i < orig.dataLength(); i++) {
+          assertEquals("Vector " + i, orig.data(i, 0).toString(), bundle.data(i, 0).toString());
+          assertEquals("Labels " + i, orig.data(i, 1).toString(), bundle.data(i, 1).toString());
+        }
+      }
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import elki.data.DoubleVector;
 import elki.data.type.TypeUtil;
 import elki.datasource.AbstractDataSourceTest;
 import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.filter.normalization.columnwise.AttributeWiseMinMaxNormalization;
 import elki.math.MeanVariance;
 import elki.math.linearalgebra.CovarianceMatrix;
 import elki.math.linearalgebra.VMath;
@@ -102,4 +103,23 @@ public class GlobalPrincipalComponentAnalysisTransformTest extends AbstractDataS
       assertEquals("Mean not as expected", 0., mvs[col], 1e-13);
     }
   }
+
+  @Test
+  public void chainedWithNormalization() {
+    String filename = UNITTEST + "transformation-test-1.csv";
+    // Two two-pass filters in one pipeline, replaying the stream:
+    MultipleObjectsBundle bundle = readBundle(filename, new AttributeWiseMinMaxNormalization<DoubleVector>(), //
+        new ELKIBuilder<GlobalPrincipalComponentAnalysisTransform<DoubleVector>>(GlobalPrincipalComponentAnalysisTransform.class).build());
+    // Applying the filters one at a time must give the same result:
+    MultipleObjectsBundle stepwise = new AttributeWiseMinMaxNormalization<DoubleVector>().filter(readBundle(filename));
+    stepwise = new ELKIBuilder<GlobalPrincipalComponentAnalysisTransform<DoubleVector>>(GlobalPrincipalComponentAnalysisTransform.class).build().filter(stepwise);
+    assertEquals("Size not as expected", stepwise.dataLength(), bundle.dataLength());
+    int dim = getFieldDimensionality(bundle, 0, TypeUtil.NUMBER_VECTOR_FIELD);
+    for(int row = 0; row < bundle.dataLength(); row++) {
+      DoubleVector d = get(bundle, row, 0, DoubleVector.class), e = get(stepwise, row, 0, DoubleVector.class);
+      for(int col = 0; col < dim; col++) {
+        assertEquals("Value not as expected", e.doubleValue(col), d.doubleValue(col), 0.);
+      }
+    }
+  }
 }
@@ -0,0 +1,100 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.datasource.AbstractDataSourceTest;
+import elki.datasource.FileBasedDatabaseConnection;
+import elki.datasource.bundle.MultipleObjectsBundle;
+
+/**
+ * Test the parallel parsing of the number vector parser.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class NumberVectorLabelParserTest extends AbstractDataSourceTest {
+  @Test
+  public void parallelMatchesSequential() throws IOException {
+    StringBuilder buf = new StringBuilder(10000) //
+        .append("a,b,c,name\n# a comment\n");
+    for(int i = 0; i < 500; i++) {
+      buf.append(i).append(',').append(i * .5).append(',').append(-i).append(',') //
+          .append(i % 7 == 0 ? "x" + (i % 3) : "").append(i % 11 == 0 ? "\r\n" : "\n");
+      if(i % 50 == 0) {
+        buf.append("// another comment\n");
+      }
+    }
+    byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+    MultipleObjectsBundle seq = new NumberVectorLabelParser<>(DoubleVector.FACTORY).parse(new ByteArrayInputStream(data));
+
+    Path dir = Files.createTempDirectory("elki-parser");
+    Path file = dir.resolve("data.csv");
+    try {
+      Files.write(file, data);
+      for(int chunksize : new int[] { 1, 37, 500, 100000 }) {
+        MultipleObjectsBundle par = new NumberVectorLabelParser<>(DoubleVector.FACTORY).parseParallel(file, chunksize);
+        assertBundleEquals(seq, par);
+      }
+      try (FileBasedDatabaseConnection dbc = new FileBasedDatabaseConnection(null, new NumberVectorLabelParser<>(DoubleVector.FACTORY), file.toUri(), true)) {
+        assertBundleEquals(seq, dbc.loadData());
+      }
+    }
+    finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  /**
+   * Compare two bundles.
+   *
+   * @param exp Expected bundle
+   * @param act Actual bundle
+   */
+  private static void assertBundleEquals(MultipleObjectsBundle exp, MultipleObjectsBundle act) {
+    assertEquals("Columns", exp.metaLength(), act.metaLength());
+    assertEquals("Length", exp.dataLength(), act.dataLength());
+    assertTrue("Not a vector field", act.meta(0) instanceof VectorFieldTypeInformation);
+    VectorFieldTypeInformation<?> etype = (VectorFieldTypeInformation<?>) exp.meta(0);
+    VectorFieldTypeInformation<?> atype = (VectorFieldTypeInformation<?>) act.meta(0);
+    assertEquals("Dimensionality", etype.getDimensionality(), atype.getDimensionality());
+    assertEquals("Column name", etype.getLabel(1), atype.getLabel(1));
+    assertTrue("Labels", TypeUtil.LABELLIST.isAssignableFromType(act.meta(1)));
+    for(int i = 0; i < exp.dataLength(); i++) {
+      assertEquals("Vector " + i, exp.data(i, 0).toString(), act.data(i, 0).toString());
+      assertEquals("Labels " + i, exp.data(i, 1).toString(), act.data(i, 1).toString());
+    }
+  }
+}
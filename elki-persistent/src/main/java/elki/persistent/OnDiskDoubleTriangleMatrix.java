@@ -0,0 +1,171 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import elki.utilities.io.FileUtil;
+
+/**
+ * Lower triangular matrix of doubles (without the diagonal) in a
+ * memory-mapped temporary file, for matrices that do not fit into a Java
+ * array.
+ * <p>
+ * Entries are addressed with long offsets, using the same layout as the
+ * in-memory triangles: entry (x, y) with y &lt; x is at offset
+ * {@code triangleSize(x) + y}. The file is mapped in segments of
+ * {@code 1 << 27} values (1 GiB), and is deleted when closed.
+ * <p>
+ * Only absolute buffer accesses are used, so different entries may be written
+ * concurrently by different threads.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class OnDiskDoubleTriangleMatrix implements AutoCloseable {
+  /**
+   * Number of values per segment, as bit shift.
+   */
+  private static final int SEGMENT_SHIFT = 27;
+
+  /**
+   * Mask for the offset within a segment.
+   */
+  private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+  /**
+   * Mapped segments, {@code null} when closed.
+   */
+  private DoubleBuffer[] segments;
+
+  /**
+   * Mapped buffers of the segments, for unmapping.
+   */
+  private MappedByteBuffer[] mapped;
+
+  /**
+   * Number of rows and columns.
+   */
+  private final int size;
+
+  /**
+   * Constructor.
+   *
+   * @param directory Directory for the temporary file, {@code null} for the
+   *        system default
+   * @param size Number of rows and columns
+   * @throws IOException on IO errors
+   */
+  public OnDiskDoubleTriangleMatrix(Path directory, int size) throws IOException {
+    this.size = size;
+    final long length = triangleSize(size);
+    final int nseg = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    segments = new DoubleBuffer[nseg];
+    mapped = new MappedByteBuffer[nseg];
+    Path file = directory != null ? Files.createTempFile(directory, "elki-", ".triangle") : Files.createTempFile("elki-", ".triangle");
+    // The mappings remain valid after the file is closed and deleted.
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+      long pos = 0, rem = length;
+      for(int i = 0; i < nseg; i++) {
+        final long len = Math.min(rem, 1L << SEGMENT_SHIFT) << 3;
+        mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, pos, len);
+        segments[i] = mapped[i].order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        pos += len;
+        rem -= len >>> 3;
+      }
+    }
+  }
+
+  /**
+   * Compute the size of a complete x by x triangle (minus diagonal).
+   *
+   * @param x Number of rows
+   * @return Number of entries
+   */
+  public static long triangleSize(int x) {
+    return ((long) x * (x - 1)) >>> 1;
+  }
+
+  /**
+   * Get the number of rows and columns.
+   *
+   * @return Size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get a value by its offset.
+   *
+   * @param off Offset, see {@link #triangleSize}
+   * @return Value
+   */
+  public double get(long off) {
+    return segments[(int) (off >>> SEGMENT_SHIFT)].get((int) (off & SEGMENT_MASK));
+  }
+
+  /**
+   * Get the value of entry (x, y), for any x and y.
+   *
+   * @param x First index
+   * @param y Second index
+   * @return Value, 0 on the diagonal
+   */
+  public double get(int x, int y) {
+    return x == y ? 0 : x < y ? get(triangleSize(y) + x) : get(triangleSize(x) + y);
+  }
+
+  /**
+   * Set a value by its offset.
+   *
+   * @param off Offset, see {@link #triangleSize}
+   * @param value New value
+   */
+  public void set(long off, double value) {
+    segments[(int) (off >>> SEGMENT_SHIFT)].put((int) (off & SEGMENT_MASK), value);
+  }
+
+  /**
+   * Unmap the segments, which releases the disk space of the deleted file.
+   * The matrix must no longer be accessed, also not by other threads. Closing
+   * more than once has no effect.
+   */
+  @Override
+  public synchronized void close() {
+    if(segments == null) {
+      return;
+    }
+    final MappedByteBuffer[] bufs = mapped;
+    segments = null;
+    mapped = null;
+    for(MappedByteBuffer buf : bufs) {
+      FileUtil.unmap(buf);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * Test the memory-mapped OnDiskDoubleTriangleMatrix class.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class OnDiskDoubleTriangleMatrixTest {
+  @Test
+  public void testReadWriteClose() throws IOException {
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    try {
+      final int size = 100;
+      OnDiskDoubleTriangleMatrix mat = new OnDiskDoubleTriangleMatrix(dir, size);
+      for(int x = 1; x < size; x++) {
+        for(int y = 0; y < x; y++) {
+          mat.set(OnDiskDoubleTriangleMatrix.triangleSize(x) + y, x * 1000. + y);
+        }
+      }
+      for(int x = 1; x < size; x++) {
+        for(int y = 0; y < x; y++) {
+          assertEquals("Value " + x + "," + y + " not stored.", x * 1000. + y, mat.get(x, y), 0.);
+        }
+      }
+      mat.close();
+      mat.close(); // must have no effect
+      try (Stream<Path> files = Files.list(dir)) {
+        assertEquals("Temporary file not deleted.", 0, files.count());
+      }
+    }
+    finally {
+      Files.delete(dir);
+    }
+  }
+}
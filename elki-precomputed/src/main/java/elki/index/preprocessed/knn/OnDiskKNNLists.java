@@ -0,0 +1,370 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.preprocessed.knn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+
+/**
+ * Compact binary file of precomputed kNN lists, designed to be memory mapped.
+ * <p>
+ * The file begins with a header containing a magic number, the format
+ * version, the number of neighbors k, the record width, the number of objects,
+ * a checksum of the data set, and the name of the distance function. It is
+ * followed by one fixed-width record per object, in the iteration order of
+ * the relation. Each record consists of the number of neighbors, the neighbor
+ * distances as doubles, and the neighbors as integer offsets into the
+ * relation. Because the records have a fixed width, a single list can be read
+ * without decoding the remainder of the file.
+ * <p>
+ * Since kNN lists may contain more than k neighbors in case of ties, the
+ * record width is the size of the longest list.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class OnDiskKNNLists implements AutoCloseable {
+  /**
+   * Magic number to identify files.
+   * <p>
+   * Change this (or the version) on any incompatible change to the format.
+   */
+  public static final int MAGIC = 0xCAC4B1A7;
+
+  /**
+   * File format version.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * Size of the fixed part of the header.
+   */
+  private static final int FIXED_HEADER = 36;
+
+  /**
+   * Maximum number of bytes per mapped segment.
+   */
+  private static final int SEGMENT_BYTES = 1 << 30;
+
+  /**
+   * Number of neighbors the lists were computed for.
+   */
+  private int k;
+
+  /**
+   * Record width, in number of neighbors.
+   */
+  private int width;
+
+  /**
+   * Number of records.
+   */
+  private int size;
+
+  /**
+   * Data set checksum.
+   */
+  private long checksum;
+
+  /**
+   * Distance function name.
+   */
+  private String distance;
+
+  /**
+   * Header size.
+   */
+  private int headersize;
+
+  /**
+   * Record size in bytes.
+   */
+  private int recordsize;
+
+  /**
+   * Records per mapped segment.
+   */
+  private int perSegment;
+
+  /**
+   * Mapped segments.
+   */
+  private MappedByteBuffer[] segments;
+
+  /**
+   * Open an existing file, and map it into memory.
+   *
+   * @param file File name
+   * @throws IOException on I/O errors or invalid files
+   */
+  public OnDiskKNNLists(Path file) throws IOException {
+    super();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long filesize = channel.size();
+      if(filesize < FIXED_HEADER) {
+        throw new IOException("kNN file is too short.");
+      }
+      ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER);
+      while(header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        // Read fully
+      }
+      header.flip();
+      if(header.getInt() != MAGIC) {
+        throw new IOException("kNN file magic number does not match.");
+      }
+      if(header.getInt() != VERSION) {
+        throw new IOException("kNN file version is not supported.");
+      }
+      headersize = header.getInt();
+      k = header.getInt();
+      width = header.getInt();
+      size = header.getInt();
+      checksum = header.getLong();
+      final int namelen = header.getInt();
+      if(namelen < 0 || FIXED_HEADER + namelen > headersize || width < 0 || size < 0) {
+        throw new IOException("kNN file header is corrupt.");
+      }
+      ByteBuffer name = ByteBuffer.allocate(namelen);
+      while(name.hasRemaining() && channel.read(name, FIXED_HEADER + name.position()) > 0) {
+        // Read fully
+      }
+      distance = new String(name.array(), StandardCharsets.UTF_8);
+      recordsize = recordSize(width);
+      if(filesize != headersize + size * (long) recordsize) {
+        throw new IOException("kNN file size does not match its header.");
+      }
+      perSegment = Math.max(1, SEGMENT_BYTES / recordsize);
+      segments = new MappedByteBuffer[(size + perSegment - 1) / perSegment];
+      for(int i = 0; i < segments.length; i++) {
+        final int recs = Math.min(perSegment, size - i * perSegment);
+        segments[i] = channel.map(MapMode.READ_ONLY, headersize + i * (long) perSegment * recordsize, recs * (long) recordsize);
+      }
+    }
+  }
+
+  /**
+   * Compute the size of a record.
+   *
+   * @param width Record width
+   * @return Size in bytes, a multiple of 8
+   */
+  private static int recordSize(int width) {
+    return (8 + 12 * width + 7) & ~7;
+  }
+
+  /**
+   * Get the number of neighbors the lists were computed for.
+   *
+   * @return k
+   */
+  public int getK() {
+    return k;
+  }
+
+  /**
+   * Get the number of lists stored.
+   *
+   * @return Number of lists
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the checksum of the data set.
+   *
+   * @return Checksum
+   */
+  public long getChecksum() {
+    return checksum;
+  }
+
+  /**
+   * Get the name of the distance function used.
+   *
+   * @return Distance function name
+   */
+  public String getDistance() {
+    return distance;
+  }
+
+  /**
+   * Get the kNN list of a single object.
+   *
+   * @param offset Offset of the object in the relation
+   * @param ids Iterator over the relation, used to resolve neighbors
+   * @param k Number of neighbors to return (at most the k of the file)
+   * @return kNN list
+   */
+  public KNNList get(int offset, DBIDArrayIter ids, int k) {
+    final ByteBuffer seg = segments[offset / perSegment];
+    final int pos = (offset % perSegment) * recordsize;
+    final int count = seg.getInt(pos);
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    for(int i = 0, dpos = pos + 8, ipos = pos + 8 + 8 * width; i < count; i++, dpos += 8, ipos += 4) {
+      final double dist = seg.getDouble(dpos);
+      if(heap.size() >= k && dist > heap.getKNNDistance()) {
+        break; // Sorted, no further neighbors
+      }
+      heap.insert(dist, ids.seek(seg.getInt(ipos)));
+    }
+    return heap.toKNNList();
+  }
+
+  @Override
+  public void close() {
+    segments = null;
+  }
+
+  /**
+   * Write the kNN lists of a relation to a file.
+   *
+   * @param file Output file
+   * @param ids Objects, in the order of the relation
+   * @param knnq kNN query, will be invoked twice for each object
+   * @param k Number of neighbors
+   * @param distance Name of the distance function
+   * @param checksum Data set checksum
+   * @throws IOException on I/O errors
+   */
+  public static void write(Path file, ArrayDBIDs ids, KNNSearcher<DBIDRef> knnq, int k, String distance, long checksum) throws IOException {
+    // Ties may make lists longer than k; find the necessary width first.
+    int width = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      width = Math.max(width, knnq.getKNN(it, k).size());
+    }
+    WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      offsets.putInt(it, it.getOffset());
+    }
+    final byte[] name = distance.getBytes(StandardCharsets.UTF_8);
+    final int headersize = (FIXED_HEADER + name.length + 7) & ~7;
+    final int recordsize = recordSize(width);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(headersize, recordsize * Math.max(1, (1 << 20) / recordsize)));
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(headersize) //
+          .putInt(k).putInt(width).putInt(ids.size()).putLong(checksum) //
+          .putInt(name.length).put(name);
+      while(buffer.position() < headersize) {
+        buffer.put((byte) 0);
+      }
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        if(buffer.remaining() < recordsize) {
+          writeFully(channel, buffer);
+        }
+        final KNNList knn = knnq.getKNN(it, k);
+        final int pos = buffer.position(), count = knn.size();
+        if(count > width) {
+          throw new IOException("kNN query results are not consistent.");
+        }
+        buffer.putInt(pos, count);
+        buffer.putInt(pos + 4, 0);
+        int dpos = pos + 8, ipos = pos + 8 + 8 * width;
+        for(DoubleDBIDListIter ni = knn.iter(); ni.valid(); ni.advance(), dpos += 8, ipos += 4) {
+          buffer.putDouble(dpos, ni.doubleValue());
+          buffer.putInt(ipos, offsets.intValue(ni));
+        }
+        // Zero unused entries, for reproducible files:
+        for(; dpos < pos + 8 + 8 * width; dpos += 8, ipos += 4) {
+          buffer.putDouble(dpos, 0.);
+          buffer.putInt(ipos, 0);
+        }
+        for(ipos = pos + 8 + 12 * width; ipos < pos + recordsize; ipos++) {
+          buffer.put(ipos, (byte) 0);
+        }
+        buffer.position(pos + recordsize);
+      }
+      writeFully(channel, buffer);
+    }
+    finally {
+      offsets.destroy();
+    }
+  }
+
+  /**
+   * Write the buffer contents, and clear the buffer.
+   *
+   * @param channel Output channel
+   * @param buffer Buffer
+   * @throws IOException on I/O errors
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Compute a checksum of the data set, to detect a mismatching kNN file.
+   * <p>
+   * For vectors, the checksum covers all values; for other data types, the
+   * {@link Object#hashCode()} of the objects is used.
+   *
+   * @param relation Data relation
+   * @return Checksum
+   */
+  public static long checksum(Relation<?> relation) {
+    long h = 0xcbf29ce484222325L ^ relation.size();
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      final Object o = relation.get(it);
+      if(o instanceof NumberVector) {
+        final NumberVector v = (NumberVector) o;
+        final int dim = v.getDimensionality();
+        h = mix(h, dim);
+        for(int d = 0; d < dim; d++) {
+          h = mix(h, Double.doubleToLongBits(v.doubleValue(d)));
+        }
+      }
+      else {
+        h = mix(h, o == null ? 0 : o.hashCode());
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Mix a value into the hash.
+   *
+   * @param h Previous hash
+   * @param v Value
+   * @return New hash
+   */
+  private static long mix(long h, long v) {
+    h = (h ^ v) * 0x100000001b3L;
+    return h ^ (h >>> 29);
+  }
+}
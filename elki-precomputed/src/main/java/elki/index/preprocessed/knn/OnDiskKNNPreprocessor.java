@@ -0,0 +1,391 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.preprocessed.knn;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameterization.TrackParameters;
+import elki.utilities.optionhandling.parameterization.TrackedParameter;
+import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.Flag;
+import elki.utilities.optionhandling.parameters.Parameter;
+
+/**
+ * Preprocessor that persists the materialized kNN lists in a binary file
+ * ({@link OnDiskKNNLists}), and reloads them in later runs.
+ * <p>
+ * If the file does not exist, or does not match the data set, k, or the
+ * distance function, the kNN lists are computed as with
+ * {@link MaterializeKNNPreprocessor}, and the file is (re-)written. Otherwise,
+ * the lists are either loaded into memory, or - in lazy mode - decoded from
+ * the memory-mapped file on demand.
+ * <p>
+ * The distance function is identified by its class name and its string
+ * representation, if the class provides one. When configured via parameters,
+ * the parameters of the distance function are included, too, so that the file
+ * is recomputed for example when the exponent of an Lp norm changes.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @has - - - OnDiskKNNLists
+ *
+ * @param <O> Object type
+ */
+public class OnDiskKNNPreprocessor<O> extends AbstractMaterializeKNNPreprocessor<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(OnDiskKNNPreprocessor.class);
+
+  /**
+   * File to load or store.
+   */
+  private Path filename;
+
+  /**
+   * Decode lists on demand, instead of loading them.
+   */
+  private boolean lazy;
+
+  /**
+   * Identity of the distance function, stored in the file.
+   */
+  private String distanceId;
+
+  /**
+   * Mapped lists, in lazy mode.
+   */
+  private OnDiskKNNLists lists;
+
+  /**
+   * Object ids, in lazy mode.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Offsets of the objects, in lazy mode.
+   */
+  private WritableIntegerDataStore offsets;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param distance Distance function
+   * @param k K
+   * @param filename File to load or store
+   * @param lazy Decode lists on demand
+   */
+  public OnDiskKNNPreprocessor(Relation<O> relation, Distance<? super O> distance, int k, Path filename, boolean lazy) {
+    this(relation, distance, k, filename, lazy, describe(distance));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param distance Distance function
+   * @param k K
+   * @param filename File to load or store
+   * @param lazy Decode lists on demand
+   * @param distanceId Identity of the distance function, including its
+   *        parameters
+   */
+  public OnDiskKNNPreprocessor(Relation<O> relation, Distance<? super O> distance, int k, Path filename, boolean lazy, String distanceId) {
+    super(relation, distance, k);
+    this.filename = filename;
+    this.lazy = lazy;
+    this.distanceId = distanceId;
+  }
+
+  /**
+   * Describe a distance function by its class name, and its string
+   * representation if the class provides one (which usually includes the
+   * parameters).
+   *
+   * @param distance Distance function
+   * @return Description
+   */
+  public static String describe(Distance<?> distance) {
+    final Class<?> cls = distance.getClass();
+    try {
+      if(cls.getMethod("toString").getDeclaringClass() != Object.class) {
+        return cls.getName() + " " + distance.toString();
+      }
+    }
+    catch(NoSuchMethodException e) {
+      // Not possible, every class has toString.
+    }
+    return cls.getName();
+  }
+
+  @Override
+  protected void preprocess() {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final long checksum = OnDiskKNNLists.checksum(relation);
+    OnDiskKNNLists file = open(checksum);
+    if(file == null) {
+      MaterializeKNNPreprocessor<O> inner = new MaterializeKNNPreprocessor<>(relation, distance, k);
+      inner.initialize();
+      storage = inner.storage;
+      try {
+        OnDiskKNNLists.write(filename, ids, inner.kNNByDBID(distanceQuery, k, 0), k, distanceId, checksum);
+      }
+      catch(IOException e) {
+        LOG.warning("Could not write kNN file: " + e.getMessage());
+      }
+      return;
+    }
+    if(lazy) {
+      this.lists = file;
+      this.ids = ids;
+      offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC, -1);
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        offsets.putInt(it, it.getOffset());
+      }
+      return;
+    }
+    createStorage();
+    for(DBIDArrayIter it = ids.iter(), it2 = ids.iter(); it.valid(); it.advance()) {
+      storage.put(it, file.get(it.getOffset(), it2, k));
+    }
+    file.close();
+  }
+
+  /**
+   * Open the kNN file, if it exists and matches.
+   *
+   * @param checksum Data set checksum
+   * @return kNN file, or {@code null}
+   */
+  private OnDiskKNNLists open(long checksum) {
+    if(!Files.exists(filename)) {
+      return null;
+    }
+    try {
+      OnDiskKNNLists file = new OnDiskKNNLists(filename);
+      String problem = file.size() != relation.size() ? "data set size" //
+          : file.getChecksum() != checksum ? "data set checksum" //
+              : file.getK() < k ? "k" //
+                  : !file.getDistance().equals(distanceId) ? "distance function" : null;
+      if(problem == null) {
+        return file;
+      }
+      LOG.warning("kNN file " + filename + " does not match the " + problem + ", recomputing.");
+      file.close();
+    }
+    catch(IOException e) {
+      LOG.warning("kNN file " + filename + " could not be read, recomputing: " + e.getMessage());
+    }
+    return null;
+  }
+
+  @Override
+  public KNNList get(DBIDRef id) {
+    if(storage == null && lists == null) {
+      preprocess();
+    }
+    return lists != null ? lists.get(offsets.intValue(id), ids.iter(), k) : storage.get(id);
+  }
+
+  @Override
+  public void initialize() {
+    if(storage != null || lists != null) {
+      throw new UnsupportedOperationException("Preprocessor already ran.");
+    }
+    if(distanceQuery.getRelation().size() > 0) {
+      preprocess();
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * The parameterizable factory.
+   *
+   * @author Erich Schubert
+   *
+   * @opt nodefillcolor LemonChiffon
+   * @stereotype factory
+   * @navassoc - create - OnDiskKNNPreprocessor
+   *
+   * @param <O> The object type
+   */
+  public static class Factory<O> extends AbstractMaterializeKNNPreprocessor.Factory<O> {
+    /**
+     * File to load or store.
+     */
+    private Path filename;
+
+    /**
+     * Decode lists on demand.
+     */
+    private boolean lazy;
+
+    /**
+     * Identity of the distance function.
+     */
+    private String distanceId;
+
+    /**
+     * Index factory.
+     *
+     * @param k k parameter
+     * @param distance distance function
+     * @param filename kNN file
+     * @param lazy Decode lists on demand
+     */
+    public Factory(int k, Distance<? super O> distance, Path filename, boolean lazy) {
+      this(k, distance, filename, lazy, describe(distance));
+    }
+
+    /**
+     * Index factory.
+     *
+     * @param k k parameter
+     * @param distance distance function
+     * @param filename kNN file
+     * @param lazy Decode lists on demand
+     * @param distanceId Identity of the distance function, including its
+     *        parameters
+     */
+    public Factory(int k, Distance<? super O> distance, Path filename, boolean lazy, String distanceId) {
+      super(k, distance);
+      this.filename = filename;
+      this.lazy = lazy;
+      this.distanceId = distanceId;
+    }
+
+    @Override
+    public OnDiskKNNPreprocessor<O> instantiate(Relation<O> relation) {
+      return new OnDiskKNNPreprocessor<>(relation, distance, k, filename, lazy, distanceId);
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Par<O> extends AbstractMaterializeKNNPreprocessor.Factory.Par<O> {
+      /**
+       * Option ID for the kNN file.
+       */
+      public static final OptionID FILE_ID = new OptionID("knnfile.file", "Binary file to load the precomputed k nearest neighbors from, or to store them in.");
+
+      /**
+       * Option ID for lazy decoding.
+       */
+      public static final OptionID LAZY_ID = new OptionID("knnfile.lazy", "Keep the kNN file memory-mapped, and decode lists on demand.");
+
+      /**
+       * File to load or store.
+       */
+      private Path filename;
+
+      /**
+       * Decode lists on demand.
+       */
+      private boolean lazy;
+
+      /**
+       * Identity of the distance function.
+       */
+      private String distanceId;
+
+      @Override
+      public void configure(Parameterization config) {
+        TrackParameters track = new TrackParameters(config);
+        super.configure(track);
+        if(distance != null) {
+          distanceId = describe(distance, track);
+        }
+        new FileParameter(FILE_ID, FileParameter.FileType.OUTPUT_FILE) //
+            .grab(config, x -> filename = Paths.get(x));
+        new Flag(LAZY_ID).grab(config, x -> lazy = x);
+      }
+
+      /**
+       * Describe the distance function, including the values of all its
+       * (nested) parameters.
+       *
+       * @param distance Distance function
+       * @param track Tracked parameters
+       * @return Description
+       */
+      private static String describe(Distance<?> distance, TrackParameters track) {
+        Object root = null;
+        for(TrackedParameter p : track.getAllParameters()) {
+          if(p.getParameter().getOptionID() == DISTANCE_FUNCTION_ID) {
+            root = p.getParameter();
+          }
+        }
+        StringBuilder buf = new StringBuilder(OnDiskKNNPreprocessor.describe(distance));
+        for(TrackedParameter p : track.getAllParameters()) {
+          final Parameter<?> param = p.getParameter();
+          if(param != root && param.isDefined() && isNestedIn(track, param, root)) {
+            buf.append(" -").append(param.getOptionID().getName()) //
+                .append(' ').append(param.getValueAsString());
+          }
+        }
+        return buf.toString();
+      }
+
+      /**
+       * Test whether a parameter belongs to the given parent parameter.
+       *
+       * @param track Tracked parameters
+       * @param param Parameter
+       * @param parent Parent parameter
+       * @return {@code true} when nested
+       */
+      private static boolean isNestedIn(TrackParameters track, Object param, Object parent) {
+        for(Object cur = track.getParent(param); cur != null; cur = track.getParent(cur)) {
+          if(cur == parent) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      public Factory<O> make() {
+        return new Factory<>(k, distance, filename, lazy, distanceId);
+      }
+    }
+  }
+}
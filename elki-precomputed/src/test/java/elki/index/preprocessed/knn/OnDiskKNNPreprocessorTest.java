@@ -0,0 +1,149 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.preprocessed.knn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.data.DoubleVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.LPIntegerNormDistance;
+import elki.distance.minkowski.LPNormDistance;
+import elki.distance.minkowski.ManhattanDistance;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for persisting kNN lists.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class OnDiskKNNPreprocessorTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testStoreAndLoad() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    KNNSearcher<DBIDRef> lin = new QueryBuilder<>(relation, EuclideanDistance.STATIC).linearOnly().kNNByDBID(10);
+    Path dir = Files.createTempDirectory("knnfile");
+    Path file = dir.resolve("knn.bin");
+    try {
+      // First run computes and writes the file
+      OnDiskKNNPreprocessor<DoubleVector> first = new OnDiskKNNPreprocessor<>(relation, EuclideanDistance.STATIC, 10, file, false);
+      first.initialize();
+      assertTrue("kNN file was not written.", Files.exists(file));
+      try (OnDiskKNNLists lists = new OnDiskKNNLists(file)) {
+        assertEquals(relation.size(), lists.size());
+        assertEquals(10, lists.getK());
+        assertEquals(OnDiskKNNLists.checksum(relation), lists.getChecksum());
+      }
+      final long modified = Files.getLastModifiedTime(file).toMillis();
+      // Then load, eagerly and lazily
+      for(boolean lazy : new boolean[] { false, true }) {
+        OnDiskKNNPreprocessor<DoubleVector> pre = new OnDiskKNNPreprocessor<>(relation, EuclideanDistance.STATIC, 10, file, lazy);
+        pre.initialize();
+        assertSameKNN(relation, lin, pre, 10);
+        assertSameKNN(relation, lin, pre, 5);
+      }
+      assertEquals("kNN file was rewritten.", modified, Files.getLastModifiedTime(file).toMillis());
+      // A different distance must not use the file.
+      KNNSearcher<DBIDRef> man = new QueryBuilder<>(relation, ManhattanDistance.STATIC).linearOnly().kNNByDBID(10);
+      OnDiskKNNPreprocessor<DoubleVector> other = new OnDiskKNNPreprocessor<>(relation, ManhattanDistance.STATIC, 10, file, true);
+      other.initialize();
+      assertSameKNN(relation, man, other, 10);
+    }
+    finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  @Test
+  public void testDistanceParameters() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    Path dir = Files.createTempDirectory("knnfile");
+    Path file = dir.resolve("knn.bin");
+    try {
+      LPIntegerNormDistance l3 = new LPIntegerNormDistance(3), l4 = new LPIntegerNormDistance(4);
+      new OnDiskKNNPreprocessor<>(relation, l3, 10, file, false).initialize();
+      // Same class, but a different parameter must not use the file.
+      KNNSearcher<DBIDRef> lin4 = new QueryBuilder<>(relation, l4).linearOnly().kNNByDBID(10);
+      OnDiskKNNPreprocessor<DoubleVector> pre = new OnDiskKNNPreprocessor<>(relation, l4, 10, file, true);
+      pre.initialize();
+      assertSameKNN(relation, lin4, pre, 10);
+      try (OnDiskKNNLists lists = new OnDiskKNNLists(file)) {
+        assertEquals("kNN file was not rewritten.", OnDiskKNNPreprocessor.describe(l4), lists.getDistance());
+      }
+      // The parameterized factory includes the distance parameters.
+      OnDiskKNNPreprocessor.Factory<DoubleVector> f3 = new ELKIBuilder<OnDiskKNNPreprocessor.Factory<DoubleVector>>(OnDiskKNNPreprocessor.Factory.class) //
+          .with(OnDiskKNNPreprocessor.Factory.K_ID, 10) //
+          .with(OnDiskKNNPreprocessor.Factory.DISTANCE_FUNCTION_ID, LPNormDistance.class) //
+          .with(LPNormDistance.Par.P_ID, 3) //
+          .with(OnDiskKNNPreprocessor.Factory.Par.FILE_ID, file.toString()) //
+          .build();
+      f3.instantiate(relation).initialize();
+      try (OnDiskKNNLists lists = new OnDiskKNNLists(file)) {
+        assertTrue("Distance parameters not stored: " + lists.getDistance(), lists.getDistance().endsWith(" -lpnorm.p 3.0"));
+      }
+    }
+    finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  /**
+   * Compare the preprocessor results to a linear scan.
+   *
+   * @param relation Data relation
+   * @param lin Linear scan
+   * @param pre Preprocessor
+   * @param k Number of neighbors
+   */
+  private static void assertSameKNN(Relation<DoubleVector> relation, KNNSearcher<DBIDRef> lin, OnDiskKNNPreprocessor<DoubleVector> pre, int k) {
+    KNNSearcher<DBIDRef> q = pre.kNNByDBID(pre.getDistanceQuery(), k, 0);
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList expected = lin.getKNN(it, k), actual = q.getKNN(it, k);
+      assertEquals("kNN sizes do not agree.", expected.size(), actual.size());
+      for(DoubleDBIDListIter a = expected.iter(), b = actual.iter(); a.valid(); a.advance(), b.advance()) {
+        assertEquals("Distances do not agree.", a.doubleValue(), b.doubleValue(), 0.);
+        assertTrue("Neighbors do not agree.", DBIDUtil.equal(a, b) || a.doubleValue() == b.doubleValue());
+      }
+    }
+  }
+}
@@ -32,6 +32,8 @@ import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDataStore;
 import elki.database.ids.*;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.query.knn.LinearScanBatchKNN;
 import elki.database.relation.MaterializedRelation;
 import elki.database.relation.Relation;
 import elki.distance.SpatialPrimitiveDistance;
@@ -60,8 +62,9 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Joins in a given spatial database to each object its k-nearest neighbors.
- * This algorithm only supports spatial databases based on a spatial index
- * structure.
+ * This algorithm is designed for spatial databases based on a spatial index
+ * structure; without such an index, it falls back to a batched linear scan
+ * using {@link LinearScanBatchKNN}.
  * <p>
  * Since this method compares the MBR of every single leaf with every other
  * leaf, it is essentially quadratic in the number of leaves, which may not be
@@ -141,7 +144,8 @@ public class KNNJoin implements Algorithm {
   public WritableDataStore<KNNList> run(Relation<? extends SpatialComparable> relation, DBIDs ids) {
     It<AbstractRStarTree<?, SpatialEntry, ?>> indexes = Metadata.hierarchyOf(relation).iterDescendants().filter(AbstractRStarTree.class);
     if(!indexes.valid()) {
-      throw new MissingPrerequisitesException("KNNJoin found no spatial indexes, expected exactly one.");
+      LOG.verbose("KNNJoin found no spatial index, using a batched linear scan.");
+      return runLinear(relation, ids);
     }
     AbstractRStarTree<?, SpatialEntry, ?> index = indexes.get();
     if(indexes.advance().valid()) {
@@ -150,6 +154,26 @@ public class KNNJoin implements Algorithm {
     return run(index, ids);
   }
 
+  /**
+   * Join without an index, using a tiled linear scan.
+   *
+   * @param relation Data relation
+   * @param ids Object IDs
+   * @return Data store
+   */
+  private WritableDataStore<KNNList> runLinear(Relation<? extends SpatialComparable> relation, DBIDs ids) {
+    @SuppressWarnings("unchecked")
+    final SpatialPrimitiveDistance<SpatialComparable> df = (SpatialPrimitiveDistance<SpatialComparable>) distance;
+    WritableDataStore<KNNList> knnLists = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_STATIC, KNNList.class);
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Batched kNN queries", ids.size(), LOG) : null;
+    new LinearScanBatchKNN<>(new PrimitiveDistanceQuery<SpatialComparable>(relation, df)).getKNN(ids, k, (id, knn) -> {
+      knnLists.put(id, knn);
+      LOG.incrementProcessed(prog);
+    });
+    LOG.ensureCompleted(prog);
+    return knnLists;
+  }
+
   /**
    * Inner run method. This returns a double store, and is used by
    * {@link elki.index.preprocessed.knn.KNNJoinMaterializeKNNPreprocessor}
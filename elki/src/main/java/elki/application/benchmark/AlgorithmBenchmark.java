@@ -0,0 +1,682 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.application.benchmark;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.logging.Handler;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.regex.Pattern;
+
+import elki.application.AbstractApplication;
+import elki.database.Database;
+import elki.logging.Logging;
+import elki.logging.Logging.Level;
+import elki.logging.LoggingConfiguration;
+import elki.parallel.ParallelCore;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.FileUtil;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameterization.SerializedParameterization;
+import elki.utilities.optionhandling.parameters.*;
+import elki.workflow.AlgorithmStep;
+import elki.workflow.InputStep;
+
+/**
+ * Benchmark application running a matrix of dataset &times; index &times;
+ * algorithm configurations, and writing a machine-readable report that can be
+ * compared to the report of a previous run.
+ * <p>
+ * The matrix file has three sections, {@code [dataset]}, {@code [index]} and
+ * {@code [algorithm]}. Each line in a section is a named configuration of the
+ * form {@code name: -parameter value ...}, using the usual command line
+ * parameters; lines starting with {@code #} are comments. Every combination of
+ * the three sections is run. If the index section is missing, no index is
+ * used. For reproducible results, use generated data sets with fixed seeds,
+ * e.g., {@code RandomDoubleVectorDatabaseConnection} with {@code -dbc.genseed}
+ * or {@code GeneratorXMLDatabaseConnection} with {@code -bymodel.randomseed},
+ * and fixed seeds for randomized algorithms. A default matrix with k-means
+ * variants, DBSCAN, OPTICS, LOF and HDBSCAN is included.
+ * <p>
+ * For each configuration and repetition, the database is loaded anew, and the
+ * following are recorded: load time, algorithm wall time, peak heap usage,
+ * allocated bytes and allocation rate, and all numerical statistics logged by
+ * the algorithms and indexes, such as distance computation counters. The
+ * report contains the median over the repetitions, one line per configuration
+ * and metric, as tab-separated values. If a baseline report is given, the
+ * baseline value and the ratio are added, and slowdowns of the algorithm
+ * beyond a threshold are logged as warnings.
+ * <p>
+ * Allocations are measured per thread, as the difference between the bytes
+ * allocated by each thread before and after the run. The worker threads of the
+ * {@link ParallelCore} are kept alive during the run, so their allocations are
+ * included. Allocations of other threads that terminate before the end of the
+ * run are not included, and the allocation metrics are omitted if the JVM does
+ * not support per-thread allocation accounting.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class AlgorithmBenchmark extends AbstractApplication {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(AlgorithmBenchmark.class);
+
+  /**
+   * Metric name: load time.
+   */
+  public static final String LOAD_TIME = "load.ms";
+
+  /**
+   * Metric name: algorithm wall time.
+   */
+  public static final String RUN_TIME = "run.ms";
+
+  /**
+   * Metric name: peak heap usage.
+   */
+  public static final String PEAK_HEAP = "heap.peak.bytes";
+
+  /**
+   * Metric name: allocated bytes.
+   */
+  public static final String ALLOCATED = "alloc.bytes";
+
+  /**
+   * Metric name: allocation rate.
+   */
+  public static final String ALLOCATION_RATE = "alloc.mb-per-s";
+
+  /**
+   * Benchmark matrix file (or resource).
+   */
+  private String matrix;
+
+  /**
+   * Number of repetitions.
+   */
+  private int repeat;
+
+  /**
+   * Statistics to include in the report.
+   */
+  private Pattern statistics;
+
+  /**
+   * Report output file, may be {@code null}.
+   */
+  private URI report;
+
+  /**
+   * Baseline report, may be {@code null}.
+   */
+  private URI baseline;
+
+  /**
+   * Relative slowdown to report as regression.
+   */
+  private double threshold;
+
+  /**
+   * Constructor.
+   *
+   * @param matrix Benchmark matrix file (or resource)
+   * @param repeat Number of repetitions
+   * @param statistics Statistics to include in the report
+   * @param report Report output file, may be {@code null}
+   * @param baseline Baseline report, may be {@code null}
+   * @param threshold Relative slowdown to report as regression
+   */
+  public AlgorithmBenchmark(String matrix, int repeat, Pattern statistics, URI report, URI baseline, double threshold) {
+    super();
+    this.matrix = matrix;
+    this.repeat = repeat;
+    this.statistics = statistics;
+    this.report = report;
+    this.baseline = baseline;
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void run() {
+    // Algorithms only count when statistics are enabled.
+    LoggingConfiguration.setStatistics();
+    Map<String, List<Configuration>> sections;
+    try (InputStream in = FileUtil.openSystemFile(matrix)) {
+      sections = parseMatrix(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not read benchmark matrix " + matrix, e);
+    }
+    Map<String, Double> base = null;
+    if(baseline != null) {
+      try (BufferedReader reader = Files.newBufferedReader(Paths.get(baseline), StandardCharsets.UTF_8)) {
+        base = readReport(reader);
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not read baseline report " + baseline, e);
+      }
+    }
+    StatisticsCollector collector = new StatisticsCollector(statistics);
+    LoggingConfiguration.addHandler(collector);
+    PrintStream out = System.out;
+    try {
+      if(report != null) {
+        out = new PrintStream(Files.newOutputStream(Paths.get(report)), false, "UTF-8");
+      }
+      out.append("# configuration\tmetric\tvalue").append(base != null ? "\tbaseline\tratio\n" : "\n");
+      for(Configuration ds : sections.get("dataset")) {
+        for(Configuration idx : sections.get("index")) {
+          for(Configuration alg : sections.get("algorithm")) {
+            final String name = ds.name + "/" + idx.name + "/" + alg.name;
+            Map<String, double[]> results = new TreeMap<>();
+            for(int r = 0; r < repeat; r++) {
+              LOG.verbose("Running " + name + " (" + (r + 1) + "/" + repeat + ")");
+              runOnce(name, collector, results, r, ds.parameters, idx.parameters, alg.parameters);
+            }
+            writeResults(out, name, results, base);
+          }
+        }
+      }
+      out.flush();
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not write benchmark report.", e);
+    }
+    finally {
+      LogManager.getLogManager().getLogger("").removeHandler(collector);
+      if(out != System.out) {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * Run a single configuration once.
+   *
+   * @param name Configuration name
+   * @param collector Statistics collector
+   * @param results Output of the measurements
+   * @param r Repetition number
+   * @param parameters Parameters of the dataset, index, and algorithm
+   */
+  @SafeVarargs
+  private final void runOnce(String name, StatisticsCollector collector, Map<String, double[]> results, int r, List<String>... parameters) {
+    List<String> params = new ArrayList<>();
+    for(List<String> p : parameters) {
+      params.addAll(p);
+    }
+    SerializedParameterization config = new SerializedParameterization(params);
+    InputStep input = config.tryInstantiate(InputStep.class);
+    AlgorithmStep algorithms = config.tryInstantiate(AlgorithmStep.class);
+    config.failOnErrors();
+    if(config.hasUnusedParameters()) {
+      config.logUnusedParameters();
+      throw new AbortException("Unused parameters in benchmark configuration " + name);
+    }
+    System.gc();
+    final long start = System.nanoTime();
+    Database db = input.getDatabase();
+    final long loaded = System.nanoTime();
+    resetPeakHeap();
+    collector.clear();
+    // Keep the worker threads alive, so that we can read their allocations.
+    final ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    final long begin, end, allocated;
+    try {
+      final Map<Long, Long> alloc = allocatedBytes();
+      begin = System.nanoTime();
+      algorithms.runAlgorithms(db);
+      end = System.nanoTime();
+      allocated = allocatedSince(alloc);
+    }
+    finally {
+      core.disconnect();
+    }
+    put(results, LOAD_TIME, r, (loaded - start) * 1e-6);
+    put(results, RUN_TIME, r, (end - begin) * 1e-6);
+    put(results, PEAK_HEAP, r, peakHeap());
+    if(allocated >= 0) {
+      put(results, ALLOCATED, r, allocated);
+      put(results, ALLOCATION_RATE, r, allocated / ((end - begin) * 1e-9) / (1 << 20));
+    }
+    for(Map.Entry<String, Double> e : collector.values.entrySet()) {
+      put(results, e.getKey(), r, e.getValue());
+    }
+  }
+
+  /**
+   * Store a measurement.
+   *
+   * @param results Result storage
+   * @param metric Metric name
+   * @param r Repetition
+   * @param value Value
+   */
+  private void put(Map<String, double[]> results, String metric, int r, double value) {
+    double[] values = results.get(metric);
+    if(values == null) {
+      results.put(metric, values = new double[repeat]);
+      Arrays.fill(values, Double.NaN);
+    }
+    values[r] = value;
+  }
+
+  /**
+   * Write the median values of a configuration.
+   *
+   * @param out Output
+   * @param name Configuration name
+   * @param results Measurements
+   * @param base Baseline values, may be {@code null}
+   */
+  private void writeResults(PrintStream out, String name, Map<String, double[]> results, Map<String, Double> base) {
+    for(Map.Entry<String, double[]> e : results.entrySet()) {
+      final double value = median(e.getValue());
+      out.append(name).append('\t').append(e.getKey()).append('\t').append(Double.toString(value));
+      if(base != null) {
+        Double old = base.get(name + "\t" + e.getKey());
+        out.append('\t').append(old != null ? old.toString() : "");
+        out.append('\t').append(old != null ? Double.toString(value / old) : "");
+        if(old != null && RUN_TIME.equals(e.getKey()) && value > old * (1 + threshold)) {
+          LOG.warning("Regression in " + name + ": " + old + " ms -> " + value + " ms");
+        }
+      }
+      out.append('\n');
+    }
+  }
+
+  /**
+   * Median of the repetitions, ignoring missing values.
+   *
+   * @param values Values
+   * @return Median
+   */
+  private static double median(double[] values) {
+    double[] v = values.clone();
+    Arrays.sort(v); // NaN are sorted last
+    int n = v.length;
+    while(n > 0 && Double.isNaN(v[n - 1])) {
+      n--;
+    }
+    return n == 0 ? Double.NaN : (n & 1) == 1 ? v[n >>> 1] : .5 * (v[(n >>> 1) - 1] + v[n >>> 1]);
+  }
+
+  /**
+   * Parse the benchmark matrix.
+   *
+   * @param reader Input
+   * @return Configurations, by section
+   * @throws IOException on read errors
+   */
+  protected static Map<String, List<Configuration>> parseMatrix(BufferedReader reader) throws IOException {
+    Map<String, List<Configuration>> sections = new HashMap<>();
+    List<Configuration> current = null;
+    int lineno = 0;
+    for(String line; (line = reader.readLine()) != null;) {
+      ++lineno;
+      line = line.trim();
+      if(line.isEmpty() || line.charAt(0) == '#') {
+        continue;
+      }
+      if(line.charAt(0) == '[' && line.charAt(line.length() - 1) == ']') {
+        String section = line.substring(1, line.length() - 1).trim();
+        if(!"dataset".equals(section) && !"index".equals(section) && !"algorithm".equals(section)) {
+          throw new AbortException("Unknown section in benchmark matrix, line " + lineno + ": " + line);
+        }
+        current = sections.computeIfAbsent(section, x -> new ArrayList<>());
+        continue;
+      }
+      final int sep = line.indexOf(':');
+      if(current == null || sep <= 0) {
+        throw new AbortException("Expected a section or 'name: parameters' in benchmark matrix, line " + lineno + ": " + line);
+      }
+      String rest = line.substring(sep + 1).trim();
+      current.add(new Configuration(line.substring(0, sep).trim(), //
+          rest.isEmpty() ? Collections.emptyList() : Arrays.asList(rest.split("\\s+"))));
+    }
+    if(sections.get("dataset") == null || sections.get("algorithm") == null) {
+      throw new AbortException("The benchmark matrix needs a [dataset] and an [algorithm] section.");
+    }
+    List<Configuration> indexes = sections.get("index");
+    if(indexes == null || indexes.isEmpty()) {
+      sections.put("index", Collections.singletonList(new Configuration("none", Collections.emptyList())));
+    }
+    return sections;
+  }
+
+  /**
+   * Read a previous report.
+   *
+   * @param reader Input
+   * @return Values, by configuration and metric
+   * @throws IOException on read errors
+   */
+  protected static Map<String, Double> readReport(BufferedReader reader) throws IOException {
+    Map<String, Double> values = new HashMap<>();
+    for(String line; (line = reader.readLine()) != null;) {
+      if(line.isEmpty() || line.charAt(0) == '#') {
+        continue;
+      }
+      String[] cols = line.split("\t");
+      if(cols.length >= 3) {
+        try {
+          values.put(cols[0] + "\t" + cols[1], Double.valueOf(cols[2]));
+        }
+        catch(NumberFormatException e) {
+          // Ignore
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Reset the peak usage of the heap memory pools.
+   */
+  private static void resetPeakHeap() {
+    for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if(pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Get the peak heap usage, as sum over the heap memory pools.
+   *
+   * @return Peak heap usage
+   */
+  private static long peakHeap() {
+    long sum = 0;
+    for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if(pool.getType() == MemoryType.HEAP) {
+        sum += pool.getPeakUsage().getUsed();
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Get the number of bytes allocated by each live thread, if supported.
+   *
+   * @return Allocated bytes by thread id, or {@code null}
+   */
+  private static Map<Long, Long> allocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return null;
+    }
+    com.sun.management.ThreadMXBean sbean = (com.sun.management.ThreadMXBean) bean;
+    if(!sbean.isThreadAllocatedMemorySupported() || !sbean.isThreadAllocatedMemoryEnabled()) {
+      return null;
+    }
+    final long[] ids = bean.getAllThreadIds();
+    final long[] bytes = sbean.getThreadAllocatedBytes(ids);
+    Map<Long, Long> alloc = new HashMap<>();
+    for(int i = 0; i < ids.length; i++) {
+      if(bytes[i] >= 0) { // -1 if the thread has terminated
+        alloc.put(ids[i], bytes[i]);
+      }
+    }
+    return alloc;
+  }
+
+  /**
+   * Get the number of bytes allocated since a previous snapshot, by the
+   * threads that are still alive. Threads started after the snapshot count
+   * from zero.
+   *
+   * @param before Previous snapshot, may be {@code null}
+   * @return Allocated bytes, or -1
+   */
+  private static long allocatedSince(Map<Long, Long> before) {
+    Map<Long, Long> after = before != null ? allocatedBytes() : null;
+    if(after == null) {
+      return -1;
+    }
+    long sum = 0;
+    for(Map.Entry<Long, Long> e : after.entrySet()) {
+      Long b = before.get(e.getKey());
+      sum += Math.max(0, e.getValue() - (b != null ? b : 0L));
+    }
+    return sum;
+  }
+
+  /**
+   * A named configuration.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Configuration {
+    /**
+     * Name.
+     */
+    String name;
+
+    /**
+     * Parameters.
+     */
+    List<String> parameters;
+
+    /**
+     * Constructor.
+     *
+     * @param name Name
+     * @param parameters Parameters
+     */
+    public Configuration(String name, List<String> parameters) {
+      this.name = name;
+      this.parameters = parameters;
+    }
+  }
+
+  /**
+   * Log handler collecting numerical statistics.
+   *
+   * @author Erich Schubert
+   */
+  private static class StatisticsCollector extends Handler {
+    /**
+     * Statistics to keep.
+     */
+    private Pattern filter;
+
+    /**
+     * Collected values.
+     */
+    Map<String, Double> values = Collections.synchronizedMap(new TreeMap<>());
+
+    /**
+     * Constructor.
+     *
+     * @param filter Statistics to keep
+     */
+    public StatisticsCollector(Pattern filter) {
+      this.filter = filter;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+      if(!Level.STATISTICS.equals(record.getLevel()) || record.getMessage() == null) {
+        return;
+      }
+      final String msg = record.getMessage();
+      final int sep = msg.lastIndexOf(": ");
+      if(sep <= 0) {
+        return;
+      }
+      final String key = msg.substring(0, sep);
+      if(!filter.matcher(key).matches()) {
+        return;
+      }
+      // Durations have a unit suffix
+      String val = msg.substring(sep + 2).trim();
+      final int space = val.indexOf(' ');
+      val = space > 0 ? val.substring(0, space) : val;
+      try {
+        values.put(key, Double.valueOf(val));
+      }
+      catch(NumberFormatException e) {
+        // Not a numerical statistic.
+      }
+    }
+
+    /**
+     * Clear the collected values.
+     */
+    public void clear() {
+      values.clear();
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to do
+    }
+
+    @Override
+    public void close() {
+      // Nothing to do
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args parameter list according to description
+   */
+  public static void main(String[] args) {
+    runCLIApplication(AlgorithmBenchmark.class, args);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @hidden
+   *
+   * @author Erich Schubert
+   */
+  public static class Par extends AbstractApplication.Par {
+    /**
+     * Benchmark matrix file.
+     */
+    public static final OptionID MATRIX_ID = new OptionID("bench.matrix", "Benchmark matrix file, with [dataset], [index], and [algorithm] sections of 'name: parameters' lines. By default, a built-in matrix is used.");
+
+    /**
+     * Number of repetitions.
+     */
+    public static final OptionID REPEAT_ID = new OptionID("bench.repeat", "Number of repetitions of each configuration; the median is reported.");
+
+    /**
+     * Statistics to include.
+     */
+    public static final OptionID STATISTICS_ID = new OptionID("bench.statistics", "Pattern of the logged statistics to include in the report. By default, per-iteration statistics are skipped.");
+
+    /**
+     * Report output file.
+     */
+    public static final OptionID REPORT_ID = new OptionID("bench.report", "Output file for the tab-separated benchmark report. Default: standard output.");
+
+    /**
+     * Baseline report.
+     */
+    public static final OptionID BASELINE_ID = new OptionID("bench.baseline", "Report of a previous run, to compare to.");
+
+    /**
+     * Regression threshold.
+     */
+    public static final OptionID THRESHOLD_ID = new OptionID("bench.threshold", "Relative slowdown compared to the baseline that is reported as regression.");
+
+    /**
+     * Default benchmark matrix resource.
+     */
+    public static final String DEFAULT_MATRIX = "elki/application/benchmark/AlgorithmBenchmark.matrix";
+
+    /**
+     * Benchmark matrix file (or resource).
+     */
+    protected String matrix;
+
+    /**
+     * Number of repetitions.
+     */
+    protected int repeat = 3;
+
+    /**
+     * Statistics to include in the report.
+     */
+    protected Pattern statistics;
+
+    /**
+     * Report output file, may be {@code null}.
+     */
+    protected URI report;
+
+    /**
+     * Baseline report, may be {@code null}.
+     */
+    protected URI baseline;
+
+    /**
+     * Relative slowdown to report as regression.
+     */
+    protected double threshold = 0.1;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new StringParameter(MATRIX_ID, DEFAULT_MATRIX) //
+          .grab(config, x -> matrix = x);
+      new IntParameter(REPEAT_ID, 3) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> repeat = x);
+      new PatternParameter(STATISTICS_ID, "(?!.*\\.[0-9]+\\.).*") //
+          .grab(config, x -> statistics = x);
+      new FileParameter(REPORT_ID, FileParameter.FileType.OUTPUT_FILE) //
+          .setOptional(true) //
+          .grab(config, x -> report = x);
+      new FileParameter(BASELINE_ID, FileParameter.FileType.INPUT_FILE) //
+          .setOptional(true) //
+          .grab(config, x -> baseline = x);
+      new DoubleParameter(THRESHOLD_ID, 0.1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE) //
+          .grab(config, x -> threshold = x);
+    }
+
+    @Override
+    public AlgorithmBenchmark make() {
+      return new AlgorithmBenchmark(matrix, repeat, statistics, report, baseline, threshold);
+    }
+  }
+}
@@ -0,0 +1,426 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.util.Arrays;
+
+import elki.logging.Logging;
+import elki.logging.statistics.AtomicLongCounter;
+import elki.logging.statistics.Counter;
+import elki.utilities.exceptions.AbortException;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+/**
+ * A concurrent page cache, using lock striping and CLOCK eviction.
+ * <p>
+ * The pages are distributed onto a number of independent stripes by their
+ * page id. Each stripe has its own lock, hash map, and CLOCK ring (a
+ * "second chance" approximation of LRU), so that cache hits from multiple
+ * threads only contend if they access the same stripe. Cache misses and
+ * write-backs of evicted dirty pages are serialized on the backing file.
+ * <p>
+ * The cache size is given in bytes, and split evenly across the stripes.
+ * Hits, misses and evictions are reported as statistics.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @assoc - - - PageFile
+ *
+ * @param <P> Page type
+ */
+public class ClockCache<P extends Page> extends AbstractPageFile<P> {
+  /**
+   * Our class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ClockCache.class);
+
+  /**
+   * Cache size in bytes.
+   */
+  protected int cacheSizeBytes;
+
+  /**
+   * Requested number of stripes, 0 for automatic.
+   */
+  protected int numStripes;
+
+  /**
+   * The underlying file of this cache. If an object is dropped it is written to
+   * the file.
+   */
+  protected PageFile<P> file;
+
+  /**
+   * Cache stripes.
+   */
+  private Stripe<P>[] stripes;
+
+  /**
+   * Bit shift to choose the stripe.
+   */
+  private int shift;
+
+  /**
+   * Cache statistics.
+   */
+  private Counter hits, misses, evictions;
+
+  /**
+   * Initializes this cache with the specified parameters.
+   *
+   * @param cacheSizeBytes the maximum number of bytes for this cache
+   * @param numStripes Number of stripes, 0 for automatic
+   * @param file the underlying file of this cache, if a page is dropped it is
+   *        written to the file
+   */
+  public ClockCache(int cacheSizeBytes, int numStripes, PageFile<P> file) {
+    super(true);
+    this.file = file;
+    this.cacheSizeBytes = cacheSizeBytes;
+    this.numStripes = numStripes;
+    if(LOG.isStatistics()) {
+      final String prefix = this.getClass().getName();
+      this.hits = new AtomicLongCounter(prefix + ".hits");
+      this.misses = new AtomicLongCounter(prefix + ".misses");
+      this.evictions = new AtomicLongCounter(prefix + ".evictions");
+    }
+  }
+
+  /**
+   * Get the stripe of a page.
+   *
+   * @param pageID Page id
+   * @return Stripe
+   */
+  private Stripe<P> stripe(int pageID) {
+    return stripes[(int) (((pageID * 0x9E3779B9) & 0xFFFFFFFFL) >>> shift)];
+  }
+
+  @Override
+  public P readPage(int pageID) {
+    final Stripe<P> stripe = stripe(pageID);
+    synchronized(stripe) {
+      countRead();
+      P page = stripe.get(pageID);
+      if(page != null) {
+        if(hits != null) {
+          hits.increment();
+        }
+        return page;
+      }
+      if(misses != null) {
+        misses.increment();
+      }
+      synchronized(file) {
+        page = file.readPage(pageID);
+      }
+      if(page != null) {
+        stripe.put(pageID, page, this);
+      }
+      return page;
+    }
+  }
+
+  @Override
+  protected void writePage(int pageID, P page) {
+    page.setDirty(true);
+    final Stripe<P> stripe = stripe(pageID);
+    synchronized(stripe) {
+      countWrite();
+      stripe.put(pageID, page, this);
+    }
+  }
+
+  @Override
+  public void deletePage(int pageID) {
+    final Stripe<P> stripe = stripe(pageID);
+    synchronized(stripe) {
+      countWrite();
+      stripe.remove(pageID);
+      synchronized(file) {
+        file.deletePage(pageID);
+      }
+    }
+  }
+
+  /**
+   * Write page through to disk, when evicted from the cache.
+   *
+   * @param page page
+   */
+  protected void expirePage(P page) {
+    if(page.isDirty()) {
+      synchronized(file) {
+        file.writePage(page);
+      }
+    }
+  }
+
+  @Override
+  public int setPageID(P page) {
+    synchronized(file) {
+      return file.setPageID(page);
+    }
+  }
+
+  @Override
+  public int getNextPageID() {
+    return file.getNextPageID();
+  }
+
+  @Override
+  public void setNextPageID(int nextPageID) {
+    file.setNextPageID(nextPageID);
+  }
+
+  @Override
+  public int getPageSize() {
+    return file.getPageSize();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean initialize(PageHeader header) {
+    boolean created = file.initialize(header);
+    final int cacheSize = cacheSizeBytes / header.getPageSize();
+    if(cacheSize <= 0) {
+      throw new AbortException("Invalid cache size: " + cacheSizeBytes + " / " + header.getPageSize() + " = " + cacheSize);
+    }
+    // Power of two stripes, but at least a few pages in each.
+    int n = numStripes > 0 ? numStripes : 4 * Runtime.getRuntime().availableProcessors();
+    n = Math.max(1, Math.min(n, cacheSize >>> 2));
+    final int bits = 32 - Integer.numberOfLeadingZeros(n - 1);
+    this.shift = 32 - bits;
+    this.stripes = (Stripe<P>[]) new Stripe<?>[1 << bits];
+    for(int i = 0; i < stripes.length; i++) {
+      // Distribute the remainder onto the first stripes.
+      stripes[i] = new Stripe<>((cacheSize >>> bits) + (i < (cacheSize & ((1 << bits) - 1)) ? 1 : 0));
+    }
+    if(LOG.isDebugging()) {
+      LOG.debug("CLOCK cache size is " + cacheSize + " pages in " + stripes.length + " stripes.");
+    }
+    return created;
+  }
+
+  @Override
+  public void close() {
+    flush();
+    file.close();
+  }
+
+  /**
+   * Flushes this caches by writing any entry to the underlying file.
+   */
+  public void flush() {
+    if(stripes != null) {
+      for(Stripe<P> stripe : stripes) {
+        synchronized(stripe) {
+          stripe.flush(this);
+        }
+      }
+    }
+  }
+
+  /**
+   * Clears this cache.
+   */
+  @Override
+  public void clear() {
+    if(stripes != null) {
+      for(Stripe<P> stripe : stripes) {
+        synchronized(stripe) {
+          stripe.clear();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void logStatistics() {
+    super.logStatistics();
+    if(hits != null) {
+      LOG.statistics(hits);
+      LOG.statistics(misses);
+      LOG.statistics(evictions);
+    }
+    file.logStatistics();
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * A single stripe of the cache, with its own CLOCK ring.
+   * <p>
+   * Not thread safe; the caller synchronizes on the stripe.
+   *
+   * @author Erich Schubert
+   *
+   * @param <P> Page type
+   */
+  private static class Stripe<P extends Page> {
+    /**
+     * Map of page ids to slots.
+     */
+    Int2IntOpenHashMap map;
+
+    /**
+     * Page ids of the slots.
+     */
+    int[] ids;
+
+    /**
+     * Pages in the slots.
+     */
+    Object[] pages;
+
+    /**
+     * Reference bits of the slots.
+     */
+    boolean[] referenced;
+
+    /**
+     * Number of slots used so far (slots are only freed by deletion).
+     */
+    int used;
+
+    /**
+     * Free slots, from deleted pages.
+     */
+    int[] free;
+
+    /**
+     * Number of free slots.
+     */
+    int numfree;
+
+    /**
+     * Clock hand.
+     */
+    int hand;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Capacity
+     */
+    Stripe(int capacity) {
+      map = new Int2IntOpenHashMap(capacity);
+      map.defaultReturnValue(-1);
+      ids = new int[capacity];
+      pages = new Object[capacity];
+      referenced = new boolean[capacity];
+      free = new int[capacity];
+    }
+
+    /**
+     * Get a page, and mark it as referenced.
+     *
+     * @param pageID Page id
+     * @return Page, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    P get(int pageID) {
+      final int slot = map.get(pageID);
+      if(slot < 0) {
+        return null;
+      }
+      referenced[slot] = true;
+      return (P) pages[slot];
+    }
+
+    /**
+     * Put a page into the stripe, evicting another page if necessary.
+     *
+     * @param pageID Page id
+     * @param page Page
+     * @param cache Cache, for writing back evicted pages
+     */
+    @SuppressWarnings("unchecked")
+    void put(int pageID, P page, ClockCache<P> cache) {
+      int slot = map.get(pageID);
+      if(slot < 0) {
+        slot = numfree > 0 ? free[--numfree] : used < ids.length ? used++ : -1;
+        if(slot < 0) {
+          // Advance the clock hand to an unreferenced page.
+          while(referenced[hand]) {
+            referenced[hand] = false;
+            hand = hand + 1 < ids.length ? hand + 1 : 0;
+          }
+          slot = hand;
+          hand = hand + 1 < ids.length ? hand + 1 : 0;
+          map.remove(ids[slot]);
+          if(cache.evictions != null) {
+            cache.evictions.increment();
+          }
+          cache.expirePage((P) pages[slot]);
+        }
+        map.put(pageID, slot);
+        ids[slot] = pageID;
+      }
+      pages[slot] = page;
+      referenced[slot] = true;
+    }
+
+    /**
+     * Remove a page from the stripe, without writing it.
+     *
+     * @param pageID Page id
+     */
+    void remove(int pageID) {
+      final int slot = map.remove(pageID);
+      if(slot >= 0) {
+        pages[slot] = null;
+        referenced[slot] = false;
+        free[numfree++] = slot;
+      }
+    }
+
+    /**
+     * Write back all pages, and empty the stripe.
+     *
+     * @param cache Cache, for writing back pages
+     */
+    @SuppressWarnings("unchecked")
+    void flush(ClockCache<P> cache) {
+      for(int i = 0; i < used; i++) {
+        if(pages[i] != null) {
+          cache.expirePage((P) pages[i]);
+        }
+      }
+      clear();
+    }
+
+    /**
+     * Empty the stripe.
+     */
+    void clear() {
+      map.clear();
+      Arrays.fill(pages, null);
+      Arrays.fill(referenced, false);
+      used = numfree = hand = 0;
+    }
+  }
+}
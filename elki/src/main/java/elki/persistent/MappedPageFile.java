@@ -0,0 +1,635 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import elki.index.tree.TreeIndexHeader;
+import elki.logging.Logging;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.FileUtil;
+
+/**
+ * A page file that memory maps the file in large segments, and decodes the
+ * pages directly from the mapped buffers.
+ * <p>
+ * In contrast to {@link PersistentPageFile}, pages are not copied into a
+ * temporary array and deserialized using an {@link ObjectInputStream}, but are
+ * read and written through a lightweight {@link ObjectInput} and
+ * {@link ObjectOutput} working directly on the mapped memory. The operating
+ * system takes care of caching and writing back pages, so that indexes larger
+ * than main memory can be used. Because the page encoding does not use the
+ * Java serialization stream format, the files are not compatible with
+ * {@link PersistentPageFile}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ *
+ * @composed - - - PageHeader
+ *
+ * @param <P> Page type
+ */
+public class MappedPageFile<P extends ExternalizablePage> extends AbstractStoringPageFile<P> {
+  /**
+   * Our logger
+   */
+  private static final Logging LOG = Logging.getLogger(MappedPageFile.class);
+
+  /**
+   * Indicates an empty page.
+   */
+  private static final int EMPTY_PAGE = 0;
+
+  /**
+   * Indicates a filled page.
+   */
+  private static final int FILLED_PAGE = 1;
+
+  /**
+   * Segment size in bytes (upper bound).
+   */
+  private static final int SEGMENT_BYTES = 1 << 26;
+
+  /**
+   * The file storing the pages.
+   */
+  private final FileChannel file;
+
+  /**
+   * The header of this page file.
+   */
+  protected PageHeader header;
+
+  /**
+   * The type of pages we use.
+   */
+  protected final Class<P> pageclass;
+
+  /**
+   * Whether we are initializing from an existing file.
+   */
+  private boolean existed;
+
+  /**
+   * Pages per mapped segment.
+   */
+  private int pagesPerSegment;
+
+  /**
+   * Mapped segments.
+   */
+  private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+  /**
+   * Constructor.
+   *
+   * @param pageSize the page size
+   * @param filename file name
+   * @param pageclass the class of pages to be used
+   */
+  public MappedPageFile(int pageSize, Path filename, Class<P> pageclass) {
+    super(pageSize);
+    this.pageclass = pageclass;
+    existed = Files.exists(filename);
+    try {
+      file = FileChannel.open(filename, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error in loading mapped page file.", e);
+    }
+  }
+
+  /**
+   * Get a buffer positioned at the given page, mapping segments as necessary.
+   *
+   * @param pageID Page id
+   * @return Buffer, limited to the page
+   * @throws IOException on mapping errors
+   */
+  private ByteBuffer pageBuffer(int pageID) throws IOException {
+    final int seg = pageID / pagesPerSegment;
+    MappedByteBuffer[] segments = this.segments;
+    if(seg >= segments.length || segments[seg] == null) {
+      segments = mapSegment(seg);
+    }
+    final int pos = (pageID % pagesPerSegment) * pageSize;
+    ByteBuffer buf = segments[seg].duplicate();
+    buf.limit(pos + pageSize).position(pos);
+    return buf;
+  }
+
+  /**
+   * Map a segment of the file.
+   *
+   * @param seg Segment number
+   * @return Segments array
+   * @throws IOException on mapping errors
+   */
+  private synchronized MappedByteBuffer[] mapSegment(int seg) throws IOException {
+    MappedByteBuffer[] segments = this.segments;
+    if(seg >= segments.length) {
+      segments = Arrays.copyOf(segments, Math.max(seg + 1, segments.length << 1));
+    }
+    if(segments[seg] == null) {
+      final long offset = (header.getReservedPages() + seg * (long) pagesPerSegment) * pageSize;
+      segments[seg] = file.map(MapMode.READ_WRITE, offset, pagesPerSegment * (long) pageSize);
+    }
+    return this.segments = segments;
+  }
+
+  /**
+   * Drop all mapped segments, and release the mappings, before the file is
+   * truncated: truncating a file that is still mapped fails on some
+   * platforms. Pages must not be accessed concurrently.
+   *
+   * @param force Write back modified pages first
+   */
+  private synchronized void unmapSegments(boolean force) {
+    final MappedByteBuffer[] segments = this.segments;
+    this.segments = new MappedByteBuffer[0];
+    for(MappedByteBuffer seg : segments) {
+      if(seg != null) {
+        if(force) {
+          seg.force();
+        }
+        if(!FileUtil.unmap(seg)) {
+          LOG.debugFine("Cannot unmap the page file, leaving it to the garbage collector.");
+        }
+      }
+    }
+  }
+
+  @Override
+  public P readPage(int pageID) {
+    try {
+      countRead();
+      ByteBufferObjectInput in = new ByteBufferObjectInput(pageBuffer(pageID));
+      final int type = in.readInt();
+      if(type == EMPTY_PAGE) {
+        return null;
+      }
+      else if(type != FILLED_PAGE) {
+        throw new IllegalArgumentException("Unknown type: " + type);
+      }
+      P page = pageclass.getDeclaredConstructor().newInstance();
+      page.readExternal(in);
+      return page;
+    }
+    catch(InstantiationException | IllegalAccessException | NoSuchMethodException
+        | InvocationTargetException e) {
+      throw new AbortException("Error instanciating an index page", e);
+    }
+    catch(IOException | ClassNotFoundException | BufferUnderflowException e) {
+      throw new AbortException("Error reading page " + pageID, e);
+    }
+  }
+
+  @Override
+  public void deletePage(int pageID) {
+    super.deletePage(pageID);
+    countWrite();
+    try {
+      pageBuffer(pageID).putInt(EMPTY_PAGE);
+    }
+    catch(IOException e) {
+      throw new AbortException("Error deleting page " + pageID, e);
+    }
+  }
+
+  @Override
+  public void writePage(int pageID, P page) {
+    countWrite();
+    try {
+      ByteBufferObjectOutput out = new ByteBufferObjectOutput(pageBuffer(pageID));
+      out.writeInt(FILLED_PAGE);
+      page.writeExternal(out);
+      page.setDirty(false);
+    }
+    catch(BufferOverflowException e) {
+      throw new IllegalArgumentException("Size of page " + page + " is greater than specified pagesize: " + pageSize);
+    }
+    catch(IOException e) {
+      throw new AbortException("Error writing page " + pageID, e);
+    }
+  }
+
+  /**
+   * Closes this file.
+   */
+  @Override
+  public void close() {
+    try {
+      unmapSegments(true);
+      // Drop the unused remainder of the last segment.
+      file.truncate((header.getReservedPages() + (long) nextPageID) * pageSize);
+      if(header instanceof TreeIndexHeader) {
+        // write the list of empty pages to the end of the file
+        ((TreeIndexHeader) header).writeEmptyPages(emptyPages, file);
+        ((TreeIndexHeader) header).setLargestPageID(nextPageID);
+      }
+      header.writeHeader(file);
+      file.close();
+    }
+    catch(IOException e) {
+      throw new AbortException("Error closing mapped page file.", e);
+    }
+  }
+
+  /**
+   * Clears this PageFile.
+   */
+  @Override
+  public void clear() {
+    try {
+      unmapSegments(false);
+      file.truncate(header.size());
+      emptyPages.clear();
+      nextPageID = 0;
+    }
+    catch(IOException e) {
+      throw new AbortException("Error clearing mapped page file.", e);
+    }
+  }
+
+  /**
+   * Get the header of this page file.
+   *
+   * @return the header used by this page file
+   */
+  public PageHeader getHeader() {
+    return header;
+  }
+
+  @Override
+  public void setNextPageID(int next_page_id) {
+    this.nextPageID = next_page_id;
+    while(!emptyPages.isEmpty() && emptyPages.get(emptyPages.size - 1) >= this.nextPageID) {
+      --emptyPages.size;
+    }
+  }
+
+  @Override
+  public boolean initialize(PageHeader header) {
+    this.header = header;
+    try {
+      if(existed && file.size() >= header.size()) {
+        LOG.debug("Initializing from an existing page file.");
+        header.readHeader(file);
+        super.initialize(header);
+        this.pagesPerSegment = Math.max(1, SEGMENT_BYTES / pageSize);
+        if(header instanceof TreeIndexHeader) {
+          TreeIndexHeader tiHeader = (TreeIndexHeader) header;
+          nextPageID = tiHeader.getLargestPageID();
+          emptyPages = tiHeader.readEmptyPages(file);
+          // Remove the empty page list, it will be rewritten on close.
+          file.truncate((header.getReservedPages() + (long) nextPageID) * pageSize);
+        }
+        else { // must scan complete file
+          final long n = file.size() / pageSize - header.getReservedPages();
+          for(int i = 0; i < n; i++) {
+            int type = pageBuffer(i).getInt();
+            if(type == EMPTY_PAGE) {
+              emptyPages.add(i);
+            }
+            else if(type == FILLED_PAGE) {
+              nextPageID = i + 1;
+            }
+            else {
+              throw new IllegalArgumentException("Unknown type: " + type);
+            }
+          }
+        }
+        return true;
+      }
+      LOG.debug("Initializing with a new page file.");
+      super.initialize(header);
+      this.pagesPerSegment = Math.max(1, SEGMENT_BYTES / pageSize);
+      existed = false;
+      file.truncate(0);
+      header.writeHeader(file);
+    }
+    catch(IOException | ClassNotFoundException e) {
+      throw new AbortException("Error initializing mapped page file.", e);
+    }
+    return false;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Object input reading directly from a byte buffer.
+   * <p>
+   * Primitive values are encoded as in {@link DataInput}, objects using Java
+   * serialization with a length prefix.
+   *
+   * @author Erich Schubert
+   */
+  static class ByteBufferObjectInput implements ObjectInput {
+    /**
+     * Buffer to read from.
+     */
+    private final ByteBuffer buf;
+
+    /**
+     * Constructor.
+     *
+     * @param buf Buffer to read from
+     */
+    ByteBufferObjectInput(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    @Override
+    public void readFully(byte[] b) {
+      buf.get(b);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) {
+      buf.get(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+      n = Math.max(0, Math.min(n, buf.remaining()));
+      buf.position(buf.position() + n);
+      return n;
+    }
+
+    @Override
+    public boolean readBoolean() {
+      return buf.get() != 0;
+    }
+
+    @Override
+    public byte readByte() {
+      return buf.get();
+    }
+
+    @Override
+    public int readUnsignedByte() {
+      return buf.get() & 0xFF;
+    }
+
+    @Override
+    public short readShort() {
+      return buf.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() {
+      return buf.getShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() {
+      return buf.getChar();
+    }
+
+    @Override
+    public int readInt() {
+      return buf.getInt();
+    }
+
+    @Override
+    public long readLong() {
+      return buf.getLong();
+    }
+
+    @Override
+    public float readFloat() {
+      return buf.getFloat();
+    }
+
+    @Override
+    public double readDouble() {
+      return buf.getDouble();
+    }
+
+    @Override
+    public String readLine() {
+      if(!buf.hasRemaining()) {
+        return null;
+      }
+      // As in DataInputStream, one byte per character, ended by \n, \r or \r\n
+      StringBuilder line = new StringBuilder();
+      while(buf.hasRemaining()) {
+        final int c = buf.get() & 0xFF;
+        if(c == '\n') {
+          break;
+        }
+        if(c == '\r') {
+          if(buf.hasRemaining() && buf.get(buf.position()) == '\n') {
+            buf.get();
+          }
+          break;
+        }
+        line.append((char) c);
+      }
+      return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+      return DataInputStream.readUTF(this);
+    }
+
+    @Override
+    public Object readObject() throws ClassNotFoundException, IOException {
+      byte[] data = new byte[buf.getInt()];
+      buf.get(data);
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+        return ois.readObject();
+      }
+    }
+
+    @Override
+    public int read() {
+      return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b) {
+      return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if(!buf.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buf.remaining());
+      buf.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public long skip(long n) {
+      return skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public int available() {
+      return buf.remaining();
+    }
+
+    @Override
+    public void close() {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Object output writing directly to a byte buffer.
+   * <p>
+   * Primitive values are encoded as in {@link DataOutput}, objects using Java
+   * serialization with a length prefix.
+   *
+   * @author Erich Schubert
+   */
+  private static class ByteBufferObjectOutput implements ObjectOutput {
+    /**
+     * Buffer to write to.
+     */
+    private final ByteBuffer buf;
+
+    /**
+     * Constructor.
+     *
+     * @param buf Buffer to write to
+     */
+    ByteBufferObjectOutput(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    @Override
+    public void write(int b) {
+      buf.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b) {
+      buf.put(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      buf.put(b, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+      buf.put((byte) (v ? 1 : 0));
+    }
+
+    @Override
+    public void writeByte(int v) {
+      buf.put((byte) v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+      buf.putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) {
+      buf.putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+      buf.putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) {
+      buf.putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) {
+      buf.putFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) {
+      buf.putDouble(v);
+    }
+
+    @Override
+    public void writeBytes(String s) {
+      for(int i = 0; i < s.length(); i++) {
+        buf.put((byte) s.charAt(i));
+      }
+    }
+
+    @Override
+    public void writeChars(String s) {
+      for(int i = 0; i < s.length(); i++) {
+        buf.putChar(s.charAt(i));
+      }
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(s.length() + 2);
+      try (DataOutputStream dos = new DataOutputStream(baos)) {
+        dos.writeUTF(s);
+      }
+      buf.put(baos.toByteArray());
+    }
+
+    @Override
+    public void writeObject(Object obj) throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+        oos.writeObject(obj);
+      }
+      buf.putInt(baos.size());
+      buf.put(baos.toByteArray());
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to do.
+    }
+
+    @Override
+    public void close() {
+      // Nothing to do.
+    }
+  }
+}
@@ -24,10 +24,14 @@ import java.util.List;
 
 import elki.Algorithm;
 import elki.database.Database;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.memory.MemoryDataStoreFactory;
 import elki.index.Index;
 import elki.logging.Logging;
 import elki.logging.LoggingConfiguration;
 import elki.logging.statistics.Duration;
+import elki.parallel.ParallelCore;
 import elki.result.Metadata;
 import elki.utilities.datastructures.iterator.It;
 import elki.utilities.optionhandling.Parameterizer;
@@ -35,6 +39,7 @@ import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectListParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * The "algorithms" step, where data is analyzed.
@@ -45,6 +50,8 @@ import elki.utilities.optionhandling.parameters.ObjectListParameter;
  * @has - - - Algorithm
  * @has - - - Result
  * @assoc - - - Database
+ * @assoc - - - ParallelCore
+ * @assoc - - - DataStoreFactory
  */
 public class AlgorithmStep implements WorkflowStep {
   /**
@@ -142,6 +149,16 @@ public class AlgorithmStep implements WorkflowStep {
      */
     protected List<? extends Algorithm> algorithms;
 
+    /**
+     * Parallel processing core to use.
+     */
+    protected ParallelCore core;
+
+    /**
+     * Storage factory to use.
+     */
+    protected DataStoreFactory factory;
+
     /**
      * Flag to allow verbose messages while running the application.
      */
@@ -152,9 +169,17 @@ public class AlgorithmStep implements WorkflowStep {
      */
     public static final OptionID ALGORITHM_ID = Algorithm.Utils.ALGORITHM_ID;
 
+    /**
+     * Parameter to choose the storage factory for data stores.
+     */
+    public static final OptionID DATASTORE_ID = new OptionID("datastore.factory", "Storage factory for per-object data stores, e.g., to keep large stores off the Java heap.");
+
     @Override
     public void configure(Parameterization config) {
       new Flag(TIME_ID).grab(config, x -> time = x);
+      core = config.tryInstantiate(ParallelCore.class);
+      new ObjectParameter<DataStoreFactory>(DATASTORE_ID, DataStoreFactory.class, MemoryDataStoreFactory.class) //
+          .grab(config, x -> factory = x);
       // parameter algorithm
       new ObjectListParameter<Algorithm>(ALGORITHM_ID, Algorithm.class) //
           .grab(config, x -> algorithms = x);
@@ -165,6 +190,12 @@ public class AlgorithmStep implements WorkflowStep {
       if(time) {
         LoggingConfiguration.setStatistics();
       }
+      if(core != null) {
+        ParallelCore.setCore(core);
+      }
+      if(factory != null) {
+        DataStoreUtil.setFactory(factory);
+      }
       return new AlgorithmStep(algorithms);
     }
   }
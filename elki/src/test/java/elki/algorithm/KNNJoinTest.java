@@ -96,6 +96,14 @@ public class KNNJoinTest {
     }
   }
 
+  /**
+   * Test the batched linear scan used without an index.
+   */
+  @Test
+  public void testKNNJoinLinear() {
+    doKNNJoin(new ListParameterization());
+  }
+
   /**
    * Test {@link RStarTree} using a file based database connection.
    */
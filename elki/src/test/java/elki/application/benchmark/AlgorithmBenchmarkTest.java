@@ -0,0 +1,127 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.application.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import elki.application.benchmark.AlgorithmBenchmark.Configuration;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Unit test for the benchmark matrix and report formats.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class AlgorithmBenchmarkTest {
+  @Test
+  public void testParseMatrix() throws IOException {
+    Map<String, List<Configuration>> sections = AlgorithmBenchmark.parseMatrix(reader(//
+        "# comment\n" + //
+            "[dataset]\n" + //
+            "small: -dbc.in a.csv\n" + //
+            "\n" + //
+            "[ index ]\n" + //
+            "none:\n" + //
+            "[algorithm]\n" + //
+            "  km : -algorithm clustering.kmeans.LloydKMeans   -kmeans.k 3\n"));
+    assertEquals(1, sections.get("dataset").size());
+    Configuration ds = sections.get("dataset").get(0);
+    assertEquals("small", ds.name);
+    assertEquals(Arrays.asList("-dbc.in", "a.csv"), ds.parameters);
+    assertEquals(1, sections.get("index").size());
+    assertTrue(sections.get("index").get(0).parameters.isEmpty());
+    Configuration alg = sections.get("algorithm").get(0);
+    assertEquals("km", alg.name);
+    assertEquals(Arrays.asList("-algorithm", "clustering.kmeans.LloydKMeans", "-kmeans.k", "3"), alg.parameters);
+  }
+
+  @Test
+  public void testDefaultIndex() throws IOException {
+    Map<String, List<Configuration>> sections = AlgorithmBenchmark.parseMatrix(reader("[dataset]\nd:\n[algorithm]\na:\n"));
+    assertEquals(1, sections.get("index").size());
+    assertEquals("none", sections.get("index").get(0).name);
+  }
+
+  @Test
+  public void testDefaultMatrix() throws IOException {
+    try (InputStream in = AlgorithmBenchmark.class.getResourceAsStream("AlgorithmBenchmark.matrix")) {
+      Map<String, List<Configuration>> sections = AlgorithmBenchmark.parseMatrix(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+      assertFalse(sections.get("dataset").isEmpty());
+      assertFalse(sections.get("index").isEmpty());
+      assertFalse(sections.get("algorithm").isEmpty());
+    }
+  }
+
+  @Test(expected = AbortException.class)
+  public void testUnknownSection() throws IOException {
+    AlgorithmBenchmark.parseMatrix(reader("[dataset]\nd:\n[algorithms]\na:\n"));
+  }
+
+  @Test(expected = AbortException.class)
+  public void testMissingSection() throws IOException {
+    AlgorithmBenchmark.parseMatrix(reader("[dataset]\nd: -dbc.in a.csv\n"));
+  }
+
+  @Test(expected = AbortException.class)
+  public void testLineWithoutName() throws IOException {
+    AlgorithmBenchmark.parseMatrix(reader("[dataset]\n-dbc.in a.csv\n[algorithm]\na:\n"));
+  }
+
+  @Test
+  public void testReadReport() throws IOException {
+    Map<String, Double> values = AlgorithmBenchmark.readReport(reader(//
+        "# configuration\tmetric\tvalue\tbaseline\tratio\n" + //
+            "d/none/a\trun.ms\t12.5\t10.0\t1.25\n" + //
+            "d/none/a\talloc.bytes\t1024.0\n" + //
+            "d/none/a\tbroken\tNaN-ish\n" + //
+            "d/none/b\trun.ms\tNaN\n" + //
+            "incomplete\n"));
+    assertEquals(3, values.size());
+    assertEquals(12.5, values.get("d/none/a\trun.ms"), 0.);
+    assertEquals(1024., values.get("d/none/a\talloc.bytes"), 0.);
+    assertTrue(Double.isNaN(values.get("d/none/b\trun.ms")));
+  }
+
+  /**
+   * Make a reader for a string.
+   *
+   * @param s String
+   * @return Reader
+   */
+  private static BufferedReader reader(String s) {
+    return new BufferedReader(new StringReader(s));
+  }
+}
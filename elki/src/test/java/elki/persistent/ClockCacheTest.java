@@ -0,0 +1,143 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the concurrent page cache.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class ClockCacheTest {
+  @Test
+  public void testConcurrentReads() throws InterruptedException {
+    MemoryPageFile<TestPage> backing = new MemoryPageFile<>(100);
+    ClockCache<TestPage> cache = new ClockCache<>(1000, 2, backing);
+    cache.initialize(new DefaultPageHeader(100));
+    final int n = 100;
+    for(int i = 0; i < n; i++) {
+      TestPage p = new TestPage(i);
+      assertEquals(i, cache.writePage(p));
+    }
+    // Evicted pages must have been written back.
+    int written = 0;
+    for(int i = 0; i < n; i++) {
+      written += backing.readPage(i) != null ? 1 : 0;
+    }
+    assertEquals("Evicted pages not written.", n - 10, written);
+
+    final AtomicInteger errors = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for(int t = 0; t < 4; t++) {
+      final Random rnd = new Random(t);
+      threads.add(new Thread(() -> {
+        for(int j = 0; j < 10000; j++) {
+          final int id = rnd.nextInt(n);
+          TestPage p = cache.readPage(id);
+          if(p == null || p.getPageID() != id || p.value != id) {
+            errors.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for(Thread th : threads) {
+      th.start();
+    }
+    for(Thread th : threads) {
+      th.join();
+    }
+    assertEquals("Wrong pages returned.", 0, errors.get());
+
+    cache.deletePage(5);
+    assertNull(cache.readPage(5));
+    cache.flush();
+    for(int i = 0; i < n; i++) {
+      if(i != 5) {
+        TestPage p = backing.readPage(i);
+        assertNotNull("Page missing after flush: " + i, p);
+        assertFalse("Page still dirty: " + i, p.isDirty());
+      }
+    }
+  }
+
+  /**
+   * Trivial page for testing.
+   *
+   * @author Erich Schubert
+   */
+  private static class TestPage implements Page {
+    /**
+     * Page id.
+     */
+    int id = -1;
+
+    /**
+     * Dirty flag.
+     */
+    boolean dirty;
+
+    /**
+     * Payload.
+     */
+    int value;
+
+    /**
+     * Constructor.
+     *
+     * @param value Payload
+     */
+    TestPage(int value) {
+      this.value = value;
+    }
+
+    @Override
+    public int getPageID() {
+      return id;
+    }
+
+    @Override
+    public void setPageID(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public boolean isDirty() {
+      return dirty;
+    }
+
+    @Override
+    public void setDirty(boolean dirty) {
+      this.dirty = dirty;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.database.ids.DBIDUtil;
+import elki.index.AbstractIndexStructureTest;
+import elki.index.PagedIndexFactory;
+import elki.index.tree.TreeIndexHeader;
+import elki.index.tree.spatial.SpatialPointLeafEntry;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeNode;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the memory-mapped page file.
+ *
+ * @author Erich Schubert
+ * @since 0.8.1
+ */
+public class MappedPageFileTest extends AbstractIndexStructureTest {
+  @Test
+  public void testRStarTree() throws IOException {
+    Path file = Files.createTempFile("mapped", ".idx");
+    Files.delete(file);
+    try {
+      RStarTreeFactory<NumberVector> factory = new ELKIBuilder<RStarTreeFactory<NumberVector>>(RStarTreeFactory.class) //
+          .with(PagedIndexFactory.Par.PAGEFILE_ID, MappedPageFileFactory.class) //
+          .with(AbstractPageFileFactory.Par.PAGE_SIZE_ID, 300) //
+          .with(PersistentPageFileFactory.Par.FILE_ID, file.toString()) //
+          .build();
+      assertExactEuclidean(factory, RStarTreeKNNSearcher.class, RStarTreeRangeSearcher.class);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Test
+  public void testReopen() throws IOException {
+    Path file = Files.createTempFile("mapped", ".idx");
+    Files.delete(file);
+    try {
+      MappedPageFile pf = new MappedPageFile<>(300, file, (Class) RStarTreeNode.class);
+      assertFalse(pf.initialize(new TreeIndexHeader(300, 5, 5, 2, 2)));
+      for(int i = 0; i < 10; i++) {
+        RStarTreeNode node = new RStarTreeNode(5, true);
+        for(int j = 0; j <= i % 5; j++) {
+          node.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(i * 10 + j), new double[] { i, j }));
+        }
+        assertEquals(i, pf.writePage(node));
+      }
+      pf.deletePage(3);
+      pf.close();
+
+      pf = new MappedPageFile<>(300, file, (Class) RStarTreeNode.class);
+      assertTrue(pf.initialize(new TreeIndexHeader()));
+      assertEquals(10, pf.getNextPageID());
+      assertNull(pf.readPage(3));
+      for(int i = 0; i < 10; i++) {
+        if(i == 3) {
+          continue;
+        }
+        RStarTreeNode node = (RStarTreeNode) pf.readPage(i);
+        assertTrue(node.isLeaf());
+        assertEquals(i % 5 + 1, node.getNumEntries());
+        for(int j = 0; j <= i % 5; j++) {
+          SpatialPointLeafEntry e = (SpatialPointLeafEntry) node.getEntry(j);
+          assertEquals(i * 10 + j, DBIDUtil.asInteger(e.getDBID()));
+          assertEquals(j, e.doubleValue(1), 0.);
+        }
+      }
+      // Page 3 is reused first.
+      assertEquals(3, pf.writePage(new RStarTreeNode(5, true)));
+      pf.close();
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Test
+  public void testClear() throws IOException {
+    Path file = Files.createTempFile("mapped", ".idx");
+    Files.delete(file);
+    try {
+      TreeIndexHeader header = new TreeIndexHeader(300, 5, 5, 2, 2);
+      MappedPageFile pf = new MappedPageFile<>(300, file, (Class) RStarTreeNode.class);
+      assertFalse(pf.initialize(header));
+      for(int i = 0; i < 10; i++) {
+        pf.writePage(new RStarTreeNode(5, true));
+      }
+      pf.clear();
+      // The mapped segments were released, and the file truncated:
+      assertEquals(header.size(), Files.size(file));
+      assertEquals(0, pf.getNextPageID());
+      RStarTreeNode node = new RStarTreeNode(5, true);
+      node.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(42), new double[] { 1, 2 }));
+      assertEquals(0, pf.writePage(node));
+      assertEquals(1, ((RStarTreeNode) pf.readPage(0)).getNumEntries());
+      pf.close();
+      assertEquals((header.getReservedPages() + 1) * 300L, Files.size(file));
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testReadLine() {
+    ByteBuffer buf = ByteBuffer.wrap("one\ntwo\r\nthree\rfour".getBytes(StandardCharsets.ISO_8859_1));
+    MappedPageFile.ByteBufferObjectInput in = new MappedPageFile.ByteBufferObjectInput(buf);
+    assertEquals("one", in.readLine());
+    assertEquals("two", in.readLine());
+    assertEquals("three", in.readLine());
+    assertEquals("four", in.readLine());
+    assertNull(in.readLine());
+  }
+}